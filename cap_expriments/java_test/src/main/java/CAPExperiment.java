@@ -1,19 +1,62 @@
 // src/main/java/CAPExperiment.java
+import com.example.cap.cache.NearCache;
+import com.example.cap.client.ReadConsistency;
+import com.example.cap.client.ReadRouter;
+import com.example.cap.client.RedisPools;
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.metrics.ReplicationLagProbe;
+import com.example.cap.results.ResultLog;
 import redis.clients.jedis.Jedis;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 public class CAPExperiment {
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    // 主流程占用1个连接，实验3的写入线程和4个读线程各再占1个
+    private static final int POOL_SIZE = 6;
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+    private static final long LAG_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // 近端缓存实验：商品数量、缓存容量（小于商品数量以触发淘汰）、写入间隔和持续时间
+    private static final int BROWSE_KEYS = 200;
+    private static final int NEAR_CACHE_ENTRIES = 64;
+    private static final long NEAR_CACHE_BYTES = 64 * 1024;
+    private static final long BROWSE_WRITE_INTERVAL_MS = 2;
+    private static final long BROWSE_SECONDS = 3;
+    private static final int BROWSE_READERS_PER_MODE = 2;
+    private static final int BROWSE_MAX_WRITES = 20_000;
+    // 一致性路由实验：并发会话数、持续时间、偏移量轮询间隔、有界陈旧上限
+    private static final int ROUTER_SESSIONS = 4;
+    private static final long ROUTER_SECONDS = 3;
+    private static final long ROUTER_POLL_INTERVAL_MS = 5;
+    private static final long ROUTER_MAX_STALENESS_MS = 50;
+    // 结构化结果，写到 results/ 下供基线对比（-Dcap.results.dir 覆盖目录）
+    private static final ResultLog RESULTS = new ResultLog("CAPExperiment");
     
     public static void main(String[] args) throws Exception {
         System.out.println("🚀 Redis CAP特性验证实验");
         System.out.println("=====================================");
+        MetricsEndpoint.startIfConfigured();
+        FlightRecording.startIfConfigured("CAPExperiment");
         
         // 连接Master和Slave
-        Jedis master = new Jedis("localhost", 6379);
-        Jedis slave = new Jedis("localhost", 6380);
+        RedisPools pools = RedisPools.open(POOL_SIZE);
+        Jedis master = pools.master().getResource();
+        Jedis slave = pools.slave().getResource();
+        
+        // 后台复制延迟探针：独立连接，不占用实验连接池
+        ReplicationLagProbe lagProbe = new ReplicationLagProbe(pools.masterAddress(), pools.slaveAddress(),
+            LAG_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        lagProbe.start();
         
         // 测试连接
         System.out.println("📡 连接测试:");
@@ -28,9 +71,22 @@ public class CAPExperiment {
         System.out.println("\n⚖️  实验2：一致性vs可用性权衡");
         testConsistencyVsAvailability(master, slave);
         
+        // 实验3：近端缓存
+        System.out.println("\n🧊 实验3：商品浏览的近端缓存");
+        testNearCache(pools);
+        
+        // 实验4：按一致性级别路由读
+        System.out.println("\n🧭 实验4：按一致性级别路由读");
+        testReadRouting(pools);
+        
         // 清理资源
         master.close();
         slave.close();
+        lagProbe.close();
+        pools.close();
+        lagProbe.printReport();
+        RESULTS.add(lagProbe.toRecord());
+        RESULTS.close();
         
         System.out.println("\n✅ 实验完成！");
     }
@@ -43,6 +99,7 @@ public class CAPExperiment {
             // 写入Master
             String writeTime = LocalTime.now().format(TIME_FORMAT);
             master.set(key, value);
+            long ackNanos = System.nanoTime();
             System.out.printf("写入Master [%s]: %s = %s%n", writeTime, key, value);
             
             // 立即从Slave读取
@@ -51,11 +108,11 @@ public class CAPExperiment {
             System.out.printf("立即从Slave读取 [%s]: %s%n", readTime, 
                 immediateRead != null ? immediateRead : "❌ null (未同步)");
             
-            // 等待100ms后再读取
-            TimeUnit.MILLISECONDS.sleep(100);
-            String delayedRead = slave.get(key);
-            String delayedTime = LocalTime.now().format(TIME_FORMAT);
-            System.out.printf("100ms后读取 [%s]: %s%n", delayedTime, delayedRead);
+            // 紧密轮询Slave，测量从Master确认写入到Slave可见的精确延迟
+            long lagNanos = ReplicationLagProbe.awaitValue(slave, key, value, ackNanos, LAG_TIMEOUT_NANOS);
+            String visibleTime = LocalTime.now().format(TIME_FORMAT);
+            System.out.printf("Slave可见 [%s]: %s%n", visibleTime,
+                lagNanos < 0 ? "❌ 2秒内未同步" : String.format("复制延迟 %.3f ms", lagNanos / 1e6));
             
             System.out.println("---");
             TimeUnit.MILLISECONDS.sleep(500);
@@ -86,4 +143,150 @@ public class CAPExperiment {
         System.out.println("从Slave读取商品描述: " + 
             (slaveDesc != null ? slaveDesc : "稍有延迟，用户可以接受"));
     }
+    
+    /**
+     * 热点商品描述一边被持续更新、一边被浏览：一半读线程每次都读Slave，另一半经近端缓存读Slave。
+     * 值为"写入序号|描述"；读到的序号之后若已有更新在读开始前被Master确认，则这次读是旧读，
+     * 滞后时间 = 读开始时刻 - 那次更新的确认时刻。
+     */
+    static void testNearCache(RedisPools pools) throws Exception {
+        String prefix = "product:browse:";
+        AtomicLongArray ackNanos = new AtomicLongArray(BROWSE_MAX_WRITES + 1);
+        // nextSeq[s] = 同一商品在序号s之后的下一次写入序号
+        AtomicLongArray nextSeq = new AtomicLongArray(BROWSE_MAX_WRITES + 1);
+        long[] latestSeq = new long[BROWSE_KEYS];
+        try (Jedis master = pools.master().getResource();
+             Jedis slave = pools.slave().getResource()) {
+            for (int i = 0; i < BROWSE_KEYS; i++) {
+                long seq = i + 1;
+                master.set(prefix + i, seq + "|商品" + i + "描述");
+                ackNanos.set((int) seq, System.nanoTime());
+                latestSeq[i] = seq;
+            }
+            String last = prefix + (BROWSE_KEYS - 1);
+            ReplicationLagProbe.awaitValue(slave, last, master.get(last), System.nanoTime(), LAG_TIMEOUT_NANOS);
+        }
+        
+        NearCache cache = new NearCache(pools.slaveAddress(), NEAR_CACHE_ENTRIES, NEAR_CACHE_BYTES, List.of(prefix));
+        cache.start();
+        if (!cache.awaitReady(2, TimeUnit.SECONDS)) {
+            System.out.println("⚠️  失效通道未能建立，近端缓存将全部旁路");
+        }
+        System.out.printf("%d个商品按热度倾斜访问，每%dms更新一个；%d个线程直读Slave，%d个线程经近端缓存（容量%d条/%dKB），持续%d秒%n",
+            BROWSE_KEYS, BROWSE_WRITE_INTERVAL_MS, BROWSE_READERS_PER_MODE, BROWSE_READERS_PER_MODE,
+            NEAR_CACHE_ENTRIES, NEAR_CACHE_BYTES / 1024, BROWSE_SECONDS);
+        
+        LatencyRecorder recorder = new LatencyRecorder();
+        LongAdder[] reads = {new LongAdder(), new LongAdder()};
+        LongAdder[] staleReads = {new LongAdder(), new LongAdder()};
+        String[] nodes = {LatencyRecorder.SLAVE, "near"};
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(BROWSE_SECONDS);
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> {
+            try (Jedis master = pools.master().getResource()) {
+                for (int seq = BROWSE_KEYS + 1; seq <= BROWSE_MAX_WRITES && System.nanoTime() < deadline; seq++) {
+                    int index = hotIndex();
+                    master.set(prefix + index, seq + "|商品" + index + "描述v" + seq);
+                    ackNanos.set(seq, System.nanoTime());
+                    nextSeq.set((int) latestSeq[index], seq);
+                    latestSeq[index] = seq;
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(BROWSE_WRITE_INTERVAL_MS));
+                }
+            }
+        }, "browse-writer"));
+        for (int r = 0; r < BROWSE_READERS_PER_MODE * 2; r++) {
+            int mode = r % 2;
+            threads.add(new Thread(() -> {
+                try (Jedis slave = pools.slave().getResource()) {
+                    while (System.nanoTime() < deadline) {
+                        String key = prefix + hotIndex();
+                        long start = System.nanoTime();
+                        String value = mode == 0 ? slave.get(key) : cache.get(slave, key);
+                        recorder.record(nodes[mode], "GET", System.nanoTime() - start);
+                        reads[mode].increment();
+                        long next = nextSeq.get(Integer.parseInt(value.substring(0, value.indexOf('|'))));
+                        long nextAck = next == 0 ? 0 : ackNanos.get((int) next);
+                        if (nextAck != 0 && nextAck < start) {
+                            staleReads[mode].increment();
+                            recorder.record(nodes[mode], "旧读滞后", start - nextAck);
+                        }
+                    }
+                }
+            }, "browse-reader-" + r));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        
+        recorder.printReport("Slave直读 vs 近端缓存");
+        RESULTS.addLatencies("近端缓存", recorder);
+        for (int mode = 0; mode < 2; mode++) {
+            System.out.printf("%-6s 读 %d 次，旧读 %d 次 (%.2f%%)%n", nodes[mode], reads[mode].sum(),
+                staleReads[mode].sum(), 100.0 * staleReads[mode].sum() / Math.max(1, reads[mode].sum()));
+        }
+        cache.printStats();
+        cache.close();
+        long nearReads = reads[1].sum();
+        long slaveRequests = cache.getMisses() + cache.getBypasses();
+        System.out.printf("📉 经近端缓存的 %d 次读只有 %d 次到达Slave，Slave读负载减少 %.1f%%%n",
+            nearReads, slaveRequests, 100.0 * (1 - (double) slaveRequests / Math.max(1, nearReads)));
+        System.out.println("💡 失效消息由服务端推送，近端缓存的旧读窗口与直读Slave同一量级（复制延迟 + 推送延迟），却省掉了大部分往返");
+    }
+    
+    /**
+     * 每个会话循环"改购物车 → 看自己的购物车 → 看库存 → 看商品详情 → 看评论"，
+     * 各读声明自己的一致性级别，由路由器决定读Master还是Slave，并校验读己之写没有被违反
+     */
+    static void testReadRouting(RedisPools pools) throws Exception {
+        try (Jedis master = pools.master().getResource()) {
+            master.set("product:iphone15:stock", "100");
+            master.set("product:iphone15:desc", "最新iPhone15，现货发售！");
+            master.set("product:iphone15:reviews", "好评如潮");
+        }
+        ReadConsistency bounded = ReadConsistency.boundedStaleness(ROUTER_MAX_STALENESS_MS, TimeUnit.MILLISECONDS);
+        System.out.printf("%d个会话并发%d秒；库存=%s，自己的购物车=%s，商品详情=%s，评论=%s%n",
+            ROUTER_SESSIONS, ROUTER_SECONDS, ReadConsistency.strong().label(),
+            ReadConsistency.readYourWrites().label(), bounded.label(), ReadConsistency.any().label());
+        
+        ReadRouter router = new ReadRouter(pools, ROUTER_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        router.start();
+        AtomicLong violations = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ROUTER_SECONDS);
+        List<Thread> sessions = new ArrayList<>();
+        for (int u = 0; u < ROUTER_SESSIONS; u++) {
+            String cartKey = "cart:user:" + u;
+            sessions.add(new Thread(() -> {
+                ReadRouter.Session session = router.session();
+                for (long n = 1; System.nanoTime() < deadline; n++) {
+                    String items = String.valueOf(n);
+                    session.write(jedis -> jedis.set(cartKey, items));
+                    if (!items.equals(session.read(ReadConsistency.readYourWrites(), jedis -> jedis.get(cartKey)))) {
+                        violations.incrementAndGet();
+                    }
+                    session.read(ReadConsistency.strong(), jedis -> jedis.get("product:iphone15:stock"));
+                    session.read(bounded, jedis -> jedis.get("product:iphone15:desc"));
+                    session.read(ReadConsistency.any(), jedis -> jedis.get("product:iphone15:reviews"));
+                }
+            }, "router-session-" + u));
+        }
+        sessions.forEach(Thread::start);
+        for (Thread t : sessions) {
+            t.join();
+        }
+        router.close();
+        
+        router.printReport();
+        RESULTS.addLatencies("一致性路由", router.recorder());
+        System.out.printf("读己之写违反次数: %d %s%n", violations.get(), violations.get() == 0 ? "✅" : "❌");
+        System.out.println("💡 只有确知Slave满足要求的读才被卸载；写后立即读自己的数据通常要等下一次偏移量轮询，期间回退到Master");
+    }
+    
+    /**
+     * 热度倾斜的商品下标：r³ 让小下标的商品被访问得多得多
+     */
+    private static int hotIndex() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return (int) (BROWSE_KEYS * r * r * r);
+    }
 }
@@ -0,0 +1,28 @@
+import com.example.cap.results.BaselineComparison;
+import com.example.cap.results.ResultRecord;
+import java.nio.file.Path;
+import java.util.Map;
+
+public class CompareResults {
+    // 默认回归阈值（百分比），可通过第三个参数或 -Dcap.compare.threshold 覆盖
+    private static final double DEFAULT_THRESHOLD = Double.parseDouble(System.getProperty("cap.compare.threshold", "10"));
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("用法: CompareResults <基线.jsonl> <本次.jsonl> [阈值百分比]");
+            System.out.println("把某次运行的 results/*.jsonl 复制为基线文件，之后每次运行都与它对比");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, ResultRecord> baseline = BaselineComparison.load(Path.of(args[0]));
+        Map<String, ResultRecord> current = BaselineComparison.load(Path.of(args[1]));
+        
+        BaselineComparison comparison = new BaselineComparison(threshold).compare(baseline, current);
+        comparison.print();
+        if (comparison.failures() > 0) {
+            System.out.println(comparison.regressions() > 0 ? "❌ 发现性能回归" : "❌ 本次运行缺少基线中的场景");
+            System.exit(1);
+        }
+        System.out.println("✅ 未发现性能回归");
+    }
+}
@@ -1,26 +1,95 @@
 
 // ComprehensiveCAPTest.java
+import com.example.cap.client.LargeValueStore;
+import com.example.cap.client.RedisPools;
+import com.example.cap.client.VersionedValue;
+import com.example.cap.client.WriteModeComparison;
+import com.example.cap.fault.FaultProxy;
+import com.example.cap.fault.NetworkFaults;
+import com.example.cap.history.History;
+import com.example.cap.history.LinearizabilityChecker;
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.load.OpenLoopDriver;
+import com.example.cap.load.VirtualUserDriver;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.metrics.ReplicationLagProbe;
+import com.example.cap.metrics.StalenessRecorder;
+import com.example.cap.results.ResultLog;
+import com.example.cap.seckill.SeckillAudit;
+import com.example.cap.seckill.SeckillEngine;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class ComprehensiveCAPTest {
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final int POOL_SIZE = 16;
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+    private static final long LAG_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // 开环负载参数，可通过 -Dcap.openloop.rate / -Dcap.openloop.arrival=fixed|poisson 覆盖
+    private static final double OPEN_LOOP_RATE = Double.parseDouble(System.getProperty("cap.openloop.rate", "20000"));
+    private static final OpenLoopDriver.Arrival OPEN_LOOP_ARRIVAL =
+        OpenLoopDriver.Arrival.valueOf(System.getProperty("cap.openloop.arrival", "poisson").toUpperCase());
+    private static final int OPEN_LOOP_WORKERS = 8;
+    private static final long OPEN_LOOP_SECONDS = 5;
+    // 秒杀扩展测试的用户规模，可通过 -Dcap.seckill.users=1000,10000,50000 覆盖
+    private static final String SECKILL_USERS = System.getProperty("cap.seckill.users", "1000,10000,50000");
+    private static final int PLATFORM_THREADS = 200;
+    // 扩展测试专用连接池的大小，默认与平台线程数相同，两种模式在Redis侧的并发上限一致
+    private static final int SECKILL_CONNECTIONS = Integer.getInteger("cap.seckill.connections", PLATFORM_THREADS);
+    // 原子秒杀引擎测试的买家数和库存，可通过 -Dcap.seckill.buyers / -Dcap.seckill.stock 覆盖
+    private static final int SECKILL_BUYERS = Integer.getInteger("cap.seckill.buyers", 10000);
+    private static final int SECKILL_STOCK = Integer.getInteger("cap.seckill.stock", 1000);
+    private static final int PIPELINE_DEPTH = Integer.getInteger("cap.pipeline.depth", 100);
+    private static final int BATCH_SIZE = Integer.getInteger("cap.batch.size", 100);
+    // 大值分块写入：实验4的值大小和块大小；扫描的最大值可通过 -Dcap.large.max.mb 覆盖
+    private static final long LARGE_VALUE_BYTES = 1536 * 1024;
+    private static final int LARGE_VALUE_CHUNK = 256 * 1024;
+    private static final long LARGE_SWEEP_MAX_BYTES = Long.getLong("cap.large.max.mb", 64) * 1024 * 1024;
+    // 0表示整块SET作为对照
+    private static final int[] LARGE_SWEEP_CHUNKS = {0, 16 * 1024, 256 * 1024, 1024 * 1024};
+    private static final long LARGE_CATCH_UP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final byte[] PRODUCT_DESC_LINE = "商品描述数据测试大数据同步延迟\n".getBytes(StandardCharsets.UTF_8);
+    private static final LatencyRecorder LATENCY = new LatencyRecorder();
+    // 结构化结果，写到 results/ 下供基线对比（-Dcap.results.dir 覆盖目录）
+    private static final ResultLog RESULTS = new ResultLog("ComprehensiveCAPTest");
+    // 并发读写测试中写线程/读线程的发起节奏，用于协调遗漏修正
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long READ_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(150);
+    private static final int READER_THREADS = 3;
 
     public static void main(String[] args) throws Exception {
         System.out.println("🎯 Redis CAP理论综合验证实验");
         System.out.println("整合版：从基础到极端的全方位测试");
         System.out.println("==========================================");
+        MetricsEndpoint.startIfConfigured();
+        FlightRecording.startIfConfigured("ComprehensiveCAPTest");
 
-        Jedis master = new Jedis("localhost", 6379);
-        Jedis slave = new Jedis("localhost", 6380);
+        RedisPools pools = RedisPools.open(POOL_SIZE);
+        Jedis master = pools.master().getResource();
+        Jedis slave = pools.slave().getResource();
+
+        // 后台复制延迟探针：独立连接，不占用实验连接池
+        ReplicationLagProbe lagProbe = new ReplicationLagProbe(pools.masterAddress(), pools.slaveAddress(),
+            LAG_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        lagProbe.start();
 
         System.out.println("📡 连接测试:");
         System.out.println("Master: " + master.ping());
@@ -33,12 +102,20 @@ public class ComprehensiveCAPTest {
 
         // 实验1：并发读写一致性测试（增强版）
         System.out.println("\n🔄 实验1：并发读写一致性测试");
-        testConcurrentReadWrite(master, slave);
+        testConcurrentReadWrite(pools);
 
         // 实验2：电商秒杀场景模拟（增强版）
         System.out.println("\n⚡ 实验2：电商秒杀场景模拟");
         testSeckillScenario(master, slave);
 
+        // 实验2b：万人秒杀扩展测试（虚拟线程 vs 平台线程池）
+        System.out.println("\n👥 实验2b：万人秒杀扩展测试");
+        testSeckillScaling(pools);
+
+        // 实验2c：原子秒杀引擎 vs 先查后扣（超卖审计）
+        System.out.println("\n🎯 实验2c：原子秒杀引擎与超卖审计");
+        testAtomicSeckill(pools);
+
         // 实验3：读写分离性能对比（增强版）
         System.out.println("\n📈 实验3：读写分离性能对比");
         testReadWriteSeparation(master, slave);
@@ -52,13 +129,21 @@ public class ComprehensiveCAPTest {
         System.out.println("\n📦 实验4：大数据量同步延迟测试");
         testLargeDataReplication(master, slave);
 
+        // 实验4b：大值分块写入扫描（1KB~64MB）
+        System.out.println("\n📐 实验4b：大值分块写入扫描");
+        testLargeValueSweep(master, slave);
+
         // 实验5：高并发写入压力测试（极端版）
         System.out.println("\n🚀 实验5：高并发写入压力测试");
-        testHighConcurrencyWrites(master, slave);
+        testHighConcurrencyWrites(pools);
+
+        // 实验5b：开环恒定到达率写入测试
+        System.out.println("\n⏱️  实验5b：开环恒定到达率写入测试");
+        testOpenLoopWrites(pools);
 
         // 实验6：网络延迟模拟（极端版）
         System.out.println("\n🌐 实验6：模拟网络延迟影响");
-        testNetworkLatencyImpact(master, slave);
+        testNetworkLatencyImpact(pools, master, slave);
 
         // ============ 故障测试组 ============
         System.out.println("\n" + "=".repeat(50));
@@ -67,7 +152,7 @@ public class ComprehensiveCAPTest {
 
         // 实验7：故障恢复测试（增强版）
         System.out.println("\n🛠️  实验7：故障恢复能力测试");
-        testFailureRecovery(master, slave);
+        testFailureRecovery(pools, master, slave);
 
         // 实验8：故障切换场景（极端版）
         System.out.println("\n💥 实验8：故障切换场景测试");
@@ -75,6 +160,14 @@ public class ComprehensiveCAPTest {
 
         master.close();
         slave.close();
+        lagProbe.close();
+        pools.printStats();
+        pools.close();
+        lagProbe.printReport();
+        LATENCY.printReport("全部实验汇总");
+        RESULTS.addLatencies("全部实验汇总", LATENCY);
+        RESULTS.add(lagProbe.toRecord());
+        RESULTS.close();
 
         // 总结报告
         System.out.println("\n" + "=".repeat(50));
@@ -85,45 +178,74 @@ public class ComprehensiveCAPTest {
 
     // ==================== 基础测试组方法 ====================
 
-    static void testConcurrentReadWrite(Jedis master, Jedis slave) throws Exception {
+    static void testConcurrentReadWrite(RedisPools pools) throws Exception {
         ExecutorService executor = Executors.newFixedThreadPool(4);
+        LatencyRecorder latency = new LatencyRecorder();
         AtomicInteger writeCount = new AtomicInteger(0);
         AtomicInteger readFailCount = new AtomicInteger(0);
+        History history = new History();
+        StalenessRecorder staleness = new StalenessRecorder();
 
-        // 模拟高并发场景：一个线程写，多个线程读
+        // 模拟高并发场景：一个线程写，多个线程读（每个线程从连接池借用独立连接）
         Future<?> writer = executor.submit(() -> {
-            for (int i = 0; i < 10; i++) {
-                try {
-                    String key = "concurrent:user:" + i;
-                    String value = "user_data_" + System.currentTimeMillis();
-                    master.set(key, value);
-                    writeCount.incrementAndGet();
-                    System.out.printf("📝 [%s] 写入: %s = %s%n",
-                        LocalTime.now().format(TIME_FORMAT), key, value);
-                    TimeUnit.MILLISECONDS.sleep(100);
-                } catch (Exception e) {
-                    e.printStackTrace();
+            int process = 0;
+            try (Jedis master = pools.master().getResource()) {
+                for (int i = 0; i < 10; i++) {
+                    try {
+                        String key = "concurrent:user:" + i;
+                        VersionedValue version = staleness.next(key, "user_data_" + System.currentTimeMillis());
+                        String value = version.encode();
+                        int op = history.invoke(process, History.Kind.WRITE, key, value);
+                        try {
+                            latency.time(LatencyRecorder.MASTER, "SET", WRITE_INTERVAL_NANOS, () -> master.set(key, value));
+                            history.ok(op);
+                            staleness.acknowledged(key, version);
+                        } catch (RuntimeException e) {
+                            // 写是否生效未知，之后换一个进程编号继续
+                            history.info(op);
+                            process += READER_THREADS + 1;
+                            throw e;
+                        }
+                        writeCount.incrementAndGet();
+                        System.out.printf("📝 [%s] 写入: %s = %s%n",
+                            LocalTime.now().format(TIME_FORMAT), key, value);
+                        TimeUnit.MILLISECONDS.sleep(100);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
                 }
             }
         });
 
         // 多个读取线程
-        for (int t = 0; t < 3; t++) {
+        for (int t = 0; t < READER_THREADS; t++) {
             final int threadId = t;
             executor.submit(() -> {
-                for (int i = 0; i < 10; i++) {
-                    try {
-                        String key = "concurrent:user:" + i;
-                        String value = slave.get(key);
-                        if (value == null) {
-                            readFailCount.incrementAndGet();
+                try (Jedis slave = pools.slave().getResource()) {
+                    for (int i = 0; i < 10; i++) {
+                        try {
+                            String key = "concurrent:user:" + i;
+                            int op = history.invoke(threadId + 1, History.Kind.READ, key, null);
+                            long readStart = System.nanoTime();
+                            String value;
+                            try {
+                                value = latency.time(LatencyRecorder.SLAVE, "GET", READ_INTERVAL_NANOS, () -> slave.get(key));
+                                history.ok(op, value);
+                                staleness.observe(key, value, readStart);
+                            } catch (RuntimeException e) {
+                                history.fail(op);
+                                throw e;
+                            }
+                            if (value == null) {
+                                readFailCount.incrementAndGet();
+                            }
+                            System.out.printf("👁️  [%s] 线程%d读取: %s = %s%n",
+                                LocalTime.now().format(TIME_FORMAT), threadId, key,
+                                value != null ? value : "❌ 未同步");
+                            TimeUnit.MILLISECONDS.sleep(150);
+                        } catch (Exception e) {
+                            e.printStackTrace();
                         }
-                        System.out.printf("👁️  [%s] 线程%d读取: %s = %s%n",
-                            LocalTime.now().format(TIME_FORMAT), threadId, key,
-                            value != null ? value : "❌ 未同步");
-                        TimeUnit.MILLISECONDS.sleep(150);
-                    } catch (Exception e) {
-                        e.printStackTrace();
                     }
                 }
             });
@@ -132,9 +254,27 @@ public class ComprehensiveCAPTest {
         writer.get(); // 等待写入完成
         executor.shutdown();
         executor.awaitTermination(10, TimeUnit.SECONDS);
+        latency.printReport("并发读写（按固定节奏发起，含CO修正）");
+        LATENCY.merge(latency);
 
         System.out.printf("💡 并发测试结果: 写入%d次，读取失败%d次%n",
             writeCount.get(), readFailCount.get());
+        staleness.printReport("并发读写");
+        RESULTS.add(staleness.toRecord("并发读写-过时程度"));
+        checkHistory("并发读写", history);
+    }
+
+    /**
+     * 用线性一致性和（逐键）顺序一致性检查记录下的操作历史：
+     * 从Slave读到旧值在线性一致性下是违反，在顺序一致性下可能合法；两种模型都不通过才是更严重的问题
+     */
+    static void checkHistory(String scenario, History history) {
+        System.out.printf("🧾 %s的操作历史: %d 个操作%n", scenario, history.size());
+        for (LinearizabilityChecker.Model model : LinearizabilityChecker.Model.values()) {
+            LinearizabilityChecker.Report report = new LinearizabilityChecker(model).check(history);
+            report.print(history);
+            RESULTS.add(report.toRecord(scenario + "-一致性检查"));
+        }
     }
 
     static void testSeckillScenario(Jedis master, Jedis slave) throws Exception {
@@ -197,40 +337,147 @@ public class ComprehensiveCAPTest {
         System.out.println("- 风险：Slave延迟可能导致超卖提示");
     }
 
+    /**
+     * 每个模拟用户一次"看库存 + 下单"会话，分别用虚拟线程和平台线程池驱动1k/10k/50k用户
+     */
+    static void testSeckillScaling(RedisPools pools) throws Exception {
+        System.out.println("🛒 每个模拟用户：从Slave查看库存，再到Master扣减库存");
+        System.out.printf("🔌 使用独立连接池，每个节点 %d 条连接，两种模式在Redis侧的并发都不超过它%n",
+            SECKILL_CONNECTIONS);
+        List<VirtualUserDriver.Result> results = new ArrayList<>();
+
+        try (RedisPools scalingPools = RedisPools.connect(pools.masterAddress(), pools.slaveAddress(),
+                SECKILL_CONNECTIONS)) {
+            runSeckillScaling(scalingPools, results);
+        }
+
+        System.out.println("\n📈 扩展曲线:");
+        VirtualUserDriver.printScalingCurve(results);
+    }
+
+    private static void runSeckillScaling(RedisPools pools, List<VirtualUserDriver.Result> results)
+            throws Exception {
+        for (String userCount : SECKILL_USERS.split(",")) {
+            int users = Integer.parseInt(userCount.trim());
+            for (VirtualUserDriver.Mode mode : VirtualUserDriver.Mode.values()) {
+                try (Jedis master = pools.master().getResource()) {
+                    master.set("seckill:scale:stock", String.valueOf(users / 2));
+                }
+                pools.resetStats();
+
+                VirtualUserDriver.Result result = VirtualUserDriver.run(mode, users, PLATFORM_THREADS, pools,
+                    (p, userId) -> {
+                        try (Jedis slave = p.slave().getResource()) {
+                            slave.get("seckill:scale:stock");
+                        }
+                        try (Jedis master = p.master().getResource()) {
+                            if (master.decr("seckill:scale:stock") < 0) {
+                                master.incr("seckill:scale:stock"); // 库存不足，回滚
+                            }
+                        }
+                    });
+                results.add(result);
+                RESULTS.add(result.toRecord("虚拟线程扩展"));
+                System.out.printf("- %d用户 / %s 完成，Master连接池平均等待 %.1f µs%n",
+                    users, mode.label(), pools.master().getAverageWaitMicros());
+            }
+        }
+    }
+
+    /**
+     * 数千买家同时抢购：Lua脚本一次往返原子下单 vs 先查后扣的多次往返，按初始库存精确对账
+     */
+    static void testAtomicSeckill(RedisPools pools) throws Exception {
+        System.out.printf("🛒 %d个买家（每人一个虚拟线程）同时抢购%d件库存%n", SECKILL_BUYERS, SECKILL_STOCK);
+
+        for (SeckillEngine.Strategy strategy : SeckillEngine.Strategy.values()) {
+            SeckillEngine engine = new SeckillEngine(
+                "iphone15-" + strategy.name().toLowerCase() + "-" + System.currentTimeMillis(), SECKILL_STOCK);
+            try (Jedis master = pools.master().getResource()) {
+                engine.prepare(master);
+            }
+            LongAdder orders = new LongAdder();
+            LongAdder soldOut = new LongAdder();
+            pools.resetStats();
+
+            VirtualUserDriver.Result result = VirtualUserDriver.run(VirtualUserDriver.Mode.VIRTUAL, SECKILL_BUYERS,
+                PLATFORM_THREADS, pools, (p, buyerId) -> {
+                    try (Jedis master = p.master().getResource()) {
+                        if (engine.reserve(strategy, master, buyerId) > 0) {
+                            orders.increment();
+                        } else {
+                            soldOut.increment();
+                        }
+                    }
+                });
+
+            System.out.printf("%n📦 %s: 成交 %d 单, 售罄拒绝 %d, 失败 %d, 耗时 %.1f ms, %.0f 单/秒, %.0f 请求/秒%n",
+                strategy.label(), orders.sum(), soldOut.sum(), result.errors, result.elapsedNanos / 1e6,
+                orders.sum() * 1e9 / result.elapsedNanos, result.sessionsPerSec());
+            result.latency.printReport("秒杀下单（" + strategy.label() + "）");
+            SeckillAudit audit;
+            try (Jedis master = pools.master().getResource()) {
+                audit = engine.audit(master, SECKILL_BUYERS, orders.sum());
+            }
+            audit.print();
+            RESULTS.add(result.toRecord("秒杀下单")
+                .param("strategy", strategy.name())
+                .metric("orders", orders.sum())
+                .metric("sold_out", soldOut.sum()));
+        }
+
+        System.out.println("\n💡 先查后扣在GET和DECR之间留下竞争窗口，并发下必然超卖；");
+        System.out.println("   Lua脚本把判断和扣减放进一次服务端原子执行，往返次数也从4次降到1次");
+    }
+
     static void testReadWriteSeparation(Jedis master, Jedis slave) throws Exception {
         System.out.println("⚡ 读写分离性能测试");
 
-        // 写性能测试
-        long writeStart = System.currentTimeMillis();
+        // 写性能测试（逐条记录纳秒级延迟）
+        LatencyRecorder latency = new LatencyRecorder();
+        long writeStart = System.nanoTime();
         for (int i = 0; i < 1000; i++) {
-            master.set("perf:write:" + i, "data_" + i);
+            String key = "perf:write:" + i;
+            String value = "data_" + i;
+            latency.time(LatencyRecorder.MASTER, "SET", () -> master.set(key, value));
         }
-        long writeTime = System.currentTimeMillis() - writeStart;
-        System.out.printf("📝 Master写入1000条记录耗时: %d ms%n", writeTime);
+        double writeTime = (System.nanoTime() - writeStart) / 1e6;
+        System.out.printf("📝 Master写入1000条记录耗时: %.2f ms%n", writeTime);
 
         // 等待同步
         TimeUnit.MILLISECONDS.sleep(500);
 
         // 读性能测试
-        long readStart = System.currentTimeMillis();
+        long readStart = System.nanoTime();
         int successCount = 0;
         for (int i = 0; i < 1000; i++) {
-            String value = slave.get("perf:write:" + i);
+            String key = "perf:write:" + i;
+            String value = latency.time(LatencyRecorder.SLAVE, "GET", () -> slave.get(key));
             if (value != null) successCount++;
         }
-        long readTime = System.currentTimeMillis() - readStart;
-        System.out.printf("👁️  Slave读取1000条记录耗时: %d ms%n", readTime);
+        double readTime = (System.nanoTime() - readStart) / 1e6;
+        System.out.printf("👁️  Slave读取1000条记录耗时: %.2f ms%n", readTime);
         System.out.printf("📈 读取成功率: %.1f%% (%d/1000)%n",
             (successCount * 100.0 / 1000), successCount);
 
         System.out.println("\n💡 性能洞察:");
         System.out.printf("- 读写分离可以提升整体性能%n");
-        System.out.printf("- 写操作延迟: %d ms%n", writeTime);
-        System.out.printf("- 读操作延迟: %d ms%n", readTime);
+        System.out.printf("- 写操作总耗时: %.2f ms%n", writeTime);
+        System.out.printf("- 读操作总耗时: %.2f ms%n", readTime);
         if (successCount < 1000) {
             System.out.printf("- 一致性代价: %.1f%% 的读取可能不一致%n",
                 ((1000 - successCount) * 100.0 / 1000));
         }
+        latency.printReport("读写分离（逐条同步）");
+        LATENCY.merge(latency);
+
+        // 同样1000条记录改用Pipeline和MSET/MGET，对比吞吐和写入突发后的Slave追平时间
+        System.out.println("\n🚀 写入模式对比（逐条同步 vs Pipeline vs MSET/MGET）:");
+        List<WriteModeComparison.Result> modes = WriteModeComparison.run(master, slave, 1000, PIPELINE_DEPTH, BATCH_SIZE);
+        WriteModeComparison.print(modes, PIPELINE_DEPTH, BATCH_SIZE);
+        for (WriteModeComparison.Result mode : modes) {
+            RESULTS.add(mode.toRecord("写入模式对比", PIPELINE_DEPTH, BATCH_SIZE));
+        }
     }
 
     // ==================== 极端测试组方法 ====================
@@ -238,70 +485,165 @@ public class ComprehensiveCAPTest {
     static void testLargeDataReplication(Jedis master, Jedis slave) throws Exception {
         System.out.println("写入大数据对象...");
 
-        // 创建1MB的大数据
-        StringBuilder largeData = new StringBuilder();
-        for (int i = 0; i < 50000; i++) { // 减少到50k避免内存问题
-            largeData.append("商品描述数据测试大数据同步延迟序号：").append(i).append("\n");
-        }
-        String bigValue = largeData.toString();
-        System.out.printf("数据大小: %.2f KB%n", bigValue.getBytes().length / 1024.0);
+        // 约1.5MB的商品描述：一行文本只编码一次，按块流式写入，客户端不物化整个值
+        String key = "large_data:product_desc";
+        LargeValueStore store = new LargeValueStore(LARGE_VALUE_CHUNK);
+        long expectedCrc = crc(LargeValueStore.pattern(PRODUCT_DESC_LINE, LARGE_VALUE_BYTES));
+        System.out.printf("数据大小: %.2f KB，按 %d KB 分块%n", LARGE_VALUE_BYTES / 1024.0, LARGE_VALUE_CHUNK / 1024);
+        LargeValueStore.delete(master, key);
 
-        // 写入大数据并立即读取
-        long writeStart = System.currentTimeMillis();
-        master.set("large_data:product_desc", bigValue);
-        long writeEnd = System.currentTimeMillis();
+        // 写入大数据并立即读取；清单在所有块之后写入，复制按顺序进行，清单可见即说明全部块已同步
+        long writeStart = System.nanoTime();
+        LargeValueStore.Manifest manifest = store.write(master, key,
+            LargeValueStore.pattern(PRODUCT_DESC_LINE, LARGE_VALUE_BYTES));
+        long writeNanos = System.nanoTime() - writeStart;
+        LATENCY.record(LatencyRecorder.MASTER, "SET(大值)", writeNanos);
 
         // 立即从Slave读取
-        long readStart = System.currentTimeMillis();
-        String slaveValue = slave.get("large_data:product_desc");
-        long readEnd = System.currentTimeMillis();
+        CRC32 slaveCrc = new CRC32();
+        long readStart = System.nanoTime();
+        LargeValueStore.Manifest slaveManifest = LargeValueStore.read(slave, key,
+            new CheckedOutputStream(OutputStream.nullOutputStream(), slaveCrc));
+        long readNanos = System.nanoTime() - readStart;
+        LATENCY.record(LatencyRecorder.SLAVE, "GET(大值)", readNanos);
 
-        System.out.printf("Master写入耗时: %d ms%n", writeEnd - writeStart);
-        System.out.printf("Slave读取耗时: %d ms%n", readEnd - readStart);
+        System.out.printf("Master写入耗时: %.3f ms (%d 块)%n", writeNanos / 1e6, manifest.chunks);
+        System.out.printf("Slave读取耗时: %.3f ms%n", readNanos / 1e6);
 
-        if (slaveValue == null) {
+        if (slaveManifest == null) {
             System.out.println("❌ 大数据同步延迟！Slave未能立即读取到数据");
 
-            // 等待同步完成
-            int attempts = 0;
-            while (slaveValue == null && attempts < 10) {
-                TimeUnit.MILLISECONDS.sleep(100);
-                slaveValue = slave.get("large_data:product_desc");
-                attempts++;
-                System.out.printf("等待%d00ms后重试... %s%n", attempts,
-                    slaveValue != null ? "✅ 同步完成" : "❌ 仍未同步");
+            // 紧密轮询清单键，精确测量Slave追平所需时间
+            long catchUpNanos = ReplicationLagProbe.awaitValue(slave, key, manifest.format(),
+                writeStart + writeNanos, LAG_TIMEOUT_NANOS);
+            if (catchUpNanos < 0) {
+                System.out.println("❌ 2秒内仍未同步");
+            } else {
+                slaveCrc.reset();
+                LargeValueStore.read(slave, key, new CheckedOutputStream(OutputStream.nullOutputStream(), slaveCrc));
+                System.out.printf("✅ 写入确认后 %.3f ms 同步完成，数据完整性: %s%n", catchUpNanos / 1e6,
+                    slaveCrc.getValue() == expectedCrc ? "完整" : "❌ 不完整");
             }
         } else {
-            boolean dataMatch = bigValue.equals(slaveValue);
+            boolean dataMatch = slaveCrc.getValue() == expectedCrc;
             System.out.printf("✅ 立即读取成功，数据完整性: %s%n",
                 dataMatch ? "完整" : "❌ 不完整");
         }
     }
 
-    static void testHighConcurrencyWrites(Jedis master, Jedis slave) throws Exception {
+    /**
+     * 1KB到64MB的值分别整块SET和按不同块大小分块写入，记录写入线程的堆分配量、写入确认耗时和Slave追平时间。
+     * 写入线程的分配量反映客户端为这次写入持有的堆：整块写入至少要物化整个值，分块写入只需要一块缓冲区。
+     * （替身节点与客户端同在一个JVM，整个堆的峰值包含服务端的数据，不能用来衡量客户端）
+     */
+    static void testLargeValueSweep(Jedis master, Jedis slave) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.out.printf("%-8s %-8s %6s %12s %12s %14s%n", "值大小", "块大小", "块数", "写入ms", "追平ms", "客户端分配MB");
+        for (long size = 1024; size <= LARGE_SWEEP_MAX_BYTES; size *= 4) {
+            for (int chunk : LARGE_SWEEP_CHUNKS) {
+                if (chunk >= size) {
+                    continue; // 与整块写入相同
+                }
+                String key = chunk == 0 ? "large_sweep:whole" : "large_sweep:chunked";
+                String sentinelKey = "large_sweep:sentinel";
+                long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                long writeStart = System.nanoTime();
+                String expected;
+                int chunks;
+                if (chunk == 0) {
+                    byte[] value = LargeValueStore.pattern(PRODUCT_DESC_LINE, size).readAllBytes();
+                    master.set(key.getBytes(StandardCharsets.UTF_8), value);
+                    expected = "s" + System.nanoTime();
+                    master.set(sentinelKey, expected);
+                    chunks = 1;
+                } else {
+                    LargeValueStore.Manifest manifest = new LargeValueStore(chunk)
+                        .write(master, key, LargeValueStore.pattern(PRODUCT_DESC_LINE, size));
+                    expected = manifest.format();
+                    chunks = manifest.chunks;
+                }
+                long ackNanos = System.nanoTime();
+                long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                long catchUpNanos = ReplicationLagProbe.awaitValue(slave, chunk == 0 ? sentinelKey : key,
+                    expected, ackNanos, LARGE_CATCH_UP_TIMEOUT_NANOS);
+                LATENCY.record(LatencyRecorder.MASTER, chunk == 0 ? "SET(整块)" : "SET(分块)", ackNanos - writeStart);
+
+                System.out.printf("%-8s %-8s %6d %12.3f %12s %14.2f%n", formatBytes(size),
+                    chunk == 0 ? "整块" : formatBytes(chunk), chunks, (ackNanos - writeStart) / 1e6,
+                    catchUpNanos < 0 ? "超时" : String.format("%.3f", catchUpNanos / 1e6), allocated / 1048576.0);
+                if (chunk == 0) {
+                    master.del(key, sentinelKey);
+                } else {
+                    LargeValueStore.delete(master, key);
+                }
+            }
+        }
+        System.out.println("💡 分块写入的客户端分配量与值大小无关（约一块缓冲区），复制链路上是一串小命令，可与其他写入交错");
+    }
+
+    private static long crc(InputStream in) throws Exception {
+        CRC32 crc = new CRC32();
+        try (CheckedOutputStream out = new CheckedOutputStream(OutputStream.nullOutputStream(), crc)) {
+            in.transferTo(out);
+        }
+        return crc.getValue();
+    }
+
+    private static String formatBytes(long bytes) {
+        return bytes >= 1024 * 1024 ? bytes / (1024 * 1024) + "MB" : bytes / 1024 + "KB";
+    }
+
+    static void testHighConcurrencyWrites(RedisPools pools) throws Exception {
         ExecutorService executor = Executors.newFixedThreadPool(10);
         CountDownLatch latch = new CountDownLatch(100);
         AtomicInteger successCount = new AtomicInteger(0);
         AtomicInteger readFailCount = new AtomicInteger(0);
+        History history = new History();
+        StalenessRecorder staleness = new StalenessRecorder();
 
         System.out.println("启动100个并发写入线程...");
 
-        long testStart = System.currentTimeMillis();
+        pools.resetStats();
+        LatencyRecorder latency = new LatencyRecorder();
+        long testStart = System.nanoTime();
 
         // 100个并发写入任务
         for (int i = 0; i < 100; i++) {
             final int taskId = i;
             executor.submit(() -> {
-                try {
+                try (Jedis master = pools.master().getResource();
+                     Jedis slave = pools.slave().getResource()) {
                     // 高频写入
                     String key = "concurrent:" + taskId;
-                    String value = "data_" + System.nanoTime();
+                    VersionedValue version = staleness.next(key, "data_" + System.nanoTime());
+                    String value = version.encode();
 
-                    master.set(key, value);
+                    // 每个任务是一个进程：先写后读，写结果未知时不再读
+                    int write = history.invoke(taskId, History.Kind.WRITE, key, value);
+                    try {
+                        latency.time(LatencyRecorder.MASTER, "SET", () -> master.set(key, value));
+                        history.ok(write);
+                        staleness.acknowledged(key, version);
+                    } catch (RuntimeException e) {
+                        history.info(write);
+                        throw e;
+                    }
+                    // 所有任务在testStart同时提交，从提交时刻算起的延迟包含了线程池排队时间
+                    latency.record(LatencyRecorder.MASTER, "SET(含排队)", System.nanoTime() - testStart);
                     successCount.incrementAndGet();
 
                     // 立即从Slave读取
-                    String slaveRead = slave.get(key);
+                    int read = history.invoke(taskId, History.Kind.READ, key, null);
+                    long readStart = System.nanoTime();
+                    String slaveRead;
+                    try {
+                        slaveRead = latency.time(LatencyRecorder.SLAVE, "GET", () -> slave.get(key));
+                        history.ok(read, slaveRead);
+                        staleness.observe(key, slaveRead, readStart);
+                    } catch (RuntimeException e) {
+                        history.fail(read);
+                        throw e;
+                    }
                     if (slaveRead == null || !slaveRead.equals(value)) {
                         readFailCount.incrementAndGet();
                         if (readFailCount.get() <= 5) { // 只显示前5个错误避免刷屏
@@ -319,15 +661,21 @@ public class ComprehensiveCAPTest {
         }
 
         latch.await();
-        long testEnd = System.currentTimeMillis();
+        long testEnd = System.nanoTime();
 
         executor.shutdown();
 
         System.out.printf("并发测试结果:%n");
-        System.out.printf("- 总耗时: %d ms%n", testEnd - testStart);
+        System.out.printf("- 总耗时: %.2f ms%n", (testEnd - testStart) / 1e6);
         System.out.printf("- 写入成功: %d/100%n", successCount.get());
         System.out.printf("- 读取不一致: %d/100 (%.1f%%)%n",
             readFailCount.get(), readFailCount.get() * 100.0 / 100);
+        latency.printReport("高并发写入");
+        LATENCY.merge(latency);
+        pools.printStats();
+        staleness.printReport("高并发写入");
+        RESULTS.add(staleness.toRecord("高并发写入-过时程度"));
+        checkHistory("高并发写入", history);
 
         if (readFailCount.get() > 0) {
             System.out.println("🎯 观察到CAP权衡！高并发下出现了一致性问题");
@@ -336,7 +684,41 @@ public class ComprehensiveCAPTest {
         }
     }
 
-    static void testNetworkLatencyImpact(Jedis master, Jedis slave) throws Exception {
+    /**
+     * 开环版本的高并发写入：按固定到达率发起，Redis变慢时不会减少发起的负载
+     */
+    static void testOpenLoopWrites(RedisPools pools) throws Exception {
+        System.out.printf("按 %.0f ops/s 的恒定到达率写入Master并立即读Slave，持续%d秒...%n",
+            OPEN_LOOP_RATE, OPEN_LOOP_SECONDS);
+        AtomicInteger readFailCount = new AtomicInteger(0);
+
+        pools.resetStats();
+        OpenLoopDriver driver = new OpenLoopDriver(pools, OPEN_LOOP_RATE, OPEN_LOOP_SECONDS, TimeUnit.SECONDS,
+            OPEN_LOOP_ARRIVAL, OPEN_LOOP_WORKERS);
+        OpenLoopDriver.Result result = driver.run((master, slave, seq) -> {
+            String key = "concurrent:open:" + seq;
+            String value = "data_" + seq;
+            master.set(key, value);
+            if (!value.equals(slave.get(key))) {
+                readFailCount.incrementAndGet();
+            }
+        });
+
+        result.print();
+        RESULTS.add(result.toRecord("开环写入").metric("stale_reads", readFailCount.get()));
+        System.out.printf("- 读取不一致: %d (%.2f%%)%n", readFailCount.get(),
+            readFailCount.get() * 100.0 / Math.max(1, result.completed));
+        LATENCY.merge(result.latency);
+        pools.printStats();
+
+        if (result.shortfallPercent() > 5) {
+            System.out.println("🎯 实际速率明显落后于目标：在这个到达率下系统已经跟不上了");
+        } else {
+            System.out.println("💪 系统跟上了目标到达率");
+        }
+    }
+
+    static void testNetworkLatencyImpact(RedisPools pools, Jedis master, Jedis slave) throws Exception {
         System.out.println("模拟网络延迟影响...");
         System.out.println("💡 提示：在生产环境中，跨区域部署会有明显延迟");
 
@@ -349,7 +731,7 @@ public class ComprehensiveCAPTest {
         for (int i = 0; i < 3; i++) {
             final int threadId = i;
             noiseExecutor.submit(() -> {
-                try (Jedis noiseMaster = new Jedis("localhost", 6379)) {
+                try (Jedis noiseMaster = pools.master().getResource()) {
                     for (int j = 0; j < 500; j++) { // 减少噪音数量
                         try {
                             noiseMaster.set("noise:" + threadId + ":" + j,
@@ -392,7 +774,7 @@ public class ComprehensiveCAPTest {
 
     // ==================== 故障测试组方法 ====================
 
-    static void testFailureRecovery(Jedis master, Jedis slave) throws Exception {
+    static void testFailureRecovery(RedisPools pools, Jedis master, Jedis slave) throws Exception {
         System.out.println("准备测试故障恢复...");
 
         // 先写入一些数据
@@ -401,17 +783,24 @@ public class ComprehensiveCAPTest {
 
         System.out.println("正常状态 - Slave读取: " + slave.get("recovery:test"));
 
-        System.out.println("\n💥 模拟Master临时不可用（请在另一个终端执行）:");
-        System.out.println("docker pause redis-master");
-        System.out.println("按回车键继续测试...");
-        System.in.read();
+        NetworkFaults faults = pools.faults();
+        if (faults != null) {
+            System.out.println("\n💥 模拟Master临时不可用：故障代理阻断客户端→Master路径（黑洞模式）");
+            faults.master().partition(FaultProxy.PartitionMode.BLACKHOLE);
+        } else {
+            System.out.println("\n💥 模拟Master临时不可用（请在另一个终端执行）:");
+            System.out.println("docker pause redis-master");
+            System.out.println("按回车键继续测试...");
+            System.in.read();
+        }
 
-        // 测试Master不可用时的情况
-        try {
-            master.set("recovery:during_failure", "this_should_fail");
+        // 测试Master不可用时的情况：借用独立连接，超时后该连接作废，不影响后续实验
+        long failedAt = System.nanoTime();
+        try (Jedis probe = pools.master().getResource()) {
+            probe.set("recovery:during_failure", "this_should_fail");
             System.out.println("❌ 意外：Master写入成功了");
         } catch (JedisConnectionException e) {
-            System.out.println("✅ 预期：Master不可用，写入失败");
+            System.out.printf("✅ 预期：Master不可用，写入失败（%.0fms后超时）%n", (System.nanoTime() - failedAt) / 1e6);
         } catch (Exception e) {
             System.out.println("✅ 预期：Master不可用，写入失败: " + e.getClass().getSimpleName());
         }
@@ -424,12 +813,17 @@ public class ComprehensiveCAPTest {
             System.out.println("❌ Slave也不可用: " + e.getMessage());
         }
 
-        System.out.println("\n🔧 请恢复Master（执行）: docker unpause redis-master");
-        System.out.println("按回车键继续...");
-        System.in.read();
+        if (faults != null) {
+            faults.master().heal();
+            System.out.println("\n🔧 故障代理已恢复客户端→Master路径");
+        } else {
+            System.out.println("\n🔧 请恢复Master（执行）: docker unpause redis-master");
+            System.out.println("按回车键继续...");
+            System.in.read();
 
-        // 等待一下让连接恢复
-        TimeUnit.SECONDS.sleep(2);
+            // 等待一下让连接恢复
+            TimeUnit.SECONDS.sleep(2);
+        }
 
         // 测试恢复后的情况
         try {
@@ -439,6 +833,9 @@ public class ComprehensiveCAPTest {
             TimeUnit.MILLISECONDS.sleep(200);
             String value = slave.get("recovery:after_recovery");
             System.out.println("✅ 数据同步恢复: " + value);
+            if (master.get("recovery:during_failure") != null) {
+                System.out.println("⚠️  超时的写入在恢复后仍被执行：客户端看到失败≠写入未生效");
+            }
         } catch (Exception e) {
             System.out.println("❌ 恢复异常: " + e.getMessage());
         }
@@ -473,6 +870,9 @@ public class ComprehensiveCAPTest {
         } catch (Exception e) {
             System.out.println("❌ 连Slave也不可用：" + e.getMessage());
         }
+
+        System.out.println("🔁 实际的自动故障切换（检测下线、提升副本、客户端改写新Master，"
+            + "测量写不可用窗口和丢失的已确认写）见 FailoverTest");
     }
 
     // ==================== 总结报告 ====================
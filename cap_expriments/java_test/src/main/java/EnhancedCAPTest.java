@@ -1,8 +1,20 @@
 // EnhancedCAPTest.java
+import com.example.cap.client.RedisPools;
+import com.example.cap.client.VersionedValue;
+import com.example.cap.client.WriteModeComparison;
+import com.example.cap.fault.FaultProxy;
+import com.example.cap.fault.NetworkFaults;
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.metrics.ReplicationLagProbe;
+import com.example.cap.metrics.StalenessRecorder;
+import com.example.cap.results.ResultLog;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -10,21 +22,39 @@ import java.util.concurrent.Future;
 
 public class EnhancedCAPTest {
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final int POOL_SIZE = 8;
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+    private static final int PIPELINE_DEPTH = Integer.getInteger("cap.pipeline.depth", 100);
+    private static final int BATCH_SIZE = Integer.getInteger("cap.batch.size", 100);
+    private static final LatencyRecorder LATENCY = new LatencyRecorder();
+    // 结构化结果，写到 results/ 下供基线对比（-Dcap.results.dir 覆盖目录）
+    private static final ResultLog RESULTS = new ResultLog("EnhancedCAPTest");
+    // 并发读写测试中写线程/读线程的发起节奏，用于协调遗漏修正
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long READ_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(150);
     
     public static void main(String[] args) throws Exception {
         System.out.println("🎯 增强版Redis CAP特性深度验证");
         System.out.println("=========================================");
+        MetricsEndpoint.startIfConfigured();
+        FlightRecording.startIfConfigured("EnhancedCAPTest");
         
-        Jedis master = new Jedis("localhost", 6379);
-        Jedis slave = new Jedis("localhost", 6380);
+        RedisPools pools = RedisPools.open(POOL_SIZE);
+        Jedis master = pools.master().getResource();
+        Jedis slave = pools.slave().getResource();
+        
+        // 后台复制延迟探针：独立连接，不占用实验连接池
+        ReplicationLagProbe lagProbe = new ReplicationLagProbe(pools.masterAddress(), pools.slaveAddress(),
+            LAG_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        lagProbe.start();
         
         // 实验1：并发读写一致性测试
         System.out.println("🔄 实验1：并发读写一致性测试");
-        testConcurrentReadWrite(master, slave);
+        testConcurrentReadWrite(pools);
         
         // 实验2：故障恢复测试
         System.out.println("\n🛠️  实验2：故障恢复能力测试");
-        testFailureRecovery(master, slave);
+        testFailureRecovery(pools, master, slave);
         
         // 实验3：电商秒杀场景模拟
         System.out.println("\n⚡ 实验3：电商秒杀场景模拟");
@@ -36,24 +66,39 @@ public class EnhancedCAPTest {
         
         master.close();
         slave.close();
+        lagProbe.close();
+        pools.printStats();
+        pools.close();
+        lagProbe.printReport();
+        LATENCY.printReport("全部实验汇总");
+        RESULTS.addLatencies("全部实验汇总", LATENCY);
+        RESULTS.add(lagProbe.toRecord());
+        RESULTS.close();
         System.out.println("\n✅ 增强版实验完成！");
     }
     
-    static void testConcurrentReadWrite(Jedis master, Jedis slave) throws Exception {
+    static void testConcurrentReadWrite(RedisPools pools) throws Exception {
         ExecutorService executor = Executors.newFixedThreadPool(4);
+        LatencyRecorder latency = new LatencyRecorder();
+        // 写入带版本戳的值，读到的值按落后版本数和过时时长统计
+        StalenessRecorder staleness = new StalenessRecorder();
         
-        // 模拟高并发场景：一个线程写，多个线程读
+        // 模拟高并发场景：一个线程写，多个线程读（每个线程从连接池借用独立连接）
         Future<?> writer = executor.submit(() -> {
-            for (int i = 0; i < 10; i++) {
-                try {
-                    String key = "concurrent:user:" + i;
-                    String value = "user_data_" + System.currentTimeMillis();
-                    master.set(key, value);
-                    System.out.printf("📝 [%s] 写入: %s = %s%n", 
-                        LocalTime.now().format(TIME_FORMAT), key, value);
-                    TimeUnit.MILLISECONDS.sleep(100);
-                } catch (Exception e) {
-                    e.printStackTrace();
+            try (Jedis master = pools.master().getResource()) {
+                for (int i = 0; i < 10; i++) {
+                    try {
+                        String key = "concurrent:user:" + i;
+                        VersionedValue version = staleness.next(key, "user_data_" + System.currentTimeMillis());
+                        String value = version.encode();
+                        latency.time(LatencyRecorder.MASTER, "SET", WRITE_INTERVAL_NANOS, () -> master.set(key, value));
+                        staleness.acknowledged(key, version);
+                        System.out.printf("📝 [%s] 写入: %s = %s%n", 
+                            LocalTime.now().format(TIME_FORMAT), key, value);
+                        TimeUnit.MILLISECONDS.sleep(100);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
                 }
             }
         });
@@ -62,16 +107,21 @@ public class EnhancedCAPTest {
         for (int t = 0; t < 3; t++) {
             final int threadId = t;
             executor.submit(() -> {
-                for (int i = 0; i < 10; i++) {
-                    try {
-                        String key = "concurrent:user:" + i;
-                        String value = slave.get(key);
-                        System.out.printf("👁️  [%s] 线程%d读取: %s = %s%n", 
-                            LocalTime.now().format(TIME_FORMAT), threadId, key, 
-                            value != null ? value : "❌ 未同步");
-                        TimeUnit.MILLISECONDS.sleep(150);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                try (Jedis slave = pools.slave().getResource()) {
+                    for (int i = 0; i < 10; i++) {
+                        try {
+                            String key = "concurrent:user:" + i;
+                            long readStart = System.nanoTime();
+                            String value = latency.time(LatencyRecorder.SLAVE, "GET", READ_INTERVAL_NANOS,
+                                () -> slave.get(key));
+                            staleness.observe(key, value, readStart);
+                            System.out.printf("👁️  [%s] 线程%d读取: %s = %s%n", 
+                                LocalTime.now().format(TIME_FORMAT), threadId, key, 
+                                value != null ? value : "❌ 未同步");
+                            TimeUnit.MILLISECONDS.sleep(150);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
                     }
                 }
             });
@@ -80,11 +130,15 @@ public class EnhancedCAPTest {
         writer.get(); // 等待写入完成
         executor.shutdown();
         executor.awaitTermination(5, TimeUnit.SECONDS);
+        latency.printReport("并发读写（按固定节奏发起，含CO修正）");
+        LATENCY.merge(latency);
+        staleness.printReport("并发读写");
+        RESULTS.add(staleness.toRecord("并发读写-过时程度"));
         
         System.out.println("💡 观察：多线程读取时的一致性表现");
     }
     
-    static void testFailureRecovery(Jedis master, Jedis slave) throws Exception {
+    static void testFailureRecovery(RedisPools pools, Jedis master, Jedis slave) throws Exception {
         System.out.println("准备测试故障恢复...");
         
         // 先写入一些数据
@@ -93,17 +147,24 @@ public class EnhancedCAPTest {
         
         System.out.println("正常状态 - Slave读取: " + slave.get("recovery:test"));
         
-        System.out.println("\n💥 模拟Master临时不可用（请在另一个终端执行）:");
-        System.out.println("docker pause redis-master");
-        System.out.println("按回车键继续测试...");
-        System.in.read();
+        NetworkFaults faults = pools.faults();
+        if (faults != null) {
+            System.out.println("\n💥 模拟Master临时不可用：故障代理阻断客户端→Master路径（黑洞模式）");
+            faults.master().partition(FaultProxy.PartitionMode.BLACKHOLE);
+        } else {
+            System.out.println("\n💥 模拟Master临时不可用（请在另一个终端执行）:");
+            System.out.println("docker pause redis-master");
+            System.out.println("按回车键继续测试...");
+            System.in.read();
+        }
         
-        // 测试Master不可用时的情况
-        try {
-            master.set("recovery:during_failure", "this_should_fail");
+        // 测试Master不可用时的情况：借用独立连接，超时后该连接作废，不影响后续实验
+        long failedAt = System.nanoTime();
+        try (Jedis probe = pools.master().getResource()) {
+            probe.set("recovery:during_failure", "this_should_fail");
             System.out.println("❌ 意外：Master写入成功了");
         } catch (JedisConnectionException e) {
-            System.out.println("✅ 预期：Master不可用，写入失败");
+            System.out.printf("✅ 预期：Master不可用，写入失败（%.0fms后超时）%n", (System.nanoTime() - failedAt) / 1e6);
         }
         
         // 测试Slave是否还能提供读服务
@@ -114,18 +175,26 @@ public class EnhancedCAPTest {
             System.out.println("❌ Slave也不可用: " + e.getMessage());
         }
         
-        System.out.println("\n🔧 请恢复Master（执行）: docker unpause redis-master");
-        System.out.println("按回车键继续...");
-        System.in.read();
+        if (faults != null) {
+            faults.master().heal();
+            System.out.println("\n🔧 故障代理已恢复客户端→Master路径");
+        } else {
+            System.out.println("\n🔧 请恢复Master（执行）: docker unpause redis-master");
+            System.out.println("按回车键继续...");
+            System.in.read();
+        }
         
         // 测试恢复后的情况
         try {
             master.set("recovery:after_recovery", "master_back");
             System.out.println("✅ Master恢复正常，可以写入");
-            
+        
             TimeUnit.MILLISECONDS.sleep(200);
             String value = slave.get("recovery:after_recovery");
             System.out.println("✅ 数据同步恢复: " + value);
+            if (master.get("recovery:during_failure") != null) {
+                System.out.println("⚠️  超时的写入在恢复后仍被执行：客户端看到失败≠写入未生效");
+            }
         } catch (Exception e) {
             System.out.println("❌ 恢复异常: " + e.getMessage());
         }
@@ -190,36 +259,50 @@ public class EnhancedCAPTest {
     static void testReadWriteSeparation(Jedis master, Jedis slave) throws Exception {
         System.out.println("⚡ 读写分离性能测试");
         
-        // 写性能测试
-        long writeStart = System.currentTimeMillis();
+        // 写性能测试（逐条记录纳秒级延迟）
+        LatencyRecorder latency = new LatencyRecorder();
+        long writeStart = System.nanoTime();
         for (int i = 0; i < 1000; i++) {
-            master.set("perf:write:" + i, "data_" + i);
+            String key = "perf:write:" + i;
+            String value = "data_" + i;
+            latency.time(LatencyRecorder.MASTER, "SET", () -> master.set(key, value));
         }
-        long writeTime = System.currentTimeMillis() - writeStart;
-        System.out.printf("📝 Master写入1000条记录耗时: %d ms%n", writeTime);
+        double writeTime = (System.nanoTime() - writeStart) / 1e6;
+        System.out.printf("📝 Master写入1000条记录耗时: %.2f ms%n", writeTime);
         
         // 等待同步
         TimeUnit.MILLISECONDS.sleep(500);
         
         // 读性能测试
-        long readStart = System.currentTimeMillis();
+        long readStart = System.nanoTime();
         int successCount = 0;
         for (int i = 0; i < 1000; i++) {
-            String value = slave.get("perf:write:" + i);
+            String key = "perf:write:" + i;
+            String value = latency.time(LatencyRecorder.SLAVE, "GET", () -> slave.get(key));
             if (value != null) successCount++;
         }
-        long readTime = System.currentTimeMillis() - readStart;
-        System.out.printf("👁️  Slave读取1000条记录耗时: %d ms%n", readTime);
+        double readTime = (System.nanoTime() - readStart) / 1e6;
+        System.out.printf("👁️  Slave读取1000条记录耗时: %.2f ms%n", readTime);
         System.out.printf("📈 读取成功率: %.1f%% (%d/1000)%n", 
             (successCount * 100.0 / 1000), successCount);
         
         System.out.println("\n💡 性能洞察:");
         System.out.printf("- 读写分离可以提升整体性能%n");
-        System.out.printf("- 写操作延迟: %d ms%n", writeTime);
-        System.out.printf("- 读操作延迟: %d ms%n", readTime);
+        System.out.printf("- 写操作总耗时: %.2f ms%n", writeTime);
+        System.out.printf("- 读操作总耗时: %.2f ms%n", readTime);
         if (successCount < 1000) {
             System.out.printf("- 一致性代价: %.1f%% 的读取可能不一致%n", 
                 ((1000 - successCount) * 100.0 / 1000));
         }
+        latency.printReport("读写分离（逐条同步）");
+        LATENCY.merge(latency);
+        
+        // 同样1000条记录改用Pipeline和MSET/MGET，对比吞吐和写入突发后的Slave追平时间
+        System.out.println("\n🚀 写入模式对比（逐条同步 vs Pipeline vs MSET/MGET）:");
+        List<WriteModeComparison.Result> modes = WriteModeComparison.run(master, slave, 1000, PIPELINE_DEPTH, BATCH_SIZE);
+        WriteModeComparison.print(modes, PIPELINE_DEPTH, BATCH_SIZE);
+        for (WriteModeComparison.Result mode : modes) {
+            RESULTS.add(mode.toRecord("写入模式对比", PIPELINE_DEPTH, BATCH_SIZE));
+        }
     }
 }
@@ -0,0 +1,67 @@
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.load.SweepRunner;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.results.ResultLog;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ParameterSweep {
+    // 每格的预热和测量时长，可通过 -Dcap.sweep.warmup.ms / -Dcap.sweep.measure.ms 覆盖
+    private static final long WARMUP_MS = Long.getLong("cap.sweep.warmup.ms", 500);
+    private static final long MEASURE_MS = Long.getLong("cap.sweep.measure.ms", 2000);
+    // 替身模式下同时运行的格数，可通过 -Dcap.sweep.parallel 覆盖
+    private static final int PARALLELISM = Integer.getInteger("cap.sweep.parallel",
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // 每格一条结构化记录，写到 results/ 下供基线对比
+    private static final ResultLog RESULTS = new ResultLog("ParameterSweep");
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("🧮 Redis主从参数矩阵扫描");
+        System.out.println("维度：值大小 × 客户端并发 × 读比例 × Pipeline深度");
+        System.out.println("=====================================");
+        MetricsEndpoint.startIfConfigured();
+        FlightRecording.startIfConfigured("ParameterSweep");
+        
+        String target = System.getProperty("cap.target", "docker");
+        if (!"docker".equals(target) && !"standin".equals(target)) {
+            throw new IllegalArgumentException("未知的cap.target: " + target);
+        }
+        SweepRunner.Axes axes = SweepRunner.Axes.fromSystemProperties();
+        SweepRunner runner = new SweepRunner(axes, "standin".equals(target), PARALLELISM,
+            WARMUP_MS, MEASURE_MS, TimeUnit.MILLISECONDS);
+        List<SweepRunner.Cell> cells = axes.cells();
+        System.out.printf("目标: %s，值大小 %s，并发 %s，读比例 %s，Pipeline深度 %s%n", target,
+            axes.valueSizes, axes.concurrency, axes.readRatios, axes.pipelineDepths);
+        System.out.printf("共 %d 格，每格预热 %dms + 测量 %dms，并行 %d 格%n",
+            cells.size(), WARMUP_MS, MEASURE_MS, runner.getParallelism());
+        if (runner.getParallelism() > 1) {
+            System.out.println("⚠️  并行的格共享本机CPU，绝对吞吐会互相影响，适合观察趋势");
+        }
+        
+        List<SweepRunner.CellResult> results = runner.run();
+        System.out.println();
+        SweepRunner.printTable(results);
+        
+        // 找出吞吐最高和复制延迟最差的组合
+        SweepRunner.CellResult fastest = results.stream()
+            .max(Comparator.comparingDouble(SweepRunner.CellResult::opsPerSec)).orElseThrow();
+        SweepRunner.CellResult laggiest = results.stream()
+            .max(Comparator.comparingLong(r -> r.lag.getTotalCount() == 0 ? 0 : r.lag.getValueAtPercentile(99)))
+            .orElseThrow();
+        System.out.println();
+        System.out.printf("🚀 吞吐最高: %s → %.0f ops/s%n", describe(fastest.cell), fastest.opsPerSec());
+        System.out.printf("🐢 复制延迟p99最差: %s → %.2f ms%n", describe(laggiest.cell),
+            laggiest.lag.getTotalCount() == 0 ? 0 : laggiest.lag.getValueAtPercentile(99) / 1e6);
+        
+        for (SweepRunner.CellResult result : results) {
+            RESULTS.add(result.toRecord());
+        }
+        RESULTS.close();
+    }
+    
+    static String describe(SweepRunner.Cell cell) {
+        return String.format("值%dB/并发%d/读%.0f%%/深度%d", cell.valueSize, cell.concurrency,
+            cell.readRatio * 100, cell.pipelineDepth);
+    }
+}
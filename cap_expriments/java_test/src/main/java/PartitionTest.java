@@ -1,19 +1,54 @@
+import com.example.cap.client.RedisPools;
+import com.example.cap.client.VersionedValue;
+import com.example.cap.fault.FaultProxy;
+import com.example.cap.fault.FaultTimeline;
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.load.OpenLoopDriver;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.metrics.ReplicationLagProbe;
+import com.example.cap.metrics.StalenessRecorder;
+import com.example.cap.results.ResultLog;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class PartitionTest {
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    // 主流程占用1个连接，阶段6的负载时间线每个worker再各占1个
+    private static final int POOL_SIZE = 5;
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+    // 负载下分区时间线：恒定到达率、持续时间、分区开始/恢复的相对时刻
+    private static final double TIMELINE_RATE = 2000;
+    private static final int TIMELINE_WORKERS = 4;
+    private static final long TIMELINE_SECONDS = 5;
+    private static final long PARTITION_AT_MS = 1000;
+    private static final long HEAL_AT_MS = 3000;
+    // 分区期间对同一个键连续写入的版本数和间隔
+    private static final int PARTITION_VERSIONS = 50;
+    private static final long PARTITION_VERSION_INTERVAL_MS = 20;
+    // 结构化结果，写到 results/ 下供基线对比（-Dcap.results.dir 覆盖目录）
+    private static final ResultLog RESULTS = new ResultLog("PartitionTest");
     
     public static void main(String[] args) throws Exception {
         System.out.println("🌐 Redis网络分区CAP验证实验");
         System.out.println("目标：观察真正的CAP权衡现象");
         System.out.println("=====================================");
+        MetricsEndpoint.startIfConfigured();
+        FlightRecording.startIfConfigured("PartitionTest");
         
-        Jedis master = new Jedis("localhost", 6379);
-        Jedis slave = new Jedis("localhost", 6380);
+        RedisPools pools = RedisPools.open(POOL_SIZE);
+        Jedis master = pools.master().getResource();
+        Jedis slave = pools.slave().getResource();
+        // 复制链路经过故障代理时（-Dcap.target=standin -Dcap.faults=proxy）分区全自动注入
+        FaultProxy replicationLink = pools.faults() == null ? null : pools.faults().replication();
+        
+        // 后台复制延迟探针：独立连接，不占用实验连接池
+        ReplicationLagProbe lagProbe = new ReplicationLagProbe(pools.masterAddress(), pools.slaveAddress(),
+            LAG_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        lagProbe.start();
         
         // 验证初始连接
         System.out.println("📡 初始连接测试:");
@@ -30,7 +65,7 @@ public class PartitionTest {
         System.out.println("\n" + "=".repeat(40));
         System.out.println("💥 阶段2: 创建网络分区");
         System.out.println("=".repeat(40));
-        createPartition();
+        createPartition(replicationLink);
         
         // 阶段3: 分区中测试
         System.out.println("\n" + "=".repeat(40));
@@ -42,7 +77,7 @@ public class PartitionTest {
         System.out.println("\n" + "=".repeat(40));
         System.out.println("🔧 阶段4: 恢复网络连接");
         System.out.println("=".repeat(40));
-        recoverPartition();
+        recoverPartition(replicationLink);
         
         // 阶段5: 分区后测试
         System.out.println("\n" + "=".repeat(40));
@@ -50,6 +85,14 @@ public class PartitionTest {
         System.out.println("=".repeat(40));
         testAfterPartition(master, slave);
         
+        // 阶段6: 负载下的分区时间线（仅自动注入时）
+        if (replicationLink != null) {
+            System.out.println("\n" + "=".repeat(40));
+            System.out.println("⏱️  阶段6: 负载下的分区时间线");
+            System.out.println("=".repeat(40));
+            testPartitionUnderLoad(pools, replicationLink);
+        }
+        
         // 总结
         System.out.println("\n" + "=".repeat(40));
         System.out.println("🎯 CAP权衡观察总结");
@@ -58,6 +101,11 @@ public class PartitionTest {
         
         master.close();
         slave.close();
+        lagProbe.close();
+        pools.close();
+        lagProbe.printReport();
+        RESULTS.add(lagProbe.toRecord());
+        RESULTS.close();
     }
     
     static void testBeforePartition(Jedis master, Jedis slave) throws Exception {
@@ -88,7 +136,15 @@ public class PartitionTest {
         System.out.println("\n💡 正常状态下Redis表现优秀，主从同步迅速");
     }
     
-    static void createPartition() throws Exception {
+    static void createPartition(FaultProxy replicationLink) throws Exception {
+        if (replicationLink != null) {
+            replicationLink.partition(FaultProxy.PartitionMode.BLACKHOLE);
+            System.out.println("💥 故障代理已阻断Master→Slave复制链路（黑洞模式）");
+            System.out.println("- 🚫 复制流滞留在代理中，Master和Slave各自继续服务");
+            System.out.println("- 🔍 " + replicationLink.describe());
+            return;
+        }
+        System.out.println("💡 使用 -Dcap.target=standin -Dcap.faults=proxy 可自动注入分区，无需手动操作");
         System.out.println("请在另一个终端执行以下命令创建网络分区:");
         System.out.println("📋 命令: ./simulate_partition.sh start");
         System.out.println();
@@ -107,13 +163,14 @@ public class PartitionTest {
     
     static void testDuringPartition(Jedis master, Jedis slave) throws Exception {
         System.out.println("🔥 关键测试：分区状态下的CAP权衡");
+        // 分区期间的写入都带版本戳，Slave读到的值按落后版本数和过时时长统计
+        StalenessRecorder staleness = new StalenessRecorder();
         
         // 测试1: Master写入能力
         System.out.println("\n📝 测试1: Master写入能力");
         try {
             String key = "partition_test:master_write";
-            String value = "written_during_partition_" + System.currentTimeMillis();
-            master.set(key, value);
+            VersionedValue value = staleness.set(master, key, "written_during_partition_" + System.currentTimeMillis());
             System.out.printf("✅ Master写入成功: %s = %s%n", key, value);
             System.out.println("💡 体现了分区容错性：Master仍可工作");
         } catch (Exception e) {
@@ -126,7 +183,7 @@ public class PartitionTest {
             String oldValue = slave.get("normal_data:1");
             System.out.printf("Slave读取旧数据: %s%n", oldValue);
             
-            String newValue = slave.get("partition_test:master_write");
+            VersionedValue newValue = staleness.get(slave, "partition_test:master_write");
             System.out.printf("Slave读取新数据: %s%n", newValue);
             
             if (oldValue != null && newValue == null) {
@@ -140,8 +197,27 @@ public class PartitionTest {
             System.out.println("💡 如果Slave也不可用，说明系统选择了一致性而非可用性");
         }
         
-        // 测试3: 业务场景模拟
-        System.out.println("\n🛒 测试3: 电商场景模拟");
+        // 测试3: 同一个键持续写入新版本，观察Slave落后的版本数和时长如何增长
+        System.out.printf("%n🕰️  测试3: 每%dms写入一个新版本，共%d个，每次写后立即读Slave%n",
+            PARTITION_VERSION_INTERVAL_MS, PARTITION_VERSIONS);
+        String versionedKey = "partition_test:versioned:" + System.currentTimeMillis();
+        try {
+            for (int i = 1; i <= PARTITION_VERSIONS; i++) {
+                staleness.set(master, versionedKey, "tick_" + i);
+                VersionedValue read = staleness.get(slave, versionedKey);
+                if (i == 1 || i % 10 == 0) {
+                    System.out.printf("  Master已写到v%d，Slave读到 %s%n", i, read == null ? "null" : "v" + read.seq);
+                }
+                TimeUnit.MILLISECONDS.sleep(PARTITION_VERSION_INTERVAL_MS);
+            }
+        } catch (Exception e) {
+            System.out.printf("❌ 版本化读写失败: %s%n", e.getMessage());
+        }
+        staleness.printReport("分区期间");
+        RESULTS.add(staleness.toRecord("分区期间-过时程度"));
+        
+        // 测试4: 业务场景模拟
+        System.out.println("\n🛒 测试4: 电商场景模拟");
         simulateBusinessScenario(master, slave);
     }
     
@@ -172,7 +248,13 @@ public class PartitionTest {
         }
     }
     
-    static void recoverPartition() throws Exception {
+    static void recoverPartition(FaultProxy replicationLink) throws Exception {
+        if (replicationLink != null) {
+            replicationLink.heal();
+            System.out.println("🔧 故障代理已恢复复制链路，滞留的复制流按序送达");
+            TimeUnit.MILLISECONDS.sleep(200);
+            return;
+        }
         System.out.println("请在另一个终端执行以下命令恢复网络:");
         System.out.println("📋 命令: ./simulate_partition.sh stop");
         System.out.println();
@@ -220,6 +302,42 @@ public class PartitionTest {
         }
     }
     
+    /**
+     * 在恒定到达率的写入/读取负载中按时间线注入复制分区，逐秒统计Slave读到旧数据的次数
+     */
+    static void testPartitionUnderLoad(RedisPools pools, FaultProxy replicationLink) throws Exception {
+        System.out.printf("按 %.0f ops/s 写Master并立即读Slave，持续%d秒；%dms时分区，%dms时恢复%n",
+            TIMELINE_RATE, TIMELINE_SECONDS, PARTITION_AT_MS, HEAL_AT_MS);
+        AtomicLongArray staleBySecond = new AtomicLongArray((int) TIMELINE_SECONDS + 2);
+        FaultTimeline timeline = new FaultTimeline()
+            .at(PARTITION_AT_MS, "复制链路分区（黑洞）", () -> replicationLink.partition(FaultProxy.PartitionMode.BLACKHOLE))
+            .at(HEAL_AT_MS, "复制链路恢复", replicationLink::heal);
+        
+        OpenLoopDriver driver = new OpenLoopDriver(pools, TIMELINE_RATE, TIMELINE_SECONDS, TimeUnit.SECONDS,
+            OpenLoopDriver.Arrival.FIXED, TIMELINE_WORKERS);
+        long start = timeline.start();
+        OpenLoopDriver.Result result = driver.run((master, slave, seq) -> {
+            String key = "partition_load:" + seq;
+            String value = "v" + seq;
+            master.set(key, value);
+            if (!value.equals(slave.get(key))) {
+                int second = (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+                staleBySecond.incrementAndGet(Math.min(second, staleBySecond.length() - 1));
+            }
+        });
+        timeline.await();
+        
+        result.print();
+        RESULTS.add(result.toRecord("分区时间线"));
+        timeline.printReport();
+        System.out.println("逐秒读到旧数据的次数:");
+        for (int s = 0; s < TIMELINE_SECONDS; s++) {
+            boolean partitioned = (s + 1) * 1000 > PARTITION_AT_MS && s * 1000 < HEAL_AT_MS;
+            System.out.printf("  第%d秒: %6d %s%n", s + 1, staleBySecond.get(s), partitioned ? "← 分区中" : "");
+        }
+        System.out.println("💡 分区期间Slave继续应答但全部是旧数据；恢复后滞留的复制流送达，旧读迅速归零");
+    }
+    
     static void printPartitionSummary() {
         System.out.println("🎯 网络分区实验验证了以下CAP权衡:");
         System.out.println();
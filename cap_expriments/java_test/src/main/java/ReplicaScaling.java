@@ -0,0 +1,87 @@
+import com.example.cap.client.ReplicaBalancer;
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.load.ReplicaScalingRunner;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.results.ResultLog;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+public class ReplicaScaling {
+    // 副本数从1扫到上限，可通过 -Dcap.scaling.max.replicas 覆盖；docker目标需先 docker compose --profile scaling up -d
+    private static final int MAX_REPLICAS = Integer.getInteger("cap.scaling.max.replicas", 8);
+    // 读线程数和后台写Master的速率（次/秒）
+    private static final int CONCURRENCY = Integer.getInteger("cap.scaling.concurrency", 16);
+    private static final int WRITE_RATE = Integer.getInteger("cap.scaling.write.rate", 500);
+    // 参与对比的分流策略，可用 -Dcap.scaling.strategies=round_robin,lowest_lag 覆盖
+    private static final String STRATEGIES = System.getProperty("cap.scaling.strategies",
+        "round_robin,least_outstanding,lowest_lag");
+    // 每个点的预热和测量时长
+    private static final long WARMUP_MS = Long.getLong("cap.scaling.warmup.ms", 500);
+    private static final long MEASURE_MS = Long.getLong("cap.scaling.measure.ms", 2000);
+    // 每个点一条结构化记录，写到 results/ 下供基线对比
+    private static final ResultLog RESULTS = new ResultLog("ReplicaScaling");
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("📈 Redis多副本读扩展测试");
+        System.out.println("维度：副本数 × 读分流策略，后台持续写Master");
+        System.out.println("=====================================");
+        MetricsEndpoint.startIfConfigured();
+        FlightRecording.startIfConfigured("ReplicaScaling");
+        
+        String target = System.getProperty("cap.target", "docker");
+        if (!"docker".equals(target) && !"standin".equals(target)) {
+            throw new IllegalArgumentException("未知的cap.target: " + target);
+        }
+        if (!"none".equals(System.getProperty("cap.faults", "none"))) {
+            throw new IllegalArgumentException("读扩展测试不支持故障代理，请去掉 -Dcap.faults");
+        }
+        List<Integer> replicaCounts = new ArrayList<>();
+        for (int n = 1; n <= MAX_REPLICAS; n++) {
+            replicaCounts.add(n);
+        }
+        List<ReplicaBalancer.Strategy> strategies = Arrays.stream(STRATEGIES.split(","))
+            .map(s -> ReplicaBalancer.Strategy.valueOf(s.trim().toUpperCase(Locale.ROOT)))
+            .toList();
+        System.out.printf("目标: %s，副本数 1..%d，策略 %s，读线程 %d，后台写 %d 次/秒%n", target, MAX_REPLICAS,
+            strategies.stream().map(ReplicaBalancer.Strategy::label).toList(), CONCURRENCY, WRITE_RATE);
+        System.out.printf("共 %d 个点，每点预热 %dms + 测量 %dms%n",
+            replicaCounts.size() * strategies.size(), WARMUP_MS, MEASURE_MS);
+        if ("standin".equals(target)) {
+            System.out.println("⚠️  替身副本都在本进程内，和客户端共享CPU，读吞吐的扩展上限受本机核数限制");
+        }
+        
+        ReplicaScalingRunner runner = new ReplicaScalingRunner(replicaCounts, strategies, CONCURRENCY, WRITE_RATE,
+            "standin".equals(target), WARMUP_MS, MEASURE_MS, TimeUnit.MILLISECONDS);
+        List<ReplicaScalingRunner.PointResult> results = runner.run();
+        System.out.println();
+        ReplicaScalingRunner.printTable(results);
+        
+        // 每种策略的最高读吞吐，以及复制延迟随副本数的增量
+        System.out.println();
+        for (ReplicaBalancer.Strategy strategy : strategies) {
+            List<ReplicaScalingRunner.PointResult> curve = results.stream()
+                .filter(r -> r.point.strategy == strategy).toList();
+            ReplicaScalingRunner.PointResult best = curve.stream()
+                .max(Comparator.comparingDouble(ReplicaScalingRunner.PointResult::readsPerSec)).orElseThrow();
+            ReplicaScalingRunner.PointResult baseline = ReplicaScalingRunner.baselineOf(results, best);
+            ReplicaScalingRunner.PointResult largest = curve.get(curve.size() - 1);
+            System.out.printf("🚀 %s: %d个副本时读吞吐最高 %.0f ops/s（%.2fx）", strategy.label(),
+                best.point.replicas, best.readsPerSec(), best.speedup(baseline));
+            double perReplica = largest.lagIncreasePerReplicaMillis(baseline);
+            if (!Double.isNaN(perReplica)) {
+                System.out.printf("，%d→%d个副本复制延迟p99每个副本 %+.3f ms",
+                    baseline.point.replicas, largest.point.replicas, perReplica);
+            }
+            System.out.println();
+        }
+        
+        for (ReplicaScalingRunner.PointResult result : results) {
+            RESULTS.add(result.toRecord(ReplicaScalingRunner.baselineOf(results, result)));
+        }
+        RESULTS.close();
+    }
+}
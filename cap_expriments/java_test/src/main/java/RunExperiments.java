@@ -0,0 +1,59 @@
+import com.example.cap.client.RedisPools;
+import com.example.cap.experiment.Experiment;
+import com.example.cap.experiment.ExperimentRunner;
+import com.example.cap.experiment.Experiments;
+import com.example.cap.experiment.PhaseSettings;
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.results.ResultLog;
+import java.util.Arrays;
+import java.util.List;
+
+public class RunExperiments {
+    private static final ResultLog RESULTS = new ResultLog("RunExperiments");
+    
+    /**
+     * 用法: RunExperiments [list | all | 实验名...]，阶段参数见 PhaseSettings（-Dcap.run.*）
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && "list".equals(args[0])) {
+            System.out.println("📋 可选实验:");
+            for (Experiment e : Experiments.catalog().values()) {
+                System.out.printf("  %-24s %s%n", e.name(), e.description());
+            }
+            return;
+        }
+        List<Experiment> selected = Experiments.select(Arrays.asList(args));
+        PhaseSettings settings = PhaseSettings.fromSystemProperties();
+        
+        System.out.println("🧪 统一实验运行器：预热 → 稳态测量 → 冷却");
+        System.out.println("=====================================");
+        System.out.println(settings.describe());
+        MetricsEndpoint.startIfConfigured();
+        
+        // 每个客户端线程各持有一对连接，另留一个给冷却阶段读取复制偏移量
+        try (RedisPools pools = RedisPools.open(settings.concurrency + 1)) {
+            ExperimentRunner runner = new ExperimentRunner(pools, settings);
+            for (Experiment experiment : selected) {
+                System.out.printf("%n▶️  %s — %s%n", experiment.name(), experiment.description());
+                pools.resetStats();
+                ExperimentRunner.Outcome outcome;
+                // 每个场景单独一份JFR记录（-Dcap.jfr.dir 未设置时为null，不记录）
+                FlightRecording flight = FlightRecording.startIfConfigured("RunExperiments-" + experiment.name());
+                try {
+                    outcome = runner.run(experiment);
+                } finally {
+                    if (flight != null) {
+                        flight.close();
+                    }
+                }
+                outcome.print();
+                pools.printStats();
+                RESULTS.add(outcome.toRecord());
+                RESULTS.addLatencies(experiment.name(), outcome.latency);
+            }
+        }
+        RESULTS.close();
+        System.out.println("\n✅ 全部实验完成！");
+    }
+}
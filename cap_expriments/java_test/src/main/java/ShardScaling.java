@@ -0,0 +1,60 @@
+import com.example.cap.jfr.FlightRecording;
+import com.example.cap.load.ShardScalingRunner;
+import com.example.cap.metrics.MetricsEndpoint;
+import com.example.cap.results.ResultLog;
+import redis.clients.jedis.HostAndPort;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ShardScaling {
+    // 分片数序列，可通过 -Dcap.shards.counts=1,2,4 覆盖；每个分片的副本数
+    private static final String SHARD_COUNTS = System.getProperty("cap.shards.counts", "1,2,4,8");
+    private static final int REPLICAS = Integer.getInteger("cap.shards.replicas", 1);
+    // 客户端线程数、分片Pipeline每批的命令数、迁移负载中迁走的槽数
+    private static final int CONCURRENCY = Integer.getInteger("cap.shards.concurrency", 16);
+    private static final int PIPELINE_DEPTH = Integer.getInteger("cap.shards.pipeline", 32);
+    private static final int MIGRATE_SLOTS = Integer.getInteger("cap.shards.migrate.slots", 32);
+    // 已有Redis Cluster的种子节点 host:port；不设置时使用替身集群
+    private static final String SEED = System.getProperty("cap.cluster.seed");
+    // 每个点的预热和测量时长
+    private static final long WARMUP_MS = Long.getLong("cap.shards.warmup.ms", 500);
+    private static final long MEASURE_MS = Long.getLong("cap.shards.measure.ms", 2000);
+    // 每个点一条结构化记录，写到 results/ 下供基线对比
+    private static final ResultLog RESULTS = new ResultLog("ShardScaling");
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("🧩 Redis分片扩展测试");
+        System.out.println("维度：分片数 × 负载（单键写 / 分片Pipeline / 哈希标签多键 / 迁移中）");
+        System.out.println("=====================================");
+        MetricsEndpoint.startIfConfigured();
+        FlightRecording.startIfConfigured("ShardScaling");
+        
+        List<Integer> shardCounts = Arrays.stream(SHARD_COUNTS.split(","))
+            .map(s -> Integer.parseInt(s.trim())).toList();
+        ShardScalingRunner runner = new ShardScalingRunner(shardCounts, REPLICAS, CONCURRENCY, PIPELINE_DEPTH,
+            MIGRATE_SLOTS, WARMUP_MS, MEASURE_MS, TimeUnit.MILLISECONDS);
+        List<ShardScalingRunner.PointResult> results;
+        if (SEED != null) {
+            System.out.printf("目标: Redis Cluster %s，客户端线程 %d，Pipeline每批 %d 条%n", SEED, CONCURRENCY,
+                PIPELINE_DEPTH);
+            results = runner.runAgainst(HostAndPort.from(SEED));
+        } else {
+            if (!"standin".equals(System.getProperty("cap.target", "docker"))) {
+                throw new IllegalArgumentException("docker目标只有一个Master，请使用 -Dcap.target=standin "
+                    + "或用 -Dcap.cluster.seed=host:port 指向一个Redis Cluster");
+            }
+            System.out.printf("目标: 替身集群，分片数 %s，每分片 %d 个副本，客户端线程 %d，Pipeline每批 %d 条%n",
+                shardCounts, REPLICAS, CONCURRENCY, PIPELINE_DEPTH);
+            System.out.println("⚠️  替身分片都在本进程内，和客户端共享CPU，吞吐的扩展上限受本机核数限制");
+            results = runner.runStandIn();
+        }
+        System.out.println();
+        ShardScalingRunner.printTable(results);
+        
+        for (ShardScalingRunner.PointResult result : results) {
+            RESULTS.add(result.toRecord(ShardScalingRunner.baselineOf(results, result)));
+        }
+        RESULTS.close();
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.cap.cache;
+
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 客户端近端缓存：热点键的读在本地命中，不再发往节点。容量按条目数和估算字节数双重限制，超出时按LRU淘汰。
+ * 一致性依靠服务端辅助失效：订阅连接 SUBSCRIBE __redis__:invalidate，另一条连接执行
+ * CLIENT TRACKING ON REDIRECT &lt;订阅连接ID&gt; BCAST PREFIX ...，被修改的键由服务端推送后立即从本地删除。
+ * 失效通道断开或健康检查失败时缓存被清空并旁路，所有读直接走节点，重新登记成功后再恢复缓存。
+ */
+public class NearCache implements AutoCloseable {
+    public static final String INVALIDATE_CHANNEL = "__redis__:invalidate";
+
+    // 每个条目的对象头、链表节点等固定开销，加上键和值按UTF-16估算的字节数
+    private static final long ENTRY_OVERHEAD_BYTES = 64;
+    private static final long HEALTH_CHECK_INTERVAL_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 100;
+
+    private static final class Entry {
+        final String value;
+        final long bytes;
+
+        Entry(String value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final HostAndPort node;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final List<String> prefixes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 正在回源的键 → 本次回源的令牌；回源期间收到失效则令牌被删除，读回的值不再写入缓存
+    private final Map<String, Object> pendingFills = new HashMap<>();
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    private final Object trackingLock = new Object();
+    private Jedis tracking;
+    private volatile Connection subscriber;
+    private volatile boolean coherent;
+    private volatile boolean running;
+    private Thread listener;
+    private Thread healthCheck;
+
+    public NearCache(HostAndPort node, int maxEntries, long maxBytes, List<String> prefixes) {
+        this.node = node;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.prefixes = List.copyOf(prefixes);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "near-cache-invalidation");
+        listener.setDaemon(true);
+        listener.start();
+        healthCheck = new Thread(this::checkHealth, "near-cache-health");
+        healthCheck.setDaemon(true);
+        healthCheck.start();
+    }
+
+    /**
+     * 等待失效通道建立，超时返回false（此时读全部旁路，结果依然正确）
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!coherent) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    public boolean isCoherent() {
+        return coherent;
+    }
+
+    /**
+     * 先查本地，未命中时用conn回源并缓存结果；不存在的键不缓存
+     */
+    public String get(Jedis conn, String key) {
+        if (!coherent) {
+            bypasses.increment();
+            return conn.get(key);
+        }
+        Object token = new Object();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.increment();
+                return entry.value;
+            }
+            pendingFills.put(key, token);
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        String value = null;
+        try {
+            value = conn.get(key);
+            return value;
+        } finally {
+            lock.lock();
+            try {
+                if (pendingFills.remove(key, token) && value != null) {
+                    install(key, value);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void install(String key, String value) {
+        long size = ENTRY_OVERHEAD_BYTES + 2L * (key.length() + value.length());
+        Entry previous = entries.put(key, new Entry(value, size));
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += size;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private void invalidate(List<Object> keys) {
+        if (keys == null) {
+            // 节点数据整体被替换（FLUSHALL或全量同步）
+            clear();
+            return;
+        }
+        lock.lock();
+        try {
+            for (Object raw : keys) {
+                String key = SafeEncoder.encode((byte[]) raw);
+                Entry removed = entries.remove(key);
+                if (removed != null) {
+                    bytes -= removed.bytes;
+                }
+                pendingFills.remove(key);
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            pendingFills.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void listen() {
+        while (running) {
+            Connection conn = new Connection(node);
+            try {
+                subscriber = conn;
+                conn.sendCommand(Protocol.Command.CLIENT, "ID");
+                long id = conn.getIntegerReply();
+                conn.sendCommand(Protocol.Command.SUBSCRIBE, INVALIDATE_CHANNEL);
+                conn.getObjectMultiBulkReply();
+                register(id);
+                // 登记之前缓存的内容可能已过期，登记成功后从空缓存开始
+                clear();
+                coherent = true;
+                // 订阅连接不能设读超时：Jedis读超时后会把连接标记为损坏
+                conn.setTimeoutInfinite();
+                while (running) {
+                    List<Object> message = conn.getUnflushedObjectMultiBulkReply();
+                    if (message.size() == 3 && "message".equals(SafeEncoder.encode((byte[]) message.get(0)))) {
+                        invalidate((List<Object>) message.get(2));
+                    }
+                }
+            } catch (JedisException e) {
+                // 失效通道中断，重连前缓存不可信
+                if (running) {
+                    reconnects.increment();
+                }
+            } finally {
+                coherent = false;
+                clear();
+                conn.close();
+                closeTracking();
+            }
+            if (running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RECONNECT_DELAY_MS));
+            }
+        }
+    }
+
+    private void register(long subscriberId) {
+        List<String> args = new ArrayList<>(List.of("TRACKING", "ON", "REDIRECT", Long.toString(subscriberId), "BCAST"));
+        for (String prefix : prefixes) {
+            args.add("PREFIX");
+            args.add(prefix);
+        }
+        synchronized (trackingLock) {
+            closeTracking();
+            tracking = new Jedis(node);
+            tracking.sendCommand(Protocol.Command.CLIENT, args.toArray(new String[0]));
+        }
+    }
+
+    private void closeTracking() {
+        synchronized (trackingLock) {
+            if (tracking != null) {
+                tracking.close();
+                tracking = null;
+            }
+        }
+    }
+
+    /**
+     * 登记连接断开后服务端不再推送失效，订阅连接却可能一直安静地等着；定期PING登记连接，失败就强制重连
+     */
+    private void checkHealth() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(HEALTH_CHECK_INTERVAL_MS));
+            if (!coherent) {
+                continue;
+            }
+            boolean healthy;
+            synchronized (trackingLock) {
+                try {
+                    healthy = tracking != null && "PONG".equals(tracking.ping());
+                } catch (JedisException e) {
+                    healthy = false;
+                }
+            }
+            Connection conn = subscriber;
+            if (!healthy && running && conn != null) {
+                coherent = false;
+                clear();
+                conn.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Connection conn = subscriber;
+        if (conn != null) {
+            conn.disconnect();
+        }
+        try {
+            listener.join(1000);
+            healthCheck.interrupt();
+            healthCheck.join(HEALTH_CHECK_INTERVAL_MS + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeTracking();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getBypasses() {
+        return bypasses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    /**
+     * 命中率：本地命中 / 全部读（含未命中和失效通道不可用时的旁路读）
+     */
+    public double hitRatio() {
+        long total = getHits() + getMisses() + getBypasses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前缓存内容的估算内存占用（字节）
+     */
+    public long memoryBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void printStats() {
+        System.out.printf("🧊 近端缓存: 命中 %d, 未命中 %d, 旁路 %d, 命中率 %.1f%%%n",
+            getHits(), getMisses(), getBypasses(), hitRatio() * 100);
+        System.out.printf("- 条目 %d/%d, 内存约 %.1f/%.1f KB, 失效键 %d 个, LRU淘汰 %d 次, 失效通道重连 %d 次%n",
+            size(), maxEntries, memoryBytes() / 1024.0, maxBytes / 1024.0,
+            getInvalidations(), getEvictions(), getReconnects());
+    }
+}
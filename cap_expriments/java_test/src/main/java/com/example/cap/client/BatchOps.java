@@ -0,0 +1,103 @@
+package com.example.cap.client;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按WriteMode批量写入/读取 prefix + i 形式的键。
+ * pipelineDepth：Pipeline模式下每攒多少条命令sync一次；
+ * batchSize：BATCH模式下每条MSET/MGET携带多少个键。
+ */
+public final class BatchOps {
+
+    private BatchOps() {
+    }
+
+    public static String valueFor(String token, int i) {
+        return "data_" + i + "_" + token;
+    }
+
+    public static void write(WriteMode mode, Jedis master, String prefix, String token,
+                             int count, int pipelineDepth, int batchSize) {
+        switch (mode) {
+            case SYNC:
+                for (int i = 0; i < count; i++) {
+                    master.set(prefix + i, valueFor(token, i));
+                }
+                break;
+            case PIPELINED:
+                Pipeline pipeline = master.pipelined();
+                for (int i = 0; i < count; i++) {
+                    pipeline.set(prefix + i, valueFor(token, i));
+                    if ((i + 1) % pipelineDepth == 0) {
+                        pipeline.sync();
+                    }
+                }
+                pipeline.sync();
+                break;
+            case BATCH:
+                for (int start = 0; start < count; start += batchSize) {
+                    int end = Math.min(start + batchSize, count);
+                    String[] keysValues = new String[(end - start) * 2];
+                    for (int i = start; i < end; i++) {
+                        keysValues[(i - start) * 2] = prefix + i;
+                        keysValues[(i - start) * 2 + 1] = valueFor(token, i);
+                    }
+                    master.mset(keysValues);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("未知写入模式: " + mode);
+        }
+    }
+
+    /**
+     * 读取并校验，返回与本轮写入值一致的条数
+     */
+    public static int read(WriteMode mode, Jedis slave, String prefix, String token,
+                           int count, int pipelineDepth, int batchSize) {
+        int matched = 0;
+        switch (mode) {
+            case SYNC:
+                for (int i = 0; i < count; i++) {
+                    if (valueFor(token, i).equals(slave.get(prefix + i))) matched++;
+                }
+                break;
+            case PIPELINED:
+                Pipeline pipeline = slave.pipelined();
+                List<Response<String>> responses = new ArrayList<>(pipelineDepth);
+                for (int i = 0; i < count; i++) {
+                    responses.add(pipeline.get(prefix + i));
+                    if ((i + 1) % pipelineDepth == 0 || i == count - 1) {
+                        pipeline.sync();
+                        int first = i + 1 - responses.size();
+                        for (int r = 0; r < responses.size(); r++) {
+                            if (valueFor(token, first + r).equals(responses.get(r).get())) matched++;
+                        }
+                        responses.clear();
+                    }
+                }
+                break;
+            case BATCH:
+                for (int start = 0; start < count; start += batchSize) {
+                    int end = Math.min(start + batchSize, count);
+                    String[] keys = new String[end - start];
+                    for (int i = start; i < end; i++) {
+                        keys[i - start] = prefix + i;
+                    }
+                    List<String> values = slave.mget(keys);
+                    for (int i = start; i < end; i++) {
+                        if (valueFor(token, i).equals(values.get(i - start))) matched++;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("未知读取模式: " + mode);
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.cap.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 可复用的二进制键/值槽位：布局为 前缀 + 定宽十进制数字 + 填充字节，长度在创建时固定。
+ * fill只改写数字部分并返回同一个数组，配合Jedis的byte[]命令（set(byte[], byte[])等）使用，
+ * 热路径上不再为每个键拼接字符串、再编码成UTF-8。
+ * Jedis在命令返回前就把参数写进了输出缓冲，所以命令返回后即可改写槽位；槽位不是线程安全的，每个线程各持一份。
+ */
+public final class ByteSlot {
+    private static final byte PADDING = 'x';
+
+    private final byte[] bytes;
+    private final int digitsEnd;
+    private final int digits;
+
+    /**
+     * @param length 槽位总长度，不小于前缀加数字位数，多出的部分用填充字节补齐（用于构造指定大小的值）
+     */
+    public ByteSlot(String prefix, int digits, int length) {
+        byte[] head = prefix.getBytes(StandardCharsets.UTF_8);
+        if (digits <= 0 || digits > 19) {
+            throw new IllegalArgumentException("数字位数必须在1~19之间: " + digits);
+        }
+        if (length < head.length + digits) {
+            throw new IllegalArgumentException("槽位长度 " + length + " 放不下前缀和 " + digits + " 位数字");
+        }
+        this.bytes = new byte[length];
+        this.digits = digits;
+        this.digitsEnd = head.length + digits;
+        System.arraycopy(head, 0, bytes, 0, head.length);
+        Arrays.fill(bytes, head.length, digitsEnd, (byte) '0');
+        Arrays.fill(bytes, digitsEnd, length, PADDING);
+    }
+
+    /**
+     * 只有前缀和数字的键槽位，例如 key("run:rw:", 5) 产生 run:rw:00042
+     */
+    public static ByteSlot key(String prefix, int digits) {
+        return new ByteSlot(prefix, digits, prefix.getBytes(StandardCharsets.UTF_8).length + digits);
+    }
+
+    /**
+     * 把n按定宽（左补0）写进数字部分，返回内部数组本身
+     */
+    public byte[] fill(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("槽位只接受非负数: " + n);
+        }
+        long rest = n;
+        for (int i = digitsEnd - 1; i >= digitsEnd - digits; i--) {
+            bytes[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        if (rest != 0) {
+            throw new IllegalArgumentException(n + " 超出 " + digits + " 位数字");
+        }
+        return bytes;
+    }
+
+    /**
+     * 当前内容，不复制
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * 与读回的值逐字节比较
+     */
+    public boolean matches(byte[] other) {
+        return Arrays.equals(bytes, other);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
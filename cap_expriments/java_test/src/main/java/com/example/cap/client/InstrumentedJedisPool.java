@@ -0,0 +1,137 @@
+package com.example.cap.client;
+
+import com.example.cap.jfr.PoolBorrowEvent;
+import com.example.cap.metrics.LiveMetrics;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 带统计的Jedis连接池：记录借出/归还次数和借连接的等待时间，
+ * 用来区分"连接池争用"和"Redis本身的延迟"。
+ */
+public final class InstrumentedJedisPool extends JedisPool {
+    private final String name;
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder returnCount = new LongAdder();
+    private final LongAdder brokenCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final String metricLabels;
+
+    public InstrumentedJedisPool(String name, GenericObjectPoolConfig<Jedis> config, String host, int port) {
+        // 连接由TracedConnection创建，每条命令都能产生JFR事件
+        super(config, new TracedConnection.Factory(name, new HostAndPort(host, port),
+            DefaultJedisClientConfig.builder().build()));
+        this.name = name;
+        this.metricLabels = LiveMetrics.labels("pool", name, "addr", host + ":" + port);
+        registerMetric("cap_pool_active", "gauge", "借出中的连接数", this::getNumActive);
+        registerMetric("cap_pool_idle", "gauge", "空闲连接数", this::getNumIdle);
+        registerMetric("cap_pool_waiters", "gauge", "正在等待借连接的线程数", this::getNumWaiters);
+        registerMetric("cap_pool_borrows_total", "counter", "借出次数", this::getBorrowCount);
+        registerMetric("cap_pool_broken_total", "counter", "归还为损坏的连接数", this::getBrokenCount);
+        registerMetric("cap_pool_wait_seconds_avg", "gauge", "借连接平均等待时间", () -> getAverageWaitMicros() / 1e6);
+        registerMetric("cap_pool_wait_seconds_max", "gauge", "借连接最大等待时间", () -> getMaxWaitMicros() / 1e6);
+    }
+
+    private void registerMetric(String metric, String type, String help, DoubleSupplier value) {
+        LiveMetrics.register(metric, type, help, metricLabels, value);
+    }
+
+    @Override
+    public Jedis getResource() {
+        PoolBorrowEvent event = new PoolBorrowEvent();
+        event.begin();
+        long waitStart = System.nanoTime();
+        Jedis jedis = null;
+        try {
+            jedis = super.getResource();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.pool = name;
+                event.succeeded = jedis != null;
+                event.commit();
+            }
+        }
+        long waited = System.nanoTime() - waitStart;
+
+        borrowCount.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        return jedis;
+    }
+
+    @Override
+    public void returnResource(Jedis resource) {
+        returnCount.increment();
+        super.returnResource(resource);
+    }
+
+    @Override
+    public void returnBrokenResource(Jedis resource) {
+        brokenCount.increment();
+        super.returnBrokenResource(resource);
+    }
+
+    /**
+     * 预热：提前建立minIdle个连接，避免把TCP建连成本算进第一批测量
+     */
+    public void warmUp() throws Exception {
+        preparePool();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getReturnCount() {
+        return returnCount.sum();
+    }
+
+    public long getBrokenCount() {
+        return brokenCount.sum();
+    }
+
+    public double getAverageWaitMicros() {
+        long borrows = borrowCount.sum();
+        return borrows == 0 ? 0 : totalWaitNanos.sum() / 1000.0 / borrows;
+    }
+
+    public double getMaxWaitMicros() {
+        return maxWaitNanos.get() / 1000.0;
+    }
+
+    public void resetStats() {
+        borrowCount.reset();
+        returnCount.reset();
+        brokenCount.reset();
+        totalWaitNanos.reset();
+        maxWaitNanos.set(0);
+    }
+
+    @Override
+    public void close() {
+        for (String metric : new String[]{"cap_pool_active", "cap_pool_idle", "cap_pool_waiters", "cap_pool_borrows_total",
+            "cap_pool_broken_total", "cap_pool_wait_seconds_avg", "cap_pool_wait_seconds_max"}) {
+            LiveMetrics.unregister(metric, metricLabels);
+        }
+        super.close();
+    }
+
+    public String formatStats() {
+        return String.format("%-7s 借出: %d, 归还: %d, 损坏: %d, 活跃: %d, 空闲: %d, 平均等待: %.1f µs, 最大等待: %.1f µs",
+            name, getBorrowCount(), getReturnCount(), getBrokenCount(),
+            getNumActive(), getNumIdle(), getAverageWaitMicros(), getMaxWaitMicros());
+    }
+}
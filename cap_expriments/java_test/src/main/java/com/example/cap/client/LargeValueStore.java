@@ -0,0 +1,189 @@
+package com.example.cap.client;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * 大值分块读写：值按固定大小切块，每块一个键 key:chunk:版本:序号，全部块写完后再写清单键 key = "版本:块数:总长度"。
+ * 读先取清单再逐块取回，按顺序写到输出流；清单发布之前的块对读者不可见，所以读不到写了一半的值，
+ * 旧版本的块在新清单发布后删除。块通过Pipeline按窗口发送，客户端只持有一块大小的缓冲区，
+ * 复制链路上也是一串小命令而不是一次性的大突发。
+ */
+public class LargeValueStore {
+    // 每发送多少块sync一次，限制未读回复的数量
+    private static final int PIPELINE_WINDOW = 8;
+    private static final int DELETE_BATCH = 512;
+    private static final Pattern MANIFEST = Pattern.compile("[0-9a-z]+:\\d+:\\d+");
+
+    /**
+     * 清单：版本号、块数、总字节数
+     */
+    public static final class Manifest {
+        public final String generation;
+        public final int chunks;
+        public final long length;
+
+        Manifest(String generation, int chunks, long length) {
+            this.generation = generation;
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+        static Manifest parse(String value) {
+            if (value == null || !MANIFEST.matcher(value).matches()) {
+                return null;
+            }
+            String[] parts = value.split(":");
+            return new Manifest(parts[0], Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        }
+
+        public String format() {
+            return generation + ":" + chunks + ":" + length;
+        }
+    }
+
+    private final int chunkSize;
+
+    public LargeValueStore(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("块大小必须为正: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 从source读到结束，分块写入Master并发布清单，返回新清单
+     */
+    public Manifest write(Jedis master, String key, InputStream source) throws IOException {
+        Manifest previous = manifest(master, key);
+        String generation = Long.toString(System.nanoTime(), 36)
+            + Integer.toString(ThreadLocalRandom.current().nextInt(1 << 20), 36);
+        byte[] buffer = new byte[chunkSize];
+        Pipeline pipeline = master.pipelined();
+        int chunks = 0;
+        long length = 0;
+        int n;
+        while ((n = source.readNBytes(buffer, 0, chunkSize)) > 0) {
+            // Pipeline在调用时就把命令编码进输出缓冲区，缓冲区可以立即复用
+            pipeline.set(chunkKey(key, generation, chunks), n == chunkSize ? buffer : Arrays.copyOf(buffer, n));
+            chunks++;
+            length += n;
+            if (chunks % PIPELINE_WINDOW == 0) {
+                pipeline.sync();
+            }
+        }
+        pipeline.sync();
+        Manifest manifest = new Manifest(generation, chunks, length);
+        master.set(key, manifest.format());
+        if (previous != null) {
+            deleteChunks(master, key, previous);
+        }
+        return manifest;
+    }
+
+    /**
+     * 按清单逐块读出写到sink，返回读到的清单；键不存在或不是分块值时返回null。
+     * 读的过程中值被新版本替换、旧块已删除时抛IllegalStateException，由调用方重读
+     */
+    public static Manifest read(Jedis conn, String key, OutputStream sink) throws IOException {
+        Manifest manifest = manifest(conn, key);
+        if (manifest == null) {
+            return null;
+        }
+        for (int from = 0; from < manifest.chunks; from += PIPELINE_WINDOW) {
+            int to = Math.min(manifest.chunks, from + PIPELINE_WINDOW);
+            Pipeline pipeline = conn.pipelined();
+            List<Response<byte[]>> responses = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                responses.add(pipeline.get(chunkKey(key, manifest.generation, i)));
+            }
+            pipeline.sync();
+            for (Response<byte[]> response : responses) {
+                byte[] chunk = response.get();
+                if (chunk == null) {
+                    throw new IllegalStateException("分块值在读取过程中被替换: " + key);
+                }
+                sink.write(chunk);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * 读取清单；原来是普通字符串值时返回null，写入时直接覆盖
+     */
+    public static Manifest manifest(Jedis conn, String key) {
+        return Manifest.parse(conn.get(key));
+    }
+
+    public static void delete(Jedis master, String key) {
+        Manifest manifest = manifest(master, key);
+        master.del(key);
+        if (manifest != null) {
+            deleteChunks(master, key, manifest);
+        }
+    }
+
+    private static void deleteChunks(Jedis master, String key, Manifest manifest) {
+        for (int from = 0; from < manifest.chunks; from += DELETE_BATCH) {
+            int to = Math.min(manifest.chunks, from + DELETE_BATCH);
+            byte[][] keys = new byte[to - from][];
+            for (int i = from; i < to; i++) {
+                keys[i - from] = chunkKey(key, manifest.generation, i);
+            }
+            master.del(keys);
+        }
+    }
+
+    static byte[] chunkKey(String key, String generation, int index) {
+        return (key + ":chunk:" + generation + ":" + index).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把unit重复铺满length字节的输入流，用来生成任意大小的测试值而不在堆上物化整个值
+     */
+    public static InputStream pattern(byte[] unit, long length) {
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() {
+                if (position >= length) {
+                    return -1;
+                }
+                return unit[(int) (position++ % unit.length)] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (position >= length) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, length - position);
+                for (int copied = 0; copied < n; ) {
+                    int at = (int) (position % unit.length);
+                    int step = Math.min(n - copied, unit.length - at);
+                    System.arraycopy(unit, at, b, off + copied, step);
+                    copied += step;
+                    position += step;
+                }
+                return n;
+            }
+        };
+    }
+}
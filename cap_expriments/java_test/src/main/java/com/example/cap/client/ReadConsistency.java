@@ -0,0 +1,81 @@
+package com.example.cap.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次读声明的一致性级别，由 {@link ReadRouter} 决定发往Master还是Slave
+ */
+public final class ReadConsistency {
+
+    public enum Level {
+        STRONG("强一致"),
+        READ_YOUR_WRITES("读己之写"),
+        BOUNDED_STALENESS("有界陈旧"),
+        ANY("任意副本");
+
+        private final String label;
+
+        Level(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final ReadConsistency STRONG = new ReadConsistency(Level.STRONG, 0);
+    private static final ReadConsistency READ_YOUR_WRITES = new ReadConsistency(Level.READ_YOUR_WRITES, 0);
+    private static final ReadConsistency ANY = new ReadConsistency(Level.ANY, 0);
+
+    private final Level level;
+    private final long maxStalenessNanos;
+
+    private ReadConsistency(Level level, long maxStalenessNanos) {
+        this.level = level;
+        this.maxStalenessNanos = maxStalenessNanos;
+    }
+
+    /**
+     * 总是读Master，例如扣库存前的库存判断
+     */
+    public static ReadConsistency strong() {
+        return STRONG;
+    }
+
+    /**
+     * 能看到本会话之前所有已确认的写入，例如下单后查看自己的订单
+     */
+    public static ReadConsistency readYourWrites() {
+        return READ_YOUR_WRITES;
+    }
+
+    /**
+     * 读到的数据最多落后给定时长，例如商品详情页
+     */
+    public static ReadConsistency boundedStaleness(long maxStaleness, TimeUnit unit) {
+        return new ReadConsistency(Level.BOUNDED_STALENESS, unit.toNanos(maxStaleness));
+    }
+
+    /**
+     * 不要求新鲜度，总是读Slave，例如商品评论
+     */
+    public static ReadConsistency any() {
+        return ANY;
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    public long maxStalenessNanos() {
+        return maxStalenessNanos;
+    }
+
+    public String label() {
+        if (level == Level.BOUNDED_STALENESS) {
+            return level.label() + "≤" + TimeUnit.NANOSECONDS.toMillis(maxStalenessNanos) + "ms";
+        }
+        return level.label();
+    }
+}
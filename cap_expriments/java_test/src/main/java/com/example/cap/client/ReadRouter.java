@@ -0,0 +1,236 @@
+package com.example.cap.client;
+
+import com.example.cap.metrics.LatencyRecorder;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 按一致性级别路由读：后台线程轮询Master的 master_repl_offset 和Slave的 slave_repl_offset，
+ * 推算"Slave已追上Master哪个时刻的全部写入"（追平时刻）。某次轮询开始时Master的偏移量若已被Slave覆盖，
+ * 那么该时刻之前确认的写入在Slave上都可见。
+ * <ul>
+ *   <li>强一致：总是读Master</li>
+ *   <li>读己之写：追平时刻不早于本会话最后一次写入的确认时刻才读Slave</li>
+ *   <li>有界陈旧：当前时刻 - 追平时刻 不超过上限才读Slave</li>
+ *   <li>任意副本：总是读Slave</li>
+ * </ul>
+ * 偏移量未知（轮询失败、复制中断）时追平时刻停止前进，受约束的读自然回退到Master。
+ */
+public class ReadRouter implements AutoCloseable {
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    // 复制长时间中断时只保留最近的样本；丢弃旧样本只会让追平时刻偏保守
+    private static final int MAX_SAMPLES = 100_000;
+
+    private static final class Sample {
+        final long nanos;
+        final long masterOffset;
+
+        Sample(long nanos, long masterOffset) {
+            this.nanos = nanos;
+            this.masterOffset = masterOffset;
+        }
+    }
+
+    private static final class LevelStats {
+        final ReadConsistency consistency;
+        final LongAdder reads = new LongAdder();
+        final LongAdder offloaded = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+
+        LevelStats(ReadConsistency consistency) {
+            this.consistency = consistency;
+        }
+    }
+
+    private final RedisPools pools;
+    private final long pollIntervalNanos;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final Map<String, LevelStats> stats = new ConcurrentHashMap<>();
+    // 轮询线程独占
+    private final ArrayDeque<Sample> samples = new ArrayDeque<>();
+    private final LongAdder pollErrors = new LongAdder();
+
+    private volatile long caughtUpNanos = UNKNOWN;
+    private volatile boolean running;
+    private Thread poller;
+
+    public ReadRouter(RedisPools pools, long pollInterval, TimeUnit unit) {
+        this.pools = pools;
+        this.pollIntervalNanos = unit.toNanos(pollInterval);
+    }
+
+    /**
+     * 会话记录自己最后一次写入的确认时刻，用于读己之写。会话对象不是线程安全的，每个用户/线程各用一个
+     */
+    public final class Session {
+        private long lastWriteNanos = UNKNOWN;
+
+        public <T> T write(Function<Jedis, T> op) {
+            try (Jedis master = pools.master().getResource()) {
+                T result = op.apply(master);
+                lastWriteNanos = System.nanoTime();
+                return result;
+            }
+        }
+
+        public <T> T read(ReadConsistency consistency, Function<Jedis, T> op) {
+            return route(consistency, lastWriteNanos, op);
+        }
+    }
+
+    public Session session() {
+        return new Session();
+    }
+
+    /**
+     * 不属于任何会话的读；读己之写在这里等同于任意副本
+     */
+    public <T> T read(ReadConsistency consistency, Function<Jedis, T> op) {
+        return route(consistency, UNKNOWN, op);
+    }
+
+    private <T> T route(ReadConsistency consistency, long lastWriteNanos, Function<Jedis, T> op) {
+        boolean toSlave = slaveSatisfies(consistency, lastWriteNanos);
+        LevelStats s = stats.computeIfAbsent(consistency.label(), k -> new LevelStats(consistency));
+        InstrumentedJedisPool pool = toSlave ? pools.slave() : pools.master();
+        long start = System.nanoTime();
+        try (Jedis jedis = pool.getResource()) {
+            return op.apply(jedis);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            recorder.record(toSlave ? LatencyRecorder.SLAVE : LatencyRecorder.MASTER, consistency.label(), elapsed);
+            s.reads.increment();
+            s.totalNanos.add(elapsed);
+            if (toSlave) {
+                s.offloaded.increment();
+            }
+        }
+    }
+
+    boolean slaveSatisfies(ReadConsistency consistency, long lastWriteNanos) {
+        long caughtUp = caughtUpNanos;
+        switch (consistency.level()) {
+            case STRONG:
+                return false;
+            case READ_YOUR_WRITES:
+                return lastWriteNanos == UNKNOWN || (caughtUp != UNKNOWN && caughtUp - lastWriteNanos >= 0);
+            case BOUNDED_STALENESS:
+                return caughtUp != UNKNOWN && System.nanoTime() - caughtUp <= consistency.maxStalenessNanos();
+            default:
+                return true;
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        poller = new Thread(this::pollLoop, "read-router-offsets");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try (Jedis master = new Jedis(pools.masterAddress());
+                 Jedis slave = new Jedis(pools.slaveAddress())) {
+                while (running) {
+                    pollOnce(master, slave);
+                    LockSupport.parkNanos(pollIntervalNanos);
+                }
+            } catch (Exception e) {
+                // 任一节点不可达时追平时刻停止前进，稍后重连
+                pollErrors.increment();
+                LockSupport.parkNanos(Math.max(pollIntervalNanos, TimeUnit.MILLISECONDS.toNanos(100)));
+            }
+        }
+    }
+
+    private void pollOnce(Jedis master, Jedis slave) {
+        long now = System.nanoTime();
+        samples.addLast(new Sample(now, infoField(master.info("replication"), "master_repl_offset")));
+        if (samples.size() > MAX_SAMPLES) {
+            samples.pollFirst();
+        }
+        long slaveOffset = infoField(slave.info("replication"), "slave_repl_offset");
+        Sample caughtUp = null;
+        while (!samples.isEmpty() && samples.peekFirst().masterOffset <= slaveOffset) {
+            caughtUp = samples.pollFirst();
+        }
+        if (caughtUp != null) {
+            caughtUpNanos = caughtUp.nanos;
+        }
+    }
+
+    public static long infoField(String info, String field) {
+        for (String line : info.split("\r\n")) {
+            if (line.startsWith(field + ":")) {
+                return Long.parseLong(line.substring(field.length() + 1).trim());
+            }
+        }
+        throw new IllegalStateException("INFO中没有字段: " + field);
+    }
+
+    /**
+     * Slave当前最多落后多少纳秒（按追平时刻估算），尚不可知时为-1
+     */
+    public long stalenessBoundNanos() {
+        long caughtUp = caughtUpNanos;
+        return caughtUp == UNKNOWN ? -1 : System.nanoTime() - caughtUp;
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (poller != null) {
+            try {
+                poller.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            poller = null;
+        }
+    }
+
+    public LatencyRecorder recorder() {
+        return recorder;
+    }
+
+    public long getPollErrors() {
+        return pollErrors.sum();
+    }
+
+    /**
+     * 各一致性级别的读次数、卸载到Slave的比例，以及平均延迟相对强一致读的收益
+     */
+    public void printReport() {
+        recorder.printReport("按一致性级别路由的读");
+        LevelStats strong = stats.get(ReadConsistency.strong().label());
+        double strongMean = strong == null || strong.reads.sum() == 0 ? Double.NaN : meanMicros(strong);
+        System.out.printf("%-14s %8s %10s %12s %12s%n", "一致性级别", "读次数", "卸载到Slave", "平均延迟µs", "较强一致µs");
+        stats.values().stream()
+            .sorted(Comparator.comparing((LevelStats s) -> s.consistency.level())
+                .thenComparing(s -> s.consistency.maxStalenessNanos()))
+            .forEach(s -> {
+                long reads = s.reads.sum();
+                double mean = meanMicros(s);
+                System.out.printf("%-14s %8d %9.1f%% %12.1f %12s%n", s.consistency.label(), reads,
+                    100.0 * s.offloaded.sum() / Math.max(1, reads), mean,
+                    Double.isNaN(strongMean) ? "-" : String.format("%+.1f", mean - strongMean));
+            });
+        System.out.printf("偏移量轮询异常: %d 次%n", getPollErrors());
+    }
+
+    private static double meanMicros(LevelStats s) {
+        return s.totalNanos.sum() / 1000.0 / Math.max(1, s.reads.sum());
+    }
+}
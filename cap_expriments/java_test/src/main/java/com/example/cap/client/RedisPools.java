@@ -0,0 +1,241 @@
+package com.example.cap.client;
+
+import com.example.cap.fault.NetworkFaults;
+import com.example.cap.standin.ReplicationSettings;
+import com.example.cap.standin.StandInNode;
+import com.example.cap.standin.StandInTopology;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 所有实验共享的Master/副本连接池。副本数由 -Dcap.replicas 指定（默认1），slave() 是第一个副本；
+ * docker目标下第i个副本（从0开始）在 localhost:6380+i，需要多个副本时用 docker compose --profile scaling 启动。
+ * Jedis实例不是线程安全的，并发任务必须各自借一个连接，用完归还。
+ */
+public class RedisPools implements AutoCloseable {
+    public static final HostAndPort LOCAL_MASTER = new HostAndPort("localhost", 6379);
+    public static final HostAndPort LOCAL_SLAVE = new HostAndPort("localhost", 6380);
+
+    private static final Duration MAX_BORROW_WAIT = Duration.ofSeconds(5);
+
+    private final HostAndPort masterAddr;
+    private final List<HostAndPort> replicaAddrs;
+    private final InstrumentedJedisPool master;
+    private final List<InstrumentedJedisPool> replicas;
+    private StandInTopology standIn;
+    private NetworkFaults faults;
+
+    private RedisPools(HostAndPort masterAddr, List<HostAndPort> replicaAddrs,
+                       InstrumentedJedisPool master, List<InstrumentedJedisPool> replicas) {
+        this.masterAddr = masterAddr;
+        this.replicaAddrs = List.copyOf(replicaAddrs);
+        this.master = master;
+        this.replicas = List.copyOf(replicas);
+    }
+
+    /**
+     * 按 -Dcap.target 选择实验目标：docker（默认，本地主从容器）或 standin（进程内替身主从）；
+     * -Dcap.faults=proxy 时客户端连接（以及替身的复制链路）经过故障代理
+     */
+    public static RedisPools open(int poolSize) throws Exception {
+        return open(poolSize, Integer.getInteger("cap.replicas", 1));
+    }
+
+    public static RedisPools open(int poolSize, int replicaCount) throws Exception {
+        if (replicaCount < 1) {
+            throw new IllegalArgumentException("副本数至少为1: " + replicaCount);
+        }
+        String target = System.getProperty("cap.target", "docker");
+        if (!"docker".equals(target) && !"standin".equals(target)) {
+            throw new IllegalArgumentException("未知的cap.target: " + target);
+        }
+        String faultMode = System.getProperty("cap.faults", "none");
+        if (!"none".equals(faultMode) && !"proxy".equals(faultMode)) {
+            throw new IllegalArgumentException("未知的cap.faults: " + faultMode);
+        }
+        if ("none".equals(faultMode)) {
+            return "standin".equals(target)
+                ? standIn(poolSize, ReplicationSettings.fromSystemProperties(), replicaCount)
+                : local(poolSize, replicaCount);
+        }
+        if (replicaCount != 1) {
+            throw new IllegalArgumentException("故障代理只接管一个副本的链路，-Dcap.faults=proxy 时副本数必须为1");
+        }
+        StandInTopology topology = null;
+        NetworkFaults network = null;
+        try {
+            HostAndPort masterAddr = LOCAL_MASTER;
+            HostAndPort slaveAddr = LOCAL_SLAVE;
+            if ("standin".equals(target)) {
+                topology = StandInTopology.start(1, ReplicationSettings.fromSystemProperties());
+                masterAddr = topology.master().address();
+                slaveAddr = topology.replica().address();
+            }
+            network = NetworkFaults.wrap(masterAddr, slaveAddr, topology);
+            RedisPools pools = connect(network.master().address(), network.slave().address(), poolSize);
+            pools.standIn = topology;
+            pools.faults = network;
+            return pools;
+        } catch (Exception e) {
+            if (network != null) {
+                network.close();
+            }
+            if (topology != null) {
+                topology.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 启动进程内替身主从并连接，关闭连接池时一并关闭替身
+     */
+    public static RedisPools standIn(int poolSize, ReplicationSettings settings) throws Exception {
+        return standIn(poolSize, settings, 1);
+    }
+
+    public static RedisPools standIn(int poolSize, ReplicationSettings settings, int replicaCount) throws Exception {
+        StandInTopology topology = StandInTopology.start(replicaCount, settings);
+        try {
+            List<HostAndPort> replicaAddrs = new ArrayList<>();
+            for (StandInNode replica : topology.replicas()) {
+                replicaAddrs.add(replica.address());
+            }
+            RedisPools pools = connect(topology.master().address(), replicaAddrs, poolSize);
+            pools.standIn = topology;
+            return pools;
+        } catch (Exception e) {
+            topology.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 连接docker-compose-redis.yml启动的本地主从
+     */
+    public static RedisPools local(int poolSize) throws Exception {
+        return local(poolSize, 1);
+    }
+
+    public static RedisPools local(int poolSize, int replicaCount) throws Exception {
+        List<HostAndPort> replicaAddrs = new ArrayList<>();
+        for (int i = 0; i < replicaCount; i++) {
+            replicaAddrs.add(new HostAndPort(LOCAL_SLAVE.getHost(), LOCAL_SLAVE.getPort() + i));
+        }
+        return connect(LOCAL_MASTER, replicaAddrs, poolSize);
+    }
+
+    public static RedisPools connect(HostAndPort masterAddr, HostAndPort slaveAddr, int poolSize) throws Exception {
+        return connect(masterAddr, List.of(slaveAddr), poolSize);
+    }
+
+    public static RedisPools connect(HostAndPort masterAddr, List<HostAndPort> replicaAddrs, int poolSize)
+            throws Exception {
+        List<InstrumentedJedisPool> created = new ArrayList<>();
+        try {
+            InstrumentedJedisPool master = new InstrumentedJedisPool("master", poolConfig(poolSize),
+                masterAddr.getHost(), masterAddr.getPort());
+            created.add(master);
+            for (int i = 0; i < replicaAddrs.size(); i++) {
+                HostAndPort addr = replicaAddrs.get(i);
+                created.add(new InstrumentedJedisPool(replicaName(i), poolConfig(poolSize), addr.getHost(), addr.getPort()));
+            }
+            for (InstrumentedJedisPool pool : created) {
+                pool.warmUp();
+            }
+            return new RedisPools(masterAddr, replicaAddrs, master, created.subList(1, created.size()));
+        } catch (Exception e) {
+            created.forEach(InstrumentedJedisPool::close);
+            throw e;
+        }
+    }
+
+    /**
+     * 连接池和指标里的副本名：第一个副本沿用slave，其余为slave-1、slave-2…
+     */
+    private static String replicaName(int index) {
+        return index == 0 ? "slave" : "slave-" + index;
+    }
+
+    /**
+     * 所有实验连接池共用的配置，分片客户端为每个分片建池时也用它
+     */
+    public static JedisPoolConfig poolConfig(int poolSize) {
+        JedisPoolConfig config = new JedisPoolConfig();
+        config.setMaxTotal(poolSize);
+        config.setMaxIdle(poolSize);
+        config.setMinIdle(poolSize); // 固定大小，预热后不再建连
+        config.setBlockWhenExhausted(true);
+        config.setMaxWait(MAX_BORROW_WAIT);
+        config.setTestOnBorrow(false); // 借出时不额外PING，避免污染延迟测量
+        config.setJmxEnabled(false);
+        return config;
+    }
+
+    public InstrumentedJedisPool master() {
+        return master;
+    }
+
+    public InstrumentedJedisPool slave() {
+        return replicas.get(0);
+    }
+
+    public List<InstrumentedJedisPool> replicas() {
+        return replicas;
+    }
+
+    public HostAndPort masterAddress() {
+        return masterAddr;
+    }
+
+    public HostAndPort slaveAddress() {
+        return replicaAddrs.get(0);
+    }
+
+    public List<HostAndPort> replicaAddresses() {
+        return replicaAddrs;
+    }
+
+    /**
+     * 由替身支撑时返回其拓扑，连接docker时为null
+     */
+    public StandInTopology standInTopology() {
+        return standIn;
+    }
+
+    /**
+     * 故障注入点，未开启 -Dcap.faults=proxy 时为null
+     */
+    public NetworkFaults faults() {
+        return faults;
+    }
+
+    public void resetStats() {
+        master.resetStats();
+        replicas.forEach(InstrumentedJedisPool::resetStats);
+    }
+
+    public void printStats() {
+        System.out.println("🏊 连接池统计:");
+        System.out.println("- " + master.formatStats());
+        for (InstrumentedJedisPool replica : replicas) {
+            System.out.println("- " + replica.formatStats());
+        }
+    }
+
+    @Override
+    public void close() {
+        master.close();
+        replicas.forEach(InstrumentedJedisPool::close);
+        if (faults != null) {
+            faults.close();
+        }
+        if (standIn != null) {
+            standIn.close();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.cap.client;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 把读分散到多个副本：
+ * <ul>
+ *   <li>轮询：依次选下一个副本</li>
+ *   <li>最少在途：选当前未完成读最少的副本，并列时从轮询位置开始找</li>
+ *   <li>最低延迟：后台线程轮询Master的 master_repl_offset 和各副本的 slave_repl_offset，
+ *       选落后字节数最少的副本，并列时按轮询挑选</li>
+ * </ul>
+ * 副本不可达时偏移量记为未知，最低延迟策略不会选它，除非所有副本都未知。
+ */
+public class ReplicaBalancer implements AutoCloseable {
+    public enum Strategy {
+        ROUND_ROBIN("轮询"),
+        LEAST_OUTSTANDING("最少在途"),
+        LOWEST_LAG("最低延迟");
+
+        private final String label;
+
+        Strategy(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final long UNKNOWN = Long.MAX_VALUE;
+
+    private final RedisPools pools;
+    private final Strategy strategy;
+    private final long pollIntervalNanos;
+    private final int replicaCount;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicLongArray outstanding;
+    // 各副本落后Master的字节数，由轮询线程写入
+    private final AtomicLongArray lagBytes;
+    private final LongAdder[] reads;
+    private final LongAdder pollErrors = new LongAdder();
+
+    private volatile boolean running;
+    private Thread poller;
+
+    public ReplicaBalancer(RedisPools pools, Strategy strategy, long pollInterval, TimeUnit unit) {
+        this.pools = pools;
+        this.strategy = strategy;
+        this.pollIntervalNanos = unit.toNanos(pollInterval);
+        this.replicaCount = pools.replicas().size();
+        this.outstanding = new AtomicLongArray(replicaCount);
+        this.lagBytes = new AtomicLongArray(replicaCount);
+        this.reads = new LongAdder[replicaCount];
+        for (int i = 0; i < replicaCount; i++) {
+            reads[i] = new LongAdder();
+        }
+    }
+
+    public <T> T read(Function<Jedis, T> op) {
+        int replica = choose();
+        outstanding.incrementAndGet(replica);
+        try (Jedis jedis = pools.replicas().get(replica).getResource()) {
+            return op.apply(jedis);
+        } finally {
+            outstanding.decrementAndGet(replica);
+            reads[replica].increment();
+        }
+    }
+
+    int choose() {
+        int start = Math.floorMod(cursor.getAndIncrement(), replicaCount);
+        if (strategy == Strategy.ROUND_ROBIN || replicaCount == 1) {
+            return start;
+        }
+        int best = start;
+        long bestScore = score(start);
+        for (int i = 1; i < replicaCount; i++) {
+            int candidate = (start + i) % replicaCount;
+            long s = score(candidate);
+            if (s < bestScore) {
+                best = candidate;
+                bestScore = s;
+            }
+        }
+        return best;
+    }
+
+    private long score(int replica) {
+        return strategy == Strategy.LEAST_OUTSTANDING ? outstanding.get(replica) : lagBytes.get(replica);
+    }
+
+    public synchronized void start() {
+        if (running || strategy != Strategy.LOWEST_LAG) {
+            return;
+        }
+        running = true;
+        poller = new Thread(this::pollLoop, "replica-balancer-offsets");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    private void pollLoop() {
+        List<HostAndPort> addrs = pools.replicaAddresses();
+        while (running) {
+            Jedis master = null;
+            Jedis[] replicas = new Jedis[replicaCount];
+            try {
+                master = new Jedis(pools.masterAddress());
+                for (int i = 0; i < replicaCount; i++) {
+                    replicas[i] = new Jedis(addrs.get(i));
+                }
+                while (running) {
+                    pollOnce(master, replicas);
+                    LockSupport.parkNanos(pollIntervalNanos);
+                }
+            } catch (Exception e) {
+                // 连接失败时稍后重连，单个副本的INFO失败在pollOnce里处理
+                pollErrors.increment();
+                LockSupport.parkNanos(Math.max(pollIntervalNanos, TimeUnit.MILLISECONDS.toNanos(100)));
+            } finally {
+                if (master != null) {
+                    master.close();
+                }
+                for (Jedis replica : replicas) {
+                    if (replica != null) {
+                        replica.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void pollOnce(Jedis master, Jedis[] replicas) {
+        long masterOffset = ReadRouter.infoField(master.info("replication"), "master_repl_offset");
+        for (int i = 0; i < replicaCount; i++) {
+            long lag;
+            try {
+                lag = Math.max(0, masterOffset - ReadRouter.infoField(replicas[i].info("replication"), "slave_repl_offset"));
+            } catch (RuntimeException e) {
+                pollErrors.increment();
+                lag = UNKNOWN;
+            }
+            lagBytes.set(i, lag);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (poller != null) {
+            try {
+                poller.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            poller = null;
+        }
+    }
+
+    public Strategy strategy() {
+        return strategy;
+    }
+
+    /**
+     * 各副本处理的读次数，下标与 {@link RedisPools#replicas()} 一致
+     */
+    public long[] readsPerReplica() {
+        long[] counts = new long[replicaCount];
+        for (int i = 0; i < replicaCount; i++) {
+            counts[i] = reads[i].sum();
+        }
+        return counts;
+    }
+
+    public void resetCounts() {
+        for (LongAdder r : reads) {
+            r.reset();
+        }
+    }
+
+    public long getPollErrors() {
+        return pollErrors.sum();
+    }
+}
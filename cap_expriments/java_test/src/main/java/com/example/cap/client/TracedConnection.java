@@ -0,0 +1,146 @@
+package com.example.cap.client;
+
+import com.example.cap.jfr.RedisCommandEvent;
+import com.example.cap.jfr.RedisPipelineEvent;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisFactory;
+import redis.clients.jedis.args.Rawable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 为每条命令产生JFR事件的连接：同步命令在executeCommand前后计时，
+ * Pipeline命令从第一条入队到getMany读完回复算作一个批次。
+ * 没有开启JFR记录时事件对象不会提交，开销只有一次enabled判断。连接只被借到它的线程使用，字段不需要同步。
+ */
+public class TracedConnection extends Connection {
+    private final String node;
+    private boolean executing;
+    private boolean draining;
+    private int pending;
+    private long pendingBytes;
+    private RedisPipelineEvent batch;
+
+    public TracedConnection(String node, HostAndPort address, JedisClientConfig config) {
+        super(address, config);
+        this.node = node;
+    }
+
+    /**
+     * 给连接池用的工厂：其余的激活、校验、销毁逻辑沿用JedisFactory
+     */
+    static final class Factory extends JedisFactory {
+        private final String node;
+        private final HostAndPort address;
+        private final JedisClientConfig config;
+
+        Factory(String node, HostAndPort address, JedisClientConfig config) {
+            super(address, config);
+            this.node = node;
+            this.address = address;
+            this.config = config;
+        }
+
+        @Override
+        public PooledObject<Jedis> makeObject() {
+            return new DefaultPooledObject<>(new Jedis(new TracedConnection(node, address, config)));
+        }
+    }
+
+    @Override
+    public <T> T executeCommand(CommandObject<T> commandObject) {
+        RedisCommandEvent event = new RedisCommandEvent();
+        event.begin();
+        executing = true;
+        boolean succeeded = false;
+        try {
+            T reply = super.executeCommand(commandObject);
+            succeeded = true;
+            return reply;
+        } finally {
+            executing = false;
+            event.end();
+            if (event.shouldCommit()) {
+                CommandArguments args = commandObject.getArguments();
+                event.node = node;
+                event.command = new String(args.getCommand().getRaw(), StandardCharsets.UTF_8);
+                Iterator<Rawable> it = args.iterator();
+                it.next(); // 命令名本身
+                event.keyBytes = it.hasNext() ? it.next().getRaw().length : 0;
+                event.argumentBytes = argumentBytes(args);
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void sendCommand(CommandArguments args) {
+        // executeCommand内部也经过这里；只有不在executeCommand里的发送才是Pipeline或直接收发的命令。
+        // 父类构造时用Pipeline发送的握手命令（此时node还没赋值）不计入
+        if (!executing && node != null) {
+            if (pending == 0) {
+                batch = new RedisPipelineEvent();
+                batch.begin();
+            }
+            pending++;
+            if (batch.isEnabled()) {
+                pendingBytes += argumentBytes(args);
+            }
+        }
+        super.sendCommand(args);
+    }
+
+    @Override
+    protected Object readProtocolWithCheckingBroken() {
+        Object reply = super.readProtocolWithCheckingBroken();
+        // PING、INFO这类直接收发的命令读到回复就出队，不算进Pipeline批次
+        if (!executing && !draining && pending > 0 && --pending == 0) {
+            batch = null;
+            pendingBytes = 0;
+        }
+        return reply;
+    }
+
+    @Override
+    public List<Object> getMany(int count) {
+        draining = true;
+        try {
+            return super.getMany(count);
+        } finally {
+            draining = false;
+            RedisPipelineEvent event = batch;
+            pending = Math.max(0, pending - count);
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.node = node;
+                    event.commands = count;
+                    event.argumentBytes = pendingBytes;
+                    event.commit();
+                }
+            }
+            if (pending == 0) {
+                batch = null;
+                pendingBytes = 0;
+            }
+        }
+    }
+
+    private static long argumentBytes(CommandArguments args) {
+        long bytes = 0;
+        for (Rawable arg : args) {
+            bytes += arg.getRaw().length;
+        }
+        return bytes;
+    }
+}
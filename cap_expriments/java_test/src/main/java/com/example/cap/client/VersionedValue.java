@@ -0,0 +1,49 @@
+package com.example.cap.client;
+
+/**
+ * 带版本戳的值：v&lt;序号&gt;:&lt;写入方时间戳毫秒&gt;:&lt;原始内容&gt;。
+ * 序号按键单调递增，读到的值和最新确认写入的序号相减就是副本落后的版本数。
+ */
+public final class VersionedValue {
+    private static final char PREFIX = 'v';
+    private static final char SEPARATOR = ':';
+
+    public final long seq;
+    public final long writerMillis;
+    public final String payload;
+
+    public VersionedValue(long seq, long writerMillis, String payload) {
+        this.seq = seq;
+        this.writerMillis = writerMillis;
+        this.payload = payload;
+    }
+
+    public String encode() {
+        return PREFIX + Long.toString(seq) + SEPARATOR + writerMillis + SEPARATOR + payload;
+    }
+
+    /**
+     * 解析带版本戳的值；null或不是这个格式（例如旧实验写入的普通字符串）返回null
+     */
+    public static VersionedValue parse(String raw) {
+        if (raw == null || raw.isEmpty() || raw.charAt(0) != PREFIX) {
+            return null;
+        }
+        int first = raw.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : raw.indexOf(SEPARATOR, first + 1);
+        if (second < 0) {
+            return null;
+        }
+        try {
+            return new VersionedValue(Long.parseLong(raw, 1, first, 10), Long.parseLong(raw, first + 1, second, 10),
+                raw.substring(second + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
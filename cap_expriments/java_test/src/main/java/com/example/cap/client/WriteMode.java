@@ -0,0 +1,20 @@
+package com.example.cap.client;
+
+/**
+ * 读写分离测试的三种写入/读取方式
+ */
+public enum WriteMode {
+    SYNC("逐条同步"),
+    PIPELINED("Pipeline流水线"),
+    BATCH("MSET/MGET批量");
+
+    private final String label;
+
+    WriteMode(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.cap.client;
+
+import com.example.cap.metrics.ReplicationLagProbe;
+import com.example.cap.results.ResultRecord;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读写分离性能对比：同样数量的键分别用逐条同步、Pipeline、MSET/MGET写入Master再从Slave读取，
+ * 并记录每轮写入突发结束后Slave追上最后一个键所需的时间。
+ */
+public final class WriteModeComparison {
+    private static final long CATCH_UP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private WriteModeComparison() {
+    }
+
+    public static final class Result {
+        public final WriteMode mode;
+        public final int count;
+        public final long writeNanos;
+        public final long catchUpNanos; // -1 表示超时未追上
+        public final long readNanos;
+        public final int matched;
+
+        Result(WriteMode mode, int count, long writeNanos, long catchUpNanos, long readNanos, int matched) {
+            this.mode = mode;
+            this.count = count;
+            this.writeNanos = writeNanos;
+            this.catchUpNanos = catchUpNanos;
+            this.readNanos = readNanos;
+            this.matched = matched;
+        }
+
+        public double writeOpsPerSec() {
+            return count * 1e9 / writeNanos;
+        }
+
+        public double readOpsPerSec() {
+            return count * 1e9 / readNanos;
+        }
+
+        public boolean caughtUp() {
+            return catchUpNanos >= 0;
+        }
+
+        /**
+         * 超时未追上时不写 catch_up_ms（避免把哨兵值当成测量值），只记 caught_up=0
+         */
+        public ResultRecord toRecord(String scenario, int pipelineDepth, int batchSize) {
+            ResultRecord record = ResultRecord.of(scenario)
+                .param("mode", mode)
+                .param("count", count)
+                .param("pipeline_depth", pipelineDepth)
+                .param("batch_size", batchSize)
+                .throughput(writeOpsPerSec())
+                .metric("throughput_read_ops", readOpsPerSec())
+                .metric("caught_up", caughtUp() ? 1 : 0)
+                .metric("read_match_ratio", (double) matched / count);
+            return caughtUp() ? record.metric("catch_up_ms", catchUpNanos / 1e6) : record;
+        }
+    }
+
+    public static List<Result> run(Jedis master, Jedis slave, int count, int pipelineDepth, int batchSize) {
+        List<Result> results = new ArrayList<>();
+        for (WriteMode mode : WriteMode.values()) {
+            String prefix = "perf:" + mode.name().toLowerCase() + ":";
+            String token = Long.toString(System.nanoTime(), 36);
+
+            long writeStart = System.nanoTime();
+            BatchOps.write(mode, master, prefix, token, count, pipelineDepth, batchSize);
+            long writeEnd = System.nanoTime();
+
+            long catchUp = ReplicationLagProbe.awaitValue(slave, prefix + (count - 1),
+                BatchOps.valueFor(token, count - 1), writeEnd, CATCH_UP_TIMEOUT_NANOS);
+
+            long readStart = System.nanoTime();
+            int matched = BatchOps.read(mode, slave, prefix, token, count, pipelineDepth, batchSize);
+            long readEnd = System.nanoTime();
+
+            results.add(new Result(mode, count, writeEnd - writeStart, catchUp, readEnd - readStart, matched));
+        }
+        return results;
+    }
+
+    public static void print(List<Result> results, int pipelineDepth, int batchSize) {
+        System.out.printf("参数: pipeline深度=%d, 批量大小=%d%n", pipelineDepth, batchSize);
+        System.out.printf("%-16s %12s %12s %12s %14s %10s%n",
+            "模式", "写入耗时(ms)", "写入ops/s", "读取ops/s", "Slave追平(ms)", "读取成功率");
+        double baseline = results.isEmpty() ? 0 : results.get(0).writeOpsPerSec();
+        for (Result r : results) {
+            System.out.printf("%-16s %12.2f %12.0f %12.0f %14s %9.1f%%%n",
+                r.mode.label(), r.writeNanos / 1e6, r.writeOpsPerSec(), r.readOpsPerSec(),
+                !r.caughtUp() ? "超时" : String.format("%.2f", r.catchUpNanos / 1e6),
+                r.matched * 100.0 / r.count);
+        }
+        for (Result r : results) {
+            if (r.mode != WriteMode.SYNC && baseline > 0) {
+                System.out.printf("- %s写吞吐是逐条同步的 %.1f 倍%n", r.mode.label(), r.writeOpsPerSec() / baseline);
+            }
+        }
+    }
+}
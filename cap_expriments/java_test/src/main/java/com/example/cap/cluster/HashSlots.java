@@ -0,0 +1,59 @@
+package com.example.cap.cluster;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Redis Cluster的哈希槽计算：CRC16(XMODEM) 对16384取模。
+ * 键中出现 {...} 且花括号内非空时只对第一个花括号内的部分求值（哈希标签），
+ * 用来让 {user:1}:balance 和 {user:1}:orders 这样的一组键落在同一个槽、同一个分片上。
+ */
+public final class HashSlots {
+    public static final int SLOT_COUNT = 16384;
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private HashSlots() {
+    }
+
+    public static int slot(String key) {
+        return slot(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int slot(byte[] key) {
+        int from = 0;
+        int to = key.length;
+        for (int open = 0; open < key.length; open++) {
+            if (key[open] == '{') {
+                for (int close = open + 1; close < key.length; close++) {
+                    if (key[close] == '}') {
+                        if (close > open + 1) {
+                            from = open + 1;
+                            to = close;
+                        }
+                        break;
+                    }
+                }
+                break;
+            }
+        }
+        return crc16(key, from, to) & (SLOT_COUNT - 1);
+    }
+
+    static int crc16(byte[] bytes, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ bytes[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.cap.cluster;
+
+import com.example.cap.client.InstrumentedJedisPool;
+import com.example.cap.client.RedisPools;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisClusterOperationException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 按哈希槽路由的分片客户端：启动时从种子节点读 CLUSTER SLOTS 建立 槽→Master 表，
+ * 每条命令按键的槽选分片，从该分片的连接池借连接执行。
+ * <ul>
+ *   <li>-MOVED：槽已永久迁走，更新本地槽表后重试</li>
+ *   <li>-ASK：槽正在迁移且键已搬走，只对这一次命令先发 ASKING 再去目标节点重试，不更新槽表</li>
+ * </ul>
+ * 多键命令要求所有键在同一个槽（用哈希标签 {…} 保证），否则直接抛异常，不在客户端拆分。
+ * Pipeline按分片各攒一批，同步时逐个分片发送；批内收到重定向的命令再逐条按上面的规则重试。
+ */
+public final class ShardedClient implements AutoCloseable {
+    private static final int MAX_REDIRECTS = 5;
+
+    private final int poolSize;
+    private final AtomicReferenceArray<HostAndPort> slotOwners = new AtomicReferenceArray<>(HashSlots.SLOT_COUNT);
+    private final Map<HostAndPort, InstrumentedJedisPool> pools = new ConcurrentHashMap<>();
+    private final LongAdder moved = new LongAdder();
+    private final LongAdder asked = new LongAdder();
+
+    public ShardedClient(HostAndPort seed, int poolSize) throws Exception {
+        this.poolSize = poolSize;
+        try {
+            refreshSlots(seed);
+            for (HostAndPort master : masters()) {
+                pool(master).warmUp();
+            }
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 从node读取 CLUSTER SLOTS 覆盖本地槽表
+     */
+    public void refreshSlots(HostAndPort node) {
+        try (Jedis jedis = new Jedis(node)) {
+            for (Object entry : jedis.clusterSlots()) {
+                List<?> range = (List<?>) entry;
+                int start = ((Long) range.get(0)).intValue();
+                int end = ((Long) range.get(1)).intValue();
+                List<?> master = (List<?>) range.get(2);
+                HostAndPort owner = new HostAndPort(SafeEncoder.encode((byte[]) master.get(0)),
+                    ((Long) master.get(1)).intValue());
+                for (int slot = start; slot <= end; slot++) {
+                    slotOwners.set(slot, owner);
+                }
+            }
+        }
+        for (int slot = 0; slot < HashSlots.SLOT_COUNT; slot++) {
+            if (slotOwners.get(slot) == null) {
+                throw new IllegalStateException("槽" + slot + "没有分配给任何节点");
+            }
+        }
+    }
+
+    private InstrumentedJedisPool pool(HostAndPort node) {
+        InstrumentedJedisPool pool = pools.get(node);
+        return pool != null ? pool : pools.computeIfAbsent(node, n -> new InstrumentedJedisPool("shard@" + n,
+            RedisPools.poolConfig(poolSize), n.getHost(), n.getPort()));
+    }
+
+    /**
+     * 在key所在分片上执行op，自动跟随重定向
+     */
+    public <T> T execute(byte[] key, Function<Jedis, T> op) {
+        return execute(HashSlots.slot(key), op);
+    }
+
+    public <T> T execute(String key, Function<Jedis, T> op) {
+        return execute(HashSlots.slot(key), op);
+    }
+
+    public <T> T execute(int slot, Function<Jedis, T> op) {
+        HostAndPort node = slotOwners.get(slot);
+        boolean asking = false;
+        for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+            try (Jedis jedis = pool(node).getResource()) {
+                if (asking) {
+                    jedis.asking();
+                }
+                return op.apply(jedis);
+            } catch (JedisMovedDataException e) {
+                moved.increment();
+                slotOwners.set(e.getSlot(), e.getTargetNode());
+                node = e.getTargetNode();
+                asking = false;
+            } catch (JedisAskDataException e) {
+                asked.increment();
+                node = e.getTargetNode();
+                asking = true;
+            }
+        }
+        throw new JedisClusterOperationException("槽" + slot + "重定向超过" + MAX_REDIRECTS + "次");
+    }
+
+    public String get(String key) {
+        return execute(key, jedis -> jedis.get(key));
+    }
+
+    public String set(String key, String value) {
+        return execute(key, jedis -> jedis.set(key, value));
+    }
+
+    public long incr(String key) {
+        return execute(key, jedis -> jedis.incr(key));
+    }
+
+    public long del(String key) {
+        return execute(key, jedis -> jedis.del(key));
+    }
+
+    public List<String> mget(String... keys) {
+        return execute(sameSlot(keys, 1), jedis -> jedis.mget(keys));
+    }
+
+    public String mset(String... keysAndValues) {
+        return execute(sameSlot(keysAndValues, 2), jedis -> jedis.mset(keysAndValues));
+    }
+
+    private static int sameSlot(String[] args, int step) {
+        int slot = HashSlots.slot(args[0]);
+        for (int i = step; i < args.length; i += step) {
+            if (HashSlots.slot(args[i]) != slot) {
+                throw new IllegalArgumentException("多键命令的键不在同一个槽，请使用哈希标签: "
+                    + args[0] + " / " + args[i]);
+            }
+        }
+        return slot;
+    }
+
+    public HostAndPort nodeFor(byte[] key) {
+        return slotOwners.get(HashSlots.slot(key));
+    }
+
+    /**
+     * 当前槽表中出现的全部Master
+     */
+    public Set<HostAndPort> masters() {
+        Set<HostAndPort> masters = new LinkedHashSet<>();
+        for (int slot = 0; slot < HashSlots.SLOT_COUNT; slot++) {
+            masters.add(slotOwners.get(slot));
+        }
+        return masters;
+    }
+
+    public long getMovedRedirects() {
+        return moved.sum();
+    }
+
+    public long getAskRedirects() {
+        return asked.sum();
+    }
+
+    public void resetStats() {
+        moved.reset();
+        asked.reset();
+        pools.values().forEach(InstrumentedJedisPool::resetStats);
+    }
+
+    public ShardedPipeline pipelined() {
+        return new ShardedPipeline();
+    }
+
+    /**
+     * 按分片分组的Pipeline，不是线程安全的，每个线程各用一个
+     */
+    public final class ShardedPipeline {
+        private final List<byte[]> keys = new ArrayList<>();
+        // null表示GET
+        private final List<byte[]> values = new ArrayList<>();
+
+        public void set(byte[] key, byte[] value) {
+            keys.add(key);
+            values.add(value);
+        }
+
+        public void get(byte[] key) {
+            keys.add(key);
+            values.add(null);
+        }
+
+        public int size() {
+            return keys.size();
+        }
+
+        /**
+         * 发送所有攒下的命令，按加入顺序返回结果（SET为"OK"，GET为byte[]或null）
+         */
+        public List<Object> syncAndReturnAll() {
+            Map<HostAndPort, List<Integer>> byNode = new LinkedHashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                byNode.computeIfAbsent(nodeFor(keys.get(i)), n -> new ArrayList<>()).add(i);
+            }
+            Object[] results = new Object[keys.size()];
+            List<Integer> redirected = new ArrayList<>();
+            for (Map.Entry<HostAndPort, List<Integer>> entry : byNode.entrySet()) {
+                List<Integer> indexes = entry.getValue();
+                List<Response<?>> responses = new ArrayList<>(indexes.size());
+                try (Jedis jedis = pool(entry.getKey()).getResource()) {
+                    Pipeline pipeline = jedis.pipelined();
+                    for (int i : indexes) {
+                        responses.add(values.get(i) == null ? pipeline.get(keys.get(i))
+                            : pipeline.set(keys.get(i), values.get(i)));
+                    }
+                    pipeline.sync();
+                }
+                for (int r = 0; r < responses.size(); r++) {
+                    try {
+                        results[indexes.get(r)] = responses.get(r).get();
+                    } catch (JedisRedirectionException e) {
+                        // ASK不更新槽表，重试时由execute再次遇到ASK并计数
+                        if (e instanceof JedisMovedDataException) {
+                            moved.increment();
+                            slotOwners.set(e.getSlot(), e.getTargetNode());
+                        }
+                        redirected.add(indexes.get(r));
+                    }
+                }
+            }
+            for (int i : redirected) {
+                byte[] key = keys.get(i);
+                byte[] value = values.get(i);
+                results[i] = execute(key, jedis -> value == null ? jedis.get(key) : jedis.set(key, value));
+            }
+            keys.clear();
+            values.clear();
+            return Arrays.asList(results);
+        }
+    }
+
+    /**
+     * 每个分片连接池的借用统计
+     */
+    public void printStats() {
+        System.out.printf("🧩 分片客户端: %d 个Master, MOVED %d 次, ASK %d 次%n",
+            masters().size(), getMovedRedirects(), getAskRedirects());
+        pools.values().forEach(pool -> System.out.println("- " + pool.formatStats()));
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(InstrumentedJedisPool::close);
+        pools.clear();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.cap.experiment;
+
+import com.example.cap.client.RedisPools;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.results.ResultRecord;
+import redis.clients.jedis.Jedis;
+
+/**
+ * 可按名字选择、由 {@link ExperimentRunner} 统一驱动的实验场景。
+ * iteration 是稳态测量的最小工作单元，多个客户端线程反复调用，每个线程持有自己的Master/Slave连接。
+ */
+public interface Experiment {
+
+    String name();
+
+    String description();
+
+    /**
+     * 预热前准备数据并重置场景内的计数，每次运行调用一次
+     */
+    default void setUp(RedisPools pools) throws Exception {
+    }
+
+    /**
+     * seq在所有客户端线程间唯一；需要细分的操作自行记录到latency，整轮耗时由运行器记录
+     */
+    void iteration(Jedis master, Jedis slave, long seq, LatencyRecorder latency) throws Exception;
+
+    /**
+     * 把场景特有的指标（如读到旧值的次数）追加到测量阶段的结果记录
+     */
+    default void contribute(ResultRecord record) {
+    }
+
+    /**
+     * 冷却结束后清理场景写入的数据
+     */
+    default void tearDown(RedisPools pools) throws Exception {
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.cap.experiment;
+
+import com.example.cap.client.ReadRouter;
+import com.example.cap.client.RedisPools;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.LiveMetrics;
+import com.example.cap.results.ResultRecord;
+import redis.clients.jedis.Jedis;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按"预热 → 稳态测量 → 冷却"三个阶段运行一个实验：
+ * 预热期间按窗口统计吞吐，检测到稳态（或达到预热上限）后才开始记录；
+ * 测量结束后停止施压，等Slave追平复制偏移量，再留出冷却时间，避免上一个场景的积压影响下一个。
+ */
+public class ExperimentRunner {
+    public static final String NODE = "client";
+    public static final String ITERATION = "ITERATION";
+
+    private static final long CATCH_UP_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    // HotSpot按线程累计的已分配字节数；不支持时为null，不统计分配
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationCounter();
+
+    /**
+     * 一个阶段的计数器，阶段切换时整体替换，工作线程每轮开始时读取当前阶段
+     */
+    private static final class PhaseCounters {
+        final LatencyRecorder latency = new LatencyRecorder();
+        final LongAdder operations = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+    }
+
+    public static final class Outcome {
+        public final Experiment experiment;
+        public final PhaseSettings settings;
+        public final long warmupNanos;
+        public final boolean steady;
+        public final double warmupCv;
+        public final long operations;
+        public final long errors;
+        public final long measuredNanos;
+        public final double[] windowRates;
+        public final long catchUpNanos;
+        public final LatencyRecorder latency;
+        // 测量阶段客户端线程分配的字节数，-1表示JVM不支持统计
+        public final long allocatedBytes;
+        public final long gcCount;
+        public final long gcMillis;
+
+        Outcome(Experiment experiment, PhaseSettings settings, long warmupNanos, boolean steady, double warmupCv,
+                long operations, long errors, long measuredNanos, double[] windowRates, long catchUpNanos,
+                LatencyRecorder latency, long allocatedBytes, long gcCount, long gcMillis) {
+            this.experiment = experiment;
+            this.settings = settings;
+            this.warmupNanos = warmupNanos;
+            this.steady = steady;
+            this.warmupCv = warmupCv;
+            this.operations = operations;
+            this.errors = errors;
+            this.measuredNanos = measuredNanos;
+            this.windowRates = windowRates;
+            this.catchUpNanos = catchUpNanos;
+            this.latency = latency;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public double opsPerSec() {
+            return operations * 1e9 / measuredNanos;
+        }
+
+        /**
+         * 平均每轮在客户端线程上分配的字节数
+         */
+        public double allocatedBytesPerOp() {
+            return operations == 0 ? 0 : (double) allocatedBytes / operations;
+        }
+
+        public double allocatedMbPerSec() {
+            return allocatedBytes * 1e9 / measuredNanos / (1024 * 1024);
+        }
+
+        /**
+         * 测量阶段各窗口吞吐的变异系数，明显大于预热判定阈值说明测量期间并不稳定
+         */
+        public double measuredCv() {
+            SteadyStateDetector detector = new SteadyStateDetector(windowRates.length, 0);
+            for (double rate : windowRates) {
+                detector.add(rate);
+            }
+            return detector.coefficientOfVariation();
+        }
+
+        public void print() {
+            System.out.printf("%s 预热 %.1fs%s，测量 %.1fs: %d 轮, %.0f 轮/秒, 失败 %d, 窗口吞吐变异系数 %.1f%%%n",
+                steady ? "🔥" : "⚠️ ", warmupNanos / 1e9,
+                steady ? String.format("后进入稳态（变异系数 %.1f%%）", warmupCv * 100) : "仍未稳定，按上限开始测量",
+                measuredNanos / 1e9, operations, opsPerSec(), errors, measuredCv() * 100);
+            if (catchUpNanos >= 0) {
+                System.out.printf("🧊 停止施压后Slave追平用时 %.1f ms%n", catchUpNanos / 1e6);
+            } else {
+                System.out.println("🧊 冷却期内Slave未追平复制偏移量");
+            }
+            if (allocatedBytes >= 0) {
+                System.out.printf("🧮 客户端分配: 每轮 %.0f 字节, %.1f MB/秒; 测量期间GC %d 次, 共 %d ms%n",
+                    allocatedBytesPerOp(), allocatedMbPerSec(), gcCount, gcMillis);
+            }
+            latency.printReport(experiment.name() + "（稳态测量）");
+        }
+
+        public ResultRecord toRecord() {
+            ResultRecord record = ResultRecord.of(experiment.name())
+                .param("concurrency", settings.concurrency)
+                .param("measure_ms", TimeUnit.NANOSECONDS.toMillis(settings.measureNanos))
+                .throughput(opsPerSec())
+                .metric("errors", errors)
+                .metric("warmup_ms", warmupNanos / 1e6)
+                .metric("steady", steady ? 1 : 0)
+                .metric("window_cv", measuredCv())
+                .metric("caught_up", catchUpNanos >= 0 ? 1 : 0)
+                .metric("gc_count", gcCount)
+                .metric("gc_ms", gcMillis)
+                .latency("iteration", latency.series(NODE, ITERATION));
+            // 冷却期内没追平时不写 catch_up_ms，避免把超时哨兵当成测量值
+            if (catchUpNanos >= 0) {
+                record.metric("catch_up_ms", catchUpNanos / 1e6);
+            }
+            if (allocatedBytes >= 0) {
+                record.metric("alloc_bytes_per_op", allocatedBytesPerOp()).metric("alloc_mb_per_sec", allocatedMbPerSec());
+            }
+            experiment.contribute(record);
+            return record;
+        }
+    }
+
+    private final RedisPools pools;
+    private final PhaseSettings settings;
+    private volatile PhaseCounters phase;
+    private volatile boolean running;
+
+    public ExperimentRunner(RedisPools pools, PhaseSettings settings) {
+        this.pools = pools;
+        this.settings = settings;
+    }
+
+    public Outcome run(Experiment experiment) throws Exception {
+        experiment.setUp(pools);
+        PhaseCounters warmup = new PhaseCounters();
+        phase = warmup;
+        running = true;
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < settings.concurrency; i++) {
+            final int index = i;
+            workers.add(new Thread(() -> runWorker(experiment, index), "experiment-" + experiment.name() + "-" + i));
+        }
+        long warmupStart = System.nanoTime();
+        workers.forEach(Thread::start);
+
+        // 预热：窗口吞吐稳定且已超过最短预热时间才开始测量
+        SteadyStateDetector detector = new SteadyStateDetector(settings.steadyWindows, settings.steadyCv);
+        boolean steady = false;
+        long windowStart = warmupStart;
+        while (true) {
+            long windowEnd = windowStart + settings.windowNanos;
+            sleepUntil(windowEnd);
+            long now = System.nanoTime();
+            steady = detector.add(warmup.operations.sumThenReset() * 1e9 / (now - windowStart));
+            windowStart = now;
+            if ((steady && now - warmupStart >= settings.minWarmupNanos) || now - warmupStart >= settings.maxWarmupNanos) {
+                break;
+            }
+        }
+        double warmupCv = detector.coefficientOfVariation();
+
+        // 测量：按窗口采样累计次数，得到测量期间的吞吐序列
+        PhaseCounters measure = new PhaseCounters();
+        long[] gcBefore = gcTotals();
+        long measureStart = System.nanoTime();
+        phase = measure;
+        long warmupNanos = measureStart - warmupStart;
+        int windows = (int) (settings.measureNanos / settings.windowNanos);
+        double[] windowRates = new double[windows];
+        long previousCount = 0;
+        long previousTime = measureStart;
+        for (int w = 0; w < windows; w++) {
+            sleepUntil(measureStart + (w + 1) * settings.windowNanos);
+            long now = System.nanoTime();
+            long count = measure.operations.sum();
+            windowRates[w] = (count - previousCount) * 1e9 / (now - previousTime);
+            previousCount = count;
+            previousTime = now;
+        }
+        phase = new PhaseCounters();
+        long measuredNanos = System.nanoTime() - measureStart;
+        long[] gcAfter = gcTotals();
+
+        // 冷却：停止施压，等Slave追平后再留出剩余的冷却时间
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long cooldownStart = System.nanoTime();
+        long catchUpNanos = awaitCatchUp(cooldownStart + settings.cooldownNanos);
+        sleepUntil(cooldownStart + settings.cooldownNanos);
+        Outcome outcome = new Outcome(experiment, settings, warmupNanos, steady, warmupCv,
+            measure.operations.sum(), measure.errors.sum(), measuredNanos, windowRates, catchUpNanos, measure.latency,
+            ALLOCATION == null ? -1 : measure.allocatedBytes.sum(), gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+        experiment.tearDown(pools);
+        return outcome;
+    }
+
+    private void runWorker(Experiment experiment, int index) {
+        long seq = index;
+        try (Jedis master = pools.master().getResource();
+             Jedis slave = pools.slave().getResource()) {
+            while (running) {
+                PhaseCounters counters = phase;
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                try {
+                    experiment.iteration(master, slave, seq, counters.latency);
+                    counters.latency.record(NODE, ITERATION, System.nanoTime() - start);
+                    counters.operations.increment();
+                } catch (Exception e) {
+                    counters.errors.increment();
+                    LiveMetrics.countFailure(experiment.name());
+                }
+                counters.allocatedBytes.add(allocatedBytes() - allocatedBefore);
+                seq += settings.concurrency;
+            }
+        }
+    }
+
+    /**
+     * 轮询复制偏移量直到Slave追上停止施压时Master的偏移量，返回用时；截止前未追平返回-1
+     */
+    private long awaitCatchUp(long deadline) {
+        long start = System.nanoTime();
+        try (Jedis master = pools.master().getResource();
+             Jedis slave = pools.slave().getResource()) {
+            long target = ReadRouter.infoField(master.info("replication"), "master_repl_offset");
+            while (System.nanoTime() < deadline) {
+                if (ReadRouter.infoField(slave.info("replication"), "slave_repl_offset") >= target) {
+                    return System.nanoTime() - start;
+                }
+                LockSupport.parkNanos(CATCH_UP_POLL_NANOS);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("⚠️  读取复制偏移量失败: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+            && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION == null ? 0 : ALLOCATION.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 所有收集器累计的GC次数和耗时（毫秒）
+     */
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, millis};
+    }
+
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.cap.experiment;
+
+import com.example.cap.client.ByteSlot;
+import com.example.cap.client.LargeValueStore;
+import com.example.cap.client.RedisPools;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.results.ResultRecord;
+import com.example.cap.seckill.SeckillEngine;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内置实验场景目录：各入口里反复出现的读写分离、秒杀、Pipeline写入、大值复制，
+ * 改写成可重复执行的单轮操作，交给 {@link ExperimentRunner} 按阶段测量
+ */
+public final class Experiments {
+    // 场景使用的键空间大小，循环覆盖写以免数据无限增长
+    static final int KEYSPACE = 10_000;
+    static final int KEY_DIGITS = Integer.toString(KEYSPACE - 1).length();
+    static final int PIPELINE_DEPTH = Integer.getInteger("cap.pipeline.depth", 100);
+    static final long LARGE_VALUE_BYTES = Long.getLong("cap.run.large.kb", 1024) * 1024;
+    static final int LARGE_VALUE_CHUNK = 256 * 1024;
+    // 秒杀场景的初始库存足够大，测量期间不会售罄
+    static final int SECKILL_STOCK = 100_000_000;
+    static final int DELETE_BATCH = 1000;
+
+    private Experiments() {
+    }
+
+    /**
+     * 全部内置场景，按名字索引并保持注册顺序
+     */
+    public static Map<String, Experiment> catalog() {
+        Map<String, Experiment> catalog = new LinkedHashMap<>();
+        for (Experiment e : List.of(new ReadWriteSplit(), new ReadWriteSplitBinary(),
+            new Seckill(SeckillEngine.Strategy.CHECK_THEN_ACT), new Seckill(SeckillEngine.Strategy.ATOMIC_SCRIPT),
+            new PipelineWrites(), new LargeValue())) {
+            catalog.put(e.name(), e);
+        }
+        return catalog;
+    }
+
+    /**
+     * 按名字选择场景，空列表或 all 表示全部；未知名字直接报错并列出可选项
+     */
+    public static List<Experiment> select(List<String> names) {
+        Map<String, Experiment> catalog = catalog();
+        if (names.isEmpty() || names.equals(List.of("all"))) {
+            return new ArrayList<>(catalog.values());
+        }
+        List<Experiment> selected = new ArrayList<>();
+        for (String name : names) {
+            Experiment e = catalog.get(name);
+            if (e == null) {
+                throw new IllegalArgumentException("未知的实验: " + name + "，可选: " + String.join(", ", catalog.keySet()));
+            }
+            selected.add(e);
+        }
+        return selected;
+    }
+
+    /**
+     * 写Master后立即从Slave读同一个键，统计读到旧值的比例
+     */
+    static final class ReadWriteSplit implements Experiment {
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder stale = new LongAdder();
+
+        @Override
+        public String name() {
+            return "read-write-split";
+        }
+
+        @Override
+        public String description() {
+            return "读写分离：SET写Master后立即GET读Slave";
+        }
+
+        @Override
+        public void setUp(RedisPools pools) {
+            reads.reset();
+            stale.reset();
+        }
+
+        @Override
+        public void iteration(Jedis master, Jedis slave, long seq, LatencyRecorder latency) {
+            String key = "run:rw:" + seq % KEYSPACE;
+            String value = "data_" + seq;
+            // 与read-write-split-binary同样显式计时，两者的分配差别只来自String与复用的byte[]槽位
+            long start = System.nanoTime();
+            master.set(key, value);
+            latency.record(LatencyRecorder.MASTER, "SET", System.nanoTime() - start);
+            start = System.nanoTime();
+            String read = slave.get(key);
+            latency.record(LatencyRecorder.SLAVE, "GET", System.nanoTime() - start);
+            reads.increment();
+            if (!value.equals(read)) {
+                stale.increment();
+            }
+        }
+
+        @Override
+        public void contribute(ResultRecord record) {
+            record.metric("stale_read_ratio", reads.sum() == 0 ? 0 : (double) stale.sum() / reads.sum());
+        }
+    }
+
+    /**
+     * 与read-write-split相同的读写，键和值写进每个线程复用的ByteSlot，走Jedis的byte[]命令，
+     * 两个场景对照的是客户端每轮分配的字节数
+     */
+    static final class ReadWriteSplitBinary implements Experiment {
+        private static final class Slots {
+            final ByteSlot key = ByteSlot.key("run:rwb:", KEY_DIGITS);
+            // 定宽的 data_<seq>，长度与字符串版本的值相近
+            final ByteSlot value = ByteSlot.key("data_", 19);
+        }
+
+        private final ThreadLocal<Slots> slots = ThreadLocal.withInitial(Slots::new);
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder stale = new LongAdder();
+
+        @Override
+        public String name() {
+            return "read-write-split-binary";
+        }
+
+        @Override
+        public String description() {
+            return "读写分离（二进制API）：复用byte[]槽位SET写Master后立即GET读Slave";
+        }
+
+        @Override
+        public void setUp(RedisPools pools) {
+            reads.reset();
+            stale.reset();
+        }
+
+        @Override
+        public void iteration(Jedis master, Jedis slave, long seq, LatencyRecorder latency) {
+            Slots s = slots.get();
+            byte[] key = s.key.fill(seq % KEYSPACE);
+            byte[] value = s.value.fill(seq);
+            // 不用latency.time：捕获局部变量的lambda每轮都会分配
+            long start = System.nanoTime();
+            master.set(key, value);
+            latency.record(LatencyRecorder.MASTER, "SET", System.nanoTime() - start);
+            start = System.nanoTime();
+            byte[] read = slave.get(key);
+            latency.record(LatencyRecorder.SLAVE, "GET", System.nanoTime() - start);
+            reads.increment();
+            if (!s.value.matches(read)) {
+                stale.increment();
+            }
+        }
+
+        @Override
+        public void contribute(ResultRecord record) {
+            record.metric("stale_read_ratio", reads.sum() == 0 ? 0 : (double) stale.sum() / reads.sum());
+        }
+    }
+
+    /**
+     * 每轮一个新买家：先从Slave看库存，再按策略在Master下单
+     */
+    static final class Seckill implements Experiment {
+        private final SeckillEngine.Strategy strategy;
+        private final LongAdder orders = new LongAdder();
+        private final LongAccumulator maxBuyer = new LongAccumulator(Math::max, -1);
+        private SeckillEngine engine;
+
+        Seckill(SeckillEngine.Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        @Override
+        public String name() {
+            return strategy == SeckillEngine.Strategy.ATOMIC_SCRIPT ? "seckill-lua" : "seckill-check-then-act";
+        }
+
+        @Override
+        public String description() {
+            return "秒杀下单（" + strategy.label() + "）：Slave看库存 + Master下单";
+        }
+
+        @Override
+        public void setUp(RedisPools pools) {
+            orders.reset();
+            maxBuyer.reset();
+            engine = new SeckillEngine("run-" + name() + "-" + System.currentTimeMillis(), SECKILL_STOCK);
+            try (Jedis master = pools.master().getResource()) {
+                engine.prepare(master);
+            }
+        }
+
+        @Override
+        public void iteration(Jedis master, Jedis slave, long seq, LatencyRecorder latency) {
+            latency.time(LatencyRecorder.SLAVE, "GET(库存)", () -> slave.get(engine.stockKey()));
+            maxBuyer.accumulate(seq);
+            long order = latency.time(LatencyRecorder.MASTER, "下单", () -> engine.reserve(strategy, master, (int) seq));
+            if (order > 0) {
+                orders.increment();
+            }
+        }
+
+        @Override
+        public void contribute(ResultRecord record) {
+            record.param("strategy", strategy.name()).metric("orders", orders.sum());
+        }
+
+        @Override
+        public void tearDown(RedisPools pools) {
+            // 买家编号就是seq，按编号范围批量删除订单记录
+            try (Jedis master = pools.master().getResource()) {
+                master.del(engine.stockKey(), engine.soldKey());
+                long buyers = maxBuyer.get() + 1;
+                for (long from = 0; from < buyers; from += DELETE_BATCH) {
+                    String[] keys = new String[(int) Math.min(DELETE_BATCH, buyers - from)];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = engine.orderKey((int) (from + i));
+                    }
+                    master.del(keys);
+                }
+            }
+        }
+    }
+
+    /**
+     * 每轮一个深度为 cap.pipeline.depth 的Pipeline写入批次
+     */
+    static final class PipelineWrites implements Experiment {
+
+        @Override
+        public String name() {
+            return "pipeline-writes";
+        }
+
+        @Override
+        public String description() {
+            return "Pipeline写入：每轮" + PIPELINE_DEPTH + "条SET一次往返";
+        }
+
+        @Override
+        public void iteration(Jedis master, Jedis slave, long seq, LatencyRecorder latency) {
+            Pipeline pipeline = master.pipelined();
+            for (int i = 0; i < PIPELINE_DEPTH; i++) {
+                long n = seq * PIPELINE_DEPTH + i;
+                pipeline.set("run:pipeline:" + n % KEYSPACE, "data_" + n);
+            }
+            latency.time(LatencyRecorder.MASTER, "SYNC", () -> {
+                pipeline.sync();
+                return null;
+            });
+        }
+
+        @Override
+        public void contribute(ResultRecord record) {
+            record.param("pipeline_depth", PIPELINE_DEPTH);
+        }
+    }
+
+    /**
+     * 每轮分块写一个大值到Master，再从Master流式读回
+     */
+    static final class LargeValue implements Experiment {
+        private static final byte[] UNIT = "商品描述数据测试大数据同步延迟\n".getBytes(StandardCharsets.UTF_8);
+        private final LargeValueStore store = new LargeValueStore(LARGE_VALUE_CHUNK);
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public String name() {
+            return "large-value";
+        }
+
+        @Override
+        public String description() {
+            return "大值复制：每轮分块写入并读回" + LARGE_VALUE_BYTES / 1024 + "KB";
+        }
+
+        @Override
+        public void iteration(Jedis master, Jedis slave, long seq, LatencyRecorder latency) throws Exception {
+            // 每个客户端线程固定写一个键，旧分块由写入时的换代逻辑清理；同一个键并发换代会漏删旧分块
+            String key = "run:large:" + Thread.currentThread().threadId();
+            keys.add(key);
+            long start = System.nanoTime();
+            store.write(master, key, LargeValueStore.pattern(UNIT, LARGE_VALUE_BYTES));
+            latency.record(LatencyRecorder.MASTER, "SET(分块)", System.nanoTime() - start);
+            start = System.nanoTime();
+            LargeValueStore.read(master, key, OutputStream.nullOutputStream());
+            latency.record(LatencyRecorder.MASTER, "GET(分块)", System.nanoTime() - start);
+        }
+
+        @Override
+        public void contribute(ResultRecord record) {
+            record.param("value_bytes", LARGE_VALUE_BYTES).param("chunk_bytes", LARGE_VALUE_CHUNK);
+        }
+
+        @Override
+        public void tearDown(RedisPools pools) {
+            try (Jedis master = pools.master().getResource()) {
+                for (String key : keys) {
+                    LargeValueStore.delete(master, key);
+                }
+                keys.clear();
+            }
+        }
+    }
+}
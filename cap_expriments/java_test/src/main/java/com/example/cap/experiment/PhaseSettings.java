@@ -0,0 +1,56 @@
+package com.example.cap.experiment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实验各阶段的参数：客户端并发、采样窗口、预热上下限、稳态判定、测量和冷却时长。
+ * 全部可用 -Dcap.run.* 覆盖。
+ */
+public final class PhaseSettings {
+    public final int concurrency;
+    public final long windowNanos;
+    public final long minWarmupNanos;
+    public final long maxWarmupNanos;
+    public final int steadyWindows;
+    public final double steadyCv;
+    public final long measureNanos;
+    public final long cooldownNanos;
+
+    public PhaseSettings(int concurrency, long windowMs, long minWarmupMs, long maxWarmupMs,
+                         int steadyWindows, double steadyCv, long measureMs, long cooldownMs) {
+        if (concurrency < 1 || windowMs < 1 || steadyWindows < 2 || maxWarmupMs < minWarmupMs || measureMs < windowMs) {
+            throw new IllegalArgumentException("实验阶段参数不合法");
+        }
+        this.concurrency = concurrency;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.minWarmupNanos = TimeUnit.MILLISECONDS.toNanos(minWarmupMs);
+        this.maxWarmupNanos = TimeUnit.MILLISECONDS.toNanos(maxWarmupMs);
+        this.steadyWindows = steadyWindows;
+        this.steadyCv = steadyCv;
+        this.measureNanos = TimeUnit.MILLISECONDS.toNanos(measureMs);
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+    }
+
+    /**
+     * -Dcap.run.concurrency / window.ms / warmup.min.ms / warmup.max.ms /
+     * steady.windows / steady.cv / measure.ms / cooldown.ms
+     */
+    public static PhaseSettings fromSystemProperties() {
+        return new PhaseSettings(
+            Integer.getInteger("cap.run.concurrency", 4),
+            Long.getLong("cap.run.window.ms", 500),
+            Long.getLong("cap.run.warmup.min.ms", 1000),
+            Long.getLong("cap.run.warmup.max.ms", 15_000),
+            Integer.getInteger("cap.run.steady.windows", 5),
+            Double.parseDouble(System.getProperty("cap.run.steady.cv", "0.05")),
+            Long.getLong("cap.run.measure.ms", 5000),
+            Long.getLong("cap.run.cooldown.ms", 2000));
+    }
+
+    public String describe() {
+        return String.format("并发 %d，窗口 %dms，预热 %d~%dms（最近%d个窗口变异系数≤%.0f%%视为稳态），测量 %dms，冷却 %dms",
+            concurrency, TimeUnit.NANOSECONDS.toMillis(windowNanos), TimeUnit.NANOSECONDS.toMillis(minWarmupNanos),
+            TimeUnit.NANOSECONDS.toMillis(maxWarmupNanos), steadyWindows, steadyCv * 100,
+            TimeUnit.NANOSECONDS.toMillis(measureNanos), TimeUnit.NANOSECONDS.toMillis(cooldownNanos));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.cap.experiment;
+
+import java.util.ArrayDeque;
+
+/**
+ * 按窗口吞吐判断是否进入稳态：最近N个窗口的变异系数不超过阈值，
+ * 且前半段与后半段的均值差也不超过阈值（排除JIT编译期间缓慢爬升、但每步波动很小的情况）
+ */
+public class SteadyStateDetector {
+    private final int windows;
+    private final double maxCv;
+    private final ArrayDeque<Double> recent = new ArrayDeque<>();
+
+    public SteadyStateDetector(int windows, double maxCv) {
+        this.windows = windows;
+        this.maxCv = maxCv;
+    }
+
+    /**
+     * 加入一个窗口的吞吐，返回加入后是否已稳定
+     */
+    public boolean add(double opsPerSec) {
+        recent.addLast(opsPerSec);
+        if (recent.size() > windows) {
+            recent.pollFirst();
+        }
+        return isSteady();
+    }
+
+    public boolean isSteady() {
+        if (recent.size() < windows) {
+            return false;
+        }
+        double mean = mean();
+        if (mean <= 0) {
+            return false;
+        }
+        return coefficientOfVariation() <= maxCv && Math.abs(drift()) <= maxCv;
+    }
+
+    public double coefficientOfVariation() {
+        double mean = mean();
+        if (recent.isEmpty() || mean <= 0) {
+            return Double.NaN;
+        }
+        double sumSquares = 0;
+        for (double rate : recent) {
+            sumSquares += (rate - mean) * (rate - mean);
+        }
+        return Math.sqrt(sumSquares / recent.size()) / mean;
+    }
+
+    /**
+     * 后半段均值相对前半段的变化比例
+     */
+    public double drift() {
+        int half = recent.size() / 2;
+        if (half == 0) {
+            return Double.NaN;
+        }
+        double first = 0;
+        double second = 0;
+        int i = 0;
+        for (double rate : recent) {
+            if (i < half) {
+                first += rate;
+            } else if (i >= recent.size() - half) {
+                second += rate;
+            }
+            i++;
+        }
+        return first == 0 ? Double.NaN : (second - first) / first;
+    }
+
+    private double mean() {
+        double sum = 0;
+        for (double rate : recent) {
+            sum += rate;
+        }
+        return recent.isEmpty() ? 0 : sum / recent.size();
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.cap.failover;
+
+import com.example.cap.client.ReadRouter;
+import com.example.cap.jfr.FaultTransitionEvent;
+import com.example.cap.metrics.LiveMetrics;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 类似Sentinel的本地故障切换协调者：后台线程按固定间隔PING Master，
+ * 距最后一次成功PING超过 downAfter 即判定Master下线（相当于Sentinel的 down-after-milliseconds，单协调者不需要投票），
+ * 随后从副本中选复制偏移量最大的一个执行 REPLICAOF NO ONE，确认其INFO角色变为master后发布新的写入地址。
+ * 客户端每次写前读取 {@link #currentMaster()}，地址变化时重连即完成切换。
+ * 只切换一次；其余副本不会改挂到新Master（docker容器间地址和本机地址不同）。
+ */
+public class FailoverCoordinator implements AutoCloseable {
+    private static final String NAME = "failover";
+
+    private final HostAndPort originalMaster;
+    private final List<HostAndPort> replicas;
+    private final long pingIntervalNanos;
+    private final long downAfterNanos;
+    private final JedisClientConfig clientConfig;
+    private final CountDownLatch promoted = new CountDownLatch(1);
+
+    private volatile HostAndPort currentMaster;
+    private volatile long lastHealthyNanos;
+    private volatile long detectedNanos;
+    private volatile long promotedNanos;
+    private volatile String failure;
+    private volatile boolean running;
+    private Thread monitor;
+
+    /**
+     * pingTimeout同时作为协调者连接的连接和读超时
+     */
+    public FailoverCoordinator(HostAndPort master, List<HostAndPort> replicas, long pingInterval, long downAfter,
+                               long pingTimeout, TimeUnit unit) {
+        this.originalMaster = master;
+        this.replicas = List.copyOf(replicas);
+        this.pingIntervalNanos = unit.toNanos(pingInterval);
+        this.downAfterNanos = unit.toNanos(downAfter);
+        this.clientConfig = DefaultJedisClientConfig.builder()
+            .timeoutMillis((int) Math.max(1, unit.toMillis(pingTimeout))).build();
+        this.currentMaster = master;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        lastHealthyNanos = System.nanoTime();
+        monitor = new Thread(this::monitorLoop, "failover-coordinator");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    private void monitorLoop() {
+        Jedis master = null;
+        while (running) {
+            long now = System.nanoTime();
+            try {
+                if (master == null) {
+                    master = new Jedis(originalMaster, clientConfig);
+                }
+                master.ping();
+                lastHealthyNanos = System.nanoTime();
+            } catch (RuntimeException e) {
+                // 连接断开或超时，丢掉连接下次重建
+                master = closeQuietly(master);
+                if (System.nanoTime() - lastHealthyNanos >= downAfterNanos) {
+                    detectedNanos = System.nanoTime();
+                    transition("master_down", originalMaster + " 已 "
+                        + TimeUnit.NANOSECONDS.toMillis(detectedNanos - lastHealthyNanos) + "ms 无响应");
+                    promoteBestReplica();
+                    break;
+                }
+            }
+            LockSupport.parkNanos(Math.max(0, pingIntervalNanos - (System.nanoTime() - now)));
+        }
+        closeQuietly(master);
+    }
+
+    /**
+     * 选复制偏移量最大的可达副本提升为Master，轮询INFO直到角色变为master
+     */
+    private void promoteBestReplica() {
+        HostAndPort best = null;
+        long bestOffset = -1;
+        for (HostAndPort replica : replicas) {
+            try (Jedis jedis = new Jedis(replica, clientConfig)) {
+                long offset = ReadRouter.infoField(jedis.info("replication"), "slave_repl_offset");
+                if (offset > bestOffset) {
+                    best = replica;
+                    bestOffset = offset;
+                }
+            } catch (RuntimeException e) {
+                // 不可达或已不是副本，跳过
+            }
+        }
+        if (best == null) {
+            failure = "没有可提升的副本";
+            transition("promote_failed", failure);
+            promoted.countDown();
+            return;
+        }
+        while (running) {
+            try (Jedis jedis = new Jedis(best, clientConfig)) {
+                jedis.replicaofNoOne();
+                while (running && !jedis.info("replication").contains("role:master")) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                promotedNanos = System.nanoTime();
+                currentMaster = best;
+                transition("promoted", best + " 提升为Master，复制偏移量 " + bestOffset);
+                promoted.countDown();
+                return;
+            } catch (RuntimeException e) {
+                LockSupport.parkNanos(pingIntervalNanos);
+            }
+        }
+    }
+
+    private static Jedis closeQuietly(Jedis jedis) {
+        if (jedis != null) {
+            try {
+                jedis.close();
+            } catch (RuntimeException ignored) {
+                // 连接已失效
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 状态切换同时计入实时指标和JFR事件
+     */
+    private static void transition(String kind, String state) {
+        LiveMetrics.countFaultTransition(NAME, kind);
+        FaultTransitionEvent event = new FaultTransitionEvent();
+        if (event.shouldCommit()) {
+            event.proxy = NAME;
+            event.transition = kind;
+            event.state = state;
+            event.commit();
+        }
+    }
+
+    /**
+     * 等待提升完成，超时或提升失败返回false
+     */
+    public boolean awaitPromotion(long timeout, TimeUnit unit) throws InterruptedException {
+        return promoted.await(timeout, unit) && promotedNanos != 0;
+    }
+
+    /**
+     * 客户端当前应写入的地址
+     */
+    public HostAndPort currentMaster() {
+        return currentMaster;
+    }
+
+    public HostAndPort originalMaster() {
+        return originalMaster;
+    }
+
+    /**
+     * 判定下线前最后一次成功PING的时刻（System.nanoTime）
+     */
+    public long lastHealthyNanos() {
+        return lastHealthyNanos;
+    }
+
+    /**
+     * 判定Master下线的时刻，尚未判定时为0
+     */
+    public long detectedNanos() {
+        return detectedNanos;
+    }
+
+    /**
+     * 新Master确认角色的时刻，尚未提升时为0
+     */
+    public long promotedNanos() {
+        return promotedNanos;
+    }
+
+    /**
+     * 提升失败的原因，没有失败时为null
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (monitor != null) {
+            try {
+                monitor.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            monitor = null;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.example.cap.failover;
+
+import com.example.cap.client.ReadRouter;
+import com.example.cap.client.RedisPools;
+import com.example.cap.fault.FaultProxy;
+import com.example.cap.fault.NetworkFaults;
+import com.example.cap.results.ResultRecord;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.args.ClientPauseMode;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 一次故障切换实验：写线程按固定速率向当前Master写入带序号的键，运行一段时间后让Master失效，
+ * 由 {@link FailoverCoordinator} 检测并提升副本，写线程发现地址变化后重连新Master继续写。
+ * 新Master稳定写入一段时间后停止，逐个核对已确认的写在新Master上是否存在。
+ * 所有时刻都取 System.nanoTime，报告按毫秒输出。
+ * <ul>
+ *   <li>写入确认：SET返回OK</li>
+ *   <li>写入失败：连接被拒绝，确定没有送达</li>
+ *   <li>结果未知：超时或连接中途断开，可能已在旧Master上生效</li>
+ * </ul>
+ */
+public class FailoverRunner {
+    private static final int VERIFY_BATCH = 500;
+    private static final int LOST_SAMPLES = 5;
+
+    public enum FaultMode {
+        KILL("关闭Master进程"),
+        PARTITION("分区隔离Master"),
+        PAUSE("CLIENT PAUSE冻结Master");
+
+        private final String label;
+
+        FaultMode(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * 按拓扑选择默认故障：开启故障代理时分区，替身时直接关闭Master节点，docker时用CLIENT PAUSE冻结
+     */
+    public static FaultMode defaultMode(RedisPools pools) {
+        if (pools.faults() != null) {
+            return FaultMode.PARTITION;
+        }
+        return pools.standInTopology() != null ? FaultMode.KILL : FaultMode.PAUSE;
+    }
+
+    public static final class Result {
+        public final FaultMode mode;
+        public final long attempted;
+        public final long acked;
+        public final long failed;
+        public final long unknown;
+        public final long ackedOnNewMaster;
+        public final long lost; // -1 表示没有完成提升、未核对
+        public final List<Long> lostSamples;
+        public final boolean promoted;
+        public final long faultNanos;
+        public final long lastHealthyNanos;
+        public final long detectedNanos;
+        public final long promotedNanos;
+        public final long lastOldAckNanos;
+        public final long firstNewAckNanos;
+
+        Result(FaultMode mode, Writer writer, FailoverCoordinator coordinator, long faultNanos, long lost,
+               List<Long> lostSamples) {
+            this.mode = mode;
+            this.attempted = writer.attempted;
+            this.acked = writer.acked.size();
+            this.failed = writer.failed;
+            this.unknown = writer.unknown;
+            this.ackedOnNewMaster = writer.ackedOnNewMaster;
+            this.lost = lost;
+            this.lostSamples = lostSamples;
+            this.promoted = coordinator.promotedNanos() != 0;
+            this.faultNanos = faultNanos;
+            this.lastHealthyNanos = coordinator.lastHealthyNanos();
+            this.detectedNanos = coordinator.detectedNanos();
+            this.promotedNanos = coordinator.promotedNanos();
+            this.lastOldAckNanos = writer.lastOldAckNanos;
+            this.firstNewAckNanos = writer.firstNewAckNanos;
+        }
+
+        /**
+         * 故障注入到判定Master下线
+         */
+        public double detectMillis() {
+            return detectedNanos == 0 ? Double.NaN : millis(detectedNanos - faultNanos);
+        }
+
+        /**
+         * 判定下线到新Master确认角色
+         */
+        public double promoteMillis() {
+            return promotedNanos == 0 ? Double.NaN : millis(promotedNanos - detectedNanos);
+        }
+
+        /**
+         * 客户端视角的写不可用窗口：旧Master上最后一次确认到新Master上第一次确认
+         */
+        public double unavailableMillis() {
+            return firstNewAckNanos == 0 || lastOldAckNanos == 0 ? Double.NaN : millis(firstNewAckNanos - lastOldAckNanos);
+        }
+
+        /**
+         * 故障注入到新Master上第一次确认写入，即本次的恢复时间
+         */
+        public double recoveryMillis() {
+            return firstNewAckNanos == 0 ? Double.NaN : millis(firstNewAckNanos - faultNanos);
+        }
+
+        public void print() {
+            System.out.printf("💥 故障: %s%n", mode.label());
+            if (!promoted) {
+                System.out.println("❌ 未完成提升，写入没有恢复");
+            }
+            System.out.printf("⏱️  检测 %.1f ms（最后一次健康PING在故障前 %.1f ms）→ 提升 %.1f ms → 首个新Master写确认，"
+                    + "故障后 %.1f ms%n", detectMillis(), millis(faultNanos - lastHealthyNanos), promoteMillis(),
+                recoveryMillis());
+            System.out.printf("🚫 写不可用窗口: %.1f ms（旧Master最后确认 → 新Master首次确认）%n", unavailableMillis());
+            System.out.printf("✍️  写入 %d 次: 确认 %d（新Master上 %d），失败 %d，结果未知 %d%n",
+                attempted, acked, ackedOnNewMaster, failed, unknown);
+            if (lost < 0) {
+                System.out.println("❔ 没有新Master，已确认的写是否丢失未核对");
+            } else if (lost == 0) {
+                System.out.println("✅ 已确认的写全部保留在新Master上");
+            } else {
+                System.out.printf("⚠️  丢失已确认的写 %d 次（%.2f%%），例如序号 %s —— 异步复制尚未送达副本就发生了切换%n",
+                    lost, lost * 100.0 / Math.max(1, acked), lostSamples);
+            }
+        }
+
+        /**
+         * 没有完成提升时不写 lost_acked_writes：这些写没有核对过（PAUSE模式下仍在冻结的旧Master上），不能记为丢失
+         */
+        public ResultRecord toRecord(String scenario) {
+            ResultRecord record = ResultRecord.of(scenario)
+                .param("fault", mode.name().toLowerCase())
+                .metric("promoted", promoted ? 1 : 0)
+                .metric("detect_ms", detectMillis())
+                .metric("promote_ms", promoteMillis())
+                .metric("unavailable_ms", unavailableMillis())
+                .metric("recovery_ms", recoveryMillis())
+                .metric("writes_attempted", attempted)
+                .metric("writes_acked", acked)
+                .metric("writes_failed", failed)
+                .metric("writes_unknown", unknown);
+            return lost < 0 ? record : record.metric("lost_acked_writes", lost);
+        }
+    }
+
+    /**
+     * 写线程的状态，只在写线程内修改，join之后再读取
+     */
+    private static final class Writer {
+        final List<Long> acked = new ArrayList<>();
+        long attempted;
+        long failed;
+        long unknown;
+        long ackedOnNewMaster;
+        volatile long lastOldAckNanos;
+        volatile long firstNewAckNanos;
+    }
+
+    private final RedisPools pools;
+    private final FaultMode mode;
+    private final long writeIntervalNanos;
+    private final long beforeNanos;
+    private final long afterNanos;
+    private final long timeoutNanos;
+    private final long pingIntervalNanos;
+    private final long downAfterNanos;
+    private final long clientTimeoutNanos;
+    private final JedisClientConfig clientConfig;
+    private final String keyPrefix = "failover:" + Long.toString(System.nanoTime(), 36) + ":";
+
+    /**
+     * before/after为故障前和新Master首次确认后各写多久，timeout为等待切换完成的上限，
+     * clientTimeout为写客户端和协调者的连接/读超时，决定冻结或分区时一次写最多阻塞多久
+     */
+    public FailoverRunner(RedisPools pools, FaultMode mode, int writeRate, long before, long after, long timeout,
+                          long pingInterval, long downAfter, long clientTimeout, TimeUnit unit) {
+        this.pools = pools;
+        this.mode = mode;
+        this.writeIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, writeRate);
+        this.beforeNanos = unit.toNanos(before);
+        this.afterNanos = unit.toNanos(after);
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.pingIntervalNanos = unit.toNanos(pingInterval);
+        this.downAfterNanos = unit.toNanos(downAfter);
+        this.clientTimeoutNanos = unit.toNanos(clientTimeout);
+        this.clientConfig = DefaultJedisClientConfig.builder()
+            .timeoutMillis((int) Math.max(1, unit.toMillis(clientTimeout))).build();
+        if (mode == FaultMode.KILL && pools.standInTopology() == null) {
+            throw new IllegalArgumentException("只有替身拓扑可以直接关闭Master进程");
+        }
+        if (mode == FaultMode.PARTITION && pools.faults() == null) {
+            throw new IllegalArgumentException("分区隔离需要 -Dcap.faults=proxy");
+        }
+    }
+
+    public Result run() throws Exception {
+        // docker恢复拓扑时要把副本挂回原来的Master，先记下它在容器网络里的地址
+        String originalMasterHost = null;
+        int originalMasterPort = 0;
+        if (mode == FaultMode.PAUSE) {
+            try (Jedis replica = new Jedis(pools.slaveAddress(), clientConfig)) {
+                String info = replica.info("replication");
+                originalMasterHost = infoString(info, "master_host");
+                originalMasterPort = (int) ReadRouter.infoField(info, "master_port");
+            }
+        }
+        Writer writer = new Writer();
+        AtomicBoolean stop = new AtomicBoolean();
+        long faultNanos;
+        try (FailoverCoordinator coordinator = new FailoverCoordinator(pools.masterAddress(),
+                pools.replicaAddresses(), pingIntervalNanos, downAfterNanos, clientTimeoutNanos,
+                TimeUnit.NANOSECONDS)) {
+            coordinator.start();
+            Thread thread = new Thread(() -> runWriter(coordinator, writer, stop), "failover-writer");
+            thread.start();
+            try {
+                TimeUnit.NANOSECONDS.sleep(beforeNanos);
+                faultNanos = injectFault();
+                long deadline = faultNanos + timeoutNanos;
+                coordinator.awaitPromotion(timeoutNanos, TimeUnit.NANOSECONDS);
+                while (writer.firstNewAckNanos == 0 && System.nanoTime() < deadline) {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                }
+                if (writer.firstNewAckNanos != 0) {
+                    TimeUnit.NANOSECONDS.sleep(afterNanos);
+                }
+            } finally {
+                stop.set(true);
+                thread.join();
+            }
+            List<Long> lostSamples = new ArrayList<>();
+            long lost = coordinator.promotedNanos() == 0 ? -1
+                : verify(coordinator.currentMaster(), writer.acked, lostSamples);
+            Result result = new Result(mode, writer, coordinator, faultNanos, lost, lostSamples);
+            if (mode == FaultMode.PAUSE) {
+                restoreDocker(originalMasterHost, originalMasterPort, writer.attempted);
+            }
+            return result;
+        }
+    }
+
+    private long injectFault() {
+        switch (mode) {
+            case KILL: {
+                long now = System.nanoTime();
+                pools.standInTopology().master().close();
+                return now;
+            }
+            case PARTITION: {
+                NetworkFaults faults = pools.faults();
+                long now = System.nanoTime();
+                faults.master().partition(FaultProxy.PartitionMode.BLACKHOLE);
+                if (faults.replication() != null) {
+                    faults.replication().partition(FaultProxy.PartitionMode.BLACKHOLE);
+                }
+                return now;
+            }
+            default: {
+                try (Jedis master = new Jedis(pools.masterAddress(), clientConfig)) {
+                    long now = System.nanoTime();
+                    // 冻结到实验结束，恢复拓扑时再解除
+                    master.clientPause(TimeUnit.NANOSECONDS.toMillis(timeoutNanos + afterNanos) + 1000,
+                        ClientPauseMode.ALL);
+                    return now;
+                }
+            }
+        }
+    }
+
+    /**
+     * 固定速率写入，落后于计划时不补发；每次写前检查协调者发布的地址，变化时重连
+     */
+    private void runWriter(FailoverCoordinator coordinator, Writer writer, AtomicBoolean stop) {
+        Jedis jedis = null;
+        HostAndPort connected = null;
+        long next = System.nanoTime();
+        long seq = 0;
+        while (!stop.get()) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            next = Math.max(next + writeIntervalNanos, System.nanoTime());
+            HostAndPort target = coordinator.currentMaster();
+            boolean newMaster = !target.equals(coordinator.originalMaster());
+            long s = ++seq;
+            writer.attempted++;
+            try {
+                if (jedis == null || !target.equals(connected)) {
+                    closeQuietly(jedis);
+                    jedis = null;
+                    // Jedis在构造时就建立连接
+                    jedis = new Jedis(target, clientConfig);
+                    connected = target;
+                }
+                jedis.set(keyPrefix + s, Long.toString(s));
+                long now = System.nanoTime();
+                writer.acked.add(s);
+                if (newMaster) {
+                    writer.ackedOnNewMaster++;
+                    if (writer.firstNewAckNanos == 0) {
+                        writer.firstNewAckNanos = now;
+                    }
+                } else {
+                    writer.lastOldAckNanos = now;
+                }
+            } catch (RuntimeException e) {
+                if (refused(e)) {
+                    writer.failed++;
+                } else {
+                    writer.unknown++;
+                }
+                closeQuietly(jedis);
+                jedis = null;
+            }
+        }
+        closeQuietly(jedis);
+    }
+
+    /**
+     * 连接被拒绝时Jedis把ConnectException挂在cause或suppressed上
+     */
+    private static boolean refused(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException) {
+                return true;
+            }
+            for (Throwable suppressed : t.getSuppressed()) {
+                if (refused(suppressed)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 用MGET分批核对已确认的写，返回新Master上缺失的个数
+     */
+    private long verify(HostAndPort master, List<Long> acked, List<Long> lostSamples) {
+        long lost = 0;
+        try (Jedis jedis = new Jedis(master, clientConfig)) {
+            for (int from = 0; from < acked.size(); from += VERIFY_BATCH) {
+                List<Long> batch = acked.subList(from, Math.min(acked.size(), from + VERIFY_BATCH));
+                String[] keys = batch.stream().map(s -> keyPrefix + s).toArray(String[]::new);
+                List<String> values = jedis.mget(keys);
+                for (int i = 0; i < batch.size(); i++) {
+                    if (values.get(i) == null) {
+                        lost++;
+                        if (lostSamples.size() < LOST_SAMPLES) {
+                            lostSamples.add(batch.get(i));
+                        }
+                    }
+                }
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * 解除冻结，把提升过的副本重新挂回原Master（全量同步会覆盖它切换期间的写入），并删除实验键
+     */
+    private void restoreDocker(String masterHost, int masterPort, long written) {
+        try (Jedis master = new Jedis(pools.masterAddress(), clientConfig);
+             Jedis replica = new Jedis(pools.slaveAddress(), clientConfig)) {
+            master.clientUnpause();
+            replica.replicaof(masterHost, masterPort);
+            for (long from = 1; from <= written; from += VERIFY_BATCH) {
+                List<String> keys = new ArrayList<>();
+                for (long s = from; s < from + VERIFY_BATCH; s++) {
+                    keys.add(keyPrefix + s);
+                }
+                master.del(keys.toArray(new String[0]));
+            }
+        } catch (RuntimeException e) {
+            System.out.println("⚠️  恢复docker主从拓扑失败，请手动执行 REPLICAOF " + masterHost + " " + masterPort
+                + ": " + e.getMessage());
+        }
+    }
+
+    private static String infoString(String info, String field) {
+        for (String line : info.split("\r\n")) {
+            if (line.startsWith(field + ":")) {
+                return line.substring(field.length() + 1).trim();
+            }
+        }
+        throw new IllegalStateException("INFO中没有字段: " + field);
+    }
+
+    private static void closeQuietly(Jedis jedis) {
+        if (jedis != null) {
+            try {
+                jedis.close();
+            } catch (RuntimeException ignored) {
+                // 连接已失效
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
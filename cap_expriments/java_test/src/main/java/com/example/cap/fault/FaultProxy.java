@@ -0,0 +1,482 @@
+package com.example.cap.fault;
+
+import com.example.cap.jfr.FaultTransitionEvent;
+import com.example.cap.metrics.LiveMetrics;
+import redis.clients.jedis.HostAndPort;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于NIO Selector的TCP故障代理：监听127.0.0.1上的临时端口，把每条连接转发到上游节点，
+ * 可以在运行中通过API注入单向延迟和抖动、带宽限制、定时停顿和网络分区。
+ * 所有连接由一个选择器线程处理，数据按到期时间排队，同一方向上不会乱序；定时精度为毫秒级。
+ */
+public class FaultProxy implements AutoCloseable {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // 单方向积压上限，超过后暂停读取源端，让TCP背压传回发送方
+    private static final long MAX_BUFFERED_BYTES = 8L * 1024 * 1024;
+
+    public enum PartitionMode {
+        /**
+         * 丢弃式分区：连接保持，数据滞留在代理中，恢复后按序送达（类似docker pause或iptables DROP）
+         */
+        BLACKHOLE,
+        /**
+         * 拒绝式分区：断开现有连接并拒绝新连接，恢复后客户端需要重连
+         */
+        RESET
+    }
+
+    private final String name;
+    private final InetSocketAddress upstream;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Set<Session> sessions = new HashSet<>(); // 只在选择器线程访问
+    private final AtomicLong bytesForwarded = new AtomicLong();
+    private final AtomicLong connectionsAccepted = new AtomicLong();
+    private final AtomicLong connectionsRefused = new AtomicLong();
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+    private volatile long bytesPerSec;
+    private volatile long stallUntilNanos;
+    private volatile PartitionMode partition;
+    private volatile boolean running = true;
+
+    public FaultProxy(String name, HostAndPort upstream) throws IOException {
+        this.name = name;
+        this.upstream = new InetSocketAddress(upstream.getHost(), upstream.getPort());
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        LiveMetrics.register("cap_fault_partitioned", "gauge", "故障代理当前是否处于分区状态",
+            LiveMetrics.labels("proxy", name), () -> partition == null ? 0 : 1);
+        Thread thread = new Thread(this::eventLoop, "fault-proxy-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HostAndPort address() {
+        InetSocketAddress local = (InetSocketAddress) server.socket().getLocalSocketAddress();
+        return new HostAndPort(local.getAddress().getHostAddress(), local.getPort());
+    }
+
+    // ==================== 故障控制（任意线程调用） ====================
+
+    /**
+     * 每个方向上的单向延迟，实际延迟在 latency ± jitter 内均匀分布，往返时间约为两倍
+     */
+    public void setLatency(long latency, long jitter, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+        this.jitterNanos = unit.toNanos(jitter);
+        transition("latency");
+        selector.wakeup();
+    }
+
+    /**
+     * 每个方向上的带宽上限（字节/秒），0表示不限
+     */
+    public void setBandwidth(long bytesPerSec) {
+        this.bytesPerSec = bytesPerSec;
+        transition("bandwidth");
+        selector.wakeup();
+    }
+
+    /**
+     * 在指定时长内暂停所有方向的投递，期间的数据积压在代理中，到期后一次性送出
+     */
+    public void stall(long duration, TimeUnit unit) {
+        this.stallUntilNanos = System.nanoTime() + unit.toNanos(duration);
+        transition("stall");
+        selector.wakeup();
+    }
+
+    public void partition(PartitionMode mode) {
+        this.partition = mode;
+        transition("partition_" + mode.name().toLowerCase());
+        if (mode == PartitionMode.RESET) {
+            tasks.add(this::closeAllSessions);
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * 解除分区和停顿，保留延迟和带宽设置
+     */
+    public void heal() {
+        this.partition = null;
+        this.stallUntilNanos = 0;
+        transition("heal");
+        selector.wakeup();
+    }
+
+    /**
+     * 恢复为无故障的透明转发
+     */
+    public void clear() {
+        this.latencyNanos = 0;
+        this.jitterNanos = 0;
+        this.bytesPerSec = 0;
+        heal();
+    }
+
+    /**
+     * 状态切换同时计入实时指标和JFR事件
+     */
+    private void transition(String kind) {
+        LiveMetrics.countFaultTransition(name, kind);
+        FaultTransitionEvent event = new FaultTransitionEvent();
+        if (event.shouldCommit()) {
+            event.proxy = name;
+            event.transition = kind;
+            event.state = describe();
+            event.commit();
+        }
+    }
+
+    public PartitionMode getPartition() {
+        return partition;
+    }
+
+    public long getBytesForwarded() {
+        return bytesForwarded.get();
+    }
+
+    public long getConnectionsAccepted() {
+        return connectionsAccepted.get();
+    }
+
+    public long getConnectionsRefused() {
+        return connectionsRefused.get();
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder(name).append(" -> ").append(upstream.getPort()).append(": ");
+        PartitionMode mode = partition;
+        if (mode != null) {
+            sb.append("分区(").append(mode).append(") ");
+        }
+        if (stallUntilNanos - System.nanoTime() > 0) {
+            sb.append("停顿中 ");
+        }
+        sb.append(String.format("延迟%.1fms±%.1fms", latencyNanos / 1e6, jitterNanos / 1e6));
+        if (bytesPerSec > 0) {
+            sb.append(String.format(" 带宽%.1fKB/s", bytesPerSec / 1024.0));
+        }
+        return sb.toString();
+    }
+
+    // ==================== 选择器线程 ====================
+
+    private final class Session {
+        final SocketChannel client;
+        final SocketChannel server;
+        final Pipe toServer;
+        final Pipe toClient;
+        boolean connected;
+
+        Session(SocketChannel client, SocketChannel server) {
+            this.client = client;
+            this.server = server;
+            this.toServer = new Pipe(this, client, server);
+            this.toClient = new Pipe(this, server, client);
+        }
+    }
+
+    private static final class Chunk {
+        final ByteBuffer data;
+        final long dueNanos;
+
+        Chunk(ByteBuffer data, long dueNanos) {
+            this.data = data;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    /**
+     * 连接上的一个方向：从source读出的数据按到期时间排队，写入sink
+     */
+    private final class Pipe {
+        final Session session;
+        final SocketChannel source;
+        final SocketChannel sink;
+        final ArrayDeque<Chunk> queue = new ArrayDeque<>();
+        long buffered;
+        long lastDueNanos;
+        long nextSlotNanos;
+        boolean eof;
+
+        Pipe(Session session, SocketChannel source, SocketChannel sink) {
+            this.session = session;
+            this.source = source;
+            this.sink = sink;
+        }
+    }
+
+    private void eventLoop() {
+        while (running) {
+            try {
+                long timeoutMillis = nextWakeupMillis();
+                if (timeoutMillis < 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select(timeoutMillis);
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+                deliverAll();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.printf("❌ 故障代理%s异常: %s%n", name, e.getMessage());
+                }
+            }
+        }
+        closeAllSessions();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Session session = (Session) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                session.server.finishConnect();
+                session.connected = true;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+            if (key.isValid() && key.isWritable()) {
+                key.interestOpsAnd(~SelectionKey.OP_WRITE);
+                deliver(key.channel() == session.server ? session.toServer : session.toClient);
+            }
+            if (key.isValid() && key.isReadable()) {
+                read(key.channel() == session.client ? session.toServer : session.toClient);
+            }
+        } catch (IOException e) {
+            closeSession(session);
+        }
+    }
+
+    private void accept() {
+        SocketChannel client = null;
+        try {
+            client = server.accept();
+            if (client == null) {
+                return;
+            }
+            if (partition == PartitionMode.RESET) {
+                connectionsRefused.incrementAndGet();
+                client.close();
+                return;
+            }
+            connectionsAccepted.incrementAndGet();
+            client.configureBlocking(false);
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SocketChannel upstreamChannel = SocketChannel.open();
+            upstreamChannel.configureBlocking(false);
+            upstreamChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Session session = new Session(client, upstreamChannel);
+            sessions.add(session);
+            client.register(selector, SelectionKey.OP_READ, session);
+            if (upstreamChannel.connect(upstream)) {
+                session.connected = true;
+                upstreamChannel.register(selector, SelectionKey.OP_READ, session);
+            } else {
+                upstreamChannel.register(selector, SelectionKey.OP_CONNECT, session);
+            }
+        } catch (IOException e) {
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                    // 已关闭
+                }
+            }
+        }
+    }
+
+    private void read(Pipe pipe) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        int n = pipe.source.read(buffer);
+        if (n < 0) {
+            pipe.eof = true;
+            pipe.source.keyFor(selector).interestOpsAnd(~SelectionKey.OP_READ);
+            return;
+        }
+        if (n == 0) {
+            return;
+        }
+        buffer.flip();
+        long now = System.nanoTime();
+        long delay = latencyNanos;
+        long jitter = jitterNanos;
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+        }
+        long due = Math.max(pipe.lastDueNanos, now + Math.max(0, delay));
+        long bandwidth = bytesPerSec;
+        if (bandwidth > 0) {
+            due = Math.max(due, pipe.nextSlotNanos);
+            pipe.nextSlotNanos = due + n * 1_000_000_000L / bandwidth;
+        }
+        pipe.lastDueNanos = due;
+        pipe.queue.add(new Chunk(buffer, due));
+        pipe.buffered += n;
+        if (pipe.buffered >= MAX_BUFFERED_BYTES) {
+            pipe.source.keyFor(selector).interestOpsAnd(~SelectionKey.OP_READ);
+        }
+    }
+
+    private void deliverAll() {
+        for (Session session : new ArrayList<>(sessions)) {
+            try {
+                deliver(session.toServer);
+                deliver(session.toClient);
+            } catch (IOException e) {
+                closeSession(session);
+            }
+        }
+    }
+
+    private void deliver(Pipe pipe) throws IOException {
+        if (!pipe.session.connected || !sessions.contains(pipe.session)) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (partition != null || stallUntilNanos - now > 0) {
+            return;
+        }
+        Chunk chunk;
+        while ((chunk = pipe.queue.peek()) != null && chunk.dueNanos - now <= 0) {
+            int written = pipe.sink.write(chunk.data);
+            bytesForwarded.addAndGet(written);
+            pipe.buffered -= written;
+            if (chunk.data.hasRemaining()) {
+                pipe.sink.keyFor(selector).interestOpsOr(SelectionKey.OP_WRITE);
+                return;
+            }
+            pipe.queue.poll();
+        }
+        SelectionKey sourceKey = pipe.source.keyFor(selector);
+        if (!pipe.eof && pipe.buffered < MAX_BUFFERED_BYTES / 2 && sourceKey != null && sourceKey.isValid()) {
+            sourceKey.interestOpsOr(SelectionKey.OP_READ);
+        }
+        if (pipe.eof && pipe.queue.isEmpty()) {
+            closeSession(pipe.session);
+        }
+    }
+
+    /**
+     * 距离下一个到期数据块的毫秒数；0表示无限等待，-1表示立即处理。
+     * 正在等待OP_WRITE的管道不参与计算，由可写事件唤醒，否则套接字排空前会反复selectNow空转
+     */
+    private long nextWakeupMillis() {
+        if (partition != null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+        for (Session session : sessions) {
+            next = Math.min(next, headDue(session.toServer));
+            next = Math.min(next, headDue(session.toClient));
+        }
+        if (next == Long.MAX_VALUE) {
+            return 0;
+        }
+        next = Math.max(next, stallUntilNanos);
+        long remaining = next - now;
+        if (remaining <= 0) {
+            return -1;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining + 999_999));
+    }
+
+    private long headDue(Pipe pipe) {
+        Chunk head = pipe.queue.peek();
+        if (head == null || !pipe.session.connected) {
+            return Long.MAX_VALUE;
+        }
+        SelectionKey sinkKey = pipe.sink.keyFor(selector);
+        if (sinkKey != null && sinkKey.isValid() && (sinkKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
+            return Long.MAX_VALUE;
+        }
+        return head.dueNanos;
+    }
+
+    private void closeSession(Session session) {
+        if (!sessions.remove(session)) {
+            return;
+        }
+        closeQuietly(session.client);
+        closeQuietly(session.server);
+    }
+
+    private void closeAllSessions() {
+        List<Session> all = new ArrayList<>(sessions);
+        for (Session session : all) {
+            closeSession(session);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LiveMetrics.unregister("cap_fault_partitioned", LiveMetrics.labels("proxy", name));
+        selector.wakeup();
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+    }
+}
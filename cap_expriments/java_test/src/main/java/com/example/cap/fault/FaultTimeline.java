@@ -0,0 +1,108 @@
+package com.example.cap.fault;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 故障时间线：按相对启动时刻的毫秒偏移依次执行故障动作，记录每一步的实际执行时刻，
+ * 便于和同一时间段内的负载测试结果对齐。
+ */
+public class FaultTimeline {
+
+    public static final class Transition {
+        public final String label;
+        public final long plannedMillis;
+        public final long actualNanos;
+        public final long wallClockMillis;
+
+        Transition(String label, long plannedMillis, long actualNanos, long wallClockMillis) {
+            this.label = label;
+            this.plannedMillis = plannedMillis;
+            this.actualNanos = actualNanos;
+            this.wallClockMillis = wallClockMillis;
+        }
+
+        /**
+         * 实际执行时刻相对时间线启动的毫秒数
+         */
+        public double actualMillis(long startNanos) {
+            return (actualNanos - startNanos) / 1e6;
+        }
+    }
+
+    private static final class Step {
+        final long offsetMillis;
+        final String label;
+        final Runnable action;
+
+        Step(long offsetMillis, String label, Runnable action) {
+            this.offsetMillis = offsetMillis;
+            this.label = label;
+            this.action = action;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final List<Transition> transitions = new CopyOnWriteArrayList<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile long startNanos;
+
+    public FaultTimeline at(long offsetMillis, String label, Runnable action) {
+        steps.add(new Step(offsetMillis, label, action));
+        return this;
+    }
+
+    /**
+     * 在后台线程上开始执行，返回启动时刻（System.nanoTime）
+     */
+    public long start() {
+        steps.sort(Comparator.comparingLong(step -> step.offsetMillis));
+        startNanos = System.nanoTime();
+        Thread thread = new Thread(this::runSteps, "fault-timeline");
+        thread.setDaemon(true);
+        thread.start();
+        return startNanos;
+    }
+
+    private void runSteps() {
+        try {
+            for (Step step : steps) {
+                long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(step.offsetMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+                transitions.add(new Transition(step.label, step.offsetMillis, System.nanoTime(),
+                    System.currentTimeMillis()));
+                step.action.run();
+            }
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    public void await() throws InterruptedException {
+        finished.await();
+    }
+
+    public long startNanos() {
+        return startNanos;
+    }
+
+    public List<Transition> transitions() {
+        return transitions;
+    }
+
+    public void printReport() {
+        System.out.println("⏱️  故障时间线（计划 vs 实际，单位ms）:");
+        for (Transition t : transitions) {
+            double actual = t.actualMillis(startNanos);
+            System.out.printf("  %8d %10.2f %+8.2f  %s%n", t.plannedMillis, actual, actual - t.plannedMillis, t.label);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.cap.fault;
+
+import com.example.cap.standin.StandInNode;
+import com.example.cap.standin.StandInTopology;
+import redis.clients.jedis.HostAndPort;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实验拓扑中的故障注入点：客户端→Master、客户端→Slave两条路径总是经过代理；
+ * 目标为进程内替身时，Master→Replica的复制链路也改走代理。
+ */
+public class NetworkFaults implements AutoCloseable {
+    private static final long RELINK_TIMEOUT_SECONDS = 5;
+
+    private final FaultProxy master;
+    private final FaultProxy slave;
+    private final FaultProxy replication;
+
+    private NetworkFaults(FaultProxy master, FaultProxy slave, FaultProxy replication) {
+        this.master = master;
+        this.slave = slave;
+        this.replication = replication;
+    }
+
+    /**
+     * 为客户端路径建立代理；standIn不为null时把其第一个Replica的复制链路重连到代理上
+     */
+    public static NetworkFaults wrap(HostAndPort masterAddr, HostAndPort slaveAddr, StandInTopology standIn)
+            throws IOException, InterruptedException {
+        FaultProxy master = new FaultProxy("client-master", masterAddr);
+        FaultProxy slave = null;
+        FaultProxy replication = null;
+        try {
+            slave = new FaultProxy("client-slave", slaveAddr);
+            if (standIn != null) {
+                replication = new FaultProxy("master-replica", standIn.master().address());
+                StandInNode replica = standIn.replica();
+                replica.replicaOf(replication.address());
+                if (!replica.awaitMasterLink(RELINK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IOException("替身Replica未能经由故障代理重新同步");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            master.close();
+            if (slave != null) {
+                slave.close();
+            }
+            if (replication != null) {
+                replication.close();
+            }
+            throw e;
+        }
+        return new NetworkFaults(master, slave, replication);
+    }
+
+    public FaultProxy master() {
+        return master;
+    }
+
+    public FaultProxy slave() {
+        return slave;
+    }
+
+    /**
+     * 复制链路代理，连接docker主从时为null（容器间流量无法经过本机代理）
+     */
+    public FaultProxy replication() {
+        return replication;
+    }
+
+    public void clearAll() {
+        master.clear();
+        slave.clear();
+        if (replication != null) {
+            replication.clear();
+        }
+    }
+
+    public void printStatus() {
+        System.out.println("🧨 故障代理状态:");
+        System.out.println("- " + master.describe());
+        System.out.println("- " + slave.describe());
+        if (replication != null) {
+            System.out.println("- " + replication.describe());
+        }
+    }
+
+    @Override
+    public void close() {
+        master.close();
+        slave.close();
+        if (replication != null) {
+            replication.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.cap.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jepsen风格的操作历史：每个并发操作在发起时 invoke，结束时 ok / fail / info，记录发起和完成的纳秒时间戳。
+ * 键和值都驻留成int编号，操作按分段的原始类型数组存放，百万级操作只占几十MB。
+ * 约定：fail表示操作确定没有生效（只对写有意义），info表示结果未知（超时、连接断开），
+ * 写出现info后同一个逻辑进程应换一个新的进程编号再继续，和Jepsen的处理一致。
+ * 记录可以多线程并发进行；交给 {@link LinearizabilityChecker} 之前需等所有客户端线程结束。
+ */
+public class History {
+    public enum Kind { READ, WRITE }
+
+    public enum Status { PENDING, OK, FAIL, INFO }
+
+    // 值编号0表示读到不存在（nil）
+    static final int NIL = 0;
+
+    private static final int SEGMENT_BITS = 14;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final Kind[] KINDS = Kind.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private static final class Segment {
+        final long[] invoke = new long[SEGMENT_SIZE];
+        final long[] complete = new long[SEGMENT_SIZE];
+        final int[] process = new int[SEGMENT_SIZE];
+        final int[] key = new int[SEGMENT_SIZE];
+        final int[] value = new int[SEGMENT_SIZE];
+        final byte[] kind = new byte[SEGMENT_SIZE];
+        final byte[] status = new byte[SEGMENT_SIZE];
+    }
+
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Segment[] segments = new Segment[16];
+    private final Map<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private final List<String> keyNames = new ArrayList<>();
+    private final Map<String, Integer> valueIds = new ConcurrentHashMap<>();
+    private final List<String> valueNames = new ArrayList<>();
+    private final long origin = System.nanoTime();
+
+    public History() {
+        valueNames.add(null);
+    }
+
+    /**
+     * 发起一次操作，返回操作编号；读操作的value传null，读到的值在ok时给出
+     */
+    public int invoke(int process, Kind kind, String key, String value) {
+        int id = size.getAndIncrement();
+        Segment s = segment(id);
+        int i = id & SEGMENT_MASK;
+        s.process[i] = process;
+        s.key[i] = intern(key, keyIds, keyNames);
+        s.value[i] = kind == Kind.WRITE ? valueId(value) : NIL;
+        s.kind[i] = (byte) kind.ordinal();
+        s.status[i] = (byte) Status.PENDING.ordinal();
+        s.invoke[i] = System.nanoTime();
+        return id;
+    }
+
+    /**
+     * 写成功
+     */
+    public void ok(int id) {
+        complete(id, Status.OK);
+    }
+
+    /**
+     * 读成功，value为读到的值（null表示不存在）
+     */
+    public void ok(int id, String value) {
+        segment(id).value[id & SEGMENT_MASK] = valueId(value);
+        complete(id, Status.OK);
+    }
+
+    /**
+     * 操作确定没有生效
+     */
+    public void fail(int id) {
+        complete(id, Status.FAIL);
+    }
+
+    /**
+     * 结果未知：写可能生效也可能没有
+     */
+    public void info(int id) {
+        complete(id, Status.INFO);
+    }
+
+    private void complete(int id, Status status) {
+        Segment s = segment(id);
+        int i = id & SEGMENT_MASK;
+        s.complete[i] = System.nanoTime();
+        s.status[i] = (byte) status.ordinal();
+    }
+
+    private Segment segment(int id) {
+        int index = id >>> SEGMENT_BITS;
+        Segment[] current = segments;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        synchronized (this) {
+            current = segments;
+            if (index >= current.length) {
+                Segment[] grown = new Segment[Math.max(current.length * 2, index + 1)];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[index] == null) {
+                current[index] = new Segment();
+            }
+            segments = current;
+            return current[index];
+        }
+    }
+
+    private int valueId(String value) {
+        return value == null ? NIL : intern(value, valueIds, valueNames);
+    }
+
+    private static int intern(String name, Map<String, Integer> ids, List<String> names) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            return ids.computeIfAbsent(name, k -> {
+                names.add(k);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int keyCount() {
+        return keyNames.size();
+    }
+
+    int process(int id) {
+        return segments[id >>> SEGMENT_BITS].process[id & SEGMENT_MASK];
+    }
+
+    int key(int id) {
+        return segments[id >>> SEGMENT_BITS].key[id & SEGMENT_MASK];
+    }
+
+    int value(int id) {
+        return segments[id >>> SEGMENT_BITS].value[id & SEGMENT_MASK];
+    }
+
+    Kind kind(int id) {
+        return KINDS[segments[id >>> SEGMENT_BITS].kind[id & SEGMENT_MASK]];
+    }
+
+    Status status(int id) {
+        return STATUSES[segments[id >>> SEGMENT_BITS].status[id & SEGMENT_MASK]];
+    }
+
+    long invokeNanos(int id) {
+        return segments[id >>> SEGMENT_BITS].invoke[id & SEGMENT_MASK];
+    }
+
+    long completeNanos(int id) {
+        return segments[id >>> SEGMENT_BITS].complete[id & SEGMENT_MASK];
+    }
+
+    String keyName(int key) {
+        return keyNames.get(key);
+    }
+
+    String valueName(int value) {
+        return valueNames.get(value);
+    }
+
+    /**
+     * 一行可读的操作描述：进程、类型、键值、相对记录开始的时间区间和状态
+     */
+    public String describe(int id) {
+        Status status = status(id);
+        String range = status == Status.PENDING
+            ? String.format("[%.3f, …)", (invokeNanos(id) - origin) / 1e6)
+            : String.format("[%.3f, %.3f]", (invokeNanos(id) - origin) / 1e6, (completeNanos(id) - origin) / 1e6);
+        return String.format("进程%-3d %s %s %s %s ms %s", process(id), kind(id) == Kind.WRITE ? "写" : "读",
+            keyName(key(id)), valueName(value(id)), range, status);
+    }
+}
@@ -0,0 +1,630 @@
+package com.example.cap.history;
+
+import com.example.cap.results.ResultRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按寄存器模型（每个键一个读写寄存器）检查 {@link History}：
+ * <ul>
+ *   <li>线性一致性：Wing &amp; Gong 的回溯搜索，加上 Lowe 的即时线性化和"已线性化集合 + 状态"记忆化。
+ *       线性一致性可按对象组合，所以逐键分区检查与整体检查等价。</li>
+ *   <li>顺序一致性：只要求保持每个进程内的顺序，不要求实时顺序。顺序一致性不能按对象组合，
+ *       逐键检查只是必要条件：逐键不通过一定违反，逐键通过不代表整体满足。</li>
+ * </ul>
+ * 已线性化集合用Zobrist哈希（每个操作一个随机64位数异或）表示，记忆化只存哈希，误判概率约为 状态数²/2⁶⁴。
+ * 键的初始值视为未知：第一次读到什么都合法，之后就固定下来。
+ * 单个键的搜索状态数超过 -Dcap.history.max.states（默认一百万）时放弃，记为"未定"而不是通过或不通过。
+ * 判定总是在整个键上做完整搜索；确定不通过之后才缩减反例：先截到最短的失败前缀（仅线性一致性），
+ * 再逐段删除操作。缩减出的反例只用于展示，不参与判定。
+ */
+public class LinearizabilityChecker {
+    public enum Model {
+        LINEARIZABLE("线性一致性"),
+        SEQUENTIAL("顺序一致性（逐键）");
+
+        private final String label;
+
+        Model(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final int UNKNOWN = -1;
+    private static final int ILLEGAL = -2;
+    // 单个键的搜索结果
+    private static final int PASS = 1;
+    private static final int FAIL = 0;
+    private static final int UNDECIDED = -1;
+    private static final long MAX_STATES = Long.getLong("cap.history.max.states", 1_000_000);
+    private static final long INFINITY = Long.MAX_VALUE;
+    // 单个键的反例缩减时间上限，超时就输出当前缩减到的结果
+    private static final long SHRINK_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_COUNTEREXAMPLES = 3;
+
+    private final Model model;
+
+    public LinearizabilityChecker(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * 一个不通过的键：分区内参与检查的操作数和缩减后的反例（History中的操作编号，按发起时间排序）
+     */
+    public static final class Violation {
+        public final String key;
+        public final int operations;
+        public final int[] counterexample;
+
+        Violation(String key, int operations, int[] counterexample) {
+            this.key = key;
+            this.operations = operations;
+            this.counterexample = counterexample;
+        }
+    }
+
+    public static final class Report {
+        public final Model model;
+        public final int keys;
+        public final long operations;
+        public final long nanos;
+        public final int violatingKeys;
+        public final int undecidedKeys;
+        public final List<Violation> violations;
+
+        Report(Model model, int keys, long operations, long nanos, int violatingKeys, int undecidedKeys,
+               List<Violation> violations) {
+            this.model = model;
+            this.keys = keys;
+            this.operations = operations;
+            this.nanos = nanos;
+            this.violatingKeys = violatingKeys;
+            this.undecidedKeys = undecidedKeys;
+            this.violations = violations;
+        }
+
+        public boolean ok() {
+            return violatingKeys == 0;
+        }
+
+        public ResultRecord toRecord(String scenario) {
+            return ResultRecord.of(scenario)
+                .param("model", model.name())
+                .metric("keys", keys)
+                .metric("operations", operations)
+                .metric("violating_keys", violatingKeys)
+                .metric("undecided_keys", undecidedKeys)
+                .metric("check_ms", nanos / 1e6);
+        }
+
+        public void print(History history) {
+            System.out.printf("%s %s: %d 个键, %d 个操作, 用时 %.1f ms, 不通过的键 %d 个%s%n",
+                ok() ? (undecidedKeys == 0 ? "✅" : "❔") : "❌", model.label(), keys, operations, nanos / 1e6,
+                violatingKeys, undecidedKeys == 0 ? "" : "，搜索超出上限未定的键 " + undecidedKeys + " 个");
+            for (Violation v : violations) {
+                System.out.printf("   🔎 键 %s（%d 个操作）的最小反例:%n", v.key, v.operations);
+                for (int id : v.counterexample) {
+                    System.out.println("      " + history.describe(id));
+                }
+            }
+        }
+    }
+
+    public Report check(History history) {
+        long start = System.nanoTime();
+        List<Partition> partitions = partition(history);
+        long operations = 0;
+        int violating = 0;
+        int undecided = 0;
+        List<Violation> violations = new ArrayList<>();
+        for (Partition p : partitions) {
+            operations += p.size;
+            int verdict = search(p, model);
+            if (verdict != FAIL) {
+                undecided += verdict == UNDECIDED ? 1 : 0;
+                continue;
+            }
+            violating++;
+            if (violations.size() < MAX_COUNTEREXAMPLES) {
+                violations.add(new Violation(history.keyName(history.key(p.ids[0])), p.size, counterexample(p)));
+            }
+        }
+        return new Report(model, partitions.size(), operations, System.nanoTime() - start, violating, undecided,
+            violations);
+    }
+
+    /**
+     * 一个键上参与检查的操作。失败的写和没有成功的读不影响寄存器状态，直接丢弃；
+     * 结果未知的写完成时间视为无穷大（可以在之后任何时刻生效，或者从未生效）
+     */
+    private static final class Partition {
+        final int size;
+        final int[] ids;
+        final long[] call;
+        final long[] ret;
+        final int[] value;
+        final boolean[] write;
+        final int[] process;
+
+        Partition(int size) {
+            this.size = size;
+            ids = new int[size];
+            call = new long[size];
+            ret = new long[size];
+            value = new int[size];
+            write = new boolean[size];
+            process = new int[size];
+        }
+
+        /**
+         * 按下标列表取子集
+         */
+        Partition subset(int[] indices, int count) {
+            Partition sub = new Partition(count);
+            for (int j = 0; j < count; j++) {
+                sub.copy(j, this, indices[j]);
+            }
+            return sub;
+        }
+
+        void copy(int j, Partition from, int i) {
+            ids[j] = from.ids[i];
+            call[j] = from.call[i];
+            ret[j] = from.ret[i];
+            value[j] = from.value[i];
+            write[j] = from.write[i];
+            process[j] = from.process[i];
+        }
+
+        /**
+         * 截取时刻t的历史前缀：t之前发起的操作；到t还没完成的读丢弃，写变成结果未知
+         */
+        Partition prefix(long t) {
+            int count = 0;
+            for (int j = 0; j < size; j++) {
+                if (call[j] <= t && (write[j] || ret[j] <= t)) {
+                    count++;
+                }
+            }
+            Partition p = new Partition(count);
+            int k = 0;
+            for (int j = 0; j < size; j++) {
+                if (call[j] <= t && (write[j] || ret[j] <= t)) {
+                    p.copy(k, this, j);
+                    if (p.ret[k] > t) {
+                        p.ret[k] = INFINITY;
+                    }
+                    k++;
+                }
+            }
+            return p;
+        }
+    }
+
+    private static List<Partition> partition(History history) {
+        int n = history.size();
+        int[] counts = new int[history.keyCount()];
+        for (int id = 0; id < n; id++) {
+            if (included(history, id)) {
+                counts[history.key(id)]++;
+            }
+        }
+        Partition[] byKey = new Partition[counts.length];
+        int[] fill = new int[counts.length];
+        for (int id = 0; id < n; id++) {
+            if (!included(history, id)) {
+                continue;
+            }
+            int key = history.key(id);
+            Partition p = byKey[key];
+            if (p == null) {
+                p = byKey[key] = new Partition(counts[key]);
+            }
+            int j = fill[key]++;
+            p.ids[j] = id;
+            p.call[j] = history.invokeNanos(id);
+            p.ret[j] = history.status(id) == History.Status.OK ? history.completeNanos(id) : INFINITY;
+            p.value[j] = history.value(id);
+            p.write[j] = history.kind(id) == History.Kind.WRITE;
+            p.process[j] = history.process(id);
+        }
+        List<Partition> partitions = new ArrayList<>();
+        for (Partition p : byKey) {
+            if (p != null) {
+                partitions.add(p);
+            }
+        }
+        return partitions;
+    }
+
+    private static boolean included(History history, int id) {
+        History.Status status = history.status(id);
+        if (history.kind(id) == History.Kind.READ) {
+            return status == History.Status.OK;
+        }
+        return status != History.Status.FAIL;
+    }
+
+    private static int search(Partition p, Model model) {
+        return model == Model.LINEARIZABLE ? linearizable(p) : sequential(p);
+    }
+
+    /**
+     * 缩减反例时只有确定不通过才算失败
+     */
+    private static boolean fails(Partition p, Model model) {
+        return search(p, model) == FAIL;
+    }
+
+    /**
+     * 不通过的键的最小反例，按发起时间排序的History操作编号
+     */
+    private int[] counterexample(Partition p) {
+        Partition witness = model == Model.SEQUENTIAL ? sequentialWitness(p) : null;
+        Partition result = shrink(witness != null ? witness : p, model);
+        Integer[] order = new Integer[result.size];
+        for (int j = 0; j < result.size; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(result.call[a], result.call[b]));
+        return Arrays.stream(order).mapToInt(j -> result.ids[j]).toArray();
+    }
+
+    /**
+     * 线性一致性的最小反例如果本身就违反顺序一致性，返回它，否则返回null。
+     * 只在整个键已经确定违反顺序一致性之后用来挑一个短的反例：截前缀会丢掉之后才发起的写，
+     * 而顺序一致性允许读到这样的写，所以这个子历史违反并不能说明整个键违反
+     */
+    private static Partition sequentialWitness(Partition p) {
+        Partition witness = shrink(p, Model.LINEARIZABLE);
+        return fails(witness, Model.SEQUENTIAL) ? witness : null;
+    }
+
+    /**
+     * 寄存器的状态转移：写总是成功；读必须读到当前值（初始未知时读到什么就是什么）
+     */
+    private static int step(Partition p, int state, int j) {
+        if (p.write[j] || state == UNKNOWN || state == p.value[j]) {
+            return p.value[j];
+        }
+        return ILLEGAL;
+    }
+
+    private static long[] zobrist(int size) {
+        SplittableRandom random = new SplittableRandom(size * 0x9E3779B97F4A7C15L);
+        long[] zobrist = new long[size];
+        for (int j = 0; j < size; j++) {
+            zobrist[j] = random.nextLong();
+        }
+        return zobrist;
+    }
+
+    private static long memoKey(long linearized, int state) {
+        long h = linearized ^ ((state + 3L) * 0xBF58476D1CE4E5B9L);
+        h = (h ^ (h >>> 31)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Wing &amp; Gong / Lowe：调用和返回事件按时间排成双向链表（同一时刻调用在前），
+     * 从表头起找一个能线性化的调用，摘掉它的调用和返回事件；碰到返回事件说明它对应的操作已经不能再晚了，回溯
+     */
+    private static int linearizable(Partition p) {
+        int n = p.size;
+        if (n == 0) {
+            return PASS;
+        }
+        int events = 2 * n;
+        long[] time = new long[events];
+        for (int j = 0; j < n; j++) {
+            time[2 * j] = p.call[j];
+            time[2 * j + 1] = p.ret[j];
+        }
+        Integer[] order = new Integer[events];
+        for (int e = 0; e < events; e++) {
+            order[e] = e;
+        }
+        // 事件编号 2j 是操作j的调用，2j+1 是返回
+        Arrays.sort(order, (a, b) -> time[a] != time[b] ? Long.compare(time[a], time[b]) : Integer.compare(a & 1, b & 1));
+        int head = events;
+        int[] next = new int[events + 1];
+        int[] prev = new int[events + 1];
+        int last = head;
+        for (Integer e : order) {
+            next[last] = e;
+            prev[e] = last;
+            last = e;
+        }
+        next[last] = -1;
+        prev[head] = -1;
+
+        long[] zobrist = zobrist(n);
+        LongSet memo = new LongSet();
+        int[] stackOp = new int[n];
+        int[] stackState = new int[n];
+        int depth = 0;
+        int state = UNKNOWN;
+        long linearized = 0;
+        int entry = next[head];
+        while (next[head] != -1) {
+            int op = entry >> 1;
+            if ((entry & 1) == 0) {
+                int nextState = step(p, state, op);
+                if (nextState != ILLEGAL && memo.add(memoKey(linearized ^ zobrist[op], nextState))) {
+                    if (memo.size() > MAX_STATES) {
+                        return UNDECIDED;
+                    }
+                    stackOp[depth] = op;
+                    stackState[depth] = state;
+                    depth++;
+                    state = nextState;
+                    linearized ^= zobrist[op];
+                    unlink(2 * op, next, prev);
+                    unlink(2 * op + 1, next, prev);
+                    entry = next[head];
+                } else {
+                    entry = next[entry];
+                }
+            } else {
+                if (depth == 0) {
+                    return FAIL;
+                }
+                depth--;
+                op = stackOp[depth];
+                state = stackState[depth];
+                linearized ^= zobrist[op];
+                relink(2 * op + 1, next, prev);
+                relink(2 * op, next, prev);
+                entry = next[2 * op];
+            }
+        }
+        return PASS;
+    }
+
+    private static void unlink(int e, int[] next, int[] prev) {
+        next[prev[e]] = next[e];
+        if (next[e] != -1) {
+            prev[next[e]] = prev[e];
+        }
+    }
+
+    private static void relink(int e, int[] next, int[] prev) {
+        next[prev[e]] = e;
+        if (next[e] != -1) {
+            prev[next[e]] = e;
+        }
+    }
+
+    /**
+     * 顺序一致性：每个进程的操作按发起顺序排成一列，每步从某个进程的队首取一个能执行的操作。
+     * 结果未知的写单独成列，可以排在任何位置（包括最后，等价于从未生效）。
+     * 线性一致蕴含顺序一致，先用线性一致性的搜索过滤，只有不通过的键才做下面的完整搜索。
+     * 每步按各列队首的发起时间从早到晚尝试：实际执行顺序往往就是一个合法顺序，先试它能少走很多回溯
+     */
+    private static int sequential(Partition p) {
+        int n = p.size;
+        if (n == 0 || linearizable(p) == PASS) {
+            return PASS;
+        }
+        Map<Integer, List<Integer>> byProcess = new HashMap<>();
+        List<int[]> lanes = new ArrayList<>();
+        Integer[] order = new Integer[n];
+        for (int j = 0; j < n; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(p.call[a], p.call[b]));
+        for (int j : order) {
+            if (p.ret[j] == INFINITY) {
+                lanes.add(new int[] {j});
+            } else {
+                byProcess.computeIfAbsent(p.process[j], k -> new ArrayList<>()).add(j);
+            }
+        }
+        for (List<Integer> ops : byProcess.values()) {
+            lanes.add(ops.stream().mapToInt(Integer::intValue).toArray());
+        }
+        int[][] lane = lanes.toArray(new int[0][]);
+        int[] cursor = new int[lane.length];
+        Integer[] rank = new Integer[lane.length];
+
+        long[] zobrist = zobrist(n);
+        LongSet memo = new LongSet();
+        // 每层记下尝试到第几名以及对应的列
+        int[] stackLane = new int[n];
+        int[] stackLaneId = new int[n];
+        int[] stackState = new int[n];
+        int depth = 0;
+        int state = UNKNOWN;
+        long linearized = 0;
+        int from = 0;
+        while (depth < n) {
+            for (int l = 0; l < lane.length; l++) {
+                rank[l] = l;
+            }
+            Arrays.sort(rank, (a, b) -> Long.compare(head(p, lane, cursor, a), head(p, lane, cursor, b)));
+            boolean advanced = false;
+            for (int r = from; r < lane.length; r++) {
+                int l = rank[r];
+                if (cursor[l] == lane[l].length) {
+                    break;
+                }
+                int op = lane[l][cursor[l]];
+                int nextState = step(p, state, op);
+                if (nextState != ILLEGAL && memo.add(memoKey(linearized ^ zobrist[op], nextState))) {
+                    if (memo.size() > MAX_STATES) {
+                        return UNDECIDED;
+                    }
+                    stackLane[depth] = r;
+                    stackLaneId[depth] = l;
+                    stackState[depth] = state;
+                    depth++;
+                    cursor[l]++;
+                    state = nextState;
+                    linearized ^= zobrist[op];
+                    advanced = true;
+                    break;
+                }
+            }
+            if (advanced) {
+                from = 0;
+                continue;
+            }
+            if (depth == 0) {
+                return FAIL;
+            }
+            depth--;
+            int r = stackLane[depth];
+            int l = stackLaneId[depth];
+            cursor[l]--;
+            linearized ^= zobrist[lane[l][cursor[l]]];
+            state = stackState[depth];
+            from = r + 1;
+        }
+        return PASS;
+    }
+
+    /**
+     * 某列队首操作的发起时间，已取完的列排在最后
+     */
+    private static long head(Partition p, int[][] lane, int[] cursor, int l) {
+        return cursor[l] == lane[l].length ? INFINITY : p.call[lane[l][cursor[l]]];
+    }
+
+    /**
+     * 缩减反例：线性一致性先二分找最早的失败前缀（前缀在线性一致性下是封闭的），
+     * 再按 ddmin 的方式逐段删除仍然失败的操作。每个候选都重新检查，结果一定是自身不通过的子历史
+     */
+    private static Partition shrink(Partition p, Model model) {
+        long deadline = System.nanoTime() + SHRINK_BUDGET_NANOS;
+        Partition current = p;
+        if (model == Model.LINEARIZABLE) {
+            long[] cutoffs = Arrays.stream(p.ret).filter(t -> t != INFINITY).sorted().distinct().toArray();
+            int lo = 0;
+            int hi = cutoffs.length - 1;
+            while (lo < hi && System.nanoTime() < deadline) {
+                int mid = (lo + hi) >>> 1;
+                if (!fails(p.prefix(cutoffs[mid]), model)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (cutoffs.length > 0) {
+                Partition prefix = p.prefix(cutoffs[hi]);
+                if (fails(prefix, model)) {
+                    current = prefix;
+                }
+            }
+        }
+        // 原历史中被写过的值：保留的读如果读到其中某个值，至少留一次写这个值的写，反例才看得懂
+        Set<Integer> writtenValues = new HashSet<>();
+        for (int j = 0; j < p.size; j++) {
+            if (p.write[j]) {
+                writtenValues.add(p.value[j]);
+            }
+        }
+        int chunk = Math.max(1, current.size / 2);
+        while (System.nanoTime() < deadline) {
+            boolean removed = false;
+            for (int start = 0; start < current.size && System.nanoTime() < deadline; ) {
+                Partition candidate = without(current, start, Math.min(current.size, start + chunk), writtenValues);
+                if (candidate != null && fails(candidate, model)) {
+                    current = candidate;
+                    removed = true;
+                } else {
+                    start += chunk;
+                }
+            }
+            if (chunk == 1 && !removed) {
+                break;
+            }
+            chunk = Math.max(1, removed ? chunk : chunk / 2);
+        }
+        return current;
+    }
+
+    /**
+     * 去掉 [from, to) 之后的子历史；如果会让某个保留的读读到的值不再有任何写，返回null。
+     * 同一个值可能被写多次，只要还剩一次写它就算保留，不假设写入的值互不相同
+     */
+    private static Partition without(Partition p, int from, int to, Set<Integer> writtenValues) {
+        Set<Integer> remaining = new HashSet<>();
+        int[] keep = new int[p.size];
+        int count = 0;
+        for (int j = 0; j < p.size; j++) {
+            if (j < from || j >= to) {
+                keep[count++] = j;
+                if (p.write[j]) {
+                    remaining.add(p.value[j]);
+                }
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        for (int k = 0; k < count; k++) {
+            int j = keep[k];
+            if (!p.write[j] && writtenValues.contains(p.value[j]) && !remaining.contains(p.value[j])) {
+                return null;
+            }
+        }
+        return p.subset(keep, count);
+    }
+
+    /**
+     * 开放寻址的long集合，只支持添加；0作为空槽，哈希值恰好为0时换成1
+     */
+    private static final class LongSet {
+        private long[] slots = new long[1 << 10];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        boolean add(long value) {
+            long v = value == 0 ? 1 : value;
+            if (size * 2 >= slots.length) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            int i = (int) v & mask;
+            while (slots[i] != 0) {
+                if (slots[i] == v) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = v;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            int mask = slots.length - 1;
+            for (long v : old) {
+                if (v != 0) {
+                    int i = (int) v & mask;
+                    while (slots[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    slots[i] = v;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.cap.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 故障代理的一次状态切换（瞬时事件），用来在时间线上对齐故障注入和延迟尖刺
+ */
+@Name("com.example.cap.FaultTransition")
+@Label("故障注入切换")
+@Category({"CAP实验", "故障注入"})
+@Description("分区、恢复、停顿、注入延迟或限速")
+public class FaultTransitionEvent extends Event {
+    @Label("代理")
+    public String proxy;
+
+    @Label("切换")
+    public String transition;
+
+    @Label("切换后状态")
+    public String state;
+}
@@ -0,0 +1,66 @@
+package com.example.cap.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 实验期间的JFR记录：JVM自带事件（GC、安全点、锁竞争等）加上本包的自定义事件，写到
+ * &lt;目录&gt;/&lt;实验名&gt;-&lt;时间&gt;.jfr，用JMC打开即可把延迟尖刺和JVM事件放在同一条时间线上对照。
+ * 设置 -Dcap.jfr.dir 才启用；-Dcap.jfr.settings 选择JDK自带配置（default 或 profile，默认 profile）。
+ */
+public class FlightRecording implements AutoCloseable {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    // 借连接等待低于这个阈值时不记录，避免每次借出都产生一条事件
+    private static final Duration POOL_BORROW_THRESHOLD = Duration.ofMillis(1);
+
+    private final Recording recording;
+    private final Path destination;
+
+    public FlightRecording(String experiment, Path directory, String settings) throws IOException, ParseException {
+        Files.createDirectories(directory);
+        this.destination = directory.resolve(experiment + "-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        this.recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName(experiment);
+        recording.enable(RedisCommandEvent.class).withoutThreshold();
+        recording.enable(RedisPipelineEvent.class).withoutThreshold();
+        recording.enable(PoolBorrowEvent.class).withThreshold(POOL_BORROW_THRESHOLD).withStackTrace();
+        recording.enable(ReplicationLagEvent.class).withoutThreshold();
+        recording.enable(FaultTransitionEvent.class).withStackTrace();
+        recording.setDestination(destination);
+        // 入口main中途异常退出时也把已记录的数据写出
+        recording.setDumpOnExit(true);
+        recording.start();
+    }
+
+    /**
+     * 设置了 -Dcap.jfr.dir 时开始记录并返回，否则返回null
+     */
+    public static FlightRecording startIfConfigured(String experiment) throws IOException, ParseException {
+        String dir = System.getProperty("cap.jfr.dir");
+        if (dir == null) {
+            return null;
+        }
+        FlightRecording flight = new FlightRecording(experiment, Path.of(dir), System.getProperty("cap.jfr.settings", "profile"));
+        System.out.println("🎞️  JFR记录中: " + flight.destination);
+        return flight;
+    }
+
+    public Path getDestination() {
+        return destination;
+    }
+
+    @Override
+    public void close() {
+        recording.stop();
+        recording.close();
+        System.out.println("🎞️  JFR记录已写出: " + destination);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.cap.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 从连接池借一个连接，持续时间就是等待时间
+ */
+@Name("com.example.cap.PoolBorrow")
+@Label("连接池借出")
+@Category({"CAP实验", "连接池"})
+@Description("从连接池借出连接的等待，默认只记录超过阈值的等待")
+public class PoolBorrowEvent extends Event {
+    @Label("连接池")
+    public String pool;
+
+    @Label("成功")
+    public boolean succeeded;
+}
@@ -0,0 +1,36 @@
+package com.example.cap.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次同步Redis命令：从发出到读完回复
+ */
+@Name("com.example.cap.RedisCommand")
+@Label("Redis命令")
+@Category({"CAP实验", "Redis"})
+@Description("经连接池连接执行的单条Redis命令，持续时间为一次完整往返")
+@StackTrace(false)
+public class RedisCommandEvent extends Event {
+    @Label("节点")
+    public String node;
+
+    @Label("命令")
+    public String command;
+
+    @Label("键大小")
+    @DataAmount
+    public long keyBytes;
+
+    @Label("参数总大小")
+    @DataAmount
+    public long argumentBytes;
+
+    @Label("成功")
+    public boolean succeeded;
+}
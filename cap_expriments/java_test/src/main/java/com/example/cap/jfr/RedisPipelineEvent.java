@@ -0,0 +1,29 @@
+package com.example.cap.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一批Pipeline命令：从第一条命令进入缓冲区到sync读完全部回复
+ */
+@Name("com.example.cap.RedisPipeline")
+@Label("Redis Pipeline批次")
+@Category({"CAP实验", "Redis"})
+@Description("Pipeline中排队的一批命令，持续时间从第一条命令入队到全部回复读完")
+@StackTrace(false)
+public class RedisPipelineEvent extends Event {
+    @Label("节点")
+    public String node;
+
+    @Label("命令数")
+    public int commands;
+
+    @Label("参数总大小")
+    @DataAmount
+    public long argumentBytes;
+}
@@ -0,0 +1,32 @@
+package com.example.cap.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 复制延迟探针的一次采样：从Master确认写入到Slave上读到该值
+ */
+@Name("com.example.cap.ReplicationLag")
+@Label("复制延迟采样")
+@Category({"CAP实验", "复制"})
+@Description("探针写入Master后轮询Slave直到读到新值，超时的采样也会记录")
+@StackTrace(false)
+public class ReplicationLagEvent extends Event {
+    @Label("Master")
+    public String master;
+
+    @Label("Slave")
+    public String slave;
+
+    @Label("复制延迟")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lag;
+
+    @Label("超时")
+    public boolean timedOut;
+}
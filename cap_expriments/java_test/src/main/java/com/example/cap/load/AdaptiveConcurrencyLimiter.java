@@ -0,0 +1,108 @@
+package com.example.cap.load;
+
+/**
+ * 由延迟驱动的并发上限：每个采样窗口结束时用窗口内的延迟中位数和错误数调整一次上限。
+ * <ul>
+ *   <li>GRADIENT：梯度 = 容忍倍数 × 空载延迟 / 当前延迟（夹在 [0.5, 1]），
+ *       新上限 = 上限 × 梯度 + √上限。延迟没有膨胀时按 √上限 增长，膨胀越多收缩越快，
+ *       稳定在延迟约等于 容忍倍数 × 空载延迟 的并发附近</li>
+ *   <li>AIMD：延迟未超过 容忍倍数 × 空载延迟 时上限加1，超过时乘以0.9</li>
+ * </ul>
+ * 两种算法遇到窗口错误率超过上限时都直接减半。空载延迟取迄今各窗口延迟中位数的最小值。
+ * 不是线程安全的，只由驱动的控制线程调用 {@link #update}；{@link #limit()} 可被任意线程读取。
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.5;
+    private static final double AIMD_BACKOFF = 0.9;
+    private static final double ERROR_BACKOFF = 0.5;
+
+    public enum Algorithm {
+        GRADIENT("梯度"),
+        AIMD("AIMD");
+
+        private final String label;
+
+        Algorithm(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double errorRateLimit;
+    private double estimate;
+    private volatile int limit;
+    private long noLoadNanos = Long.MAX_VALUE;
+
+    public AdaptiveConcurrencyLimiter(Algorithm algorithm, int minLimit, int maxLimit, int initialLimit,
+                                      double tolerance, double errorRateLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("并发上限范围无效: [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.algorithm = algorithm;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.errorRateLimit = errorRateLimit;
+        this.estimate = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimate;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public Algorithm algorithm() {
+        return algorithm;
+    }
+
+    public double tolerance() {
+        return tolerance;
+    }
+
+    public double errorRateLimit() {
+        return errorRateLimit;
+    }
+
+    /**
+     * 迄今观察到的空载延迟，还没有样本时为0
+     */
+    public long noLoadNanos() {
+        return noLoadNanos == Long.MAX_VALUE ? 0 : noLoadNanos;
+    }
+
+    /**
+     * 一个窗口结束：medianNanos为窗口内成功操作的延迟中位数（没有成功操作时传0），返回新的上限
+     */
+    public int update(long medianNanos, long successes, long errors) {
+        long total = successes + errors;
+        if (total == 0) {
+            return limit;
+        }
+        if ((double) errors / total > errorRateLimit) {
+            estimate *= ERROR_BACKOFF;
+        } else if (medianNanos > 0) {
+            noLoadNanos = Math.min(noLoadNanos, medianNanos);
+            double inflation = (double) medianNanos / noLoadNanos;
+            if (algorithm == Algorithm.GRADIENT) {
+                double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance / inflation));
+                double target = estimate * gradient + Math.sqrt(estimate);
+                estimate = estimate * (1 - SMOOTHING) + target * SMOOTHING;
+            } else if (inflation > tolerance) {
+                estimate *= AIMD_BACKOFF;
+            } else {
+                estimate += 1;
+            }
+        }
+        estimate = Math.max(minLimit, Math.min(maxLimit, estimate));
+        limit = (int) Math.round(estimate);
+        return limit;
+    }
+}
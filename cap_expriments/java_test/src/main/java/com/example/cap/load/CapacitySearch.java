@@ -0,0 +1,317 @@
+package com.example.cap.load;
+
+import com.example.cap.client.RedisPools;
+import com.example.cap.metrics.LiveMetrics;
+import com.example.cap.results.ResultRecord;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 自适应并发的容量探测：启动 maxLimit 个闭环工作线程，编号小于当前并发上限的线程才发请求，
+ * 其余线程挂起，上限提高时由控制线程唤醒。每个采样窗口结束时把窗口内的延迟中位数和错误数交给
+ * {@link AdaptiveConcurrencyLimiter}，由它决定下一个窗口的并发。
+ * 结束后按并发档位汇总各窗口，延迟中位数不超过 容忍倍数 × 空载延迟 且错误率不超标的档位算"可持续"，
+ * 报告其中吞吐最高的档位，以及比它更高、延迟开始劣化的第一个档位（拐点）。
+ * 延迟从借到连接之后开始计时；借连接失败单独计数，不算操作错误、也不交给限流器，
+ * 否则连接池不够大时探测到的是连接池的容量而不是Redis的。调用方需保证Master连接池至少有 maxConcurrency 个空闲连接。
+ */
+public class CapacitySearch {
+    @FunctionalInterface
+    public interface Operation {
+        void execute(Jedis master, long seq) throws Exception;
+    }
+
+    /**
+     * 一个采样窗口：窗口内并发固定
+     */
+    public static final class Window {
+        public final int concurrency;
+        public final long successes;
+        public final long errors;
+        public final long borrowFailures;
+        public final long nanos;
+        public final Histogram latency;
+
+        Window(int concurrency, long successes, long errors, long borrowFailures, long nanos, Histogram latency) {
+            this.concurrency = concurrency;
+            this.successes = successes;
+            this.errors = errors;
+            this.borrowFailures = borrowFailures;
+            this.nanos = nanos;
+            this.latency = latency;
+        }
+    }
+
+    /**
+     * 同一并发档位的全部窗口合并
+     */
+    public static final class Level {
+        public final int concurrency;
+        public final Histogram latency = new Histogram(3);
+        private int windows;
+        private long successes;
+        private long errors;
+        private long nanos;
+
+        Level(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        void add(Window window) {
+            windows++;
+            successes += window.successes;
+            errors += window.errors;
+            nanos += window.nanos;
+            latency.add(window.latency);
+        }
+
+        public int windows() {
+            return windows;
+        }
+
+        public double opsPerSec() {
+            return nanos == 0 ? 0 : successes * 1e9 / nanos;
+        }
+
+        public double errorRate() {
+            long total = successes + errors;
+            return total == 0 ? 0 : (double) errors / total;
+        }
+
+        public long medianNanos() {
+            return latency.getTotalCount() == 0 ? 0 : latency.getValueAtPercentile(50);
+        }
+    }
+
+    public static final class Result {
+        public final AdaptiveConcurrencyLimiter.Algorithm algorithm;
+        public final double tolerance;
+        public final double errorRateLimit;
+        public final long windowNanos;
+        public final long noLoadNanos;
+        public final List<Window> windows;
+        public final List<Level> levels;
+        public final Histogram latency = new Histogram(3);
+        // 最大可持续吞吐所在档位；没有任何档位可持续时为null
+        public final Level best;
+        // 比best并发更高、延迟或错误率开始劣化的第一个档位；探测范围内没有劣化时为null
+        public final Level knee;
+
+        Result(AdaptiveConcurrencyLimiter limiter, long windowNanos, List<Window> windows) {
+            this.algorithm = limiter.algorithm();
+            this.tolerance = limiter.tolerance();
+            this.errorRateLimit = limiter.errorRateLimit();
+            this.windowNanos = windowNanos;
+            this.noLoadNanos = limiter.noLoadNanos();
+            this.windows = List.copyOf(windows);
+            Map<Integer, Level> byConcurrency = new TreeMap<>();
+            for (Window window : windows) {
+                byConcurrency.computeIfAbsent(window.concurrency, Level::new).add(window);
+                latency.add(window.latency);
+            }
+            this.levels = List.copyOf(byConcurrency.values());
+            Level best = null;
+            for (Level level : levels) {
+                if (sustainable(level) && (best == null || level.opsPerSec() > best.opsPerSec())) {
+                    best = level;
+                }
+            }
+            Level knee = null;
+            for (Level level : levels) {
+                if (best != null && level.concurrency > best.concurrency && !sustainable(level)) {
+                    knee = level;
+                    break;
+                }
+            }
+            this.best = best;
+            this.knee = knee;
+        }
+
+        public boolean sustainable(Level level) {
+            return level.latency.getTotalCount() > 0 && level.errorRate() <= errorRateLimit
+                && level.medianNanos() <= tolerance * noLoadNanos;
+        }
+
+        public long errors() {
+            return windows.stream().mapToLong(w -> w.errors).sum();
+        }
+
+        public long borrowFailures() {
+            return windows.stream().mapToLong(w -> w.borrowFailures).sum();
+        }
+
+        /**
+         * 后一半窗口的并发中位数，近似限流器最终收敛的位置
+         */
+        public int convergedConcurrency() {
+            int[] tail = windows.subList(windows.size() / 2, windows.size()).stream()
+                .mapToInt(w -> w.concurrency).sorted().toArray();
+            return tail.length == 0 ? 0 : tail[tail.length / 2];
+        }
+
+        public void print() {
+            System.out.printf("📈 自适应并发探测（%s）: 窗口 %d ms，容忍 %.1fx 空载延迟，错误率上限 %.1f%%%n",
+                algorithm.label(), TimeUnit.NANOSECONDS.toMillis(windowNanos), tolerance, errorRateLimit * 100);
+            StringBuilder trace = new StringBuilder();
+            int perSecond = (int) Math.max(1, TimeUnit.SECONDS.toNanos(1) / windowNanos);
+            for (int i = 0; i < windows.size(); i += perSecond) {
+                trace.append(i == 0 ? "" : " → ").append(windows.get(i).concurrency);
+            }
+            System.out.println("   并发轨迹（每秒）: " + trace);
+            System.out.printf(Locale.ROOT, "   %6s %6s %10s %9s %9s %8s  %s%n",
+                "并发", "窗口", "ops/s", "p50(µs)", "p99(µs)", "错误率", "状态");
+            for (Level level : levels) {
+                System.out.printf(Locale.ROOT, "   %6d %6d %10.0f %9.1f %9.1f %7.2f%%  %s%n",
+                    level.concurrency, level.windows(), level.opsPerSec(), level.medianNanos() / 1e3,
+                    level.latency.getTotalCount() == 0 ? 0 : level.latency.getValueAtPercentile(99) / 1e3,
+                    level.errorRate() * 100,
+                    level == best ? "🏆 最大可持续" : level == knee ? "📉 拐点" : sustainable(level) ? "✅" : "⚠️");
+            }
+            System.out.printf("   空载延迟 p50 %.1f µs，限流器收敛在并发 %d%n", noLoadNanos / 1e3,
+                convergedConcurrency());
+            if (borrowFailures() > 0) {
+                System.out.printf("⚠️  借连接失败 %d 次（未计入错误率），连接池可能小于并发上限%n", borrowFailures());
+            }
+            if (best == null) {
+                System.out.println("❌ 没有任何并发档位满足延迟和错误率要求");
+                return;
+            }
+            System.out.printf("🏁 最大可持续吞吐 %.0f ops/s（并发 %d）%n", best.opsPerSec(), best.concurrency);
+            if (knee != null) {
+                System.out.printf("📉 延迟从并发 %d 开始劣化：p50 %.1f µs（%.1fx 空载），错误率 %.2f%%%n",
+                    knee.concurrency, knee.medianNanos() / 1e3, (double) knee.medianNanos() / noLoadNanos,
+                    knee.errorRate() * 100);
+            } else {
+                System.out.println("ℹ️  探测范围内延迟没有劣化，可以调高并发上限继续探测");
+            }
+        }
+
+        public ResultRecord toRecord(String scenario) {
+            return ResultRecord.of(scenario)
+                .param("algorithm", algorithm.name().toLowerCase(Locale.ROOT))
+                .param("tolerance", tolerance)
+                .throughput(best == null ? 0 : best.opsPerSec())
+                .metric("best_concurrency", best == null ? Double.NaN : best.concurrency)
+                .metric("knee_concurrency", knee == null ? Double.NaN : knee.concurrency)
+                .metric("converged_concurrency", convergedConcurrency())
+                .metric("no_load_p50_us", noLoadNanos / 1e3)
+                .metric("errors", errors())
+                .metric("borrow_failures", borrowFailures())
+                .latency("op", latency);
+        }
+    }
+
+    private final RedisPools pools;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final int maxConcurrency;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long windowNanos;
+
+    /**
+     * warmup期间按初始并发运行、不调整也不统计；duration为探测时长，按window切成采样窗口
+     */
+    public CapacitySearch(RedisPools pools, AdaptiveConcurrencyLimiter limiter, int maxConcurrency,
+                          long warmup, long duration, long window, TimeUnit unit) {
+        this.pools = pools;
+        this.limiter = limiter;
+        this.maxConcurrency = maxConcurrency;
+        this.warmupNanos = unit.toNanos(warmup);
+        this.durationNanos = unit.toNanos(duration);
+        this.windowNanos = unit.toNanos(window);
+    }
+
+    public Result run(Operation operation) throws InterruptedException {
+        Recorder recorder = new Recorder(3);
+        LongAdder errors = new LongAdder();
+        LongAdder borrowFailures = new LongAdder();
+        AtomicLong seq = new AtomicLong();
+        // 控制线程提前结束（被中断）时通知工作线程退出，不用等到deadline
+        AtomicBoolean stopped = new AtomicBoolean();
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long deadline = measureStart + durationNanos;
+        String labels = LiveMetrics.labels("algorithm", limiter.algorithm().name().toLowerCase(Locale.ROOT));
+        LiveMetrics.register("cap_concurrency_limit", "gauge", "自适应限流器当前的并发上限", labels,
+            limiter::limit);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int id = 0; id < maxConcurrency; id++) {
+            final int workerId = id;
+            workers.add(new Thread(() -> {
+                while (!stopped.get() && System.nanoTime() < deadline) {
+                    if (workerId >= limiter.limit()) {
+                        // 检查和挂起之间上限被提高也不会漏掉：先到的unpark会让park立即返回
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    Jedis master;
+                    try {
+                        master = pools.master().getResource();
+                    } catch (Exception e) {
+                        borrowFailures.increment();
+                        LiveMetrics.countFailure("adaptive_concurrency_borrow");
+                        continue;
+                    }
+                    try (master) {
+                        long opStart = System.nanoTime();
+                        operation.execute(master, seq.getAndIncrement());
+                        recorder.recordValue(System.nanoTime() - opStart);
+                    } catch (Exception e) {
+                        errors.increment();
+                        LiveMetrics.countFailure("adaptive_concurrency");
+                    }
+                }
+            }, "capacity-" + id));
+        }
+        workers.forEach(Thread::start);
+
+        List<Window> windows = new ArrayList<>();
+        try {
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStart - System.nanoTime()));
+            recorder.reset();
+            errors.reset();
+            borrowFailures.reset();
+            long windowStart = System.nanoTime();
+            while (windowStart < deadline) {
+                int concurrency = limiter.limit();
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, Math.min(windowStart + windowNanos, deadline)
+                    - System.nanoTime()));
+                Histogram latency = recorder.getIntervalHistogram();
+                long windowErrors = errors.sumThenReset();
+                long windowBorrowFailures = borrowFailures.sumThenReset();
+                long now = System.nanoTime();
+                windows.add(new Window(concurrency, latency.getTotalCount(), windowErrors, windowBorrowFailures,
+                    now - windowStart, latency));
+                int raised = limiter.update(latency.getTotalCount() == 0 ? 0 : latency.getValueAtPercentile(50),
+                    latency.getTotalCount(), windowErrors);
+                for (int id = concurrency; id < raised; id++) {
+                    LockSupport.unpark(workers.get(id));
+                }
+                windowStart = now;
+            }
+        } finally {
+            stopped.set(true);
+            for (Thread worker : workers) {
+                LockSupport.unpark(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            LiveMetrics.unregister("cap_concurrency_limit", labels);
+        }
+        return new Result(limiter, windowNanos, windows);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.cap.load;
+
+import com.example.cap.metrics.LiveMetrics;
+import org.HdrHistogram.Histogram;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 闭环负载运行器共用的部分：生成并预写实验键、带预热阶段的闭环主循环，以及结果表里的分位数格式化
+ */
+final class LoadSupport {
+    private static final int PRELOAD_BATCH = 100;
+
+    /**
+     * 闭环的一步：执行一个操作或一批Pipeline，返回这一步包含的操作数
+     */
+    @FunctionalInterface
+    interface Step {
+        int run();
+    }
+
+    /**
+     * 测量阶段的一步成功后调用，批内每个操作都记为这一步的耗时
+     */
+    @FunctionalInterface
+    interface Sink {
+        void record(long elapsedNanos, int operations);
+    }
+
+    private LoadSupport() {
+    }
+
+    /**
+     * 键名为 prefix + 序号 的一组键
+     */
+    static byte[][] keys(String prefix, int count) {
+        byte[][] keys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (prefix + i).getBytes(StandardCharsets.US_ASCII);
+        }
+        return keys;
+    }
+
+    static byte[] value(int size) {
+        byte[] value = new byte[size];
+        Arrays.fill(value, (byte) 'v');
+        return value;
+    }
+
+    /**
+     * 用Pipeline分批把每个键写成value，让读从第一步起就能命中
+     */
+    static void preload(Jedis master, byte[][] keys, byte[] value) {
+        for (int from = 0; from < keys.length; from += PRELOAD_BATCH) {
+            Pipeline pipeline = master.pipelined();
+            for (int i = from; i < Math.min(keys.length, from + PRELOAD_BATCH); i++) {
+                pipeline.set(keys[i], value);
+            }
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * 闭环执行step直到deadline。measureStart之前发起的步骤属于预热，成功和失败都不计入结果；
+     * 出错的步骤记一次失败后直接进入下一步
+     */
+    static void closedLoop(long measureStart, long deadline, String failureSource, LongAdder errors, Step step,
+                           Sink sink) {
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            int operations;
+            try {
+                operations = step.run();
+            } catch (RuntimeException e) {
+                if (now >= measureStart) {
+                    errors.increment();
+                }
+                LiveMetrics.countFailure(failureSource);
+                continue;
+            }
+            if (now < measureStart) {
+                continue; // 预热阶段不计入
+            }
+            sink.record(System.nanoTime() - now, operations);
+        }
+    }
+
+    static String micros(Histogram h, double percentile) {
+        return h.getTotalCount() == 0 ? "-" : String.format(Locale.ROOT, "%.1f", h.getValueAtPercentile(percentile) / 1e3);
+    }
+
+    static String millis(Histogram h, double percentile) {
+        return h.getTotalCount() == 0 ? "-" : String.format(Locale.ROOT, "%.2f", h.getValueAtPercentile(percentile) / 1e6);
+    }
+}
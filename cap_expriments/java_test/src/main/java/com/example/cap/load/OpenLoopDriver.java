@@ -0,0 +1,216 @@
+package com.example.cap.load;
+
+import com.example.cap.client.RedisPools;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.LiveMetrics;
+import com.example.cap.results.ResultRecord;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开环恒定到达率负载驱动：按目标速率预先确定每个操作的计划发起时刻（固定间隔或泊松到达），
+ * 延迟从计划时刻开始计算。Redis变慢时计划不会跟着放慢，排队时间会如实体现在响应时间里。
+ * 每个工作线程持有一条Master和一条Slave连接，负责总速率的 1/workers。
+ */
+public class OpenLoopDriver {
+    public static final String NODE = "client";
+    public static final String RESPONSE_TIME = "响应时间";
+    public static final String SERVICE_TIME = "服务时间";
+    public static final String ISSUE_DELAY = "发起滞后";
+
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long CUTOFF_GRACE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public enum Arrival {
+        FIXED, POISSON
+    }
+
+    @FunctionalInterface
+    public interface Operation {
+        void execute(Jedis master, Jedis slave, long seq) throws Exception;
+    }
+
+    private final RedisPools pools;
+    private final double targetOpsPerSec;
+    private final long durationNanos;
+    private final Arrival arrival;
+    private final int workers;
+
+    public OpenLoopDriver(RedisPools pools, double targetOpsPerSec, long duration, TimeUnit unit,
+                          Arrival arrival, int workers) {
+        this.pools = pools;
+        this.targetOpsPerSec = targetOpsPerSec;
+        this.durationNanos = unit.toNanos(duration);
+        this.arrival = arrival;
+        this.workers = workers;
+    }
+
+    public static final class Result {
+        public final double targetOpsPerSec;
+        public final Arrival arrival;
+        public final long durationNanos;
+        public final long completed;
+        public final long errors;
+        public final long missed;
+        // 借不到连接的工作线程没有发出的计划操作，不计入实际速率
+        public final long borrowFailures;
+        public final long elapsedNanos;
+        public final long[] completedPerSecond;
+        public final LatencyRecorder latency;
+
+        Result(double targetOpsPerSec, Arrival arrival, long durationNanos, long completed, long errors,
+               long missed, long borrowFailures, long elapsedNanos, long[] completedPerSecond,
+               LatencyRecorder latency) {
+            this.targetOpsPerSec = targetOpsPerSec;
+            this.arrival = arrival;
+            this.durationNanos = durationNanos;
+            this.completed = completed;
+            this.errors = errors;
+            this.missed = missed;
+            this.borrowFailures = borrowFailures;
+            this.elapsedNanos = elapsedNanos;
+            this.completedPerSecond = completedPerSecond;
+            this.latency = latency;
+        }
+
+        public double achievedOpsPerSec() {
+            return (completed + errors) * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * 实际速率比目标速率落后的百分比
+         */
+        public double shortfallPercent() {
+            return Math.max(0, (1 - achievedOpsPerSec() / targetOpsPerSec) * 100);
+        }
+
+        public void print() {
+            System.out.printf("📊 开环负载结果 (%s到达):%n", arrival == Arrival.POISSON ? "泊松" : "固定间隔");
+            System.out.printf("- 目标速率: %.0f ops/s, 实际速率: %.0f ops/s, 落后: %.1f%%%n",
+                targetOpsPerSec, achievedOpsPerSec(), shortfallPercent());
+            System.out.printf("- 完成: %d, 失败: %d, 截止时仍未发起: %d, 借不到连接未发起: %d%n",
+                completed, errors, missed, borrowFailures);
+            StringBuilder perSecond = new StringBuilder();
+            for (long c : completedPerSecond) {
+                perSecond.append(c).append(' ');
+            }
+            System.out.println("- 每秒完成: " + perSecond.toString().trim());
+            latency.printReport("开环负载（响应时间从计划发起时刻算起）");
+        }
+
+        public ResultRecord toRecord(String scenario) {
+            return ResultRecord.of(scenario)
+                .param("target_rate", (long) targetOpsPerSec)
+                .param("arrival", arrival)
+                .throughput(achievedOpsPerSec())
+                .metric("errors", errors)
+                .metric("missed", missed)
+                .metric("borrow_failures", borrowFailures)
+                .latency("response", latency.series(NODE, RESPONSE_TIME))
+                .latency("service", latency.series(NODE, SERVICE_TIME));
+        }
+    }
+
+    public Result run(Operation operation) throws InterruptedException {
+        LatencyRecorder latency = new LatencyRecorder();
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        LongAdder missed = new LongAdder();
+        LongAdder borrowFailures = new LongAdder();
+        int seconds = (int) Math.ceil(durationNanos / 1e9) + 2;
+        AtomicLongArray perSecond = new AtomicLongArray(seconds);
+
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long endNanos = startNanos + durationNanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            final int index = w;
+            Thread t = new Thread(() -> runWorker(index, operation, startNanos, endNanos,
+                latency, completed, errors, missed, borrowFailures, perSecond), "open-loop-" + w);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = Math.max(System.nanoTime(), endNanos) - startNanos;
+
+        long[] counts = new long[(int) Math.ceil(elapsed / 1e9)];
+        for (int i = 0; i < counts.length && i < seconds; i++) {
+            counts[i] = perSecond.get(i);
+        }
+        return new Result(targetOpsPerSec, arrival, durationNanos, completed.sum(), errors.sum(),
+            missed.sum(), borrowFailures.sum(), elapsed, counts, latency);
+    }
+
+    private void runWorker(int index, Operation operation, long startNanos, long endNanos,
+                           LatencyRecorder latency, LongAdder completed, LongAdder errors,
+                           LongAdder missed, LongAdder borrowFailures, AtomicLongArray perSecond) {
+        double meanGapNanos = workers * 1e9 / targetOpsPerSec;
+        long intended = startNanos + (arrival == Arrival.FIXED ? (long) (meanGapNanos * index / workers) : nextGap(meanGapNanos));
+        long seq = index;
+
+        try (Jedis master = pools.master().getResource();
+             Jedis slave = pools.slave().getResource()) {
+            while (intended < endNanos) {
+                long now = System.nanoTime();
+                if (now < intended) {
+                    long wait = intended - now;
+                    if (wait > SPIN_THRESHOLD_NANOS) {
+                        LockSupport.parkNanos(wait - SPIN_THRESHOLD_NANOS);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                    continue;
+                }
+                if (now - endNanos > CUTOFF_GRACE_NANOS) {
+                    break; // 严重落后，剩余计划操作计为未发起
+                }
+
+                try {
+                    operation.execute(master, slave, seq);
+                    completed.increment();
+                } catch (Exception e) {
+                    errors.increment();
+                    LiveMetrics.countFailure("open_loop");
+                }
+                long done = System.nanoTime();
+                latency.record(NODE, RESPONSE_TIME, done - intended);
+                latency.record(NODE, SERVICE_TIME, done - now);
+                latency.record(NODE, ISSUE_DELAY, now - intended);
+                int second = (int) ((done - startNanos) / 1_000_000_000L);
+                if (second < perSecond.length()) {
+                    perSecond.incrementAndGet(second);
+                }
+
+                seq += workers;
+                intended += arrival == Arrival.FIXED ? (long) meanGapNanos : nextGap(meanGapNanos);
+            }
+        } catch (JedisException e) {
+            // 借不到连接时工作线程无法继续，它剩下的计划操作单独计数，不算作已发起，实际速率如实偏低
+            LiveMetrics.countFailure("open_loop");
+            while (intended < endNanos) {
+                borrowFailures.increment();
+                intended += arrival == Arrival.FIXED ? (long) meanGapNanos : nextGap(meanGapNanos);
+            }
+        }
+
+        while (intended < endNanos) {
+            missed.increment();
+            intended += arrival == Arrival.FIXED ? (long) meanGapNanos : nextGap(meanGapNanos);
+        }
+    }
+
+    private static long nextGap(double meanGapNanos) {
+        // 指数分布间隔：各工作线程独立的泊松流叠加后仍是目标速率的泊松流
+        return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanGapNanos);
+    }
+}
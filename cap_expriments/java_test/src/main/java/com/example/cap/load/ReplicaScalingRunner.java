@@ -0,0 +1,300 @@
+package com.example.cap.load;
+
+import com.example.cap.client.RedisPools;
+import com.example.cap.client.ReplicaBalancer;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.LiveMetrics;
+import com.example.cap.metrics.ReplicationLagProbe;
+import com.example.cap.results.ResultRecord;
+import com.example.cap.standin.ReplicationSettings;
+import org.HdrHistogram.Histogram;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 读扩展曲线：副本数从1逐个增加到上限，每个副本数下依次用各种分流策略跑闭环读负载，
+ * 同时由一个后台写线程按固定速率写Master制造复制流量，每个副本各挂一个复制延迟探针。
+ * 目标为docker时第i个副本在 localhost:6380+i；目标为替身时每个副本数启动一套新的替身拓扑。
+ */
+public class ReplicaScalingRunner {
+    private static final int KEYSPACE = 1000;
+    private static final int VALUE_SIZE = 64;
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+    private static final long OFFSET_POLL_INTERVAL_MS = 5;
+
+    public static final class Point {
+        public final int replicas;
+        public final ReplicaBalancer.Strategy strategy;
+
+        Point(int replicas, ReplicaBalancer.Strategy strategy) {
+            this.replicas = replicas;
+            this.strategy = strategy;
+        }
+    }
+
+    public static final class PointResult {
+        public final Point point;
+        public final long reads;
+        public final long errors;
+        public final long writes;
+        public final long measuredNanos;
+        public final Histogram readLatency;
+        // 下标与副本顺序一致
+        public final List<Histogram> lagPerReplica;
+        public final long lagTimeouts;
+        public final long[] readsPerReplica;
+
+        PointResult(Point point, long reads, long errors, long writes, long measuredNanos, Histogram readLatency,
+                    List<Histogram> lagPerReplica, long lagTimeouts, long[] readsPerReplica) {
+            this.point = point;
+            this.reads = reads;
+            this.errors = errors;
+            this.writes = writes;
+            this.measuredNanos = measuredNanos;
+            this.readLatency = readLatency;
+            this.lagPerReplica = lagPerReplica;
+            this.lagTimeouts = lagTimeouts;
+            this.readsPerReplica = readsPerReplica;
+        }
+
+        public double readsPerSec() {
+            return reads * 1e9 / measuredNanos;
+        }
+
+        /**
+         * 所有副本的复制延迟样本合并后的分布
+         */
+        public Histogram lag() {
+            Histogram merged = new Histogram(3);
+            lagPerReplica.forEach(merged::add);
+            return merged;
+        }
+
+        /**
+         * 各副本p99中最差的一个（纳秒），没有样本时为0
+         */
+        public long worstReplicaLagP99() {
+            return lagPerReplica.stream()
+                .mapToLong(h -> h.getTotalCount() == 0 ? 0 : h.getValueAtPercentile(99)).max().orElse(0);
+        }
+
+        /**
+         * 读最多的副本与最少的副本的读次数之比，1表示完全均匀
+         */
+        public double imbalance() {
+            long max = Arrays.stream(readsPerReplica).max().orElse(0);
+            long min = Arrays.stream(readsPerReplica).min().orElse(0);
+            return min == 0 ? (max == 0 ? 1 : Double.POSITIVE_INFINITY) : (double) max / min;
+        }
+
+        public ResultRecord toRecord(PointResult baseline) {
+            Histogram lag = lag();
+            ResultRecord record = ResultRecord.of("读扩展")
+                .param("replicas", point.replicas)
+                .param("strategy", point.strategy.name().toLowerCase(Locale.ROOT))
+                .throughput(readsPerSec())
+                .metric("speedup", speedup(baseline))
+                .metric("errors", errors)
+                .metric("writes_per_sec", writes * 1e9 / measuredNanos)
+                .metric("read_imbalance", imbalance())
+                .latency("read", readLatency)
+                .latency("lag", lag)
+                .metric("lag_worst_replica_p99_ms", worstReplicaLagP99() / 1e6)
+                .metric("lag_timeouts", lagTimeouts);
+            double perReplica = lagIncreasePerReplicaMillis(baseline);
+            if (!Double.isNaN(perReplica)) {
+                record.metric("lag_p99_ms_per_added_replica", perReplica);
+            }
+            return record;
+        }
+
+        public double speedup(PointResult baseline) {
+            return baseline == null || baseline.reads == 0 ? Double.NaN : readsPerSec() / baseline.readsPerSec();
+        }
+
+        /**
+         * 相对基线每多一个副本，合并后的复制延迟p99增加多少毫秒；自身就是基线时为NaN
+         */
+        public double lagIncreasePerReplicaMillis(PointResult baseline) {
+            if (baseline == null || point.replicas == baseline.point.replicas) {
+                return Double.NaN;
+            }
+            return (p99(lag()) - p99(baseline.lag())) / 1e6 / (point.replicas - baseline.point.replicas);
+        }
+    }
+
+    private final List<Integer> replicaCounts;
+    private final List<ReplicaBalancer.Strategy> strategies;
+    private final int concurrency;
+    private final int writeRate;
+    private final boolean standIn;
+    private final long warmupNanos;
+    private final long measureNanos;
+
+    /**
+     * writeRate为后台写Master的速率（次/秒），0表示不写
+     */
+    public ReplicaScalingRunner(List<Integer> replicaCounts, List<ReplicaBalancer.Strategy> strategies,
+                                int concurrency, int writeRate, boolean standIn,
+                                long warmup, long measure, TimeUnit unit) {
+        this.replicaCounts = replicaCounts;
+        this.strategies = strategies;
+        this.concurrency = concurrency;
+        this.writeRate = writeRate;
+        this.standIn = standIn;
+        this.warmupNanos = unit.toNanos(warmup);
+        this.measureNanos = unit.toNanos(measure);
+    }
+
+    public List<PointResult> run() throws Exception {
+        List<PointResult> results = new ArrayList<>();
+        int total = replicaCounts.size() * strategies.size();
+        for (int replicas : replicaCounts) {
+            try (RedisPools pools = standIn
+                    ? RedisPools.standIn(concurrency, ReplicationSettings.fromSystemProperties(), replicas)
+                    : RedisPools.local(concurrency, replicas)) {
+                for (ReplicaBalancer.Strategy strategy : strategies) {
+                    results.add(runPoint(pools, new Point(replicas, strategy), results.size()));
+                    System.out.printf("  完成 %d/%d（%d个副本，%s）%n", results.size(), total, replicas, strategy.label());
+                }
+            }
+        }
+        return results;
+    }
+
+    PointResult runPoint(RedisPools pools, Point point, int index) throws Exception {
+        byte[][] keys = LoadSupport.keys("scaling:" + index + ":", KEYSPACE);
+        byte[] value = LoadSupport.value(VALUE_SIZE);
+        try (Jedis master = pools.master().getResource()) {
+            LoadSupport.preload(master, keys, value);
+        }
+
+        LatencyRecorder latency = new LatencyRecorder();
+        LongAdder reads = new LongAdder();
+        LongAdder errors = new LongAdder();
+        LongAdder writes = new LongAdder();
+        List<ReplicationLagProbe> probes = new ArrayList<>();
+        for (int i = 0; i < point.replicas; i++) {
+            probes.add(new ReplicationLagProbe(pools.masterAddress(), pools.replicaAddresses().get(i),
+                LAG_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS));
+        }
+        long measureStart = System.nanoTime() + warmupNanos;
+        long deadline = measureStart + measureNanos;
+        try (ReplicaBalancer balancer = new ReplicaBalancer(pools, point.strategy,
+                OFFSET_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            balancer.start();
+            List<Thread> threads = new ArrayList<>();
+            for (int c = 0; c < concurrency; c++) {
+                threads.add(new Thread(() -> runReader(balancer, keys, measureStart, deadline, latency, reads, errors),
+                    "scaling-" + index + "-reader-" + c));
+            }
+            if (writeRate > 0) {
+                threads.add(new Thread(() -> runWriter(pools, keys, value, measureStart, deadline, writes),
+                    "scaling-" + index + "-writer"));
+            }
+            threads.forEach(Thread::start);
+            // 预热结束后再清零分流计数并启动探针
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStart - System.nanoTime()));
+            balancer.resetCounts();
+            probes.forEach(ReplicationLagProbe::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            probes.forEach(ReplicationLagProbe::close);
+
+            if (!standIn) {
+                try (Jedis master = pools.master().getResource()) {
+                    master.del(keys);
+                }
+            }
+            List<Histogram> lag = new ArrayList<>();
+            long lagTimeouts = 0;
+            for (ReplicationLagProbe probe : probes) {
+                lag.add(probe.lagSeries().raw());
+                lagTimeouts += probe.getTimeouts();
+            }
+            return new PointResult(point, reads.sum(), errors.sum(), writes.sum(), measureNanos,
+                latency.series(LatencyRecorder.SLAVE, "GET").raw(), lag, lagTimeouts, balancer.readsPerReplica());
+        }
+    }
+
+    private static void runReader(ReplicaBalancer balancer, byte[][] keys, long measureStart, long deadline,
+                                  LatencyRecorder latency, LongAdder reads, LongAdder errors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadSupport.closedLoop(measureStart, deadline, "replica-scaling", errors, () -> {
+            byte[] key = keys[random.nextInt(KEYSPACE)];
+            balancer.read(replica -> replica.get(key));
+            return 1;
+        }, (elapsed, operations) -> {
+            latency.record(LatencyRecorder.SLAVE, "GET", elapsed);
+            reads.increment();
+        });
+    }
+
+    /**
+     * 按固定间隔写Master，落后于计划时不补发，保证各点的复制流量一致
+     */
+    private void runWriter(RedisPools pools, byte[][] keys, byte[] value, long measureStart, long deadline,
+                           LongAdder writes) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / writeRate;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (Jedis master = pools.master().getResource()) {
+            long next = System.nanoTime();
+            while (next < deadline) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                try {
+                    master.set(keys[random.nextInt(KEYSPACE)], value);
+                    if (next >= measureStart) {
+                        writes.increment();
+                    }
+                } catch (RuntimeException e) {
+                    LiveMetrics.countFailure("replica-scaling");
+                }
+                next = Math.max(next + intervalNanos, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * 每种策略以最小副本数的那一行为基线计算加速比和每个新增副本带来的复制延迟增量
+     */
+    public static PointResult baselineOf(List<PointResult> results, PointResult result) {
+        return results.stream()
+            .filter(r -> r.point.strategy == result.point.strategy)
+            .min((a, b) -> Integer.compare(a.point.replicas, b.point.replicas))
+            .orElse(null);
+    }
+
+    public static void printTable(List<PointResult> results) {
+        System.out.println("📊 读扩展曲线（读延迟单位: µs，复制延迟单位: ms）");
+        System.out.printf("%5s %8s %10s %7s %8s %8s %8s %8s %10s %10s %6s %6s%n",
+            "副本", "策略", "读ops/s", "加速比", "读p50", "读p99", "延迟p50", "延迟p99", "最差副本p99", "每副本+p99",
+            "失衡", "错误");
+        for (PointResult r : results) {
+            PointResult baseline = baselineOf(results, r);
+            Histogram lag = r.lag();
+            double perReplica = r.lagIncreasePerReplicaMillis(baseline);
+            System.out.printf(Locale.ROOT, "%5d %8s %10.0f %7.2f %8s %8s %8s %8s %10.2f %10s %6.2f %6d%n",
+                r.point.replicas, r.point.strategy.label(), r.readsPerSec(), r.speedup(baseline),
+                LoadSupport.micros(r.readLatency, 50), LoadSupport.micros(r.readLatency, 99), LoadSupport.millis(lag, 50), LoadSupport.millis(lag, 99),
+                r.worstReplicaLagP99() / 1e6,
+                Double.isNaN(perReplica) ? "-" : String.format(Locale.ROOT, "%+.3f", perReplica),
+                r.imbalance(), r.errors);
+        }
+    }
+
+    private static long p99(Histogram h) {
+        return h.getTotalCount() == 0 ? 0 : h.getValueAtPercentile(99);
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.cap.load;
+
+import com.example.cap.cluster.HashSlots;
+import com.example.cap.cluster.ShardedClient;
+import com.example.cap.results.ResultRecord;
+import com.example.cap.standin.ReplicationSettings;
+import com.example.cap.standin.StandInCluster;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import redis.clients.jedis.HostAndPort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分片扩展曲线：分片数逐级增加，每个分片数下依次跑几种闭环负载，记录吞吐和尾延迟。
+ * 键沿用其他实验的前缀（seckill:stock:*、concurrent:user:*、perf:write:*），由哈希槽分散到各分片；
+ * 多键负载用哈希标签把同一用户的键放进同一个槽。目标为替身时每个分片数启动一套新的替身集群，
+ * 并额外跑一轮"迁移中"负载：后台把若干槽从第一个分片迁到第二个分片，观察MOVED/ASK重定向的代价。
+ */
+public class ShardScalingRunner {
+    private static final String[] PREFIXES = {"seckill:stock:", "concurrent:user:", "perf:write:"};
+    private static final int KEYS_PER_PREFIX = 1000;
+    private static final int USERS = 1000;
+    private static final int VALUE_SIZE = 64;
+
+    public enum Workload {
+        SINGLE_SET("单键写"),
+        PIPELINE_SET("分片Pipeline写"),
+        HASHTAG_MULTI("哈希标签MSET+MGET"),
+        MIGRATION("迁移中读写");
+
+        private final String label;
+
+        Workload(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    public static final class PointResult {
+        public final int shards;
+        public final Workload workload;
+        public final long operations;
+        public final long errors;
+        public final long measuredNanos;
+        public final Histogram latency;
+        public final long moved;
+        public final long asked;
+
+        PointResult(int shards, Workload workload, long operations, long errors, long measuredNanos,
+                    Histogram latency, long moved, long asked) {
+            this.shards = shards;
+            this.workload = workload;
+            this.operations = operations;
+            this.errors = errors;
+            this.measuredNanos = measuredNanos;
+            this.latency = latency;
+            this.moved = moved;
+            this.asked = asked;
+        }
+
+        public double opsPerSec() {
+            return operations * 1e9 / measuredNanos;
+        }
+
+        public double speedup(PointResult baseline) {
+            return baseline == null || baseline.operations == 0 ? Double.NaN : opsPerSec() / baseline.opsPerSec();
+        }
+
+        public ResultRecord toRecord(PointResult baseline) {
+            return ResultRecord.of("分片扩展")
+                .param("shards", shards)
+                .param("workload", workload.name().toLowerCase(Locale.ROOT))
+                .throughput(opsPerSec())
+                .metric("speedup", speedup(baseline))
+                .metric("errors", errors)
+                .metric("moved", moved)
+                .metric("ask", asked)
+                .latency("op", latency);
+        }
+    }
+
+    private final List<Integer> shardCounts;
+    private final int replicasPerShard;
+    private final int concurrency;
+    private final int pipelineDepth;
+    private final int migrateSlots;
+    private final long warmupNanos;
+    private final long measureNanos;
+    private final byte[][] keys;
+    private final byte[] value = new byte[VALUE_SIZE];
+
+    public ShardScalingRunner(List<Integer> shardCounts, int replicasPerShard, int concurrency, int pipelineDepth,
+                              int migrateSlots, long warmup, long measure, TimeUnit unit) {
+        this.shardCounts = shardCounts;
+        this.replicasPerShard = replicasPerShard;
+        this.concurrency = concurrency;
+        this.pipelineDepth = pipelineDepth;
+        this.migrateSlots = migrateSlots;
+        this.warmupNanos = unit.toNanos(warmup);
+        this.measureNanos = unit.toNanos(measure);
+        this.keys = new byte[PREFIXES.length * KEYS_PER_PREFIX][];
+        for (int p = 0; p < PREFIXES.length; p++) {
+            for (int i = 0; i < KEYS_PER_PREFIX; i++) {
+                keys[p * KEYS_PER_PREFIX + i] = (PREFIXES[p] + i).getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+        Arrays.fill(value, (byte) 'v');
+    }
+
+    /**
+     * 在替身集群上逐个分片数运行
+     */
+    public List<PointResult> runStandIn() throws Exception {
+        List<PointResult> results = new ArrayList<>();
+        for (int shards : shardCounts) {
+            try (StandInCluster cluster = StandInCluster.start(shards, replicasPerShard,
+                    ReplicationSettings.fromSystemProperties());
+                 ShardedClient client = new ShardedClient(cluster.seed(), concurrency)) {
+                printDistribution(client);
+                for (Workload workload : Workload.values()) {
+                    if (workload == Workload.MIGRATION && shards < 2) {
+                        continue;
+                    }
+                    results.add(runPoint(client, cluster, shards, workload));
+                    System.out.printf("  完成 %d个分片，%s%n", shards, workload.label());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 连接一个已有的Redis Cluster，分片数由 CLUSTER SLOTS 决定，不做槽迁移
+     */
+    public List<PointResult> runAgainst(HostAndPort seed) throws Exception {
+        List<PointResult> results = new ArrayList<>();
+        try (ShardedClient client = new ShardedClient(seed, concurrency)) {
+            int shards = client.masters().size();
+            printDistribution(client);
+            for (Workload workload : Workload.values()) {
+                if (workload != Workload.MIGRATION) {
+                    results.add(runPoint(client, null, shards, workload));
+                    System.out.printf("  完成 %d个分片，%s%n", shards, workload.label());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 各前缀的键在各分片上的个数
+     */
+    private void printDistribution(ShardedClient client) {
+        List<HostAndPort> masters = new ArrayList<>(client.masters());
+        System.out.printf("🗺️  %d个分片的键分布:%n", masters.size());
+        for (int p = 0; p < PREFIXES.length; p++) {
+            int[] counts = new int[masters.size()];
+            for (int i = 0; i < KEYS_PER_PREFIX; i++) {
+                counts[masters.indexOf(client.nodeFor(keys[p * KEYS_PER_PREFIX + i]))]++;
+            }
+            System.out.printf("   %-18s %s%n", PREFIXES[p] + "*", Arrays.toString(counts));
+        }
+    }
+
+    PointResult runPoint(ShardedClient client, StandInCluster cluster, int shards, Workload workload)
+            throws Exception {
+        preload(client);
+        client.resetStats();
+        Histogram latency = new ConcurrentHistogram(3);
+        LongAdder operations = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long measureStart = System.nanoTime() + warmupNanos;
+        long deadline = measureStart + measureNanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            threads.add(new Thread(() -> runClient(client, workload, measureStart, deadline, latency, operations,
+                errors), "shard-" + shards + "-" + workload.name().toLowerCase(Locale.ROOT) + "-" + c));
+        }
+        threads.forEach(Thread::start);
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStart - System.nanoTime()));
+        // 重定向只统计测量阶段
+        client.resetStats();
+        if (workload == Workload.MIGRATION) {
+            migrate(cluster, deadline);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new PointResult(shards, workload, operations.sum(), errors.sum(), measureNanos, latency,
+            client.getMovedRedirects(), client.getAskRedirects());
+    }
+
+    private void preload(ShardedClient client) {
+        ShardedClient.ShardedPipeline pipeline = client.pipelined();
+        for (byte[] key : keys) {
+            pipeline.set(key, value);
+            if (pipeline.size() == 500) {
+                pipeline.syncAndReturnAll();
+            }
+        }
+        pipeline.syncAndReturnAll();
+    }
+
+    /**
+     * 选第一个分片上存有实验键的若干个槽，在测量期内均匀地迁到第二个分片
+     */
+    private void migrate(StandInCluster cluster, long deadline) throws Exception {
+        Set<Integer> slots = new LinkedHashSet<>();
+        for (byte[] key : keys) {
+            int slot = HashSlots.slot(key);
+            if (cluster.shardOf(slot) == 0) {
+                slots.add(slot);
+            }
+            if (slots.size() == migrateSlots) {
+                break;
+            }
+        }
+        long pause = Math.max(0, (deadline - System.nanoTime()) / Math.max(1, slots.size() * 2L));
+        for (int slot : slots) {
+            cluster.migrateSlot(slot, 1, 0, TimeUnit.NANOSECONDS);
+            TimeUnit.NANOSECONDS.sleep(pause);
+        }
+    }
+
+    private void runClient(ShardedClient client, Workload workload, long measureStart, long deadline,
+                           Histogram latency, LongAdder operations, LongAdder errors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ShardedClient.ShardedPipeline pipeline = client.pipelined();
+        // HASHTAG_MULTI交替执行MSET和MGET，两条命令各算一步分别计时；这里存着刚写完、等着读回的用户
+        String[] pending = new String[1];
+        LoadSupport.closedLoop(measureStart, deadline, "shard-scaling", errors, () -> {
+            switch (workload) {
+                case SINGLE_SET: {
+                    byte[] key = keys[random.nextInt(keys.length)];
+                    client.execute(key, jedis -> jedis.set(key, value));
+                    return 1;
+                }
+                case PIPELINE_SET:
+                    for (int i = 0; i < pipelineDepth; i++) {
+                        pipeline.set(keys[random.nextInt(keys.length)], value);
+                    }
+                    pipeline.syncAndReturnAll();
+                    return pipelineDepth;
+                case HASHTAG_MULTI: {
+                    String user = pending[0];
+                    pending[0] = null;
+                    if (user == null) {
+                        user = "{user:" + random.nextInt(USERS) + "}:";
+                        client.mset(user + "balance", "100", user + "orders", "3", user + "profile", "alice");
+                        pending[0] = user;
+                    } else {
+                        client.mget(user + "balance", user + "orders", user + "profile");
+                    }
+                    return 1;
+                }
+                default: {
+                    byte[] key = keys[random.nextInt(keys.length)];
+                    if (random.nextBoolean()) {
+                        client.execute(key, jedis -> jedis.set(key, value));
+                    } else {
+                        client.execute(key, jedis -> jedis.get(key));
+                    }
+                    return 1;
+                }
+            }
+        }, (elapsed, ops) -> {
+            // Pipeline批内每个操作都记为这批的往返时间
+            latency.recordValueWithCount(elapsed, ops);
+            operations.add(ops);
+        });
+    }
+
+    /**
+     * 每种负载以最小分片数的那一行为基线计算扩展比
+     */
+    public static PointResult baselineOf(List<PointResult> results, PointResult result) {
+        return results.stream()
+            .filter(r -> r.workload == result.workload)
+            .min((a, b) -> Integer.compare(a.shards, b.shards))
+            .orElse(null);
+    }
+
+    public static void printTable(List<PointResult> results) {
+        System.out.println("📊 分片扩展曲线（延迟单位: µs）");
+        System.out.printf("%5s %-16s %10s %7s %8s %8s %8s %8s %7s %7s %6s%n",
+            "分片", "负载", "ops/s", "扩展比", "p50", "p99", "p99.9", "max", "MOVED", "ASK", "错误");
+        for (PointResult r : results) {
+            Histogram h = r.latency;
+            System.out.printf(Locale.ROOT, "%5d %-16s %10.0f %7.2f %8s %8s %8s %8s %7d %7d %6d%n",
+                r.shards, r.workload.label(), r.opsPerSec(), r.speedup(baselineOf(results, r)),
+                LoadSupport.micros(h, 50), LoadSupport.micros(h, 99), LoadSupport.micros(h, 99.9),
+                LoadSupport.micros(h, 100), r.moved, r.asked, r.errors);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.cap.load;
+
+import com.example.cap.client.RedisPools;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.ReplicationLagProbe;
+import com.example.cap.results.ResultRecord;
+import com.example.cap.standin.ReplicationSettings;
+import org.HdrHistogram.Histogram;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 参数矩阵扫描：值大小 × 客户端并发 × 读比例 × Pipeline深度 的全组合逐格运行闭环读写负载，
+ * 每格记录吞吐、读写延迟分位数和后台探针测得的复制延迟，最后汇总成一张表。
+ * 目标为docker时各格共用一对主从、依次运行；目标为替身时每格启动自己的替身主从，可以并行运行。
+ */
+public class SweepRunner {
+    private static final int KEYSPACE = 1000;
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+
+    /**
+     * 扫描的四个维度，可用 -Dcap.sweep.sizes=64,1024 -Dcap.sweep.concurrency=1,8
+     * -Dcap.sweep.reads=0.5,0.9 -Dcap.sweep.pipeline=1,16 覆盖
+     */
+    public static final class Axes {
+        public final List<Integer> valueSizes;
+        public final List<Integer> concurrency;
+        public final List<Double> readRatios;
+        public final List<Integer> pipelineDepths;
+
+        public Axes(List<Integer> valueSizes, List<Integer> concurrency, List<Double> readRatios,
+                    List<Integer> pipelineDepths) {
+            this.valueSizes = List.copyOf(valueSizes);
+            this.concurrency = List.copyOf(concurrency);
+            this.readRatios = List.copyOf(readRatios);
+            this.pipelineDepths = List.copyOf(pipelineDepths);
+        }
+
+        public static Axes fromSystemProperties() {
+            return new Axes(
+                list("cap.sweep.sizes", "64,1024,16384", Integer::valueOf),
+                list("cap.sweep.concurrency", "1,4,16", Integer::valueOf),
+                list("cap.sweep.reads", "0.5,0.9", Double::valueOf),
+                list("cap.sweep.pipeline", "1,16", Integer::valueOf));
+        }
+
+        private static <T> List<T> list(String property, String defaults, Function<String, T> parser) {
+            return Arrays.stream(System.getProperty(property, defaults).split(","))
+                .map(String::trim)
+                .map(parser)
+                .toList();
+        }
+
+        public List<Cell> cells() {
+            List<Cell> cells = new ArrayList<>();
+            for (int size : valueSizes) {
+                for (int clients : concurrency) {
+                    for (double reads : readRatios) {
+                        for (int depth : pipelineDepths) {
+                            cells.add(new Cell(cells.size(), size, clients, reads, depth));
+                        }
+                    }
+                }
+            }
+            return cells;
+        }
+
+        public int maxConcurrency() {
+            return concurrency.stream().mapToInt(Integer::intValue).max().orElse(1);
+        }
+    }
+
+    public static final class Cell {
+        public final int index;
+        public final int valueSize;
+        public final int concurrency;
+        public final double readRatio;
+        public final int pipelineDepth;
+
+        Cell(int index, int valueSize, int concurrency, double readRatio, int pipelineDepth) {
+            this.index = index;
+            this.valueSize = valueSize;
+            this.concurrency = concurrency;
+            this.readRatio = readRatio;
+            this.pipelineDepth = pipelineDepth;
+        }
+    }
+
+    public static final class CellResult {
+        public final Cell cell;
+        public final long operations;
+        public final long errors;
+        public final long measuredNanos;
+        public final LatencyRecorder latency;
+        public final Histogram lag;
+        public final long lagTimeouts;
+
+        CellResult(Cell cell, long operations, long errors, long measuredNanos, LatencyRecorder latency,
+                   Histogram lag, long lagTimeouts) {
+            this.cell = cell;
+            this.operations = operations;
+            this.errors = errors;
+            this.measuredNanos = measuredNanos;
+            this.latency = latency;
+            this.lag = lag;
+            this.lagTimeouts = lagTimeouts;
+        }
+
+        public double opsPerSec() {
+            return operations * 1e9 / measuredNanos;
+        }
+
+        public Histogram reads() {
+            return latency.series(LatencyRecorder.SLAVE, "GET").raw();
+        }
+
+        public Histogram writes() {
+            return latency.series(LatencyRecorder.MASTER, "SET").raw();
+        }
+
+        public ResultRecord toRecord() {
+            return ResultRecord.of("参数矩阵")
+                .param("value_size", cell.valueSize)
+                .param("concurrency", cell.concurrency)
+                .param("read_ratio", cell.readRatio)
+                .param("pipeline_depth", cell.pipelineDepth)
+                .throughput(opsPerSec())
+                .metric("errors", errors)
+                .latency("read", reads())
+                .latency("write", writes())
+                .latency("lag", lag)
+                .metric("lag_timeouts", lagTimeouts);
+        }
+    }
+
+    private final Axes axes;
+    private final boolean standIn;
+    private final int parallelism;
+    private final long warmupNanos;
+    private final long measureNanos;
+
+    public SweepRunner(Axes axes, boolean standIn, int parallelism, long warmup, long measure, TimeUnit unit) {
+        this.axes = axes;
+        this.standIn = standIn;
+        // 只有各格使用独立替身时才能并行，docker主从只有一对
+        this.parallelism = standIn ? Math.max(1, parallelism) : 1;
+        this.warmupNanos = unit.toNanos(warmup);
+        this.measureNanos = unit.toNanos(measure);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public List<CellResult> run() throws Exception {
+        List<Cell> cells = axes.cells();
+        if (!standIn) {
+            try (RedisPools pools = RedisPools.local(axes.maxConcurrency())) {
+                List<CellResult> results = new ArrayList<>();
+                for (Cell cell : cells) {
+                    results.add(runCell(pools, cell));
+                    System.out.printf("  完成 %d/%d%n", results.size(), cells.size());
+                }
+                return results;
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            LongAdder done = new LongAdder();
+            List<Future<CellResult>> futures = new ArrayList<>();
+            for (Cell cell : cells) {
+                futures.add(executor.submit(() -> {
+                    try (RedisPools pools = RedisPools.standIn(cell.concurrency,
+                            ReplicationSettings.fromSystemProperties())) {
+                        CellResult result = runCell(pools, cell);
+                        done.increment();
+                        System.out.printf("  完成 %d/%d%n", done.sum(), cells.size());
+                        return result;
+                    }
+                }));
+            }
+            List<CellResult> results = new ArrayList<>();
+            for (Future<CellResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 每个客户端线程借一条Master和一条Slave连接，按读比例随机选择读Slave或写Master，
+     * Pipeline深度大于1时攒满一批再同步，批内每个操作都记为这批的往返时间
+     */
+    CellResult runCell(RedisPools pools, Cell cell) throws Exception {
+        byte[][] keys = LoadSupport.keys("sweep:" + cell.index + ":", KEYSPACE);
+        byte[] value = LoadSupport.value(cell.valueSize);
+        try (Jedis master = pools.master().getResource()) {
+            LoadSupport.preload(master, keys, value);
+        }
+
+        LatencyRecorder latency = new LatencyRecorder();
+        LongAdder operations = new LongAdder();
+        LongAdder errors = new LongAdder();
+        ReplicationLagProbe lagProbe = new ReplicationLagProbe(pools.masterAddress(), pools.slaveAddress(),
+            LAG_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        long measureStart = System.nanoTime() + warmupNanos;
+        long deadline = measureStart + measureNanos;
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < cell.concurrency; c++) {
+            clients.add(new Thread(() -> runClient(pools, cell, keys, value, measureStart, deadline,
+                latency, operations, errors), "sweep-" + cell.index + "-client-" + c));
+        }
+        clients.forEach(Thread::start);
+        // 探针只在测量阶段运行
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStart - System.nanoTime()));
+        lagProbe.start();
+        for (Thread client : clients) {
+            client.join();
+        }
+        lagProbe.close();
+
+        if (!standIn) {
+            try (Jedis master = pools.master().getResource()) {
+                master.del(keys);
+            }
+        }
+        return new CellResult(cell, operations.sum(), errors.sum(), measureNanos, latency,
+            lagProbe.lagSeries().raw(), lagProbe.getTimeouts());
+    }
+
+    private static void runClient(RedisPools pools, Cell cell, byte[][] keys, byte[] value, long measureStart,
+                                  long deadline, LatencyRecorder latency, LongAdder operations, LongAdder errors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean[] isRead = new boolean[cell.pipelineDepth];
+        try (Jedis master = pools.master().getResource();
+             Jedis slave = pools.slave().getResource()) {
+            LoadSupport.closedLoop(measureStart, deadline, "sweep", errors, () -> {
+                int reads = 0;
+                for (int i = 0; i < cell.pipelineDepth; i++) {
+                    isRead[i] = random.nextDouble() < cell.readRatio;
+                    if (isRead[i]) {
+                        reads++;
+                    }
+                }
+                if (cell.pipelineDepth == 1) {
+                    byte[] key = keys[random.nextInt(KEYSPACE)];
+                    if (isRead[0]) {
+                        slave.get(key);
+                    } else {
+                        master.set(key, value);
+                    }
+                } else {
+                    Pipeline readPipeline = reads > 0 ? slave.pipelined() : null;
+                    Pipeline writePipeline = reads < cell.pipelineDepth ? master.pipelined() : null;
+                    for (int i = 0; i < cell.pipelineDepth; i++) {
+                        byte[] key = keys[random.nextInt(KEYSPACE)];
+                        if (isRead[i]) {
+                            readPipeline.get(key);
+                        } else {
+                            writePipeline.set(key, value);
+                        }
+                    }
+                    if (readPipeline != null) {
+                        readPipeline.sync();
+                    }
+                    if (writePipeline != null) {
+                        writePipeline.sync();
+                    }
+                }
+                return cell.pipelineDepth;
+            }, (elapsed, ops) -> {
+                for (int i = 0; i < ops; i++) {
+                    latency.record(isRead[i] ? LatencyRecorder.SLAVE : LatencyRecorder.MASTER,
+                        isRead[i] ? "GET" : "SET", elapsed);
+                }
+                operations.add(ops);
+            });
+        }
+    }
+
+    public static void printTable(List<CellResult> results) {
+        System.out.println("📊 参数矩阵扫描结果（延迟单位: µs，复制延迟单位: ms）");
+        System.out.printf("%7s %5s %5s %5s %10s %8s %8s %8s %8s %8s %8s %8s %6s %6s%n",
+            "值大小", "并发", "读比例", "深度", "ops/s", "读p50", "读p99", "写p50", "写p99",
+            "延迟p50", "延迟p99", "延迟max", "错误", "探针超时");
+        for (CellResult r : results) {
+            Cell c = r.cell;
+            System.out.printf(Locale.ROOT, "%7d %5d %5.2f %5d %10.0f %8s %8s %8s %8s %8s %8s %8s %6d %6d%n",
+                c.valueSize, c.concurrency, c.readRatio, c.pipelineDepth, r.opsPerSec(),
+                LoadSupport.micros(r.reads(), 50), LoadSupport.micros(r.reads(), 99), LoadSupport.micros(r.writes(), 50), LoadSupport.micros(r.writes(), 99),
+                LoadSupport.millis(r.lag, 50), LoadSupport.millis(r.lag, 99), LoadSupport.millis(r.lag, 100), r.errors, r.lagTimeouts);
+        }
+    }
+}
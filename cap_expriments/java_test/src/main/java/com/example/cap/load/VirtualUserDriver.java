@@ -0,0 +1,147 @@
+package com.example.cap.load;
+
+import com.example.cap.client.RedisPools;
+import com.example.cap.metrics.LatencyRecorder;
+import com.example.cap.metrics.LiveMetrics;
+import com.example.cap.results.ResultRecord;
+import org.HdrHistogram.Histogram;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模拟用户驱动：每个模拟用户执行一次完整会话（例如"看库存 + 下单"）。
+ * VIRTUAL模式下每个用户一个虚拟线程，PLATFORM模式下所有用户排队进入固定大小的平台线程池。
+ * 所有用户在同一时刻放行，会话延迟从放行时刻算起，因此包含排队等待线程/连接的时间。
+ * 两种模式下真正打到Redis的并发都不超过连接池大小，结果里一并记录这个上限。
+ */
+public final class VirtualUserDriver {
+    public static final String SESSION = "用户会话";
+    public static final String SERVICE = "会话执行";
+
+    public enum Mode {
+        VIRTUAL("虚拟线程"),
+        PLATFORM("平台线程池");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    @FunctionalInterface
+    public interface UserSession {
+        void run(RedisPools pools, int userId) throws Exception;
+    }
+
+    private VirtualUserDriver() {
+    }
+
+    public static final class Result {
+        public final Mode mode;
+        public final int users;
+        public final long elapsedNanos;
+        public final long completed;
+        public final long errors;
+        // Master连接池的连接上限，即两种模式共同的Redis侧并发上限
+        public final int connections;
+        public final LatencyRecorder latency;
+
+        Result(Mode mode, int users, long elapsedNanos, long completed, long errors,
+               int connections, LatencyRecorder latency) {
+            this.mode = mode;
+            this.users = users;
+            this.elapsedNanos = elapsedNanos;
+            this.completed = completed;
+            this.errors = errors;
+            this.connections = connections;
+            this.latency = latency;
+        }
+
+        public double sessionsPerSec() {
+            return completed * 1e9 / elapsedNanos;
+        }
+
+        public ResultRecord toRecord(String scenario) {
+            return ResultRecord.of(scenario)
+                .param("mode", mode)
+                .param("users", users)
+                .throughput(sessionsPerSec())
+                .metric("errors", errors)
+                .metric("connections", connections)
+                .latency("session", latency.series(LatencyRecorder.MASTER, SESSION))
+                .latency("service", latency.series(LatencyRecorder.MASTER, SERVICE));
+        }
+    }
+
+    public static Result run(Mode mode, int users, int platformThreads, RedisPools pools,
+                             UserSession session) throws InterruptedException {
+        LatencyRecorder latency = new LatencyRecorder();
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(users);
+
+        ExecutorService executor = mode == Mode.VIRTUAL
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(platformThreads);
+        long[] releasedAt = new long[1];
+        try {
+            for (int u = 0; u < users; u++) {
+                final int userId = u;
+                executor.submit(() -> {
+                    try {
+                        gate.await();
+                        long start = System.nanoTime();
+                        session.run(pools, userId);
+                        long end = System.nanoTime();
+                        latency.record(LatencyRecorder.MASTER, SERVICE, end - start);
+                        latency.record(LatencyRecorder.MASTER, SESSION, end - releasedAt[0]);
+                        completed.increment();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        errors.increment();
+                    } catch (Exception e) {
+                        errors.increment();
+                        LiveMetrics.countFailure("virtual_user");
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            releasedAt[0] = System.nanoTime();
+            gate.countDown();
+            done.await();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - releasedAt[0];
+        return new Result(mode, users, elapsed, completed.sum(), errors.sum(),
+            pools.master().getMaxTotal(), latency);
+    }
+
+    /**
+     * 打印扩展曲线：每个用户规模下虚拟线程与平台线程池的吞吐和会话延迟对比
+     */
+    public static void printScalingCurve(List<Result> results) {
+        System.out.printf("%8s %-12s %10s %12s %10s %10s %10s %8s %8s%n",
+            "用户数", "模式", "耗时(ms)", "会话/秒", "p50(ms)", "p99(ms)", "max(ms)", "失败", "连接上限");
+        for (Result r : results) {
+            Histogram h = r.latency.series(LatencyRecorder.MASTER, SESSION).raw();
+            System.out.printf("%8d %-12s %10.1f %12.0f %10.2f %10.2f %10.2f %8d %8d%n",
+                r.users, r.mode.label(), r.elapsedNanos / 1e6, r.sessionsPerSec(),
+                h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6, h.getMaxValue() / 1e6,
+                r.errors, r.connections);
+        }
+    }
+}
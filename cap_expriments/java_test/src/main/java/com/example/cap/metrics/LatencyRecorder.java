@@ -0,0 +1,143 @@
+package com.example.cap.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 按"节点 + 操作"分别记录单次操作的纳秒级延迟（HdrHistogram）。
+ * 每个序列同时维护原始分布和协调遗漏（coordinated omission）修正后的分布：
+ * 对按固定节奏发起的操作传入期望间隔，一次慢请求会补记它挡住的那些请求。
+ */
+public class LatencyRecorder {
+    public static final String MASTER = "master";
+    public static final String SLAVE = "slave";
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    // 节点 -> 操作 -> 序列，两级查找不用拼接字符串，热路径上记录一次不产生新对象
+    private final Map<String, Map<String, Series>> series = new ConcurrentHashMap<>();
+
+    public static final class Series {
+        private final String node;
+        private final String operation;
+        private final Histogram raw = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        private final Histogram corrected = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+
+        Series(String node, String operation) {
+            this.node = node;
+            this.operation = operation;
+        }
+
+        public String node() {
+            return node;
+        }
+
+        public String operation() {
+            return operation;
+        }
+
+        public Histogram raw() {
+            return raw;
+        }
+
+        public Histogram corrected() {
+            return corrected;
+        }
+    }
+
+    public Series series(String node, String operation) {
+        Map<String, Series> byOperation = series.get(node);
+        Series s = byOperation == null ? null : byOperation.get(operation);
+        if (s == null) {
+            s = series.computeIfAbsent(node, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(operation, k -> new Series(node, operation));
+        }
+        return s;
+    }
+
+    public void record(String node, String operation, long nanos) {
+        record(node, operation, nanos, 0);
+    }
+
+    /**
+     * @param expectedIntervalNanos 操作本应发起的间隔，0表示闭环调用不做修正
+     */
+    public void record(String node, String operation, long nanos, long expectedIntervalNanos) {
+        Series s = series(node, operation);
+        long value = Math.max(1, nanos);
+        s.raw.recordValue(value);
+        LiveMetrics.recordOperation(node, operation, value);
+        if (expectedIntervalNanos > 0) {
+            s.corrected.recordValueWithExpectedInterval(value, expectedIntervalNanos);
+        } else {
+            s.corrected.recordValue(value);
+        }
+    }
+
+    public <T> T time(String node, String operation, Supplier<T> action) {
+        return time(node, operation, 0, action);
+    }
+
+    public <T> T time(String node, String operation, long expectedIntervalNanos, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(node, operation, System.nanoTime() - start, expectedIntervalNanos);
+        }
+    }
+
+    /**
+     * 合并另一个记录器（例如每个线程/每轮实验各自记录，最后汇总）
+     */
+    public void merge(LatencyRecorder other) {
+        for (Series s : other.allSeries()) {
+            Series target = series(s.node, s.operation);
+            target.raw.add(s.raw);
+            target.corrected.add(s.corrected);
+        }
+    }
+
+    public List<Series> allSeries() {
+        List<Series> all = new ArrayList<>();
+        for (Map<String, Series> byOperation : series.values()) {
+            all.addAll(byOperation.values());
+        }
+        all.sort((a, b) -> (a.node + a.operation).compareTo(b.node + b.operation));
+        return all;
+    }
+
+    public void reset() {
+        series.clear();
+    }
+
+    public void printReport(String title) {
+        System.out.printf("⏱️  延迟分布 - %s (单位: µs)%n", title);
+        System.out.printf("%-8s %-10s %8s %9s %9s %9s %9s %9s%n",
+            "节点", "操作", "次数", "p50", "p90", "p99", "p99.9", "max");
+        for (Series s : allSeries()) {
+            printRow(s.node, s.operation, s.raw);
+            if (s.corrected.getTotalCount() != s.raw.getTotalCount()) {
+                printRow("", "└CO修正", s.corrected);
+            }
+        }
+    }
+
+    private static void printRow(String node, String operation, Histogram h) {
+        System.out.printf("%-8s %-10s %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+            node, operation, h.getTotalCount(),
+            micros(h.getValueAtPercentile(50)), micros(h.getValueAtPercentile(90)),
+            micros(h.getValueAtPercentile(99)), micros(h.getValueAtPercentile(99.9)),
+            micros(h.getMaxValue()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
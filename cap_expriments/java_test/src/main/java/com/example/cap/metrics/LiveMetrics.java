@@ -0,0 +1,218 @@
+package com.example.cap.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 进程内的实时指标，按Prometheus文本格式导出，由 {@link MetricsEndpoint} 通过HTTP暴露。
+ * 操作计数和延迟直方图在热路径上只做LongAdder累加；连接池、复制延迟这类状态在抓取时才回调读取。
+ * 未启用时所有记录方法直接返回。
+ */
+public final class LiveMetrics {
+    static final String OPERATIONS = "cap_operations_total";
+    static final String DURATION = "cap_operation_duration_seconds";
+    static final String FAILURES = "cap_failures_total";
+    static final String FAULT_TRANSITIONS = "cap_fault_transitions_total";
+
+    // 直方图桶上界：100µs ~ 10s
+    private static final double[] BUCKET_SECONDS =
+        {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKET_SECONDS[i] * 1e9);
+        }
+    }
+
+    private static volatile boolean enabled;
+    // 节点 -> 操作，两级查找避免每次记录都拼接键
+    private static final Map<String, Map<String, Operation>> operations = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Callback> callbacks = new ConcurrentHashMap<>();
+
+    private static final class Operation {
+        final String labels;
+        final LongAdder count = new LongAdder();
+        final LongAdder sumNanos = new LongAdder();
+        // 最后一格是 +Inf
+        final LongAdder[] buckets = new LongAdder[BUCKET_NANOS.length + 1];
+
+        Operation(String labels) {
+            this.labels = labels;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            int i = 0;
+            while (i < BUCKET_NANOS.length && nanos > BUCKET_NANOS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            count.increment();
+            sumNanos.add(nanos);
+        }
+    }
+
+    private static final class Callback {
+        final String name;
+        final String type;
+        final String help;
+        final String labels;
+        final DoubleSupplier value;
+
+        Callback(String name, String type, String help, String labels, DoubleSupplier value) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+
+    private LiveMetrics() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次操作的耗时，由 {@link LatencyRecorder#record} 调用
+     */
+    public static void recordOperation(String node, String operation, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Operation> byOperation = operations.get(node);
+        Operation op = byOperation == null ? null : byOperation.get(operation);
+        if (op == null) {
+            op = operations.computeIfAbsent(node, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(operation, k -> new Operation(labels("node", node, "operation", operation)));
+        }
+        op.record(nanos);
+    }
+
+    /**
+     * 客户端侧的失败（命令异常、超时、连接断开），按来源分别计数
+     */
+    public static void countFailure(String source) {
+        increment(FAILURES, labels("source", source));
+    }
+
+    /**
+     * 故障代理的状态切换（分区、恢复、停顿、注入延迟）
+     */
+    public static void countFaultTransition(String proxy, String transition) {
+        increment(FAULT_TRANSITIONS, labels("proxy", proxy, "transition", transition));
+    }
+
+    private static void increment(String name, String labels) {
+        if (!enabled) {
+            return;
+        }
+        String key = name + "{" + labels + "}";
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * 注册抓取时才读取的指标（gauge或由调用方维护的counter），同名同标签的注册会被替换
+     */
+    public static void register(String name, String type, String help, String labels, DoubleSupplier value) {
+        callbacks.put(name + "{" + labels + "}", new Callback(name, type, help, labels, value));
+    }
+
+    public static void unregister(String name, String labels) {
+        callbacks.remove(name + "{" + labels + "}");
+    }
+
+    /**
+     * 按 key="value" 成对拼接标签，值里的反斜杠、引号和换行按文本格式转义
+     */
+    public static String labels(String... pairs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(pairs[i]).append("=\"")
+                .append(pairs[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                .append('"');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 当前全部指标的文本格式
+     */
+    public static String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        Map<String, Operation> ops = new TreeMap<>();
+        for (Map<String, Operation> byOperation : operations.values()) {
+            for (Operation op : byOperation.values()) {
+                ops.put(op.labels, op);
+            }
+        }
+        if (!ops.isEmpty()) {
+            header(sb, OPERATIONS, "counter", "完成的操作次数（按节点和操作）");
+            for (Operation op : ops.values()) {
+                sb.append(OPERATIONS).append('{').append(op.labels).append("} ").append(op.count.sum()).append('\n');
+            }
+            header(sb, DURATION, "histogram", "单次操作耗时");
+            for (Operation op : ops.values()) {
+                long cumulative = 0;
+                for (int i = 0; i < op.buckets.length; i++) {
+                    cumulative += op.buckets[i].sum();
+                    String le = i < BUCKET_SECONDS.length ? Double.toString(BUCKET_SECONDS[i]) : "+Inf";
+                    sb.append(DURATION).append("_bucket{").append(op.labels).append(",le=\"").append(le).append("\"} ")
+                        .append(cumulative).append('\n');
+                }
+                sb.append(DURATION).append("_sum{").append(op.labels).append("} ").append(op.sumNanos.sum() / 1e9).append('\n');
+                sb.append(DURATION).append("_count{").append(op.labels).append("} ").append(cumulative).append('\n');
+            }
+        }
+        appendCounters(sb, FAILURES, "客户端侧失败次数（按来源）");
+        appendCounters(sb, FAULT_TRANSITIONS, "故障注入状态切换次数");
+        String current = null;
+        for (Callback c : new TreeMap<>(callbacks).values()) {
+            if (!c.name.equals(current)) {
+                header(sb, c.name, c.type, c.help);
+                current = c.name;
+            }
+            sb.append(c.name).append('{').append(c.labels).append("} ").append(c.value.getAsDouble()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendCounters(StringBuilder sb, String name, String help) {
+        boolean first = true;
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            if (!e.getKey().startsWith(name + "{")) {
+                continue;
+            }
+            if (first) {
+                header(sb, name, "counter", help);
+                first = false;
+            }
+            sb.append(e.getKey()).append(' ').append(e.getValue().sum()).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.cap.metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 极简HTTP端点：GET /metrics 返回 {@link LiveMetrics} 的文本格式，供本地Prometheus或curl轮询。
+ * 没有用JDK自带的HttpServer，它的分发线程不是守护线程，会让实验main结束后进程不退出。
+ * 端点没有鉴权，默认只监听回环地址；需要从其他主机抓取时用 -Dcap.metrics.bind 显式指定监听地址。
+ */
+public class MetricsEndpoint implements AutoCloseable {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    public MetricsEndpoint(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public MetricsEndpoint(InetAddress bindAddress, int port) throws IOException {
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(bindAddress, port));
+        LiveMetrics.enable();
+        acceptor = new Thread(this::acceptLoop, "metrics-endpoint");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * 设置了 -Dcap.metrics.port 时启动端点并返回，否则返回null；
+     * 默认监听回环地址，-Dcap.metrics.bind=0.0.0.0（或某个网卡地址）时对外开放
+     */
+    public static MetricsEndpoint startIfConfigured() throws IOException {
+        Integer port = Integer.getInteger("cap.metrics.port");
+        if (port == null) {
+            return null;
+        }
+        String bind = System.getProperty("cap.metrics.bind");
+        InetAddress address = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+        MetricsEndpoint endpoint = new MetricsEndpoint(address, port);
+        System.out.printf("📡 实时指标: http://%s:%d/metrics%n",
+            bind == null ? "localhost" : address.getHostAddress(), endpoint.getPort());
+        return endpoint;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(2000);
+                handle(socket);
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("⚠️  指标端点请求失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = in.readLine();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            // 丢弃请求头
+        }
+        String[] parts = requestLine == null ? new String[0] : requestLine.split(" ");
+        int status;
+        String body;
+        if (parts.length >= 2 && "GET".equals(parts[0]) && (parts[1].equals("/metrics") || parts[1].startsWith("/metrics?"))) {
+            status = 200;
+            body = LiveMetrics.scrape();
+        } else {
+            status = 404;
+            body = "只提供 GET /metrics\n";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 " + status + (status == 200 ? " OK" : " Not Found") + "\r\n"
+            + "Content-Type: " + CONTENT_TYPE + "\r\n"
+            + "Content-Length: " + bytes.length + "\r\n"
+            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // 关闭时的异常不影响实验结果
+        }
+    }
+}
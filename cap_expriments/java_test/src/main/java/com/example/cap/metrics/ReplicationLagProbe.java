@@ -0,0 +1,170 @@
+package com.example.cap.metrics;
+
+import com.example.cap.jfr.ReplicationLagEvent;
+import com.example.cap.results.ResultRecord;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 复制延迟探针：向Master写入带序号的金丝雀键，然后用System.nanoTime轮询Slave，
+ * 从Master确认写入到Slave可见的时间记为一次复制延迟，精度约为一次Slave GET的往返时间加轮询间隔。
+ * 探针使用自己的两条连接，在后台线程中持续运行，不占用实验的连接池。
+ */
+public class ReplicationLagProbe implements AutoCloseable {
+    public static final String SERIES = "复制延迟";
+    // 两次轮询之间的停顿，避免空转占满一个核、给Slave额外加压
+    private static final long POLL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    private final HostAndPort masterAddr;
+    private final HostAndPort slaveAddr;
+    private final long intervalNanos;
+    private final long timeoutNanos;
+    private final String canaryKey = "lag_probe:" + Long.toString(System.nanoTime(), 36);
+
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final AtomicLong lastLagNanos = new AtomicLong(-1);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private final String metricLabels;
+    private volatile boolean running;
+    private Thread worker;
+
+    public ReplicationLagProbe(HostAndPort masterAddr, HostAndPort slaveAddr, long interval, TimeUnit unit) {
+        this(masterAddr, slaveAddr, unit.toNanos(interval), TimeUnit.SECONDS.toNanos(5));
+    }
+
+    public ReplicationLagProbe(HostAndPort masterAddr, HostAndPort slaveAddr, long intervalNanos, long timeoutNanos) {
+        this.masterAddr = masterAddr;
+        this.slaveAddr = slaveAddr;
+        this.intervalNanos = intervalNanos;
+        this.timeoutNanos = timeoutNanos;
+        this.metricLabels = LiveMetrics.labels("master", masterAddr.toString(), "slave", slaveAddr.toString());
+    }
+
+    /**
+     * 轮询Slave直到key等于expected，返回从sinceNanos起经过的纳秒数，超时返回-1
+     */
+    public static long awaitValue(Jedis slave, String key, String expected, long sinceNanos, long timeoutNanos) {
+        while (true) {
+            String value = slave.get(key);
+            long now = System.nanoTime();
+            if (expected.equals(value)) {
+                return now - sinceNanos;
+            }
+            if (now - sinceNanos >= timeoutNanos) {
+                return -1;
+            }
+            LockSupport.parkNanos(POLL_BACKOFF_NANOS);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        LiveMetrics.register("cap_replication_lag_seconds", "gauge", "最近一次探针测得的复制延迟", metricLabels,
+            () -> lastLagNanos.get() < 0 ? Double.NaN : lastLagNanos.get() / 1e9);
+        LiveMetrics.register("cap_replication_lag_timeouts_total", "counter", "探针等待复制超时次数", metricLabels,
+            timeouts::sum);
+        LiveMetrics.register("cap_replication_probe_errors_total", "counter", "探针连接失败次数", metricLabels,
+            errors::sum);
+        worker = new Thread(this::runLoop, "replication-lag-probe");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void runLoop() {
+        long seq = 0;
+        while (running) {
+            try (Jedis master = new Jedis(masterAddr);
+                 Jedis slave = new Jedis(slaveAddr)) {
+                while (running) {
+                    probeOnce(master, slave, ++seq);
+                    LockSupport.parkNanos(intervalNanos);
+                }
+                master.del(canaryKey);
+            } catch (Exception e) {
+                // Master或Slave不可达（例如分区期间），记一次错误后稍后重连
+                errors.increment();
+                LockSupport.parkNanos(Math.max(intervalNanos, TimeUnit.MILLISECONDS.toNanos(100)));
+            }
+        }
+    }
+
+    private void probeOnce(Jedis master, Jedis slave, long seq) {
+        String value = Long.toString(seq);
+        master.set(canaryKey, value);
+        ReplicationLagEvent event = new ReplicationLagEvent();
+        event.begin();
+        long ackNanos = System.nanoTime();
+        long lag = awaitValue(slave, canaryKey, value, ackNanos, timeoutNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.master = masterAddr.toString();
+            event.slave = slaveAddr.toString();
+            event.lag = Math.max(lag, 0);
+            event.timedOut = lag < 0;
+            event.commit();
+        }
+        if (lag < 0) {
+            timeouts.increment();
+        } else {
+            recorder.record(LatencyRecorder.SLAVE, SERIES, lag);
+            lastLagNanos.set(lag);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        LiveMetrics.unregister("cap_replication_lag_seconds", metricLabels);
+        LiveMetrics.unregister("cap_replication_lag_timeouts_total", metricLabels);
+        LiveMetrics.unregister("cap_replication_probe_errors_total", metricLabels);
+        if (worker != null) {
+            try {
+                worker.join(TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    public LatencyRecorder.Series lagSeries() {
+        return recorder.series(LatencyRecorder.SLAVE, SERIES);
+    }
+
+    /**
+     * 最近一次探测到的复制延迟（纳秒），尚无样本时为-1
+     */
+    public long lastLagNanos() {
+        return lastLagNanos.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public ResultRecord toRecord() {
+        return ResultRecord.of("复制延迟探针")
+            .latency("lag", lagSeries())
+            .metric("timeouts", getTimeouts())
+            .metric("errors", getErrors());
+    }
+
+    public void printReport() {
+        recorder.printReport("后台复制延迟探针");
+        System.out.printf("探针超时: %d 次, 连接异常: %d 次%n", getTimeouts(), getErrors());
+    }
+}
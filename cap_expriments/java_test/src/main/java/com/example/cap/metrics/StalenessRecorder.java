@@ -0,0 +1,166 @@
+package com.example.cap.metrics;
+
+import com.example.cap.client.VersionedValue;
+import com.example.cap.results.ResultRecord;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 版本化写入和副本读的过时程度统计。写入方给每个键分配单调递增的序号，Master确认后记下确认时刻；
+ * 副本读到的序号与读开始前已确认的最新序号之差是"落后版本数"，
+ * 读开始时刻减去第一个比它新的版本的确认时刻是"过时时长"，读到最新版本时两者都是0。
+ * 读到null、没有版本戳的值或写入时间早于本记录器创建的值（上一次运行留下的）都按序号0处理。
+ * 同一个键的并发写按序号而不是到达Master的先后计算。
+ */
+public class StalenessRecorder {
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<String, KeyVersions> keys = new ConcurrentHashMap<>();
+    private final Histogram versions = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    // 过时时长按微秒记录
+    private final Histogram staleness = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final long createdMillis = System.currentTimeMillis();
+
+    /**
+     * 单个键已分配的序号和每个序号的确认时刻（0表示尚未确认）
+     */
+    private static final class KeyVersions {
+        final AtomicLong nextSeq = new AtomicLong();
+        long[] ackNanos = new long[16];
+        long latestAcked;
+
+        synchronized void acknowledge(long seq, long nanos) {
+            if (seq >= ackNanos.length) {
+                ackNanos = Arrays.copyOf(ackNanos, (int) Math.max(seq + 1, ackNanos.length * 2L));
+            }
+            ackNanos[(int) seq] = nanos;
+            latestAcked = Math.max(latestAcked, seq);
+        }
+
+        /**
+         * 返回 {落后版本数, 过时纳秒}，只计入readStart之前已确认的版本
+         */
+        synchronized long[] behind(long seq, long readStart) {
+            long newest = latestAcked;
+            while (newest > seq && (ackNanos[(int) newest] == 0 || ackNanos[(int) newest] > readStart)) {
+                newest--;
+            }
+            if (newest <= seq) {
+                return new long[] {0, 0};
+            }
+            for (long s = seq + 1; s <= newest; s++) {
+                long ack = ackNanos[(int) s];
+                if (ack != 0 && ack <= readStart) {
+                    return new long[] {newest - seq, readStart - ack};
+                }
+            }
+            return new long[] {newest - seq, 0};
+        }
+    }
+
+    /**
+     * 为key分配下一个版本，序号从1开始
+     */
+    public VersionedValue next(String key, String payload) {
+        long seq = versionsOf(key).nextSeq.incrementAndGet();
+        return new VersionedValue(seq, System.currentTimeMillis(), payload);
+    }
+
+    /**
+     * Master确认写入后调用
+     */
+    public void acknowledged(String key, VersionedValue value) {
+        versionsOf(key).acknowledge(value.seq, System.nanoTime());
+    }
+
+    /**
+     * 写入一个新版本并在Master确认后登记，返回实际写入的值
+     */
+    public VersionedValue set(Jedis master, String key, String payload) {
+        VersionedValue value = next(key, payload);
+        master.set(key, value.encode());
+        acknowledged(key, value);
+        return value;
+    }
+
+    /**
+     * 从副本读取并记录过时程度，返回读到的版本（null或无版本戳时为null）
+     */
+    public VersionedValue get(Jedis replica, String key) {
+        long readStart = System.nanoTime();
+        String raw = replica.get(key);
+        return observe(key, raw, readStart);
+    }
+
+    /**
+     * 记录一次读到的原始值，readStartNanos为发起读的 System.nanoTime()
+     */
+    public VersionedValue observe(String key, String raw, long readStartNanos) {
+        VersionedValue value = VersionedValue.parse(raw);
+        long seq = value == null || value.writerMillis < createdMillis ? 0 : value.seq;
+        long[] behind = versionsOf(key).behind(seq, readStartNanos);
+        reads.increment();
+        if (behind[0] > 0) {
+            stale.increment();
+        }
+        versions.recordValue(behind[0]);
+        staleness.recordValue(behind[1] / 1000);
+        return value;
+    }
+
+    private KeyVersions versionsOf(String key) {
+        KeyVersions v = keys.get(key);
+        return v != null ? v : keys.computeIfAbsent(key, k -> new KeyVersions());
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getStaleReads() {
+        return stale.sum();
+    }
+
+    public void printReport(String title) {
+        long total = getReads();
+        System.out.printf("🕰️  副本读过时程度 - %s: %d 次读, 读到旧版本 %d 次 (%.1f%%)%n",
+            title, total, getStaleReads(), total == 0 ? 0 : getStaleReads() * 100.0 / total);
+        if (total == 0) {
+            return;
+        }
+        System.out.printf("%-12s %9s %9s %9s %9s %9s%n", "", "p50", "p90", "p99", "p99.9", "max");
+        System.out.printf("%-12s %9d %9d %9d %9d %9d%n", "落后版本数",
+            versions.getValueAtPercentile(50), versions.getValueAtPercentile(90), versions.getValueAtPercentile(99),
+            versions.getValueAtPercentile(99.9), versions.getMaxValue());
+        System.out.printf("%-12s %9.1f %9.1f %9.1f %9.1f %9.1f%n", "过时时长(ms)",
+            millis(staleness.getValueAtPercentile(50)), millis(staleness.getValueAtPercentile(90)),
+            millis(staleness.getValueAtPercentile(99)), millis(staleness.getValueAtPercentile(99.9)),
+            millis(staleness.getMaxValue()));
+    }
+
+    public ResultRecord toRecord(String scenario) {
+        long total = getReads();
+        return ResultRecord.of(scenario)
+            .metric("replica_reads", total)
+            .metric("stale_read_ratio", total == 0 ? 0 : (double) getStaleReads() / total)
+            .metric("versions_behind_p50", versions.getValueAtPercentile(50))
+            .metric("versions_behind_p99", versions.getValueAtPercentile(99))
+            .metric("versions_behind_max", versions.getMaxValue())
+            .metric("staleness_ms_p50", millis(staleness.getValueAtPercentile(50)))
+            .metric("staleness_ms_p99", millis(staleness.getValueAtPercentile(99)))
+            .metric("staleness_ms_max", millis(staleness.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
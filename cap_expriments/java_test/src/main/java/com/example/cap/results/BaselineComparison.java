@@ -0,0 +1,138 @@
+package com.example.cap.results;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把一次运行的JSONL结果与基线对比：按"实验 + 场景 + 参数"匹配记录，
+ * 吞吐下降或p99上升超过阈值即判为回归。样本数不足的p99波动太大，只展示不判定。
+ * 基线中有、本次运行缺少的场景（实验崩溃或被跳过）同样算门禁失败。
+ */
+public class BaselineComparison {
+    static final long MIN_P99_SAMPLES = 100;
+
+    public static final class Finding {
+        public final String key;
+        public final String metric;
+        public final double baseline;
+        public final double current;
+        public final boolean gated;
+        public final boolean regression;
+
+        Finding(String key, String metric, double baseline, double current, boolean gated, boolean regression) {
+            this.key = key;
+            this.metric = metric;
+            this.baseline = baseline;
+            this.current = current;
+            this.gated = gated;
+            this.regression = regression;
+        }
+
+        public double changePercent() {
+            return (current - baseline) / baseline * 100;
+        }
+    }
+
+    private final double thresholdPercent;
+    private final List<Finding> findings = new ArrayList<>();
+    private final List<String> missing = new ArrayList<>();
+
+    public BaselineComparison(double thresholdPercent) {
+        this.thresholdPercent = thresholdPercent;
+    }
+
+    /**
+     * 读取JSONL结果文件，同一键出现多次时以最后一条为准
+     */
+    public static Map<String, ResultRecord> load(Path jsonl) throws IOException {
+        Map<String, ResultRecord> records = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(jsonl, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+            ResultRecord record = ResultRecord.of(json.get("scenario").getAsString());
+            for (Map.Entry<String, JsonElement> e : json.getAsJsonObject("params").entrySet()) {
+                record.param(e.getKey(), e.getValue().getAsString());
+            }
+            for (Map.Entry<String, JsonElement> e : json.getAsJsonObject("metrics").entrySet()) {
+                record.metric(e.getKey(), e.getValue().getAsDouble());
+            }
+            records.put(json.get("experiment").getAsString() + " | " + record.key(), record);
+        }
+        return records;
+    }
+
+    public BaselineComparison compare(Map<String, ResultRecord> baseline, Map<String, ResultRecord> current) {
+        for (Map.Entry<String, ResultRecord> entry : baseline.entrySet()) {
+            ResultRecord now = current.get(entry.getKey());
+            if (now == null) {
+                missing.add(entry.getKey());
+                continue;
+            }
+            Map<String, Double> before = entry.getValue().metrics();
+            for (Map.Entry<String, Double> metric : before.entrySet()) {
+                String name = metric.getKey();
+                Double value = now.metrics().get(name);
+                boolean throughput = name.startsWith(ResultRecord.THROUGHPUT);
+                boolean p99 = name.endsWith(ResultRecord.P99_SUFFIX);
+                if (value == null || metric.getValue() <= 0 || (!throughput && !p99)) {
+                    continue;
+                }
+                boolean gated = throughput || enoughSamples(name, before, now.metrics());
+                double change = (value - metric.getValue()) / metric.getValue() * 100;
+                boolean regression = gated && (throughput ? change < -thresholdPercent : change > thresholdPercent);
+                findings.add(new Finding(entry.getKey(), name, metric.getValue(), value, gated, regression));
+            }
+        }
+        return this;
+    }
+
+    private static boolean enoughSamples(String p99Metric, Map<String, Double> before, Map<String, Double> after) {
+        String count = p99Metric.substring(0, p99Metric.length() - ResultRecord.P99_SUFFIX.length()) + "_count";
+        return before.getOrDefault(count, 0.0) >= MIN_P99_SAMPLES && after.getOrDefault(count, 0.0) >= MIN_P99_SAMPLES;
+    }
+
+    public List<Finding> findings() {
+        return findings;
+    }
+
+    public long regressions() {
+        return findings.stream().filter(f -> f.regression).count();
+    }
+
+    public List<String> missing() {
+        return missing;
+    }
+
+    /**
+     * 门禁失败项：回归的指标加上缺少的场景
+     */
+    public long failures() {
+        return regressions() + missing.size();
+    }
+
+    public void print() {
+        System.out.printf("📏 与基线对比（阈值 ±%.1f%%：吞吐下降或p99上升超过阈值判为回归）%n", thresholdPercent);
+        System.out.printf("%-60s %-28s %12s %12s %9s  %s%n", "场景", "指标", "基线", "本次", "变化", "判定");
+        for (Finding f : findings) {
+            String verdict = f.regression ? "❌ 回归" : f.gated ? "✅" : "· 样本不足";
+            System.out.printf("%-60s %-28s %12.1f %12.1f %+8.1f%%  %s%n",
+                f.key, f.metric, f.baseline, f.current, f.changePercent(), verdict);
+        }
+        for (String key : missing) {
+            System.out.println("⚠️  本次运行缺少基线中的场景: " + key);
+        }
+        System.out.printf("共对比 %d 项指标，回归 %d 项，缺少场景 %d 个%n", findings.size(), regressions(), missing.size());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.cap.results;
+
+import com.example.cap.metrics.LatencyRecorder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 一次运行的结构化结果：同时写 JSON Lines（每行一条记录，带完整环境信息）和长表CSV（每行一个指标），
+ * 文件为 &lt;结果目录&gt;/&lt;实验名&gt;-&lt;时间&gt;.jsonl/.csv，目录默认 results，可用 -Dcap.results.dir 覆盖。
+ * 第一次写入时才创建文件，线程安全。
+ */
+public class ResultLog implements AutoCloseable {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().serializeSpecialFloatingPointValues().create();
+
+    private final String experiment;
+    private final String runId;
+    private final Path directory;
+    private Map<String, Object> environment;
+    private BufferedWriter jsonl;
+    private BufferedWriter csv;
+    private Path jsonlPath;
+    private Path csvPath;
+    private int records;
+
+    public ResultLog(String experiment) {
+        this(experiment, Path.of(System.getProperty("cap.results.dir", "results")));
+    }
+
+    public ResultLog(String experiment, Path directory) {
+        this.experiment = experiment;
+        this.runId = experiment + "-" + LocalDateTime.now().format(FILE_TIME);
+        this.directory = directory;
+    }
+
+    public synchronized void add(ResultRecord record) {
+        try {
+            open();
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("run_id", runId);
+            line.put("experiment", experiment);
+            line.put("scenario", record.scenario());
+            line.put("params", record.params());
+            line.put("metrics", record.metrics());
+            line.put("env", environment);
+            jsonl.write(GSON.toJson(line));
+            jsonl.newLine();
+            String params = record.params().entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining(";"));
+            for (Map.Entry<String, Double> metric : record.metrics().entrySet()) {
+                csv.write(String.join(",", csvField(runId), csvField(experiment), csvField(record.scenario()),
+                    csvField(params), csvField(metric.getKey()), String.valueOf(metric.getValue()),
+                    csvField(String.valueOf(environment.get("git_commit"))),
+                    csvField(String.valueOf(environment.get("target")))));
+                csv.newLine();
+            }
+            records++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 把记录器里的每个"节点 + 操作"序列各写成一条记录
+     */
+    public void addLatencies(String scenario, LatencyRecorder recorder) {
+        for (LatencyRecorder.Series s : recorder.allSeries()) {
+            ResultRecord record = ResultRecord.of(scenario)
+                .param("node", s.node())
+                .param("operation", s.operation())
+                .latency("latency", s.raw());
+            if (s.corrected().getTotalCount() != s.raw().getTotalCount()) {
+                record.latency("latency_co", s.corrected());
+            }
+            add(record);
+        }
+    }
+
+    private void open() throws IOException {
+        if (jsonl != null) {
+            return;
+        }
+        environment = RunEnvironment.capture();
+        Files.createDirectories(directory);
+        jsonlPath = directory.resolve(runId + ".jsonl");
+        csvPath = directory.resolve(runId + ".csv");
+        jsonl = Files.newBufferedWriter(jsonlPath, StandardCharsets.UTF_8);
+        csv = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8);
+        csv.write("run_id,experiment,scenario,params,metric,value,git_commit,target");
+        csv.newLine();
+    }
+
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (jsonl == null) {
+            return;
+        }
+        try {
+            jsonl.close();
+            csv.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        jsonl = null;
+        System.out.printf("🗂️  结构化结果 %d 条: %s, %s%n", records, jsonlPath, csvPath);
+    }
+}
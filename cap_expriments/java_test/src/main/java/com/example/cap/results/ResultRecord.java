@@ -0,0 +1,84 @@
+package com.example.cap.results;
+
+import com.example.cap.metrics.LatencyRecorder;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一条结构化实验结果：场景名 + 参数 + 指标。
+ * 指标命名约定决定对比时的方向：throughput 开头越大越好，以 _p99_us 结尾越小越好，其他指标只展示不判定。
+ */
+public class ResultRecord {
+    public static final String THROUGHPUT = "throughput_ops";
+    public static final String P99_SUFFIX = "_p99_us";
+
+    private final String scenario;
+    private final Map<String, String> params = new LinkedHashMap<>();
+    private final Map<String, Double> metrics = new LinkedHashMap<>();
+
+    private ResultRecord(String scenario) {
+        this.scenario = scenario;
+    }
+
+    public static ResultRecord of(String scenario) {
+        return new ResultRecord(scenario);
+    }
+
+    public ResultRecord param(String name, Object value) {
+        params.put(name, String.valueOf(value));
+        return this;
+    }
+
+    public ResultRecord metric(String name, double value) {
+        metrics.put(name, value);
+        return this;
+    }
+
+    public ResultRecord throughput(double opsPerSec) {
+        return metric(THROUGHPUT, opsPerSec);
+    }
+
+    /**
+     * 以prefix为前缀记录次数和p50/p90/p99/p99.9/max（微秒）
+     */
+    public ResultRecord latency(String prefix, Histogram h) {
+        metric(prefix + "_count", h.getTotalCount());
+        if (h.getTotalCount() == 0) {
+            return this;
+        }
+        metric(prefix + "_p50_us", h.getValueAtPercentile(50) / 1e3);
+        metric(prefix + "_p90_us", h.getValueAtPercentile(90) / 1e3);
+        metric(prefix + P99_SUFFIX, h.getValueAtPercentile(99) / 1e3);
+        metric(prefix + "_p999_us", h.getValueAtPercentile(99.9) / 1e3);
+        return metric(prefix + "_max_us", h.getMaxValue() / 1e3);
+    }
+
+    public ResultRecord latency(String prefix, LatencyRecorder.Series series) {
+        return latency(prefix, series.raw());
+    }
+
+    public String scenario() {
+        return scenario;
+    }
+
+    public Map<String, String> params() {
+        return params;
+    }
+
+    public Map<String, Double> metrics() {
+        return metrics;
+    }
+
+    /**
+     * 对比时用来匹配基线记录的键：场景 + 全部参数
+     */
+    public String key() {
+        StringBuilder sb = new StringBuilder(scenario);
+        params.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(e -> sb.append(' ').append(e.getKey()).append('=').append(e.getValue()));
+        return sb.toString();
+    }
+}
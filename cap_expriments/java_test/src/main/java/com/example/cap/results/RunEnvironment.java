@@ -0,0 +1,87 @@
+package com.example.cap.results;
+
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 随每条结果一起写出的运行环境：时间、主机、JVM、Jedis版本、代码版本和全部 -Dcap.* 参数，
+ * 对比两次运行时先确认环境是否可比
+ */
+public final class RunEnvironment {
+
+    private RunEnvironment() {
+    }
+
+    public static Map<String, Object> capture() {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("timestamp", Instant.now().toString());
+        env.put("host", hostName());
+        env.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version")
+            + " " + System.getProperty("os.arch"));
+        env.put("cpus", Runtime.getRuntime().availableProcessors());
+        env.put("java", System.getProperty("java.vendor") + " " + System.getProperty("java.version"));
+        env.put("jvm_args", String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+        env.put("max_heap_mb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        env.put("jedis", jedisVersion());
+        env.put("git_commit", gitCommit());
+        env.put("target", System.getProperty("cap.target", "docker"));
+        Map<String, String> capProperties = new TreeMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("cap.")) {
+                capProperties.put(name, System.getProperty(name));
+            }
+        }
+        env.put("properties", capProperties);
+        return env;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static String jedisVersion() {
+        try (InputStream in = Jedis.class.getResourceAsStream("/META-INF/maven/redis.clients/jedis/pom.properties")) {
+            if (in == null) {
+                return "unknown";
+            }
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties.getProperty("version", "unknown");
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static String gitCommit() {
+        try {
+            Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD")
+                .redirectErrorStream(true)
+                .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (!process.waitFor(2, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                return "unknown";
+            }
+            return output;
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.cap.seckill;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 秒杀结束后的库存对账：以初始库存为准，精确统计超卖、少卖、重复订单号和"确认了却没落库"的订单
+ */
+public class SeckillAudit {
+    static final int MGET_BATCH = 1000;
+
+    public final int initialStock;
+    public final int buyers;
+    public final long acknowledgedOrders;
+    public final long finalStock;
+    public final long soldCounter;
+    public final long recordedOrders;
+    public final long duplicateOrderNumbers;
+    public final long outOfRangeOrderNumbers;
+
+    SeckillAudit(int initialStock, int buyers, long acknowledgedOrders, long finalStock, long soldCounter,
+                 List<String> orders) {
+        this.initialStock = initialStock;
+        this.buyers = buyers;
+        this.acknowledgedOrders = acknowledgedOrders;
+        this.finalStock = finalStock;
+        this.soldCounter = soldCounter;
+        BitSet seen = new BitSet();
+        long recorded = 0;
+        long duplicates = 0;
+        long outOfRange = 0;
+        for (String order : orders) {
+            if (order == null) {
+                continue;
+            }
+            recorded++;
+            long seq = Long.parseLong(order);
+            if (seq < 1 || seq > initialStock) {
+                outOfRange++;
+            }
+            if (seq >= 1 && seq <= Integer.MAX_VALUE) {
+                if (seen.get((int) seq)) {
+                    duplicates++;
+                }
+                seen.set((int) seq);
+            }
+        }
+        this.recordedOrders = recorded;
+        this.duplicateOrderNumbers = duplicates;
+        this.outOfRangeOrderNumbers = outOfRange;
+    }
+
+    /**
+     * 落库订单超过初始库存的件数
+     */
+    public long oversold() {
+        return Math.max(0, recordedOrders - initialStock);
+    }
+
+    /**
+     * 需求不少于库存时仍没卖出去的件数
+     */
+    public long undersold() {
+        long demand = Math.min(buyers, initialStock);
+        return Math.max(0, demand - recordedOrders);
+    }
+
+    /**
+     * 剩余库存 + 落库订单 是否等于初始库存
+     */
+    public boolean stockConserved() {
+        return finalStock + recordedOrders == initialStock && soldCounter == recordedOrders;
+    }
+
+    public boolean isClean() {
+        return oversold() == 0 && undersold() == 0 && duplicateOrderNumbers == 0
+            && outOfRangeOrderNumbers == 0 && acknowledgedOrders == recordedOrders && stockConserved();
+    }
+
+    public void print() {
+        System.out.printf("🔍 库存审计（初始库存 %d，买家 %d）:%n", initialStock, buyers);
+        System.out.printf("- 客户端确认订单: %d, 服务端订单记录: %d, 已售计数: %d, 剩余库存: %d%n",
+            acknowledgedOrders, recordedOrders, soldCounter, finalStock);
+        System.out.printf("- 超卖: %d 件, 少卖: %d 件, 重复订单号: %d, 超出库存的订单号: %d, 确认与落库差: %d%n",
+            oversold(), undersold(), duplicateOrderNumbers, outOfRangeOrderNumbers,
+            acknowledgedOrders - recordedOrders);
+        if (isClean()) {
+            System.out.println("- ✅ 对账通过：库存守恒，无超卖少卖");
+            return;
+        }
+        List<String> issues = new ArrayList<>();
+        if (oversold() > 0) {
+            issues.add("超卖");
+        }
+        if (undersold() > 0) {
+            issues.add("少卖");
+        }
+        if (duplicateOrderNumbers > 0 || outOfRangeOrderNumbers > 0) {
+            issues.add("订单号重复或越界");
+        }
+        if (!stockConserved()) {
+            issues.add("库存不守恒");
+        }
+        if (acknowledgedOrders != recordedOrders) {
+            issues.add("确认与落库不一致");
+        }
+        System.out.println("- ❌ 对账失败：" + String.join("、", issues));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.cap.seckill;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 秒杀引擎：一次Lua脚本调用在服务端原子地完成"查库存 → 扣库存 → 生成订单号 → 记录买家订单"，
+ * 每单一次往返，并发下不会超卖；同时保留"先查后扣"的朴素流程作为对照。
+ * 键名用 {活动ID} 作哈希标签，分片部署时同一活动的键落在同一个槽。
+ */
+public class SeckillEngine {
+    public static final long SOLD_OUT = -1;
+    public static final long DUPLICATE = -2;
+
+    // KEYS[1]=库存 KEYS[2]=已售计数(订单号) KEYS[3]=该买家的订单记录
+    public static final String RESERVE_SCRIPT =
+        "if redis.call('EXISTS', KEYS[3]) == 1 then return -2 end\n"
+            + "local stock = tonumber(redis.call('GET', KEYS[1]) or '0')\n"
+            + "if stock <= 0 then return -1 end\n"
+            + "redis.call('DECR', KEYS[1])\n"
+            + "local seq = redis.call('INCR', KEYS[2])\n"
+            + "redis.call('SET', KEYS[3], seq)\n"
+            + "return seq\n";
+
+    public enum Strategy {
+        ATOMIC_SCRIPT("Lua原子脚本"),
+        CHECK_THEN_ACT("先查后扣");
+
+        private final String label;
+
+        Strategy(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private final String campaign;
+    private final int initialStock;
+    private final String stockKey;
+    private final String soldKey;
+    private volatile String sha;
+
+    public SeckillEngine(String campaign, int initialStock) {
+        this.campaign = campaign;
+        this.initialStock = initialStock;
+        this.stockKey = "seckill:{" + campaign + "}:stock";
+        this.soldKey = "seckill:{" + campaign + "}:sold";
+    }
+
+    public String getCampaign() {
+        return campaign;
+    }
+
+    public int getInitialStock() {
+        return initialStock;
+    }
+
+    public String stockKey() {
+        return stockKey;
+    }
+
+    public String soldKey() {
+        return soldKey;
+    }
+
+    public String orderKey(int buyerId) {
+        return "seckill:{" + campaign + "}:order:" + buyerId;
+    }
+
+    /**
+     * 初始化库存和订单计数，并把脚本加载到Master
+     */
+    public void prepare(Jedis master) {
+        master.set(stockKey, String.valueOf(initialStock));
+        master.set(soldKey, "0");
+        sha = master.scriptLoad(RESERVE_SCRIPT);
+    }
+
+    /**
+     * 原子下单，返回订单号（从1开始），或 SOLD_OUT / DUPLICATE
+     */
+    public long reserve(Jedis master, int buyerId) {
+        List<String> keys = List.of(stockKey, soldKey, orderKey(buyerId));
+        List<String> args = List.of();
+        try {
+            return (Long) master.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            // 脚本缓存被清空（重启或故障切换后），退回EVAL并重新缓存
+            return (Long) master.eval(RESERVE_SCRIPT, keys, args);
+        }
+    }
+
+    /**
+     * 朴素流程：GET判断库存后再DECR、INCR、SET，四次往返之间其他买家可以插入
+     */
+    public long reserveNaively(Jedis master, int buyerId) {
+        String stock = master.get(stockKey);
+        if (stock == null || Long.parseLong(stock) <= 0) {
+            return SOLD_OUT;
+        }
+        master.decr(stockKey);
+        long seq = master.incr(soldKey);
+        master.set(orderKey(buyerId), String.valueOf(seq));
+        return seq;
+    }
+
+    public long reserve(Strategy strategy, Jedis master, int buyerId) {
+        return strategy == Strategy.ATOMIC_SCRIPT ? reserve(master, buyerId) : reserveNaively(master, buyerId);
+    }
+
+    /**
+     * 读取服务端的库存、已售计数和全部买家订单记录，与客户端确认的订单数对账
+     */
+    public SeckillAudit audit(Jedis master, int buyers, long acknowledgedOrders) {
+        List<String> orderKeys = new ArrayList<>(buyers);
+        for (int i = 0; i < buyers; i++) {
+            orderKeys.add(orderKey(i));
+        }
+        List<String> orders = new ArrayList<>(buyers);
+        for (int from = 0; from < buyers; from += SeckillAudit.MGET_BATCH) {
+            List<String> batch = orderKeys.subList(from, Math.min(buyers, from + SeckillAudit.MGET_BATCH));
+            orders.addAll(master.mget(batch.toArray(new String[0])));
+        }
+        return new SeckillAudit(initialStock, buyers, acknowledgedOrders,
+            parse(master.get(stockKey)), parse(master.get(soldKey)), orders);
+    }
+
+    private static long parse(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.cap.standin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RESP2方式的客户端缓存失效通知：CLIENT ID、SUBSCRIBE __redis__:invalidate、
+ * CLIENT TRACKING ON REDIRECT id BCAST PREFIX ...。替身只实现广播（BCAST）模式，
+ * 未带BCAST的登记也按广播处理，多发失效消息不影响缓存正确性。
+ */
+final class ClientTracking {
+    static final String INVALIDATE_CHANNEL = "__redis__:invalidate";
+
+    static final class Client {
+        final long id;
+        final OutputStream out;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile boolean subscribed;
+
+        Client(long id, OutputStream out) {
+            this.id = id;
+            this.out = out;
+        }
+    }
+
+    private static final class Registration {
+        final long ownerId;
+        final long redirectId;
+        final List<String> prefixes;
+
+        Registration(long ownerId, long redirectId, List<String> prefixes) {
+            this.ownerId = ownerId;
+            this.redirectId = redirectId;
+            this.prefixes = prefixes;
+        }
+
+        boolean matches(String key) {
+            if (prefixes.isEmpty()) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, Client> clients = new ConcurrentHashMap<>();
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    Client connect(OutputStream out) {
+        Client client = new Client(nextId.incrementAndGet(), out);
+        clients.put(client.id, client);
+        return client;
+    }
+
+    void disconnect(Client client) {
+        clients.remove(client.id);
+        registrations.removeIf(r -> r.ownerId == client.id || r.redirectId == client.id);
+    }
+
+    boolean isActive() {
+        return !registrations.isEmpty();
+    }
+
+    /**
+     * 处理 CLIENT ID / CLIENT TRACKING / SUBSCRIBE，其他命令返回false交给常规执行路径
+     */
+    boolean handle(Client client, String cmd, List<byte[]> args) throws IOException {
+        if ("SUBSCRIBE".equals(cmd)) {
+            subscribe(client, args);
+            return true;
+        }
+        if (!"CLIENT".equals(cmd) || args.size() < 2) {
+            return false;
+        }
+        String sub = StandInNode.str(args.get(1)).toUpperCase(Locale.ROOT);
+        if ("ID".equals(sub)) {
+            RespProtocol.writeInteger(client.out, client.id);
+            return true;
+        }
+        if (!"TRACKING".equals(sub)) {
+            return false;
+        }
+        if (args.size() < 3) {
+            RespProtocol.writeError(client.out, "ERR wrong number of arguments for 'client|tracking' command");
+            return true;
+        }
+        registrations.removeIf(r -> r.ownerId == client.id);
+        if ("ON".equalsIgnoreCase(StandInNode.str(args.get(2)))) {
+            long redirect = client.id;
+            List<String> prefixes = new ArrayList<>();
+            for (int i = 3; i < args.size(); i++) {
+                String option = StandInNode.str(args.get(i)).toUpperCase(Locale.ROOT);
+                if ("REDIRECT".equals(option)) {
+                    redirect = Long.parseLong(StandInNode.str(args.get(++i)));
+                } else if ("PREFIX".equals(option)) {
+                    prefixes.add(StandInNode.key(args.get(++i)));
+                }
+            }
+            if (!clients.containsKey(redirect)) {
+                RespProtocol.writeError(client.out, "ERR The client ID you want redirect to does not exist");
+                return true;
+            }
+            registrations.add(new Registration(client.id, redirect, prefixes));
+        }
+        RespProtocol.writeSimple(client.out, "OK");
+        return true;
+    }
+
+    private void subscribe(Client client, List<byte[]> args) throws IOException {
+        for (int i = 1; i < args.size(); i++) {
+            RespProtocol.writeArrayHeader(client.out, 3);
+            RespProtocol.writeBulk(client.out, "subscribe".getBytes(StandardCharsets.US_ASCII));
+            RespProtocol.writeBulk(client.out, args.get(i));
+            RespProtocol.writeInteger(client.out, i);
+        }
+        // 先把订阅回复发出去，之后其他线程才会往这条连接推送失效消息
+        client.out.flush();
+        for (int i = 1; i < args.size(); i++) {
+            if (INVALIDATE_CHANNEL.equals(StandInNode.str(args.get(i)))) {
+                client.subscribed = true;
+            }
+        }
+    }
+
+    /**
+     * 写命令执行后调用，按命令语义取出被修改的键
+     */
+    void keysModified(String cmd, List<byte[]> args) {
+        try {
+            collectAndNotify(cmd, args);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // 参数不合法的命令已经回复了错误，没有修改任何键
+        }
+    }
+
+    private void collectAndNotify(String cmd, List<byte[]> args) {
+        switch (cmd) {
+            case "FLUSHALL":
+            case "FLUSHDB":
+                notify(null);
+                break;
+            case "MSET":
+                List<String> pairs = new ArrayList<>();
+                for (int i = 1; i < args.size(); i += 2) {
+                    pairs.add(StandInNode.key(args.get(i)));
+                }
+                notify(pairs);
+                break;
+            case "DEL":
+            case "UNLINK":
+                List<String> deleted = new ArrayList<>();
+                for (int i = 1; i < args.size(); i++) {
+                    deleted.add(StandInNode.key(args.get(i)));
+                }
+                notify(deleted);
+                break;
+            case "EVAL":
+            case "EVALSHA":
+                int numKeys = Integer.parseInt(StandInNode.str(args.get(2)));
+                List<String> scriptKeys = new ArrayList<>(numKeys);
+                for (int i = 0; i < numKeys; i++) {
+                    scriptKeys.add(StandInNode.key(args.get(3 + i)));
+                }
+                notify(scriptKeys);
+                break;
+            default:
+                notify(List.of(StandInNode.key(args.get(1))));
+        }
+    }
+
+    /**
+     * 数据被整体替换（全量同步）时通知所有缓存清空
+     */
+    void flushed() {
+        notify(null);
+    }
+
+    private void notify(List<String> keys) {
+        for (Registration registration : registrations) {
+            List<String> matched = keys;
+            if (keys != null && !registration.prefixes.isEmpty()) {
+                matched = new ArrayList<>();
+                for (String key : keys) {
+                    if (registration.matches(key)) {
+                        matched.add(key);
+                    }
+                }
+                if (matched.isEmpty()) {
+                    continue;
+                }
+            }
+            Client target = clients.get(registration.redirectId);
+            if (target != null && target.subscribed) {
+                send(target, matched);
+            }
+        }
+    }
+
+    private static void send(Client target, List<String> keys) {
+        target.lock.lock();
+        try {
+            RespProtocol.writeArrayHeader(target.out, 3);
+            RespProtocol.writeBulk(target.out, "message".getBytes(StandardCharsets.US_ASCII));
+            RespProtocol.writeBulk(target.out, INVALIDATE_CHANNEL.getBytes(StandardCharsets.US_ASCII));
+            if (keys == null) {
+                RespProtocol.writeArrayHeader(target.out, -1);
+            } else {
+                RespProtocol.writeArrayHeader(target.out, keys.size());
+                for (String key : keys) {
+                    RespProtocol.writeBulk(target.out, key.getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+            target.out.flush();
+        } catch (IOException e) {
+            // 订阅连接已断开，由其serve线程清理
+        } finally {
+            target.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.cap.standin;
+
+import com.example.cap.cluster.HashSlots;
+import redis.clients.jedis.HostAndPort;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * 替身集群共享的槽位表：每个槽属于哪个分片的Master，以及正在迁移的槽的目标节点。
+ * 加入集群的Master在执行带键的命令前先问这里：槽不归自己时回复 -MOVED；
+ * 槽正在迁出且键已不在本地时回复 -ASK；迁入方只接受紧跟在 ASKING 之后的命令；
+ * 一条命令的多个键不在同一个槽时回复 -CROSSSLOT。
+ * 每个槽有一把迁移锁：Master判断重定向并执行命令、迁移一个键、切换迁移状态都持有这把锁，
+ * 所以"键还在本地"的判断和搬键不会交错，键搬走之后的命令一定收到 -ASK。
+ * 只有Master参与重定向判断，Replica照常服务读（相当于客户端已发送 READONLY）。
+ */
+public class ClusterSlots {
+    private final List<StandInNode> masters;
+    private final List<List<StandInNode>> replicas;
+    private final AtomicReferenceArray<StandInNode> owners = new AtomicReferenceArray<>(HashSlots.SLOT_COUNT);
+    private final AtomicReferenceArray<StandInNode> migrating = new AtomicReferenceArray<>(HashSlots.SLOT_COUNT);
+    private final ReentrantLock[] slotLocks = new ReentrantLock[HashSlots.SLOT_COUNT];
+
+    /**
+     * 按分片顺序把16384个槽连续均分给各Master
+     */
+    ClusterSlots(List<StandInNode> masters, List<List<StandInNode>> replicas) {
+        this.masters = List.copyOf(masters);
+        this.replicas = List.copyOf(replicas);
+        for (int slot = 0; slot < HashSlots.SLOT_COUNT; slot++) {
+            owners.set(slot, masters.get((int) ((long) slot * masters.size() / HashSlots.SLOT_COUNT)));
+            slotLocks[slot] = new ReentrantLock();
+        }
+    }
+
+    public StandInNode owner(int slot) {
+        return owners.get(slot);
+    }
+
+    ReentrantLock slotLock(int slot) {
+        return slotLocks[slot];
+    }
+
+    /**
+     * 命令第一个键所在槽的迁移锁；不带键的命令返回null
+     */
+    ReentrantLock slotLock(String cmd, List<byte[]> args) {
+        List<byte[]> keys = keys(cmd, args);
+        return keys.isEmpty() ? null : slotLocks[HashSlots.slot(keys.get(0))];
+    }
+
+    void beginMigration(int slot, StandInNode target) {
+        slotLocks[slot].lock();
+        try {
+            migrating.set(slot, target);
+        } finally {
+            slotLocks[slot].unlock();
+        }
+    }
+
+    void finishMigration(int slot, StandInNode target) {
+        slotLocks[slot].lock();
+        try {
+            owners.set(slot, target);
+            migrating.set(slot, null);
+        } finally {
+            slotLocks[slot].unlock();
+        }
+    }
+
+    /**
+     * 判断node能否执行这条命令，能执行返回null，否则返回要回复的错误。
+     * 调用方持有 {@link #slotLock(String, List)}，并在释放前执行完命令
+     */
+    String redirect(StandInNode node, String cmd, List<byte[]> args, boolean asking,
+                    Predicate<String> hasKey) {
+        List<byte[]> keys = keys(cmd, args);
+        if (keys.isEmpty()) {
+            return null;
+        }
+        int slot = HashSlots.slot(keys.get(0));
+        for (int i = 1; i < keys.size(); i++) {
+            if (HashSlots.slot(keys.get(i)) != slot) {
+                return "CROSSSLOT Keys in request don't hash to the same slot";
+            }
+        }
+        StandInNode owner = owners.get(slot);
+        StandInNode target = migrating.get(slot);
+        if (owner == node) {
+            if (target != null) {
+                for (byte[] key : keys) {
+                    if (!hasKey.test(StandInNode.key(key))) {
+                        return "ASK " + slot + " " + target.address();
+                    }
+                }
+            }
+            return null;
+        }
+        if (target == node && asking) {
+            return null;
+        }
+        return "MOVED " + slot + " " + owner.address();
+    }
+
+    /**
+     * 命令里的键；不带键的命令返回空列表
+     */
+    static List<byte[]> keys(String cmd, List<byte[]> args) {
+        switch (cmd) {
+            case "GET":
+            case "SET":
+            case "INCR":
+            case "DECR":
+            case "INCRBY":
+            case "DECRBY":
+            case "APPEND":
+            case "STRLEN":
+                return args.size() > 1 ? List.of(args.get(1)) : List.of();
+            case "MGET":
+            case "DEL":
+            case "UNLINK":
+            case "EXISTS":
+                return args.subList(1, args.size());
+            case "MSET": {
+                List<byte[]> keys = new ArrayList<>();
+                for (int i = 1; i < args.size(); i += 2) {
+                    keys.add(args.get(i));
+                }
+                return keys;
+            }
+            case "EVAL":
+            case "EVALSHA": {
+                int numKeys = args.size() > 2 ? Integer.parseInt(StandInNode.str(args.get(2))) : 0;
+                return args.subList(3, Math.min(args.size(), 3 + numKeys));
+            }
+            default:
+                return List.of();
+        }
+    }
+
+    /**
+     * CLUSTER SLOTS / CLUSTER KEYSLOT / CLUSTER INFO
+     */
+    void cluster(List<byte[]> args, OutputStream out) throws IOException {
+        String sub = args.size() > 1 ? StandInNode.str(args.get(1)).toUpperCase(Locale.ROOT) : "";
+        switch (sub) {
+            case "SLOTS":
+                writeSlots(out);
+                break;
+            case "KEYSLOT":
+                RespProtocol.writeInteger(out, HashSlots.slot(args.get(2)));
+                break;
+            case "INFO":
+                RespProtocol.writeBulk(out, ("cluster_state:ok\r\ncluster_slots_assigned:" + HashSlots.SLOT_COUNT
+                    + "\r\ncluster_known_nodes:" + nodeCount() + "\r\ncluster_size:" + masters.size() + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+                break;
+            default:
+                RespProtocol.writeError(out, "ERR unknown subcommand '" + sub.toLowerCase(Locale.ROOT) + "'");
+        }
+    }
+
+    private int nodeCount() {
+        return masters.size() + replicas.stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * 连续归属同一Master的槽合并成一段：[起始槽, 结束槽, [master主机, 端口], [replica主机, 端口]...]
+     */
+    private void writeSlots(OutputStream out) throws IOException {
+        List<int[]> ranges = new ArrayList<>();
+        int start = 0;
+        for (int slot = 1; slot <= HashSlots.SLOT_COUNT; slot++) {
+            if (slot == HashSlots.SLOT_COUNT || owners.get(slot) != owners.get(start)) {
+                ranges.add(new int[] {start, slot - 1});
+                start = slot;
+            }
+        }
+        RespProtocol.writeArrayHeader(out, ranges.size());
+        for (int[] range : ranges) {
+            StandInNode owner = owners.get(range[0]);
+            List<StandInNode> ownerReplicas = replicas.get(masters.indexOf(owner));
+            RespProtocol.writeArrayHeader(out, 3 + ownerReplicas.size());
+            RespProtocol.writeInteger(out, range[0]);
+            RespProtocol.writeInteger(out, range[1]);
+            writeNode(out, owner.address());
+            for (StandInNode replica : ownerReplicas) {
+                writeNode(out, replica.address());
+            }
+        }
+    }
+
+    private static void writeNode(OutputStream out, HostAndPort address) throws IOException {
+        RespProtocol.writeArrayHeader(out, 2);
+        RespProtocol.writeBulk(out, address.getHost().getBytes(StandardCharsets.US_ASCII));
+        RespProtocol.writeInteger(out, address.getPort());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.cap.standin;
+
+import redis.clients.jedis.HostAndPort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Replica侧的复制链路：连上Master发送 SYNC，先载入全量快照，再持续应用命令流，
+ * 每读空一批就回报一次 REPLCONF ACK。断开后按固定间隔重连并重新全量同步。
+ */
+final class MasterLink implements Runnable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RETRY_MILLIS = 100;
+
+    private final StandInNode replica;
+    private final HostAndPort master;
+    private volatile boolean active = true;
+    private volatile boolean up;
+    private volatile Socket socket;
+
+    MasterLink(StandInNode replica, HostAndPort master) {
+        this.replica = replica;
+        this.master = master;
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "standin-" + replica.getName() + "-replication");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (active) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(new InetSocketAddress(master.getHost(), master.getPort()), CONNECT_TIMEOUT_MILLIS);
+                s.setTcpNoDelay(true);
+                sync(new BufferedInputStream(s.getInputStream(), 64 * 1024),
+                    new BufferedOutputStream(s.getOutputStream(), 1024));
+            } catch (IOException e) {
+                // 连接失败或链路断开，稍后重连
+            } finally {
+                up = false;
+            }
+            if (active) {
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void sync(InputStream in, OutputStream out) throws IOException {
+        RespProtocol.writeCommand(out, List.of(ReplicaLink.bytes("REPLCONF"), ReplicaLink.bytes("listening-port"),
+            ReplicaLink.bytes(Integer.toString(replica.address().getPort()))));
+        RespProtocol.writeCommand(out, List.of(ReplicaLink.bytes("SYNC")));
+        out.flush();
+        RespProtocol.readSimpleReply(in); // REPLCONF 的 +OK
+        // +FULLRESYNC <offset> <快照命令数>
+        String[] header = RespProtocol.readSimpleReply(in).split(" ");
+        long offset = Long.parseLong(header[1]);
+        int snapshotSize = Integer.parseInt(header[2]);
+        replica.beginFullSync(offset);
+        for (int i = 0; i < snapshotSize; i++) {
+            replica.applySnapshot(RespProtocol.readCommand(in));
+        }
+        up = true;
+        List<byte[]> command;
+        while (active && (command = RespProtocol.readCommand(in)) != null) {
+            long applied = replica.applyReplicated(command);
+            if (in.available() == 0) {
+                RespProtocol.writeCommand(out, ReplicaLink.ack(applied));
+                out.flush();
+            }
+        }
+    }
+
+    HostAndPort master() {
+        return master;
+    }
+
+    boolean isUp() {
+        return up;
+    }
+
+    void close() {
+        active = false;
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // 已关闭
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.cap.standin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Master侧的一条复制链路：写命令按到期时间排队，发送线程按延迟分布和吞吐上限把它们写给Replica，
+ * 另一个虚拟线程读取Replica回报的 REPLCONF ACK 偏移量。
+ */
+final class ReplicaLink {
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final class Frame {
+        final byte[] bytes;
+        final long offset;
+        final long dueNanos;
+
+        Frame(byte[] bytes, long offset, long dueNanos) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    private final StandInNode master;
+    private final Socket socket;
+    private final int listeningPort;
+    private final BlockingQueue<Frame> queue = new LinkedBlockingQueue<>();
+    private long lastDueNanos; // 只在Master写锁内访问，保证到期时间单调，复制流不乱序
+    private volatile long sentOffset;
+    private volatile long ackOffset;
+    private volatile long lastAckNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    ReplicaLink(StandInNode master, Socket socket, int listeningPort, long offset) {
+        this.master = master;
+        this.socket = socket;
+        this.listeningPort = listeningPort;
+        this.sentOffset = offset;
+        this.ackOffset = offset;
+    }
+
+    /**
+     * 在Master写锁内调用
+     */
+    void enqueue(byte[] frame, long offset) {
+        long due = System.nanoTime() + master.replicationSettings().lagModel().sampleNanos();
+        lastDueNanos = Math.max(lastDueNanos, due);
+        queue.add(new Frame(frame, offset, lastDueNanos));
+    }
+
+    /**
+     * 在接入连接的线程上运行发送循环，直到链路断开
+     */
+    void run(InputStream in, OutputStream out) throws IOException {
+        Thread acks = Thread.ofVirtual().name("standin-" + master.getName() + "-ack")
+            .start(() -> readAcks(in));
+        long nextOpSlot = 0;
+        long nextByteSlot = 0;
+        try {
+            while (!closed) {
+                Frame frame = queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+                if (frame == null) {
+                    continue;
+                }
+                ReplicationSettings settings = master.replicationSettings();
+                long sendAt = frame.dueNanos;
+                if (settings.maxOpsPerSec() > 0) {
+                    sendAt = Math.max(sendAt, nextOpSlot);
+                }
+                if (settings.maxBytesPerSec() > 0) {
+                    sendAt = Math.max(sendAt, nextByteSlot);
+                }
+                if (sendAt - System.nanoTime() > 0) {
+                    out.flush(); // 等待前先把已到期的命令发出去
+                    parkUntil(sendAt);
+                }
+                out.write(frame.bytes);
+                sentOffset = frame.offset;
+                if (settings.maxOpsPerSec() > 0) {
+                    nextOpSlot = sendAt + 1_000_000_000L / settings.maxOpsPerSec();
+                }
+                if (settings.maxBytesPerSec() > 0) {
+                    nextByteSlot = sendAt + frame.bytes.length * 1_000_000_000L / settings.maxBytesPerSec();
+                }
+                if (queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed = true;
+            acks.interrupt();
+        }
+    }
+
+    private void readAcks(InputStream in) {
+        try {
+            List<byte[]> command;
+            while ((command = RespProtocol.readCommand(in)) != null) {
+                if (command.size() == 3
+                    && "REPLCONF".equalsIgnoreCase(StandInNode.str(command.get(0)))
+                    && "ACK".equalsIgnoreCase(StandInNode.str(command.get(1)))) {
+                    ackOffset = Long.parseLong(StandInNode.str(command.get(2)));
+                    lastAckNanos = System.nanoTime();
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // 链路断开
+        } finally {
+            closed = true;
+        }
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+    }
+
+    long getAckOffset() {
+        return ackOffset;
+    }
+
+    long getSentOffset() {
+        return sentOffset;
+    }
+
+    int getPendingFrames() {
+        return queue.size();
+    }
+
+    /**
+     * INFO replication 中的 slaveN 行
+     */
+    String describe() {
+        long lagSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastAckNanos);
+        return String.format(Locale.ROOT, "ip=%s,port=%d,state=online,offset=%d,lag=%d",
+            socket.getInetAddress().getHostAddress(), listeningPort, ackOffset, lagSeconds);
+    }
+
+    static List<byte[]> ack(long offset) {
+        return List.of(bytes("REPLCONF"), bytes("ACK"), bytes(Long.toString(offset)));
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
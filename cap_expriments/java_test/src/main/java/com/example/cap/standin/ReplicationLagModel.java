@@ -0,0 +1,57 @@
+package com.example.cap.standin;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 替身复制链路上每条写命令的人为延迟分布（纳秒）
+ */
+@FunctionalInterface
+public interface ReplicationLagModel {
+
+    long sampleNanos();
+
+    static ReplicationLagModel none() {
+        return () -> 0;
+    }
+
+    static ReplicationLagModel fixed(double millis) {
+        long nanos = toNanos(millis);
+        return () -> nanos;
+    }
+
+    static ReplicationLagModel uniform(double minMillis, double maxMillis) {
+        long min = toNanos(minMillis);
+        long max = toNanos(maxMillis);
+        return () -> min + (long) (ThreadLocalRandom.current().nextDouble() * (max - min));
+    }
+
+    static ReplicationLagModel exponential(double meanMillis) {
+        double mean = toNanos(meanMillis);
+        return () -> (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * mean);
+    }
+
+    /**
+     * 解析命令行写法，单位毫秒："none"、"fixed:2"、"uniform:1:5"、"exp:2"
+     */
+    static ReplicationLagModel parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        switch (parts[0]) {
+            case "none":
+                return none();
+            case "fixed":
+                return fixed(Double.parseDouble(parts[1]));
+            case "uniform":
+                return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            case "exp":
+                return exponential(Double.parseDouble(parts[1]));
+            default:
+                throw new IllegalArgumentException("未知的复制延迟分布: " + spec);
+        }
+    }
+
+    private static long toNanos(double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.cap.standin;
+
+/**
+ * 替身Master向Replica转发写命令时的延迟分布和吞吐上限（0表示不限）
+ */
+public class ReplicationSettings {
+    private ReplicationLagModel lagModel = ReplicationLagModel.none();
+    private long maxOpsPerSec;
+    private long maxBytesPerSec;
+
+    public static ReplicationSettings immediate() {
+        return new ReplicationSettings();
+    }
+
+    /**
+     * 从系统属性读取：-Dcap.standin.lag=exp:2 -Dcap.standin.max.ops=50000 -Dcap.standin.max.bytes=10000000
+     */
+    public static ReplicationSettings fromSystemProperties() {
+        return new ReplicationSettings()
+            .lag(ReplicationLagModel.parse(System.getProperty("cap.standin.lag", "none")))
+            .maxOpsPerSec(Long.getLong("cap.standin.max.ops", 0))
+            .maxBytesPerSec(Long.getLong("cap.standin.max.bytes", 0));
+    }
+
+    public ReplicationSettings lag(ReplicationLagModel lagModel) {
+        this.lagModel = lagModel;
+        return this;
+    }
+
+    public ReplicationSettings maxOpsPerSec(long maxOpsPerSec) {
+        this.maxOpsPerSec = maxOpsPerSec;
+        return this;
+    }
+
+    public ReplicationSettings maxBytesPerSec(long maxBytesPerSec) {
+        this.maxBytesPerSec = maxBytesPerSec;
+        return this;
+    }
+
+    public ReplicationLagModel lagModel() {
+        return lagModel;
+    }
+
+    public long maxOpsPerSec() {
+        return maxOpsPerSec;
+    }
+
+    public long maxBytesPerSec() {
+        return maxBytesPerSec;
+    }
+}
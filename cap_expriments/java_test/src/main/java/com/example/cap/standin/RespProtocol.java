@@ -0,0 +1,160 @@
+package com.example.cap.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RESP2协议的最小读写实现，只覆盖客户端请求（数组 + 批量字符串，或内联命令）和常用回复类型。
+ */
+final class RespProtocol {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] NULL_BULK = "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private RespProtocol() {
+    }
+
+    /**
+     * 读取一条命令，连接关闭时返回null
+     */
+    static List<byte[]> readCommand(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        if (first != '*') {
+            // 内联命令，例如 redis-cli / telnet 直接输入的 "PING"
+            String line = (char) first + readLine(in);
+            List<byte[]> args = new ArrayList<>();
+            for (String part : line.trim().split("\\s+")) {
+                if (!part.isEmpty()) {
+                    args.add(part.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return args;
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.read();
+            if (type != '$') {
+                throw new IOException("协议错误：期望批量字符串，实际为 " + (char) type);
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] arg = in.readNBytes(length);
+            if (arg.length < length) {
+                throw new EOFException();
+            }
+            in.skipNBytes(2); // CRLF
+            args.add(arg);
+        }
+        return args;
+    }
+
+    /**
+     * 读取一条状态回复（"+..."）的内容，错误回复转成IOException
+     */
+    static String readSimpleReply(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            throw new EOFException();
+        }
+        String line = readLine(in);
+        if (type == '-') {
+            throw new IOException(line);
+        }
+        if (type != '+') {
+            throw new IOException("协议错误：期望状态回复，实际为 " + (char) type);
+        }
+        return line;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            sb.append((char) b);
+        }
+        in.read(); // '\n'
+        return sb.toString();
+    }
+
+    static void writeSimple(OutputStream out, String value) throws IOException {
+        out.write('+');
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    static void writeError(OutputStream out, String message) throws IOException {
+        out.write('-');
+        out.write(message.getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write(':');
+        out.write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.write(NULL_BULK);
+            return;
+        }
+        out.write('$');
+        out.write(Integer.toString(value.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.write(value);
+        out.write(CRLF);
+    }
+
+    static void writeArrayHeader(OutputStream out, int size) throws IOException {
+        out.write('*');
+        out.write(Integer.toString(size).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    /**
+     * 把命令编码成RESP数组（复制流转发时使用）
+     */
+    static void writeCommand(OutputStream out, List<byte[]> args) throws IOException {
+        writeArrayHeader(out, args.size());
+        for (byte[] arg : args) {
+            writeBulk(out, arg);
+        }
+    }
+
+    static byte[] encodeCommand(List<byte[]> args) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(encodedLength(args));
+        try {
+            writeCommand(buffer, args);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 命令编码成RESP数组后的字节数，用作复制偏移量的增量
+     */
+    static int encodedLength(List<byte[]> args) {
+        int length = 1 + digits(args.size()) + 2;
+        for (byte[] arg : args) {
+            length += 1 + digits(arg.length) + 2 + arg.length + 2;
+        }
+        return length;
+    }
+
+    private static int digits(int value) {
+        return Integer.toString(value).length();
+    }
+}
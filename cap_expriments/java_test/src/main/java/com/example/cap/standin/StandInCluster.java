@@ -0,0 +1,100 @@
+package com.example.cap.standin;
+
+import redis.clients.jedis.HostAndPort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多分片的替身集群：每个分片是一套独立的一主多从 {@link StandInTopology}，
+ * 16384个槽连续均分给各分片Master，任意Master都能回答 CLUSTER SLOTS。
+ * 支持把单个槽在线迁移到另一个分片，迁移期间客户端会依次遇到 ASK 和 MOVED。
+ */
+public class StandInCluster implements AutoCloseable {
+    private final List<StandInTopology> shards;
+    private final ClusterSlots slots;
+
+    private StandInCluster(List<StandInTopology> shards) {
+        this.shards = List.copyOf(shards);
+        List<StandInNode> masters = new ArrayList<>();
+        List<List<StandInNode>> replicas = new ArrayList<>();
+        for (StandInTopology shard : shards) {
+            masters.add(shard.master());
+            replicas.add(shard.replicas());
+        }
+        this.slots = new ClusterSlots(masters, replicas);
+        for (StandInNode master : masters) {
+            master.joinCluster(slots);
+        }
+    }
+
+    public static StandInCluster start(int shardCount, int replicasPerShard, ReplicationSettings settings)
+            throws IOException, InterruptedException {
+        List<StandInTopology> shards = new ArrayList<>(shardCount);
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(StandInTopology.start(replicasPerShard, settings));
+            }
+        } catch (IOException | InterruptedException e) {
+            shards.forEach(StandInTopology::close);
+            throw e;
+        }
+        return new StandInCluster(shards);
+    }
+
+    /**
+     * 客户端启动时连接的种子节点（第一个分片的Master）
+     */
+    public HostAndPort seed() {
+        return shards.get(0).master().address();
+    }
+
+    public List<StandInTopology> shards() {
+        return shards;
+    }
+
+    /**
+     * 当前负责该槽的分片编号
+     */
+    public int shardOf(int slot) {
+        StandInNode owner = slots.owner(slot);
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i).master() == owner) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("槽" + slot + "没有归属的分片");
+    }
+
+    /**
+     * 把一个槽迁到目标分片：先标记迁移中，再逐个搬键（每个键之间停顿keyPause），最后切换归属。
+     * 返回搬动的键数
+     */
+    public int migrateSlot(int slot, int targetShard, long keyPause, TimeUnit unit)
+            throws IOException, InterruptedException {
+        StandInNode source = slots.owner(slot);
+        StandInNode target = shards.get(targetShard).master();
+        if (source == target) {
+            return 0;
+        }
+        slots.beginMigration(slot, target);
+        int moved = 0;
+        // 标记迁移在槽的迁移锁内完成，之后源节点上不会再出现这个槽的新键，扫一遍就能搬完
+        for (String key : source.keysInSlot(slot)) {
+            source.migrateKey(key, target);
+            moved++;
+            if (keyPause > 0) {
+                unit.sleep(keyPause);
+            }
+        }
+        slots.finishMigration(slot, target);
+        return moved;
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(StandInTopology::close);
+    }
+}
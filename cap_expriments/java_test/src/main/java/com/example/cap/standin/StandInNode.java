@@ -0,0 +1,735 @@
+package com.example.cap.standin;
+
+import com.example.cap.cluster.HashSlots;
+import redis.clients.jedis.HostAndPort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 进程内的Redis协议替身节点：监听127.0.0.1上的临时端口，支持实验用到的字符串命令，
+ * 不需要Docker和网络即可运行Jedis客户端代码（JMH基准、CI）。
+ * 键用ISO-8859-1解码成String保存，字节与字符一一对应，二进制键也不会损坏。
+ * <p>
+ * 复制走真实TCP：Replica连上Master发送 SYNC，Master在写锁内应用写命令并按到达顺序转发，
+ * 延迟分布和吞吐上限由 {@link ReplicationSettings} 控制，偏移量按RESP字节数累计，与Redis的
+ * master_repl_offset 含义一致。Replica拒绝客户端写入（-READONLY）。
+ * 支持RESP2广播模式的客户端缓存失效通知（见 {@link ClientTracking}），Replica应用复制流时同样会发出通知。
+ * 作为 {@link StandInCluster} 的分片Master时，按 {@link ClusterSlots} 回复 MOVED / ASK 重定向。
+ */
+public final class StandInNode implements AutoCloseable {
+    private static final Set<String> WRITE_COMMANDS = Set.of(
+        "SET", "MSET", "DEL", "UNLINK", "INCR", "DECR", "INCRBY", "DECRBY", "APPEND", "FLUSHALL", "FLUSHDB",
+        "EVAL", "EVALSHA");
+    private static final OutputStream DISCARD = OutputStream.nullOutputStream();
+
+    public enum Role { MASTER, REPLICA }
+
+    private final String name;
+    private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicLong commandsProcessed = new AtomicLong();
+    private final ServerSocket serverSocket;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // 多键写（脚本、MSET）持有独占锁，读命令用乐观读校验，读不到执行一半的多键写
+    private final StampedLock atomicView = new StampedLock();
+    private final List<ReplicaLink> replicaLinks = new CopyOnWriteArrayList<>();
+    private final AtomicLong replOffset = new AtomicLong();
+    private final ClientTracking tracking = new ClientTracking();
+    private volatile ReplicationSettings replicationSettings = ReplicationSettings.immediate();
+    private volatile MasterLink masterLink;
+    private volatile ClusterSlots cluster;
+    private volatile boolean running = true;
+    // apply实际修改数据的次数：Master上只在写锁内变化，用来判断一条写命令是否需要复制
+    private long dirty;
+
+    public StandInNode(String name) throws IOException {
+        this.name = name;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread acceptor = new Thread(this::acceptLoop, "standin-" + name + "-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HostAndPort address() {
+        return new HostAndPort(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+    }
+
+    public long getCommandsProcessed() {
+        return commandsProcessed.get();
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public Role role() {
+        return masterLink == null ? Role.MASTER : Role.REPLICA;
+    }
+
+    /**
+     * Master：已产生的复制偏移量；Replica：已应用的复制偏移量
+     */
+    public long replicationOffset() {
+        return replOffset.get();
+    }
+
+    public ReplicationSettings replicationSettings() {
+        return replicationSettings;
+    }
+
+    /**
+     * 修改本节点作为Master时的转发延迟和吞吐上限，对已连接的Replica立即生效
+     */
+    public void setReplicationSettings(ReplicationSettings settings) {
+        this.replicationSettings = settings;
+    }
+
+    /**
+     * 成为指定Master的Replica（REPLICAOF host port），链路在后台建立
+     */
+    public synchronized void replicaOf(HostAndPort master) {
+        MasterLink previous = masterLink;
+        if (previous != null) {
+            previous.close();
+        }
+        for (ReplicaLink link : replicaLinks) {
+            link.close();
+        }
+        MasterLink link = new MasterLink(this, master);
+        masterLink = link;
+        link.start();
+    }
+
+    /**
+     * 提升为Master（REPLICAOF NO ONE），保留已复制的数据和偏移量
+     */
+    public synchronized void promote() {
+        MasterLink previous = masterLink;
+        masterLink = null;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * 作为分片Master加入替身集群，之后带键的命令按槽位表判断是否重定向
+     */
+    void joinCluster(ClusterSlots slots) {
+        this.cluster = slots;
+    }
+
+    /**
+     * 本节点上属于指定槽的键，迁移槽时使用
+     */
+    List<String> keysInSlot(int slot) {
+        List<String> keys = new ArrayList<>();
+        for (String key : data.keySet()) {
+            if (HashSlots.slot(key.getBytes(StandardCharsets.ISO_8859_1)) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 在槽的迁移锁内把一个键搬到目标节点（对应 MIGRATE），这个槽上的命令不会在搬键中途做重定向判断。
+     * 先在本节点写锁内读出并删除，释放之后再写目标节点：任何时候只持有一个节点的写锁，
+     * 两个方向相反的迁移不会互相等待对方的写锁
+     */
+    void migrateKey(String key, StandInNode target) throws IOException {
+        byte[] raw = key.getBytes(StandardCharsets.ISO_8859_1);
+        ReentrantLock slotLock = cluster.slotLock(HashSlots.slot(raw));
+        slotLock.lock();
+        try {
+            byte[] value;
+            writeLock.lock();
+            try {
+                value = data.get(key);
+                if (value == null) {
+                    return;
+                }
+                execute(List.of(ReplicaLink.bytes("DEL"), raw), DISCARD);
+            } finally {
+                writeLock.unlock();
+            }
+            target.execute(List.of(ReplicaLink.bytes("SET"), raw, value), DISCARD);
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    public boolean isMasterLinkUp() {
+        MasterLink link = masterLink;
+        return link != null && link.isUp();
+    }
+
+    /**
+     * 等待Replica完成全量同步，超时返回false
+     */
+    public boolean awaitMasterLink(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isMasterLinkUp()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                clients.add(socket);
+                Thread.ofVirtual().name("standin-" + name + "-client").start(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.printf("❌ 替身节点%s接受连接失败: %s%n", name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024)) {
+            ClientTracking.Client client = tracking.connect(out);
+            try {
+                serveCommands(socket, client, in, out);
+            } finally {
+                tracking.disconnect(client);
+            }
+        } catch (IOException e) {
+            // 客户端断开
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    private void serveCommands(Socket socket, ClientTracking.Client client, InputStream in, OutputStream out)
+            throws IOException {
+        List<byte[]> command;
+        int replicaPort = 0;
+        boolean asking = false;
+        while ((command = RespProtocol.readCommand(in)) != null) {
+            if (command.isEmpty()) {
+                continue;
+            }
+            commandsProcessed.incrementAndGet();
+            String cmd = str(command.get(0)).toUpperCase(Locale.ROOT);
+            if ("SYNC".equals(cmd)) {
+                // 这条连接从此变成复制链路，直到断开
+                attachReplica(socket, replicaPort, in, out);
+                return;
+            }
+            if ("REPLCONF".equals(cmd) && command.size() == 3
+                && "LISTENING-PORT".equalsIgnoreCase(str(command.get(1)))) {
+                replicaPort = Integer.parseInt(str(command.get(2)));
+            }
+            ClusterSlots slots = cluster;
+            // 重定向判断和执行在槽的迁移锁内完成，判断之后键不会被搬走；先于连接锁获取，避免和失效推送互相等待
+            ReentrantLock slotLock = slots == null ? null : slots.slotLock(cmd, command);
+            if (slotLock != null) {
+                slotLock.lock();
+            }
+            // 订阅了失效通知的连接会被其他线程推送消息，回复时需要加锁
+            boolean locked = client.subscribed;
+            if (locked) {
+                client.lock.lock();
+            }
+            try {
+                boolean keepOpen;
+                String redirect = slots == null ? null : slots.redirect(this, cmd, command, asking, data::containsKey);
+                // ASKING只对紧随其后的一条命令有效
+                asking = slots != null && "ASKING".equals(cmd);
+                if (asking) {
+                    RespProtocol.writeSimple(out, "OK");
+                    keepOpen = true;
+                } else if (slots != null && "CLUSTER".equals(cmd)) {
+                    slots.cluster(command, out);
+                    keepOpen = true;
+                } else if (redirect != null) {
+                    RespProtocol.writeError(out, redirect);
+                    keepOpen = true;
+                } else {
+                    keepOpen = tracking.handle(client, cmd, command) || execute(command, out);
+                }
+                // 客户端使用pipeline时攒够一批再flush
+                if (!keepOpen || in.available() == 0) {
+                    out.flush();
+                }
+                if (!keepOpen) {
+                    return;
+                }
+            } finally {
+                if (locked) {
+                    client.lock.unlock();
+                }
+                if (slotLock != null) {
+                    slotLock.unlock();
+                }
+            }
+        }
+    }
+
+    private void attachReplica(Socket socket, int replicaPort, InputStream in, OutputStream out) throws IOException {
+        if (role() == Role.REPLICA) {
+            RespProtocol.writeError(out, "ERR chained replication is not supported by the stand-in");
+            out.flush();
+            return;
+        }
+        ReplicaLink link;
+        writeLock.lock();
+        try {
+            // 在写锁内取快照并登记链路，快照之后的写命令一条不漏地进入链路队列
+            link = new ReplicaLink(this, socket, replicaPort, replOffset.get());
+            List<Map.Entry<String, byte[]>> snapshot = new ArrayList<>(data.entrySet());
+            RespProtocol.writeSimple(out, "FULLRESYNC " + replOffset.get() + " " + snapshot.size());
+            for (Map.Entry<String, byte[]> entry : snapshot) {
+                RespProtocol.writeCommand(out, List.of(ReplicaLink.bytes("SET"),
+                    entry.getKey().getBytes(StandardCharsets.ISO_8859_1), entry.getValue()));
+            }
+            out.flush();
+            replicaLinks.add(link);
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            link.run(in, out);
+        } finally {
+            replicaLinks.remove(link);
+        }
+    }
+
+    /**
+     * 执行一条命令并写回复，返回false表示应关闭连接
+     */
+    boolean execute(List<byte[]> args, OutputStream out) throws IOException {
+        String cmd = new String(args.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+        if (!WRITE_COMMANDS.contains(cmd)) {
+            return apply(cmd, args, out);
+        }
+        if (role() == Role.REPLICA) {
+            RespProtocol.writeError(out, "READONLY You can't write against a read only replica.");
+            return true;
+        }
+        // 写命令串行化：应用顺序与复制流顺序一致
+        writeLock.lock();
+        try {
+            // 出错或没有改动数据的写（INCR非整数、SET NX已存在、DEL不存在的键）不进入复制流，与Redis一致
+            long dirtyBefore = dirty;
+            boolean keepOpen = apply(cmd, args, out);
+            if (dirty != dirtyBefore) {
+                propagate(args);
+                if (tracking.isActive()) {
+                    tracking.keysModified(cmd, args);
+                }
+            }
+            return keepOpen;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void propagate(List<byte[]> args) {
+        long offset = replOffset.addAndGet(RespProtocol.encodedLength(args));
+        if (replicaLinks.isEmpty()) {
+            return;
+        }
+        byte[] frame = RespProtocol.encodeCommand(args);
+        for (ReplicaLink link : replicaLinks) {
+            link.enqueue(frame, offset);
+        }
+    }
+
+    void beginFullSync(long offset) {
+        data.clear();
+        replOffset.set(offset);
+        if (tracking.isActive()) {
+            tracking.flushed();
+        }
+    }
+
+    void applySnapshot(List<byte[]> args) throws IOException {
+        if (args == null) {
+            throw new EOFException();
+        }
+        apply("SET", args, DISCARD);
+    }
+
+    /**
+     * 应用Master转发来的写命令，返回应用后的复制偏移量
+     */
+    long applyReplicated(List<byte[]> args) throws IOException {
+        String cmd = new String(args.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+        apply(cmd, args, DISCARD);
+        if (tracking.isActive()) {
+            tracking.keysModified(cmd, args);
+        }
+        return replOffset.addAndGet(RespProtocol.encodedLength(args));
+    }
+
+    private boolean apply(String cmd, List<byte[]> args, OutputStream out) throws IOException {
+        try {
+            switch (cmd) {
+                case "PING":
+                    if (args.size() > 1) {
+                        RespProtocol.writeBulk(out, args.get(1));
+                    } else {
+                        RespProtocol.writeSimple(out, "PONG");
+                    }
+                    break;
+                case "ECHO":
+                    RespProtocol.writeBulk(out, args.get(1));
+                    break;
+                case "GET":
+                    RespProtocol.writeBulk(out, read(key(args.get(1))));
+                    break;
+                case "SET":
+                    set(args, out);
+                    break;
+                case "MGET":
+                    byte[][] values = readAll(args);
+                    RespProtocol.writeArrayHeader(out, values.length);
+                    for (byte[] value : values) {
+                        RespProtocol.writeBulk(out, value);
+                    }
+                    break;
+                case "MSET":
+                    long stamp = atomicView.writeLock();
+                    try {
+                        for (int i = 1; i + 1 < args.size(); i += 2) {
+                            data.put(key(args.get(i)), args.get(i + 1));
+                        }
+                    } finally {
+                        atomicView.unlockWrite(stamp);
+                    }
+                    dirty++;
+                    RespProtocol.writeSimple(out, "OK");
+                    break;
+                case "DEL":
+                case "UNLINK":
+                    long removed = 0;
+                    for (int i = 1; i < args.size(); i++) {
+                        if (data.remove(key(args.get(i))) != null) removed++;
+                    }
+                    dirty += removed;
+                    RespProtocol.writeInteger(out, removed);
+                    break;
+                case "EXISTS":
+                    long exists = 0;
+                    for (byte[] value : readAll(args)) {
+                        if (value != null) exists++;
+                    }
+                    RespProtocol.writeInteger(out, exists);
+                    break;
+                case "INCR":
+                    RespProtocol.writeInteger(out, incrBy(key(args.get(1)), 1));
+                    break;
+                case "DECR":
+                    RespProtocol.writeInteger(out, incrBy(key(args.get(1)), -1));
+                    break;
+                case "INCRBY":
+                    RespProtocol.writeInteger(out, incrBy(key(args.get(1)), Long.parseLong(str(args.get(2)))));
+                    break;
+                case "DECRBY":
+                    RespProtocol.writeInteger(out, incrBy(key(args.get(1)), -Long.parseLong(str(args.get(2)))));
+                    break;
+                case "APPEND":
+                    byte[] appended = data.merge(key(args.get(1)), args.get(2), StandInNode::concat);
+                    dirty++;
+                    RespProtocol.writeInteger(out, appended.length);
+                    break;
+                case "STRLEN":
+                    byte[] value = data.get(key(args.get(1)));
+                    RespProtocol.writeInteger(out, value == null ? 0 : value.length);
+                    break;
+                case "DBSIZE":
+                    RespProtocol.writeInteger(out, data.size());
+                    break;
+                case "FLUSHALL":
+                case "FLUSHDB":
+                    data.clear();
+                    dirty++;
+                    RespProtocol.writeSimple(out, "OK");
+                    break;
+                case "SELECT":
+                case "CLIENT":
+                case "REPLCONF":
+                    RespProtocol.writeSimple(out, "OK");
+                    break;
+                case "REPLICAOF":
+                case "SLAVEOF":
+                    if ("NO".equalsIgnoreCase(str(args.get(1))) && "ONE".equalsIgnoreCase(str(args.get(2)))) {
+                        promote();
+                    } else {
+                        replicaOf(new HostAndPort(str(args.get(1)), Integer.parseInt(str(args.get(2)))));
+                    }
+                    RespProtocol.writeSimple(out, "OK");
+                    break;
+                case "INFO":
+                    RespProtocol.writeBulk(out, info().getBytes(StandardCharsets.UTF_8));
+                    break;
+                case "EVAL":
+                    runScript(StandInScripts.find(StandInScripts.sha1(args.get(1))), args, out,
+                        "ERR stand-in has no Java implementation registered for this script");
+                    break;
+                case "EVALSHA":
+                    runScript(StandInScripts.find(str(args.get(1)).toLowerCase(Locale.ROOT)), args, out,
+                        "NOSCRIPT No matching script. Please use EVAL.");
+                    break;
+                case "SCRIPT":
+                    script(args, out);
+                    break;
+                case "COMMAND":
+                    RespProtocol.writeArrayHeader(out, 0);
+                    break;
+                case "QUIT":
+                    RespProtocol.writeSimple(out, "OK");
+                    return false;
+                default:
+                    RespProtocol.writeError(out, "ERR unknown command '" + cmd + "'");
+            }
+        } catch (NumberFormatException e) {
+            RespProtocol.writeError(out, "ERR value is not an integer or out of range");
+        } catch (IndexOutOfBoundsException e) {
+            RespProtocol.writeError(out, "ERR wrong number of arguments for '" + cmd.toLowerCase(Locale.ROOT) + "' command");
+        }
+        return true;
+    }
+
+    /**
+     * 单键读：先乐观读，期间有多键写就在读锁内重读
+     */
+    private byte[] read(String key) {
+        long stamp = atomicView.tryOptimisticRead();
+        byte[] value = data.get(key);
+        if (atomicView.validate(stamp)) {
+            return value;
+        }
+        stamp = atomicView.readLock();
+        try {
+            return data.get(key);
+        } finally {
+            atomicView.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 多键读（args[1..]是键），返回的各个值属于同一时刻
+     */
+    private byte[][] readAll(List<byte[]> args) {
+        byte[][] values = new byte[args.size() - 1][];
+        long stamp = atomicView.tryOptimisticRead();
+        for (int i = 1; i < args.size(); i++) {
+            values[i - 1] = data.get(key(args.get(i)));
+        }
+        if (atomicView.validate(stamp)) {
+            return values;
+        }
+        stamp = atomicView.readLock();
+        try {
+            for (int i = 1; i < args.size(); i++) {
+                values[i - 1] = data.get(key(args.get(i)));
+            }
+            return values;
+        } finally {
+            atomicView.unlockRead(stamp);
+        }
+    }
+
+    private void set(List<byte[]> args, OutputStream out) throws IOException {
+        String key = key(args.get(1));
+        boolean nx = false;
+        boolean xx = false;
+        for (int i = 3; i < args.size(); i++) {
+            String option = str(args.get(i)).toUpperCase(Locale.ROOT);
+            if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            } else if ("EX".equals(option) || "PX".equals(option)) {
+                i++; // 替身不实现过期，忽略TTL参数
+            }
+        }
+        boolean written;
+        if (nx) {
+            written = data.putIfAbsent(key, args.get(2)) == null;
+        } else if (xx) {
+            written = data.replace(key, args.get(2)) != null;
+        } else {
+            data.put(key, args.get(2));
+            written = true;
+        }
+        if (written) {
+            dirty++;
+            RespProtocol.writeSimple(out, "OK");
+        } else {
+            RespProtocol.writeBulk(out, null);
+        }
+    }
+
+    private void runScript(StandInScript script, List<byte[]> args, OutputStream out, String missing) throws IOException {
+        if (script == null) {
+            RespProtocol.writeError(out, missing);
+            return;
+        }
+        int numKeys = Integer.parseInt(str(args.get(2)));
+        List<String> keys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            keys.add(key(args.get(3 + i)));
+        }
+        Object result;
+        long stamp = atomicView.writeLock();
+        try {
+            result = script.call(data, keys, args.subList(3 + numKeys, args.size()));
+        } finally {
+            atomicView.unlockWrite(stamp);
+        }
+        // 脚本的改动不可见，执行成功即视为写过数据
+        dirty++;
+        if (result == null) {
+            RespProtocol.writeBulk(out, null);
+        } else if (result instanceof Long) {
+            RespProtocol.writeInteger(out, (Long) result);
+        } else if (result instanceof byte[]) {
+            RespProtocol.writeBulk(out, (byte[]) result);
+        } else {
+            RespProtocol.writeBulk(out, result.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void script(List<byte[]> args, OutputStream out) throws IOException {
+        String sub = str(args.get(1)).toUpperCase(Locale.ROOT);
+        switch (sub) {
+            case "LOAD":
+                String sha = StandInScripts.sha1(args.get(2));
+                if (StandInScripts.contains(sha)) {
+                    RespProtocol.writeBulk(out, sha.getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    RespProtocol.writeError(out, "ERR stand-in has no Java implementation registered for this script");
+                }
+                break;
+            case "EXISTS":
+                RespProtocol.writeArrayHeader(out, args.size() - 2);
+                for (int i = 2; i < args.size(); i++) {
+                    RespProtocol.writeInteger(out, StandInScripts.contains(str(args.get(i)).toLowerCase(Locale.ROOT)) ? 1 : 0);
+                }
+                break;
+            case "FLUSH":
+                RespProtocol.writeSimple(out, "OK"); // 注册表是全局的Java实现，无需清空
+                break;
+            default:
+                RespProtocol.writeError(out, "ERR unknown subcommand '" + sub + "'");
+        }
+    }
+
+    private long incrBy(String key, long delta) {
+        byte[] updated = data.compute(key, (k, old) -> {
+            long current = old == null ? 0 : Long.parseLong(str(old));
+            return Long.toString(current + delta).getBytes(StandardCharsets.US_ASCII);
+        });
+        dirty++;
+        return Long.parseLong(str(updated));
+    }
+
+    String info() {
+        return "# Server\r\nredis_version:7.0.0-standin\r\n"
+            + replicationInfo()
+            + "# Keyspace\r\ndb0:keys=" + data.size() + ",expires=0\r\n";
+    }
+
+    private String replicationInfo() {
+        StringBuilder sb = new StringBuilder("# Replication\r\n");
+        MasterLink link = masterLink;
+        if (link == null) {
+            sb.append("role:master\r\n");
+            sb.append("connected_slaves:").append(replicaLinks.size()).append("\r\n");
+            int i = 0;
+            for (ReplicaLink replica : replicaLinks) {
+                sb.append("slave").append(i++).append(':').append(replica.describe()).append("\r\n");
+            }
+        } else {
+            sb.append("role:slave\r\n");
+            sb.append("master_host:").append(link.master().getHost()).append("\r\n");
+            sb.append("master_port:").append(link.master().getPort()).append("\r\n");
+            sb.append("master_link_status:").append(link.isUp() ? "up" : "down").append("\r\n");
+            sb.append("slave_repl_offset:").append(replOffset.get()).append("\r\n");
+        }
+        sb.append("master_repl_offset:").append(replOffset.get()).append("\r\n");
+        return sb.toString();
+    }
+
+    Map<String, byte[]> data() {
+        return data;
+    }
+
+    static String key(byte[] raw) {
+        return new String(raw, StandardCharsets.ISO_8859_1);
+    }
+
+    static String str(byte[] raw) {
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        MasterLink link = masterLink;
+        if (link != null) {
+            link.close();
+        }
+        for (ReplicaLink replica : replicaLinks) {
+            replica.close();
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+        for (Socket socket : clients) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 已关闭
+            }
+        }
+        data.clear();
+    }
+}
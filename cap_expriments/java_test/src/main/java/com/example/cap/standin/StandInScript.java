@@ -0,0 +1,17 @@
+package com.example.cap.standin;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 替身节点不内嵌Lua解释器：实验用到的脚本以Java等价实现注册到 {@link StandInScripts}，EVAL/EVALSHA按脚本SHA1匹配执行。
+ * 执行时持有Master写锁和节点的多键写锁，与真实Redis一样对其他写命令和读命令都是原子的，复制时转发原始EVALSHA命令。
+ */
+@FunctionalInterface
+public interface StandInScript {
+
+    /**
+     * 返回值按Redis脚本回复规则转换：Long为整数，byte[]/String为批量字符串，null为空回复
+     */
+    Object call(Map<String, byte[]> data, List<String> keys, List<byte[]> args);
+}
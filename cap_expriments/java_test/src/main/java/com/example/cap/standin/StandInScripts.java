@@ -0,0 +1,77 @@
+package com.example.cap.standin;
+
+import com.example.cap.seckill.SeckillEngine;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 替身节点的脚本注册表，所有替身节点共享：实验用到的Lua脚本在这里登记Java等价实现，按脚本SHA1查找。
+ * 业务代码只通过Jedis发送原始Lua脚本，不感知替身；脚本改动时这里的实现要同步修改。
+ */
+public final class StandInScripts {
+    private static final Map<String, StandInScript> SCRIPTS = new ConcurrentHashMap<>();
+
+    static {
+        register(SeckillEngine.RESERVE_SCRIPT, StandInScripts::seckillReserve);
+    }
+
+    private StandInScripts() {
+    }
+
+    /**
+     * 为一段Lua脚本注册Java等价实现，返回脚本SHA1
+     */
+    public static String register(String source, StandInScript script) {
+        String sha = sha1(source.getBytes(StandardCharsets.UTF_8));
+        SCRIPTS.put(sha, script);
+        return sha;
+    }
+
+    static StandInScript find(String sha) {
+        return SCRIPTS.get(sha);
+    }
+
+    static boolean contains(String sha) {
+        return SCRIPTS.containsKey(sha);
+    }
+
+    static String sha1(byte[] source) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(source));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * {@link SeckillEngine#RESERVE_SCRIPT}：KEYS[1]=库存 KEYS[2]=已售计数 KEYS[3]=该买家的订单记录
+     */
+    private static Object seckillReserve(Map<String, byte[]> data, List<String> keys, List<byte[]> args) {
+        if (data.containsKey(keys.get(2))) {
+            return SeckillEngine.DUPLICATE;
+        }
+        long stock = parse(data.get(keys.get(0)));
+        if (stock <= 0) {
+            return SeckillEngine.SOLD_OUT;
+        }
+        data.put(keys.get(0), ascii(stock - 1));
+        long seq = parse(data.get(keys.get(1))) + 1;
+        data.put(keys.get(1), ascii(seq));
+        data.put(keys.get(2), ascii(seq));
+        return seq;
+    }
+
+    private static long parse(byte[] value) {
+        return value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] ascii(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.cap.standin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一主多从的替身拓扑：全部节点监听临时端口，启动并完成全量同步通常只需几毫秒
+ */
+public class StandInTopology implements AutoCloseable {
+    private static final long SYNC_TIMEOUT_SECONDS = 5;
+
+    private final StandInNode master;
+    private final List<StandInNode> replicas;
+
+    private StandInTopology(StandInNode master, List<StandInNode> replicas) {
+        this.master = master;
+        this.replicas = Collections.unmodifiableList(replicas);
+    }
+
+    public static StandInTopology start(int replicaCount, ReplicationSettings settings)
+            throws IOException, InterruptedException {
+        StandInNode master = new StandInNode("master");
+        master.setReplicationSettings(settings);
+        List<StandInNode> replicas = new ArrayList<>(replicaCount);
+        StandInTopology topology = new StandInTopology(master, replicas);
+        try {
+            for (int i = 0; i < replicaCount; i++) {
+                StandInNode replica = new StandInNode("replica-" + i);
+                replicas.add(replica);
+                replica.replicaOf(master.address());
+            }
+            for (StandInNode replica : replicas) {
+                if (!replica.awaitMasterLink(SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IOException("替身" + replica.getName() + "未能在" + SYNC_TIMEOUT_SECONDS + "秒内完成同步");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            topology.close();
+            throw e;
+        }
+        return topology;
+    }
+
+    public StandInNode master() {
+        return master;
+    }
+
+    public StandInNode replica() {
+        return replicas.get(0);
+    }
+
+    public List<StandInNode> replicas() {
+        return replicas;
+    }
+
+    @Override
+    public void close() {
+        for (StandInNode replica : replicas) {
+            replica.close();
+        }
+        master.close();
+    }
+}
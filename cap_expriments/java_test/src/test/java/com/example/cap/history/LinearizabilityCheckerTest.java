@@ -0,0 +1,59 @@
+package com.example.cap.history;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用几段结论已知的小历史检查判定结果。前面再加上同一个键的几十个无关操作，结论也必须不变
+ * （"读到之后才发起的写"曾经因为截前缀缩减反例被误判为违反顺序一致性）
+ */
+class LinearizabilityCheckerTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 80})
+    void readOfLaterWriteIsSequentiallyConsistent(int padding) {
+        History history = new History();
+        pad(history, padding);
+        ok(history, 0, History.Kind.WRITE, "0");
+        ok(history, 0, History.Kind.READ, "F");
+        ok(history, 1, History.Kind.WRITE, "F");
+
+        assertTrue(check(history, LinearizabilityChecker.Model.SEQUENTIAL).ok());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 80})
+    void readOfOwnOverwrittenValueViolatesBothModels(int padding) {
+        History history = new History();
+        pad(history, padding);
+        ok(history, 0, History.Kind.WRITE, "1");
+        ok(history, 0, History.Kind.WRITE, "2");
+        ok(history, 0, History.Kind.READ, "1");
+
+        assertFalse(check(history, LinearizabilityChecker.Model.SEQUENTIAL).ok());
+        assertFalse(check(history, LinearizabilityChecker.Model.LINEARIZABLE).ok());
+    }
+
+    private static LinearizabilityChecker.Report check(History history, LinearizabilityChecker.Model model) {
+        return new LinearizabilityChecker(model).check(history);
+    }
+
+    private static void pad(History history, int operations) {
+        for (int i = 0; i < operations / 2; i++) {
+            ok(history, 2, History.Kind.WRITE, "pad" + i);
+            ok(history, 2, History.Kind.READ, "pad" + i);
+        }
+    }
+
+    private static void ok(History history, int process, History.Kind kind, String value) {
+        int id = history.invoke(process, kind, "k", kind == History.Kind.WRITE ? value : null);
+        if (kind == History.Kind.WRITE) {
+            history.ok(id);
+        } else {
+            history.ok(id, value);
+        }
+    }
+}
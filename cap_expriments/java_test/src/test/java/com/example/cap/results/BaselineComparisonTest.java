@@ -0,0 +1,82 @@
+package com.example.cap.results;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 门禁规则：吞吐只在下降时判回归，p99只在上升时判回归，样本数不足的p99只展示不判定，缺少的场景算失败
+ */
+class BaselineComparisonTest {
+    private static final double THRESHOLD = 10;
+    private static final String P99 = "op" + ResultRecord.P99_SUFFIX;
+    private static final String COUNT = "op_count";
+
+    @Test
+    void throughputRegressesOnlyWhenItDropsBeyondThreshold() {
+        BaselineComparison dropped = compare(throughput(1000), throughput(850));
+        assertEquals(1, dropped.regressions());
+
+        BaselineComparison withinThreshold = compare(throughput(1000), throughput(950));
+        assertEquals(0, withinThreshold.regressions());
+
+        BaselineComparison improved = compare(throughput(1000), throughput(2000));
+        assertEquals(0, improved.regressions());
+    }
+
+    @Test
+    void p99RegressesOnlyWhenItRisesBeyondThreshold() {
+        long samples = BaselineComparison.MIN_P99_SAMPLES;
+        BaselineComparison slower = compare(p99(100, samples), p99(150, samples));
+        assertEquals(1, slower.regressions());
+
+        BaselineComparison faster = compare(p99(100, samples), p99(50, samples));
+        assertEquals(0, faster.regressions());
+    }
+
+    @Test
+    void p99WithTooFewSamplesIsShownButNotGated() {
+        long samples = BaselineComparison.MIN_P99_SAMPLES - 1;
+        BaselineComparison comparison = compare(p99(100, samples), p99(500, samples));
+
+        BaselineComparison.Finding finding = comparison.findings().get(0);
+        assertFalse(finding.gated);
+        assertFalse(finding.regression);
+        assertEquals(0, comparison.failures());
+    }
+
+    @Test
+    void otherMetricsAreNotCompared() {
+        BaselineComparison comparison = compare(ResultRecord.of("s").metric("errors", 1),
+            ResultRecord.of("s").metric("errors", 100));
+        assertTrue(comparison.findings().isEmpty());
+    }
+
+    @Test
+    void missingScenarioFailsTheGate() {
+        BaselineComparison comparison = new BaselineComparison(THRESHOLD).compare(
+            Map.of("kept", throughput(1000), "dropped", throughput(1000)),
+            Map.of("kept", throughput(1000)));
+
+        assertEquals(0, comparison.regressions());
+        assertEquals(List.of("dropped"), comparison.missing());
+        assertEquals(1, comparison.failures());
+    }
+
+    private static BaselineComparison compare(ResultRecord baseline, ResultRecord current) {
+        return new BaselineComparison(THRESHOLD).compare(Map.of("s", baseline), Map.of("s", current));
+    }
+
+    private static ResultRecord throughput(double opsPerSec) {
+        return ResultRecord.of("s").throughput(opsPerSec);
+    }
+
+    private static ResultRecord p99(double micros, long samples) {
+        return ResultRecord.of("s").metric(P99, micros).metric(COUNT, samples);
+    }
+}
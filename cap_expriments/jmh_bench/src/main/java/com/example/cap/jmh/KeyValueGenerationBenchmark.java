@@ -0,0 +1,55 @@
+package com.example.cap.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实验热循环里的键值生成："concurrent:" + taskId、"data_" + System.nanoTime()、
+ * "noise:" + threadId + ":" + j，以及Jedis发送前的UTF-8编码。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyValueGenerationBenchmark {
+    int taskId;
+    int threadId = 3;
+
+    @Benchmark
+    public String concurrentKey() {
+        return "concurrent:" + (taskId++);
+    }
+
+    @Benchmark
+    public String nanoTimeValue() {
+        return "data_" + System.nanoTime();
+    }
+
+    @Benchmark
+    public String noiseKey() {
+        return "noise:" + threadId + ":" + (taskId++);
+    }
+
+    @Benchmark
+    public byte[] concurrentKeyEncoded() {
+        return SafeEncoder.encode("concurrent:" + (taskId++));
+    }
+
+    @Benchmark
+    public byte[][] setArgsEncoded() {
+        int id = taskId++;
+        return new byte[][]{SafeEncoder.encode("perf:write:" + id), SafeEncoder.encode("data_" + id)};
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.cap.jmh;
+
+import com.example.cap.standin.StandInNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.Jedis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * testLargeDataReplication的大值路径：StringBuilder拼接50k行描述、编码成UTF-8、作为一条SET写入。
+ * 分开测量构造、编码和写入，看清客户端时间花在哪里。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+@State(Scope.Thread)
+public class LargeValueBenchmark {
+    @Param({"10000", "50000"})
+    int lines;
+
+    StandInNode node;
+    Jedis jedis;
+    String bigValue;
+    byte[] bigValueBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        node = new StandInNode("jmh-large");
+        jedis = new Jedis(node.address());
+        bigValue = buildLargeData(lines);
+        bigValueBytes = bigValue.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jedis.close();
+        node.close();
+    }
+
+    /**
+     * 与ComprehensiveCAPTest.testLargeDataReplication中的构造方式一致
+     */
+    static String buildLargeData(int lines) {
+        StringBuilder largeData = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            largeData.append("商品描述数据测试大数据同步延迟序号：").append(i).append("\n");
+        }
+        return largeData.toString();
+    }
+
+    @Benchmark
+    public String build() {
+        return buildLargeData(lines);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return bigValue.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String setString() {
+        return jedis.set("large_data:product_desc", bigValue);
+    }
+
+    @Benchmark
+    public String setPreEncoded() {
+        return jedis.set("large_data:product_desc".getBytes(StandardCharsets.UTF_8), bigValueBytes);
+    }
+
+    @Benchmark
+    public String buildAndSet() {
+        return jedis.set("large_data:product_desc", buildLargeData(lines));
+    }
+}
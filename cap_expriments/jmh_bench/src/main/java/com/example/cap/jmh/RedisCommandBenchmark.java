@@ -0,0 +1,136 @@
+package com.example.cap.jmh;
+
+import com.example.cap.standin.StandInNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实验中最常用的客户端热路径：单条SET/GET、Pipeline批量SET、MSET/MGET批量。
+ * 服务端是进程内的StandInNode，不需要Docker和网络；键值预先生成，只测命令本身的客户端开销和一次回环往返。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisCommandBenchmark {
+    private static final int KEY_SPACE = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        StandInNode node;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            node = new StandInNode("jmh");
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            node.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        Jedis jedis;
+        String[] keys;
+        String[] values;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) {
+            jedis = new Jedis(server.node.address());
+            keys = new String[KEY_SPACE];
+            values = new String[KEY_SPACE];
+            for (int i = 0; i < KEY_SPACE; i++) {
+                keys[i] = "perf:write:" + i;
+                values[i] = "data_" + i;
+                jedis.set(keys[i], values[i]);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            jedis.close();
+        }
+
+        int next() {
+            cursor = (cursor + 1) % KEY_SPACE;
+            return cursor;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        @Param({"10", "100"})
+        int batchSize;
+
+        String[] batchKeys;
+        String[] keysValues;
+
+        @Setup(Level.Trial)
+        public void prepare(Client c) {
+            batchKeys = Arrays.copyOf(c.keys, batchSize);
+            keysValues = new String[batchSize * 2];
+            for (int i = 0; i < batchSize; i++) {
+                keysValues[i * 2] = c.keys[i];
+                keysValues[i * 2 + 1] = c.values[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public String singleSet(Client c) {
+        int i = c.next();
+        return c.jedis.set(c.keys[i], c.values[i]);
+    }
+
+    @Benchmark
+    public String singleGet(Client c) {
+        return c.jedis.get(c.keys[c.next()]);
+    }
+
+    /**
+     * 一次调用 = batchSize条SET + 一次sync
+     */
+    @Benchmark
+    public void pipelinedSet(Client c, Batch b) {
+        Pipeline pipeline = c.jedis.pipelined();
+        for (int n = 0; n < b.batchSize; n++) {
+            int i = c.next();
+            pipeline.set(c.keys[i], c.values[i]);
+        }
+        pipeline.sync();
+    }
+
+    /**
+     * 一次调用 = 一条携带batchSize个键值的MSET
+     */
+    @Benchmark
+    public String msetBatch(Client c, Batch b) {
+        return c.jedis.mset(b.keysValues);
+    }
+
+    @Benchmark
+    public void mgetBatch(Client c, Batch b, Blackhole bh) {
+        bh.consume(c.jedis.mget(b.batchKeys));
+    }
+}